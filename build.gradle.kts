@@ -32,6 +32,7 @@ val testngVersion: String by project
 val jcommanderVersion: String by project
 val bshVersion: String by project
 val snakeyamlVersion: String by project
+val jmhVersion: String by project
 
 // Source Sets Configuration
 sourceSets {
@@ -58,6 +59,15 @@ sourceSets {
         runtimeClasspath += output + sourceSets.main.get().output + configurations.runtimeClasspath.get()
     }
 
+    // JMH benchmark source set
+    create("jmh") {
+        java {
+            srcDirs("test/jmh/src")
+        }
+        compileClasspath += sourceSets.main.get().output + configurations.compileClasspath.get()
+        runtimeClasspath += output + sourceSets.main.get().output + configurations.runtimeClasspath.get()
+    }
+
     test {
         java {
             srcDirs("test/src")
@@ -91,6 +101,10 @@ dependencies {
     testImplementation("com.beust:jcommander:${jcommanderVersion}")
     testImplementation("org.beanshell:bsh:${bshVersion}")
     testImplementation("org.yaml:snakeyaml:${snakeyamlVersion}")
+
+    // Benchmark dependencies
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:${jmhVersion}")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:${jmhVersion}")
 }
 
 // Custom Tasks
@@ -405,6 +419,28 @@ val testPessimistic = tasks.register<Test>("testPessimistic") {
     }
 }
 
+// JMH benchmarks
+// Usage: ./gradlew jmh [-Pjmh.includes=<regex>] [-Pjmh.args="<extra JMH options>"]
+val jmh = tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Run JMH benchmarks reporting throughput and allocation rate"
+
+    dependsOn(runSaigen, tasks.named("jmhClasses"))
+
+    mainClass.set("org.openjdk.jmh.Main")
+    classpath = sourceSets["jmh"].runtimeClasspath
+
+    val resultFile = layout.buildDirectory.file("reports/jmh/results.json").get().asFile
+    val includes = project.findProperty("jmh.includes")?.toString() ?: ".*"
+    val extraArgs = project.findProperty("jmh.args")?.toString()?.split(" ")?.filter { it.isNotBlank() } ?: emptyList()
+
+    args(listOf(includes, "-prof", "gc", "-rf", "json", "-rff", resultFile.absolutePath) + extraArgs)
+
+    doFirst {
+        resultFile.parentFile.mkdirs()
+    }
+}
+
 // Generate security policy file
 val generateSecurityPolicy = tasks.register("generateSecurityPolicy") {
     group = "build"
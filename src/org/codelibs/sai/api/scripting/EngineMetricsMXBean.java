@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.api.scripting;
+
+import java.util.Map;
+
+/**
+ * Live, engine wide metrics of the sai runtime. The metrics are collected for
+ * all script engines in the JVM and are registered with the platform MBean
+ * server under the name {@value #OBJECT_NAME}, unless the system property
+ * {@code sai.metrics.jmx} is set to false. The same events are also emitted as
+ * JDK Flight Recorder events in the "Sai" category when a recording is active.
+ * <p>
+ * Embedding applications can access the metrics directly through
+ * {@link ScriptUtils#getEngineMetrics()}.
+ */
+public interface EngineMetricsMXBean {
+    /** Object name under which the metrics are registered with the platform MBean server. */
+    public static final String OBJECT_NAME = "org.codelibs.sai:type=EngineMetrics";
+
+    /**
+     * Get the number of compile jobs run so far, including lazy compilation of
+     * functions and recompilation after deoptimization.
+     * @return number of compile jobs
+     */
+    public long getCompilationCount();
+
+    /**
+     * Get the total time spent in compile jobs.
+     * @return compilation time in nanoseconds
+     */
+    public long getCompilationTimeNanos();
+
+    /**
+     * Get the accumulated time of every compilation phase, including parsing.
+     * @return map from phase name to accumulated time in nanoseconds
+     */
+    public Map<String, Long> getPhaseTimeNanos();
+
+    /**
+     * Get the number of times a dynamic call site was relinked.
+     * @return relink count
+     */
+    public long getRelinkCount();
+
+    /**
+     * Get the call sites that were relinked most often, with their relink counts.
+     * Only call sites that relinked repeatedly are tracked, and the number of
+     * tracked call sites is bounded by the {@code sai.metrics.callsites} system
+     * property.
+     * @return map from call site description and script location to relink count
+     */
+    public Map<String, Long> getCallSiteRelinkCounts();
+
+    /**
+     * Get the number of call sites that became megamorphic, that is, stopped
+     * relinking and switched to a generic lookup.
+     * @return megamorphic transition count
+     */
+    public long getMegamorphicTransitionCount();
+
+    /**
+     * Get the number of deoptimizations, that is, optimistic type assumptions that
+     * failed and caused a RewriteException.
+     * @return deoptimization count
+     */
+    public long getDeoptimizationCount();
+
+    /**
+     * Get the number of functions whose baseline code was replaced by optimistic
+     * code compiled in the background, see the {@code --tiered-compilation} option.
+     * @return tier-up count
+     */
+    public long getTierUpCount();
+
+    /**
+     * Get the number of compilations avoided by finding a script class in the class cache.
+     * @return class cache hits
+     */
+    public long getClassCacheHitCount();
+
+    /**
+     * Get the number of class cache lookups that did not find a compiled script.
+     * @return class cache misses
+     */
+    public long getClassCacheMissCount();
+
+    /**
+     * Get the number of scripts and functions loaded from the persistent code store.
+     * @return code store hits
+     */
+    public long getCodeStoreHitCount();
+
+    /**
+     * Get the number of persistent code store lookups that found nothing to load.
+     * @return code store misses
+     */
+    public long getCodeStoreMissCount();
+
+    /**
+     * Get the number of global objects initialized so far.
+     * @return global count
+     */
+    public long getGlobalCount();
+
+    /**
+     * Get the total time spent initializing global objects.
+     * @return global initialization time in nanoseconds
+     */
+    public long getGlobalCreationTimeNanos();
+
+    /**
+     * Reset all counters to zero.
+     */
+    public void reset();
+}
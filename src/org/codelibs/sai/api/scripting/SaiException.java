@@ -167,7 +167,17 @@ public abstract class SaiException extends RuntimeException {
      * @return array of javascript stack frames
      */
     public static StackTraceElement[] getScriptFrames(final Throwable exception) {
-        final StackTraceElement[] frames = exception.getStackTrace();
+        return getScriptFrames(exception.getStackTrace());
+    }
+
+    /**
+     * Returns array javascript stack frames from the given stack trace, such as
+     * the one of a sampled thread.
+     *
+     * @param frames stack trace to filter
+     * @return array of javascript stack frames
+     */
+    static StackTraceElement[] getScriptFrames(final StackTraceElement[] frames) {
         final List<StackTraceElement> filtered = new ArrayList<>();
         for (final StackTraceElement st : frames) {
             if (ECMAErrors.isScriptFrame(st)) {
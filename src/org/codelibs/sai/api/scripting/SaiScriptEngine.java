@@ -55,6 +55,7 @@ import javax.script.SimpleBindings;
 
 import org.codelibs.sai.internal.objects.Global;
 import org.codelibs.sai.internal.runtime.Context;
+import org.codelibs.sai.internal.runtime.EngineMetrics;
 import org.codelibs.sai.internal.runtime.ErrorManager;
 import org.codelibs.sai.internal.runtime.ScriptFunction;
 import org.codelibs.sai.internal.runtime.ScriptObject;
@@ -144,6 +145,9 @@ public final class SaiScriptEngine extends AbstractScriptEngine implements Compi
         // cache this option that is used often
         this._global_per_engine = saiContext.getEnv()._global_per_engine;
 
+        // embedded engines publish their metrics over JMX
+        EngineMetrics.register();
+
         // create new global object
         this.global = createSaiGlobal();
         // set the default ENGINE_SCOPE object for the default context
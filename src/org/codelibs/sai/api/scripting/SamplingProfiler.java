@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.api.scripting;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codelibs.sai.internal.runtime.ScriptThreads;
+
+/**
+ * A sampling profiler for script code. While running, it periodically samples
+ * the stacks of the threads that have run script code and records the script
+ * frames found in them. Only the innermost frames of a stack, up to a maximum
+ * depth, are sampled. Script
+ * frames are mapped back to function names and source lines through the line
+ * number tables of the generated classes, so no instrumentation of the script
+ * code is needed and the profiler can be started and stopped at any time, for
+ * example from a running application that embeds a script engine:
+ * <pre>
+ * final SamplingProfiler profiler = new SamplingProfiler();
+ * profiler.start();
+ * ... run scripts ...
+ * profiler.stop();
+ * profiler.writeCollapsedStacks(writer);
+ * </pre>
+ * The collapsed stack output can be turned into a flame graph by the usual
+ * flame graph tools. Samples are taken at safepoints, so as with any sampling
+ * profiler based on stack traces, the attribution to lines is approximate.
+ */
+public final class SamplingProfiler implements AutoCloseable {
+    /** Default sampling interval in milliseconds */
+    public static final long DEFAULT_INTERVAL = 10L;
+
+    /** Default maximum number of Java frames sampled per stack */
+    public static final int DEFAULT_MAX_DEPTH = 256;
+
+    private final long interval;
+    private final int maxDepth;
+
+    // collapsed script stacks, from the outermost frame to the innermost, and their sample counts
+    private final Map<String, long[]> stacks = new HashMap<>();
+    // self samples per function and per source line
+    private final Map<String, long[]> functions = new HashMap<>();
+    private final Map<String, long[]> lines = new HashMap<>();
+    private long sampleCount;
+
+    private Thread sampler;
+
+    /**
+     * Create a profiler sampling every {@value #DEFAULT_INTERVAL} milliseconds.
+     */
+    public SamplingProfiler() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Create a profiler sampling at most {@value #DEFAULT_MAX_DEPTH} frames per stack.
+     *
+     * @param interval sampling interval in milliseconds
+     * @throws IllegalArgumentException if interval is not positive
+     */
+    public SamplingProfiler(final long interval) {
+        this(interval, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Create a profiler.
+     *
+     * @param interval sampling interval in milliseconds
+     * @param maxDepth maximum number of Java frames sampled per stack, counted from the innermost frame
+     * @throws IllegalArgumentException if interval or maxDepth is not positive
+     */
+    public SamplingProfiler(final long interval, final int maxDepth) {
+        if (interval <= 0L) {
+            throw new IllegalArgumentException("sampling interval must be positive: " + interval);
+        }
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException("maximum stack depth must be positive: " + maxDepth);
+        }
+        this.interval = interval;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Start sampling. Samples are added to the ones collected so far, use
+     * {@link #reset()} to discard those. Does nothing if the profiler is already running.
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = new Thread("Sai Sampling Profiler") {
+            @Override
+            public void run() {
+                sampleLoop(this);
+            }
+        };
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stop sampling and wait for the sampler thread to finish, so that the
+     * collected samples do not change any more. Does nothing if the profiler is
+     * not running.
+     */
+    public void stop() {
+        final Thread thread;
+        synchronized (this) {
+            thread = sampler;
+            sampler = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #stop()}.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Check if the profiler is sampling.
+     *
+     * @return true if the profiler is running
+     */
+    public synchronized boolean isRunning() {
+        return sampler != null;
+    }
+
+    /**
+     * Discard all samples collected so far.
+     */
+    public synchronized void reset() {
+        stacks.clear();
+        functions.clear();
+        lines.clear();
+        sampleCount = 0L;
+    }
+
+    /**
+     * Get the number of samples taken of threads running script code.
+     *
+     * @return sample count
+     */
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Get the functions that were found running most often, with their sample
+     * counts. Only samples where the function was the innermost script frame
+     * count, time spent in callees is attributed to them.
+     *
+     * @return map from function name and source file to sample count, hottest first
+     */
+    public synchronized Map<String, Long> getFunctionHotSpots() {
+        return sortByCount(functions);
+    }
+
+    /**
+     * Get the source lines that were found running most often, with their sample counts.
+     *
+     * @return map from function name, source file and line to sample count, hottest first
+     */
+    public synchronized Map<String, Long> getLineHotSpots() {
+        return sortByCount(lines);
+    }
+
+    /**
+     * Write the sampled script stacks in collapsed stack format, as used by
+     * flame graph tools: one line per distinct stack, listing the frames from
+     * the outermost to the innermost separated by semicolons, followed by a
+     * space and the number of samples.
+     *
+     * @param out destination of the collapsed stacks
+     * @throws IOException if writing fails
+     */
+    public synchronized void writeCollapsedStacks(final Appendable out) throws IOException {
+        for (final Map.Entry<String, long[]> entry : new TreeMap<>(stacks).entrySet()) {
+            out.append(entry.getKey()).append(' ').append(Long.toString(entry.getValue()[0])).append('\n');
+        }
+    }
+
+    private void sampleLoop(final Thread self) {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        try {
+            while (isSampler(self)) {
+                Thread.sleep(interval);
+                sample(self, threadBean);
+            }
+        } catch (final InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private synchronized boolean isSampler(final Thread thread) {
+        return sampler == thread;
+    }
+
+    private void sample(final Thread self, final ThreadMXBean threadBean) {
+        final long[] ids = ScriptThreads.getThreadIds();
+        if (ids.length == 0) {
+            return;
+        }
+        // take the stack traces outside of the lock, so that readers are not blocked by it
+        final ThreadInfo[] infos = threadBean.getThreadInfo(ids, maxDepth);
+        synchronized (this) {
+            if (sampler != self) {
+                return;
+            }
+            for (final ThreadInfo info : infos) {
+                // null for threads that terminated in the meantime
+                if (info != null) {
+                    final StackTraceElement[] frames = SaiException.getScriptFrames(info.getStackTrace());
+                    if (frames.length > 0) {
+                        record(frames);
+                    }
+                }
+            }
+        }
+    }
+
+    private void record(final StackTraceElement[] frames) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = frames.length - 1; i >= 0; i--) {
+            if (i < frames.length - 1) {
+                sb.append(';');
+            }
+            appendFrame(sb, frames[i]).append(':').append(frames[i].getLineNumber()).append(')');
+        }
+        increment(stacks, sb.toString());
+
+        final StackTraceElement top = frames[0];
+        increment(functions, appendFrame(new StringBuilder(), top).append(')').toString());
+        increment(lines, appendFrame(new StringBuilder(), top).append(':').append(top.getLineNumber()).append(')').toString());
+        sampleCount++;
+    }
+
+    private static StringBuilder appendFrame(final StringBuilder sb, final StackTraceElement frame) {
+        return sb.append(frame.getMethodName()).append(" (").append(frame.getFileName());
+    }
+
+    private static void increment(final Map<String, long[]> counts, final String key) {
+        final long[] count = counts.get(key);
+        if (count == null) {
+            counts.put(key, new long[] { 1L });
+        } else {
+            count[0]++;
+        }
+    }
+
+    private static Map<String, Long> sortByCount(final Map<String, long[]> counts) {
+        final List<Map.Entry<String, long[]>> entries = new ArrayList<>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(final Map.Entry<String, long[]> o1, final Map.Entry<String, long[]> o2) {
+                return Long.compare(o2.getValue()[0], o1.getValue()[0]);
+            }
+        });
+        final Map<String, Long> sorted = new LinkedHashMap<>();
+        for (final Map.Entry<String, long[]> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return sorted;
+    }
+}
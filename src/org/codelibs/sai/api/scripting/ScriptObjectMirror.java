@@ -25,6 +25,10 @@
 
 package org.codelibs.sai.api.scripting;
 
+import static org.codelibs.sai.internal.lookup.Lookup.MH;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.nio.ByteBuffer;
 import java.security.AccessControlContext;
 import java.security.AccessController;
@@ -55,6 +59,7 @@ import org.codelibs.sai.internal.runtime.ScriptFunction;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.ScriptRuntime;
 import org.codelibs.sai.internal.runtime.arrays.ArrayData;
+import org.codelibs.sai.internal.runtime.linker.Bootstrap;
 import org.codelibs.sai.internal.runtime.linker.SaiCallSiteDescriptor;
 
 /**
@@ -73,6 +78,13 @@ public final class ScriptObjectMirror extends AbstractJSObject implements Bindin
     @SuppressWarnings("removal")
     private static final AccessControlContext GET_CONTEXT_ACC_CTXT = getContextAccCtxt();
 
+    private static final MethodHandle IS_CURRENT_GLOBAL = findOwnMH("isCurrentGlobal", boolean.class, Global.class);
+    private static final MethodHandle ENTER_GLOBAL = findOwnMH("enterGlobal", Global.class, Global.class);
+    private static final MethodHandle LEAVE_GLOBAL = findOwnMH("leaveGlobal", void.class, Global.class);
+    private static final MethodHandle UNWRAP = findOwnMH("unwrap", Object.class, Object.class, Object.class);
+    private static final MethodHandle WRAP = findOwnMH("wrap", Object.class, Object.class, Object.class, boolean.class);
+    private static final MethodHandle INIT_ECMA_ERROR = findOwnMH("initEcmaError", SaiException.class, SaiException.class, Global.class);
+
     private final ScriptObject sobj;
     private final Global global;
     private final boolean strict;
@@ -180,6 +192,62 @@ public final class ScriptObjectMirror extends AbstractJSObject implements Bindin
         });
     }
 
+    /**
+     * Returns a method handle that calls this function. The handle is of type {@code (Object, ptypes...)rtype} where the
+     * first parameter is the {@code this} object of the call. Unlike {@link #call(Object, Object...)}, the handle is
+     * linked once and does not collect the arguments into arrays. If it is invoked on a thread whose current global is
+     * already the home global of this mirror, the current global is left as it is. Mirrors of the home global passed as
+     * {@code this} or as arguments are unwrapped and, if {@code rtype} is {@code Object}, the return value is wrapped
+     * the same way as by {@link #call(Object, Object...)}. Arguments and return value of other types are converted
+     * with the usual JavaScript conversions.
+     *
+     * @param rtype the return type of the handle
+     * @param ptypes the types of the arguments of the function, not including {@code this}
+     * @return a method handle calling this function
+     * @throws RuntimeException if this mirror is not a function
+     */
+    public MethodHandle getCallHandle(final Class<?> rtype, final Class<?>... ptypes) {
+        if (!(sobj instanceof ScriptFunction)) {
+            throw new RuntimeException("not a function: " + toString());
+        }
+
+        // (callee, this, args...)
+        final Class<?>[] invokerTypes = new Class<?>[ptypes.length + 2];
+        invokerTypes[0] = Object.class;
+        invokerTypes[1] = Object.class;
+        System.arraycopy(ptypes, 0, invokerTypes, 2, ptypes.length);
+        MethodHandle mh =
+                MethodHandles.insertArguments(Bootstrap.createDynamicInvoker("dyn:call", getCallSiteFlags(), rtype, invokerTypes), 0, sobj);
+
+        final MethodHandle unwrap = MethodHandles.insertArguments(UNWRAP, 1, global);
+        for (int i = 0; i < mh.type().parameterCount(); i++) {
+            if (mh.type().parameterType(i) == Object.class) {
+                mh = MethodHandles.filterArguments(mh, i, unwrap);
+            }
+        }
+        if (rtype == Object.class) {
+            mh = MethodHandles.filterReturnValue(mh, MethodHandles.insertArguments(WRAP, 1, global, jsonCompatible));
+        }
+        final MethodHandle rethrow = MethodHandles.filterReturnValue(MethodHandles.insertArguments(INIT_ECMA_ERROR, 1, global),
+                MethodHandles.throwException(rtype, SaiException.class));
+        mh = MethodHandles.catchException(mh, SaiException.class, MethodHandles.dropArguments(rethrow, 1, mh.type().parameterList()));
+
+        // Switch to the home global for the duration of the call if the current global is a different one.
+        final MethodHandle cleanup;
+        if (rtype == void.class) {
+            cleanup = MethodHandles.dropArguments(LEAVE_GLOBAL, 0, Throwable.class);
+        } else {
+            cleanup = MethodHandles.dropArguments(
+                    MethodHandles.foldArguments(MethodHandles.dropArguments(MethodHandles.identity(rtype), 1, Global.class), 1, LEAVE_GLOBAL),
+                    0, Throwable.class);
+        }
+        final MethodHandle inGlobal = MethodHandles.foldArguments(
+                MethodHandles.tryFinally(MethodHandles.dropArguments(mh, 0, Global.class), cleanup), ENTER_GLOBAL.bindTo(global));
+
+        return MethodHandles.guardWithTest(MethodHandles.dropArguments(IS_CURRENT_GLOBAL.bindTo(global), 0, mh.type().parameterList()),
+                mh, inGlobal);
+    }
+
     /**
      * Call member function
      * @param functionName function name
@@ -879,6 +947,32 @@ public final class ScriptObjectMirror extends AbstractJSObject implements Bindin
     }
 
     // internals only below this.
+    @SuppressWarnings("unused")
+    private static boolean isCurrentGlobal(final Global global) {
+        return Context.getGlobal() == global;
+    }
+
+    @SuppressWarnings("unused")
+    private static Global enterGlobal(final Global global) {
+        final Global oldGlobal = Context.getGlobal();
+        Context.setGlobal(global);
+        return oldGlobal;
+    }
+
+    @SuppressWarnings("unused")
+    private static void leaveGlobal(final Global oldGlobal) {
+        Context.setGlobal(oldGlobal);
+    }
+
+    @SuppressWarnings("unused")
+    private static SaiException initEcmaError(final SaiException ne, final Global global) {
+        return ne.initEcmaError(global);
+    }
+
+    private static MethodHandle findOwnMH(final String name, final Class<?> rtype, final Class<?>... types) {
+        return MH.findStatic(MethodHandles.lookup(), ScriptObjectMirror.class, name, MH.type(rtype, types));
+    }
+
     private <V> V inGlobal(final Callable<V> callable) {
         final Global oldGlobal = Context.getGlobal();
         final boolean globalChanged = (oldGlobal != global);
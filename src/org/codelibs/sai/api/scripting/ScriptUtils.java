@@ -25,11 +25,22 @@
 
 package org.codelibs.sai.api.scripting;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Callable;
 
 import org.codelibs.sai.internal.dynalink.beans.StaticClass;
 import org.codelibs.sai.internal.dynalink.linker.LinkerServices;
+import org.codelibs.sai.internal.objects.Global;
+import org.codelibs.sai.internal.objects.NativeJSON;
+import org.codelibs.sai.internal.objects.NativeJava;
 import org.codelibs.sai.internal.runtime.Context;
+import org.codelibs.sai.internal.runtime.EngineMetrics;
+import org.codelibs.sai.internal.runtime.JSONFunctions;
 import org.codelibs.sai.internal.runtime.ScriptFunction;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.ScriptRuntime;
@@ -187,4 +198,202 @@ public final class ScriptUtils {
             throw new RuntimeException(t);
         }
     }
+
+    /**
+     * Create a script array in the current global with a copy of the elements of a Java array or
+     * collection, like {@code Java.from} does in scripts. Arrays of primitive numbers, and arrays or
+     * collections holding only {@link Integer} and {@link Double} objects, are copied in bulk into
+     * unboxed array storage. The reverse conversion is {@code ScriptObjectMirror.to(int[].class)}
+     * and similar, which copies dense arrays of numbers the same way.
+     *
+     * @param array Java array or collection
+     * @return mirror of the new script array
+     */
+    public static ScriptObjectMirror toScriptArray(final Object array) {
+        return toScriptArray(Context.getGlobal(), array);
+    }
+
+    /**
+     * Create a script array in the global of the given mirror with a copy of the elements of a Java
+     * array or collection, like {@code Java.from} does in scripts.
+     *
+     * @param global mirror of the global to create the array in
+     * @param array Java array or collection
+     * @return mirror of the new script array
+     * @see #toScriptArray(Object)
+     */
+    public static ScriptObjectMirror toScriptArray(final ScriptObjectMirror global, final Object array) {
+        return toScriptArray(global.getHomeGlobal(), array);
+    }
+
+    private static ScriptObjectMirror toScriptArray(final Global global, final Object array) {
+        Objects.requireNonNull(array);
+        try {
+            return inGlobal(global, new Callable<ScriptObjectMirror>() {
+                @Override
+                public ScriptObjectMirror call() {
+                    return (ScriptObjectMirror) ScriptObjectMirror.wrap(NativeJava.from(null, array), global);
+                }
+            });
+        } catch (final IOException e) {
+            throw new AssertionError("Cannot happen", e);
+        }
+    }
+
+    /**
+     * Create an ArrayBuffer in the current global over the remaining bytes of a {@link ByteBuffer},
+     * like {@code Java.wrapBuffer} does in scripts. The bytes are not copied: typed arrays and
+     * DataViews over the returned ArrayBuffer read and write the given buffer directly.
+     *
+     * @param buffer heap, direct or memory mapped buffer, must not be read only
+     * @return mirror of the new ArrayBuffer
+     */
+    public static ScriptObjectMirror wrapBuffer(final ByteBuffer buffer) {
+        return wrapBuffer(Context.getGlobal(), buffer);
+    }
+
+    /**
+     * Create an ArrayBuffer in the global of the given mirror over the remaining bytes of a
+     * {@link ByteBuffer}, like {@code Java.wrapBuffer} does in scripts.
+     *
+     * @param global mirror of the global to create the ArrayBuffer in
+     * @param buffer heap, direct or memory mapped buffer, must not be read only
+     * @return mirror of the new ArrayBuffer
+     * @see #wrapBuffer(ByteBuffer)
+     */
+    public static ScriptObjectMirror wrapBuffer(final ScriptObjectMirror global, final ByteBuffer buffer) {
+        return wrapBuffer(global.getHomeGlobal(), buffer);
+    }
+
+    private static ScriptObjectMirror wrapBuffer(final Global global, final ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+        try {
+            return inGlobal(global, new Callable<ScriptObjectMirror>() {
+                @Override
+                public ScriptObjectMirror call() {
+                    return (ScriptObjectMirror) ScriptObjectMirror.wrap(NativeJava.wrapBuffer(null, buffer), global);
+                }
+            });
+        } catch (final IOException e) {
+            throw new AssertionError("Cannot happen", e);
+        }
+    }
+
+    /**
+     * Parse JSON text read from the given reader in the current global. The text is read and
+     * parsed incrementally, so it never has to be held in memory as a whole. The reader is not closed.
+     *
+     * @param reader reader providing the JSON text
+     * @return the parsed value, objects and arrays are returned as script object mirrors
+     * @throws IOException if reading fails
+     * @throws SaiException if the text is not valid JSON
+     */
+    public static Object parseJSON(final Reader reader) throws IOException {
+        return parseJSON(Context.getGlobal(), reader);
+    }
+
+    /**
+     * Parse JSON text read from the given reader in the global of the given mirror, typically the
+     * engine scope bindings of a script engine. The text is read and parsed incrementally, so it never
+     * has to be held in memory as a whole. The reader is not closed.
+     *
+     * @param global mirror of the global to create objects in
+     * @param reader reader providing the JSON text
+     * @return the parsed value, objects and arrays are returned as script object mirrors
+     * @throws IOException if reading fails
+     * @throws SaiException if the text is not valid JSON
+     */
+    public static Object parseJSON(final ScriptObjectMirror global, final Reader reader) throws IOException {
+        return parseJSON(global.getHomeGlobal(), reader);
+    }
+
+    /**
+     * Parse UTF-8 encoded JSON text from the remaining bytes of the given buffer in the global of
+     * the given mirror. The text is decoded incrementally and the position of the buffer is not changed.
+     *
+     * @param global mirror of the global to create objects in
+     * @param bytes buffer containing the JSON text
+     * @return the parsed value, objects and arrays are returned as script object mirrors
+     * @throws SaiException if the text is not valid JSON
+     */
+    public static Object parseJSON(final ScriptObjectMirror global, final ByteBuffer bytes) {
+        try {
+            return inGlobal(global.getHomeGlobal(), new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return ScriptObjectMirror.wrap(JSONFunctions.parse(bytes), global.getHomeGlobal());
+                }
+            });
+        } catch (final IOException e) {
+            throw new AssertionError("Cannot happen", e);
+        }
+    }
+
+    /**
+     * Serialize a value like {@code JSON.stringify} and write the JSON text to an {@link Appendable}
+     * such as a {@link java.io.Writer}. The text is written in chunks while the value is serialized,
+     * so it never has to be held in memory as a whole. Script objects are serialized in the global
+     * of their mirror, other values in the current global.
+     *
+     * @param value the value to serialize, usually a script object mirror
+     * @param space indentation as given to {@code JSON.stringify}, or null for none
+     * @param out the destination of the JSON text
+     * @return false if the value has no JSON representation, such as a function, and nothing was written
+     * @throws IOException if writing fails
+     * @throws SaiException if the value can not be serialized, for example because it is cyclic
+     */
+    public static boolean writeJSON(final Object value, final Object space, final Appendable out) throws IOException {
+        final Global global = value instanceof ScriptObjectMirror ? ((ScriptObjectMirror) value).getHomeGlobal() : Context.getGlobal();
+        return inGlobal(global, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return NativeJSON.stringify(ScriptObjectMirror.unwrap(value, global), ScriptRuntime.UNDEFINED, space, out);
+            }
+        });
+    }
+
+    /**
+     * Get the live metrics of all sai script engines in this JVM. The same metrics
+     * are available over JMX under {@value EngineMetricsMXBean#OBJECT_NAME}.
+     *
+     * @return engine metrics
+     */
+    public static EngineMetricsMXBean getEngineMetrics() {
+        return EngineMetrics.getInstance();
+    }
+
+    private static Object parseJSON(final Global global, final Reader reader) throws IOException {
+        return inGlobal(global, new Callable<Object>() {
+            @Override
+            public Object call() {
+                return ScriptObjectMirror.wrap(JSONFunctions.parse(reader), global);
+            }
+        });
+    }
+
+    private static <V> V inGlobal(final Global global, final Callable<V> callable) throws IOException {
+        if (global == null) {
+            throw new IllegalStateException("no current global");
+        }
+        final Global oldGlobal = Context.getGlobal();
+        final boolean globalChanged = oldGlobal != global;
+        if (globalChanged) {
+            Context.setGlobal(global);
+        }
+        try {
+            return callable.call();
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } catch (final SaiException e) {
+            throw e.initEcmaError(global);
+        } catch (final RuntimeException | IOException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new AssertionError("Cannot happen", e);
+        } finally {
+            if (globalChanged) {
+                Context.setGlobal(oldGlobal);
+            }
+        }
+    }
 }
@@ -445,6 +445,18 @@ final class AssignSymbols extends SimpleNodeVisitor implements Loggable {
                 assert block.getStatements().isEmpty();
                 return false;
             }
+            if (fn.isPreParsed()) {
+                // Its body was discarded by the parser, mark the names it used as being in use.
+                for (final String name : fn.getPreParsedUses()) {
+                    if (fn.isNamedFunctionExpression() && name.equals(fn.getIdent().getName())) {
+                        lc.setFlag(fn, FunctionNode.USES_SELF_SYMBOL);
+                    } else {
+                        nameIsUsed(name, null);
+                    }
+                }
+                assert block.getStatements().isEmpty();
+                return false;
+            }
 
             enterFunctionBody();
         }
@@ -453,7 +465,7 @@ final class AssignSymbols extends SimpleNodeVisitor implements Loggable {
     }
 
     private boolean isUnparsedFunction(final FunctionNode fn) {
-        return isOnDemand && fn != lc.getOutermostFunction();
+        return isOnDemand && fn != lc.getOutermostFunction() && compiler.hasScriptFunctionData(fn.getId());
     }
 
     @Override
@@ -812,6 +824,10 @@ final class AssignSymbols extends SimpleNodeVisitor implements Loggable {
         final FunctionNode finalizedFunction;
         if (isUnparsedFunction(functionNode)) {
             finalizedFunction = functionNode;
+        } else if (functionNode.isPreParsed()) {
+            // "this" properties of a pre-parsed function were already counted by the parser.
+            thisProperties.pop();
+            finalizedFunction = functionNode;
         } else {
             finalizedFunction =
                     markProgramBlock(removeUnusedSlots(createSyntheticInitializers(finalizeParameters(lc.applyTopFlags(functionNode))))
@@ -828,7 +844,9 @@ final class AssignSymbols extends SimpleNodeVisitor implements Loggable {
 
         final Symbol symbol = nameIsUsed(identNode.getName(), identNode);
 
-        if (!identNode.isInitializedHere()) {
+        // Uses in nested functions parsed during an on-demand compilation (those of a pre-parsed function) aren't
+        // counted, so the counts match those of later compilations that skip the nested functions.
+        if (!identNode.isInitializedHere() && (!isOnDemand || lc.getCurrentFunction() == lc.getOutermostFunction())) {
             symbol.increaseUseCount();
         }
 
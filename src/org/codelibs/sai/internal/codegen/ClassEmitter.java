@@ -71,6 +71,7 @@ import org.codelibs.sai.internal.runtime.RewriteException;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.Source;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.util.TraceClassVisitor;
@@ -143,6 +144,9 @@ public class ClassEmitter {
 
     private final Set<String> methodNames;
 
+    /** Are stack map frames computed in {@link #toByteArray()} instead of while methods are emitted? */
+    private boolean deferFrames;
+
     /**
      * Constructor - only used internally in this class as it breaks
      * abstraction towards ASM or other code generator below.
@@ -187,9 +191,24 @@ public class ClassEmitter {
      * @param sourceName    Source name
      * @param unitClassName Compile unit class name.
      * @param strictMode    Should we generate this method in strict mode
+     * @param deferFrames   Should computation of stack map frames be deferred to {@link #toByteArray()}
      */
-    ClassEmitter(final Context context, final String sourceName, final String unitClassName, final boolean strictMode) {
-        this(context, new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+    ClassEmitter(final Context context, final String sourceName, final String unitClassName, final boolean strictMode,
+            final boolean deferFrames) {
+        this(context, newUnitClassWriter(deferFrames ? 0 : ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS));
+
+        this.unitClassName = unitClassName;
+        this.constantMethodNeeded = new HashSet<>();
+        this.deferFrames = deferFrames;
+
+        cw.visit(V1_7, ACC_PUBLIC | ACC_SUPER, unitClassName, null, pathName(org.codelibs.sai.internal.scripts.JS.class.getName()), null);
+        cw.visitSource(sourceName, null);
+
+        defineCommonStatics(strictMode);
+    }
+
+    private static ClassWriter newUnitClassWriter(final int flags) {
+        return new ClassWriter(flags) {
             private static final String OBJECT_CLASS = "java/lang/Object";
 
             @Override
@@ -203,15 +222,7 @@ public class ClassEmitter {
                     return OBJECT_CLASS;
                 }
             }
-        });
-
-        this.unitClassName = unitClassName;
-        this.constantMethodNeeded = new HashSet<>();
-
-        cw.visit(V1_7, ACC_PUBLIC | ACC_SUPER, unitClassName, null, pathName(org.codelibs.sai.internal.scripts.JS.class.getName()), null);
-        cw.visitSource(sourceName, null);
-
-        defineCommonStatics(strictMode);
+        };
     }
 
     Context getContext() {
@@ -658,7 +669,16 @@ public class ClassEmitter {
             return null;
         }
 
-        return cw.toByteArray();
+        if (!deferFrames) {
+            return cw.toByteArray();
+        }
+
+        // Methods were written without computing frames and maximums, so run the class through
+        // a writer that computes them. Compile units are independent, so this can happen on any
+        // thread once the class has ended.
+        final ClassWriter frameWriter = newUnitClassWriter(ClassWriter.COMPUTE_FRAMES);
+        new ClassReader(cw.toByteArray()).accept(frameWriter, 0);
+        return frameWriter.toByteArray();
     }
 
     /**
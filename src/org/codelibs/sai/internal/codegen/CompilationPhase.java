@@ -28,11 +28,16 @@ package org.codelibs.sai.internal.codegen;
 import static org.codelibs.sai.internal.runtime.logging.DebugLogger.quote;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.codelibs.sai.internal.codegen.Compiler.CompilationPhases;
 import org.codelibs.sai.internal.ir.Block;
@@ -114,8 +119,6 @@ abstract class CompilationPhase {
     private static final class SplittingPhase extends CompilationPhase {
         @Override
         FunctionNode transform(final Compiler compiler, final CompilationPhases phases, final FunctionNode fn) {
-            final CompileUnit outermostCompileUnit = compiler.addCompileUnit(0L);
-
             FunctionNode newFunctionNode;
 
             //ensure elementTypes, postsets and presets exist for splitter and arraynodes
@@ -126,6 +129,12 @@ abstract class CompilationPhase {
                 }
             });
 
+            if (compiler.getScriptEnvironment()._parallel_codegen) {
+                // every unit holds up to the split threshold, so the weight tells how many units there will be
+                compiler.expectCompileUnits(WeighNodes.weigh(newFunctionNode) / Splitter.SPLIT_THRESHOLD + 1);
+            }
+            final CompileUnit outermostCompileUnit = compiler.addCompileUnit(0L);
+
             newFunctionNode = new Splitter(compiler, newFunctionNode, outermostCompileUnit).split(newFunctionNode, true);
             newFunctionNode = transformFunction(newFunctionNode, new SplitIntoFunctions(compiler));
             assert newFunctionNode.getCompileUnit() == outermostCompileUnit : "fn=" + fn.getName() + ", fn.compileUnit ("
@@ -310,6 +319,7 @@ abstract class CompilationPhase {
 
             log.fine("Clearing bytecode cache");
             compiler.clearBytecode();
+            compiler.expectCompileUnits(compiler.getCompileUnits().size());
 
             for (final CompileUnit oldUnit : compiler.getCompileUnits()) {
                 assert map.get(oldUnit) == null;
@@ -436,16 +446,21 @@ abstract class CompilationPhase {
                 throw new AssertionError("Failed generating bytecode for " + fn.getSourceName() + ":" + codegen.getLastLineNumber(), e);
             }
 
+            final List<CompileUnit> usedUnits = new ArrayList<>();
             for (final CompileUnit compileUnit : compiler.getCompileUnits()) {
-                final ClassEmitter classEmitter = compileUnit.getClassEmitter();
-                classEmitter.end();
+                compileUnit.getClassEmitter().end();
 
                 if (!compileUnit.isUsed()) {
                     compiler.getLogger().fine("Skipping unused compile unit ", compileUnit);
                     continue;
                 }
+                usedUnits.add(compileUnit);
+            }
 
-                final byte[] bytecode = classEmitter.toByteArray();
+            final List<byte[]> classes = toByteArrays(compiler, fn, usedUnits);
+            for (int i = 0; i < usedUnits.size(); i++) {
+                final CompileUnit compileUnit = usedUnits.get(i);
+                final byte[] bytecode = classes.get(i);
                 assert bytecode != null;
 
                 final String className = compileUnit.getUnitClassName();
@@ -464,6 +479,41 @@ abstract class CompilationPhase {
             return newFunctionNode;
         }
 
+        /**
+         * Get the class files of the ended compile units, in the order of the units. When the compile
+         * units deferred their stack map frames, the classes of the units are assembled on the fork join pool.
+         */
+        private static List<byte[]> toByteArrays(final Compiler compiler, final FunctionNode fn, final List<CompileUnit> units) {
+            final List<byte[]> classes = new ArrayList<>(units.size());
+            if (!compiler.isDeferringFrames() || units.size() < 2) {
+                for (final CompileUnit compileUnit : units) {
+                    classes.add(compileUnit.getClassEmitter().toByteArray());
+                }
+                return classes;
+            }
+
+            final List<ForkJoinTask<byte[]>> tasks = new ArrayList<>(units.size());
+            for (final CompileUnit compileUnit : units) {
+                tasks.add(ForkJoinPool.commonPool().submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() {
+                        return compileUnit.getClassEmitter().toByteArray();
+                    }
+                }));
+            }
+            try {
+                for (final ForkJoinTask<byte[]> task : tasks) {
+                    classes.add(task.join());
+                }
+            } catch (final RuntimeException | Error e) {
+                for (final ForkJoinTask<byte[]> task : tasks) {
+                    task.cancel(false);
+                }
+                throw new AssertionError("Failed generating bytecode for " + fn.getSourceName(), e);
+            }
+            return classes;
+        }
+
         @Override
         public String toString() {
             return "'Bytecode Generation'";
@@ -549,15 +599,6 @@ abstract class CompilationPhase {
 
     static final CompilationPhase INSTALL_PHASE = new InstallPhase();
 
-    /** start time of transform - used for timing, see {@link org.codelibs.sai.internal.runtime.Timing} */
-    private long startTime;
-
-    /** start time of transform - used for timing, see {@link org.codelibs.sai.internal.runtime.Timing} */
-    private long endTime;
-
-    /** boolean that is true upon transform completion */
-    private boolean isFinished;
-
     private CompilationPhase() {
     }
 
@@ -569,8 +610,6 @@ abstract class CompilationPhase {
      */
     protected FunctionNode begin(final Compiler compiler, final FunctionNode functionNode) {
         compiler.getLogger().indent();
-        startTime = System.nanoTime();
-
         return functionNode;
     }
 
@@ -578,29 +617,15 @@ abstract class CompilationPhase {
      * End a compilation phase
      * @param compiler the compiler
      * @param functionNode function node to compile
+     * @param startTime start time of the transform, as returned by {@link System#nanoTime()}
      * @return function node
      */
-    protected FunctionNode end(final Compiler compiler, final FunctionNode functionNode) {
+    protected FunctionNode end(final Compiler compiler, final FunctionNode functionNode, final long startTime) {
         compiler.getLogger().unindent();
-        endTime = System.nanoTime();
-        compiler.getScriptEnvironment()._timing.accumulateTime(toString(), endTime - startTime);
-
-        isFinished = true;
+        compiler.getScriptEnvironment()._timing.accumulateTime(toString(), System.nanoTime() - startTime);
         return functionNode;
     }
 
-    boolean isFinished() {
-        return isFinished;
-    }
-
-    long getStartTime() {
-        return startTime;
-    }
-
-    long getEndTime() {
-        return endTime;
-    }
-
     abstract FunctionNode transform(final Compiler compiler, final CompilationPhases phases, final FunctionNode functionNode)
             throws CompilationException;
 
@@ -622,7 +647,9 @@ abstract class CompilationPhase {
             throws CompilationException {
         assert phases.contains(this);
 
-        return end(compiler, transform(compiler, phases, begin(compiler, functionNode)));
+        // Phases are shared singletons and compilations run concurrently, so timing is kept on the stack.
+        final long startTime = System.nanoTime();
+        return end(compiler, transform(compiler, phases, begin(compiler, functionNode)), startTime);
     }
 
     private static FunctionNode transformFunction(final FunctionNode fn, final NodeVisitor<?> visitor) {
@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codelibs.sai.internal.ir.CompileUnitHolder;
 import org.codelibs.sai.internal.ir.FunctionNode;
@@ -61,7 +62,7 @@ public final class CompileUnit implements Comparable<CompileUnit>, Serializable
 
     private transient boolean isUsed;
 
-    private static int emittedUnitCount;
+    private static final AtomicInteger emittedUnitCount = new AtomicInteger();
 
     CompileUnit(final String className, final ClassEmitter classEmitter, final long initialWeight) {
         this.className = className;
@@ -69,12 +70,23 @@ public final class CompileUnit implements Comparable<CompileUnit>, Serializable
         this.classEmitter = classEmitter;
     }
 
+    /**
+     * Create a compile unit that stands in for a unit of a decoded AST. Like the
+     * units of a java deserialized AST it has no class name or emitter, and is
+     * replaced with a real unit before code generation.
+     *
+     * @return placeholder compile unit
+     */
+    public static CompileUnit createPlaceholder() {
+        return new CompileUnit(null, null, 0L);
+    }
+
     static Set<CompileUnit> createCompileUnitSet() {
         return new TreeSet<>();
     }
 
     static void increaseEmitCount() {
-        emittedUnitCount++;
+        emittedUnitCount.incrementAndGet();
     }
 
     /**
@@ -82,7 +94,7 @@ public final class CompileUnit implements Comparable<CompileUnit>, Serializable
      * @return emitted compile unit count
      */
     public static int getEmittedUnitCount() {
-        return emittedUnitCount;
+        return emittedUnitCount.get();
     }
 
     /**
@@ -60,6 +60,7 @@ import org.codelibs.sai.internal.ir.debug.ClassHistogramElement;
 import org.codelibs.sai.internal.ir.debug.ObjectSizeCalculator;
 import org.codelibs.sai.internal.runtime.CodeInstaller;
 import org.codelibs.sai.internal.runtime.Context;
+import org.codelibs.sai.internal.runtime.EngineMetrics;
 import org.codelibs.sai.internal.runtime.ErrorManager;
 import org.codelibs.sai.internal.runtime.FunctionInitializer;
 import org.codelibs.sai.internal.runtime.ParserException;
@@ -71,6 +72,7 @@ import org.codelibs.sai.internal.runtime.Source;
 import org.codelibs.sai.internal.runtime.logging.DebugLogger;
 import org.codelibs.sai.internal.runtime.logging.Loggable;
 import org.codelibs.sai.internal.runtime.logging.Logger;
+import org.codelibs.sai.internal.runtime.options.Options;
 
 /**
  * Responsible for converting JavaScripts to java byte code. Main entry
@@ -87,6 +89,12 @@ public final class Compiler implements Loggable {
     /** Name of the objects package */
     public static final String OBJECTS_PACKAGE = "org/codelibs/sai/internal/objects";
 
+    /**
+     * Minimum number of compile units a compilation must be expected to produce before the parallel codegen
+     * option defers their stack map frames. Below it the second, frame computing pass costs more than it saves.
+     */
+    private static final int PARALLEL_CODEGEN_UNITS = Options.getIntProperty("sai.compiler.parallel.codegen.units", 4);
+
     private final ScriptEnvironment env;
 
     private final Source source;
@@ -155,6 +163,9 @@ public final class Compiler implements Loggable {
      */
     private RecompilableScriptFunctionData compiledFunction;
 
+    /** Do compile units created from now on defer computing their stack map frames? */
+    private boolean deferFrames;
+
     /**
      * Most compile unit names are longer than the default StringBuilder buffer,
      * worth startup performance when massive class generation is going on to increase
@@ -356,14 +367,16 @@ public final class Compiler implements Loggable {
      * @param typeInformationFile      descriptor of the location where type information is persisted
      * @param continuationEntryPoints  continuation entry points for restof method
      * @param runtimeScope             runtime scope for recompilation type lookup in {@code TypeEvaluator}
+     * @param optimistic               should optimistic types be used, if they are enabled in the environment
      * @return a new compiler
      */
     public static Compiler forOnDemandCompilation(final CodeInstaller installer, final Source source, final boolean isStrict,
             final RecompilableScriptFunctionData compiledFunction, final TypeMap types, final Map<Integer, Type> invalidatedProgramPoints,
-            final Object typeInformationFile, final int[] continuationEntryPoints, final ScriptObject runtimeScope) {
+            final Object typeInformationFile, final int[] continuationEntryPoints, final ScriptObject runtimeScope,
+            final boolean optimistic) {
         final Context context = installer.getContext();
         return new Compiler(context, installer, source, context.getErrorManager(), isStrict, true, compiledFunction, types,
-                invalidatedProgramPoints, typeInformationFile, continuationEntryPoints, runtimeScope);
+                invalidatedProgramPoints, typeInformationFile, continuationEntryPoints, runtimeScope, optimistic);
     }
 
     /**
@@ -371,13 +384,13 @@ public final class Compiler implements Loggable {
      */
     private Compiler(final Context context, final CodeInstaller installer, final Source source, final ErrorManager errors,
             final boolean isStrict) {
-        this(context, installer, source, errors, isStrict, false, null, null, null, null, null, null);
+        this(context, installer, source, errors, isStrict, false, null, null, null, null, null, null, true);
     }
 
     private Compiler(final Context context, final CodeInstaller installer, final Source source, final ErrorManager errors,
             final boolean isStrict, final boolean isOnDemand, final RecompilableScriptFunctionData compiledFunction, final TypeMap types,
             final Map<Integer, Type> invalidatedProgramPoints, final Object typeInformationFile, final int[] continuationEntryPoints,
-            final ScriptObject runtimeScope) {
+            final ScriptObject runtimeScope, final boolean optimistic) {
         this.context = context;
         this.env = context.getEnv();
         this.installer = installer;
@@ -398,7 +411,7 @@ public final class Compiler implements Loggable {
         this.firstCompileUnitName = firstCompileUnitName();
         this.strict = isStrict;
 
-        this.optimistic = env._optimistic_types;
+        this.optimistic = optimistic && env._optimistic_types;
     }
 
     private String safeSourceName() {
@@ -572,6 +585,7 @@ public final class Compiler implements Loggable {
         }
 
         final String name = DebugLogger.quote(functionNode.getName());
+        final long compileStart = System.nanoTime();
 
         FunctionNode newFunctionNode = functionNode;
 
@@ -588,6 +602,7 @@ public final class Compiler implements Loggable {
         for (final CompilationPhase phase : phases) {
             log.fine(phase, " starting for ", name);
 
+            final long phaseStart = System.nanoTime();
             try {
                 newFunctionNode = phase.apply(this, phases, newFunctionNode);
             } catch (final ParserException error) {
@@ -604,7 +619,7 @@ public final class Compiler implements Loggable {
                 printMemoryUsage(functionNode, phase.toString());
             }
 
-            time += (env.isTimingEnabled() ? phase.getEndTime() - phase.getStartTime() : 0L);
+            time += (env.isTimingEnabled() ? System.nanoTime() - phaseStart : 0L);
         }
 
         if (typeInformationFile != null && !phases.isRestOfCompilation()) {
@@ -613,6 +628,8 @@ public final class Compiler implements Loggable {
 
         log.unindent();
 
+        EngineMetrics.compilation(newFunctionNode.getName(), phases.getDesc(), System.nanoTime() - compileStart);
+
         if (info) {
             final StringBuilder sb = new StringBuilder("<< Finished compile job for ");
             sb.append(newFunctionNode.getSource()).append(':').append(quote(newFunctionNode.getName()));
@@ -680,7 +697,7 @@ public final class Compiler implements Loggable {
      * @param functionNode function node
      */
     public void persistClassInfo(final String cacheKey, final FunctionNode functionNode) {
-        if (cacheKey != null && env._persistent_cache) {
+        if (cacheKey != null) {
             // If this is an on-demand compilation create a function initializer for the function being compiled.
             // Otherwise use function initializer map generated by codegen.
             final Map<Integer, FunctionInitializer> initializers = new HashMap<>();
@@ -715,8 +732,25 @@ public final class Compiler implements Loggable {
         return compileUnit;
     }
 
+    /**
+     * Tell the compiler how many compile units the compilation is expected to produce, so that the classes of
+     * compile units are only assembled in parallel when there are enough of them.
+     *
+     * @param count expected number of compile units
+     */
+    void expectCompileUnits(final long count) {
+        deferFrames = env._parallel_codegen && count >= PARALLEL_CODEGEN_UNITS;
+    }
+
+    /**
+     * @return true if the compile units of this compilation defer computing their stack map frames
+     */
+    boolean isDeferringFrames() {
+        return deferFrames;
+    }
+
     CompileUnit createCompileUnit(final String unitClassName, final long initialWeight) {
-        final ClassEmitter classEmitter = new ClassEmitter(context, sourceName, unitClassName, isStrict());
+        final ClassEmitter classEmitter = new ClassEmitter(context, sourceName, unitClassName, isStrict(), deferFrames);
         final CompileUnit compileUnit = new CompileUnit(unitClassName, classEmitter, initialWeight);
         classEmitter.begin();
 
@@ -764,6 +798,16 @@ public final class Compiler implements Loggable {
         return fn;
     }
 
+    /**
+     * Checks if function data exists for a function. During on-demand compilation, it is only missing for functions
+     * nested in a pre-parsed function that is compiled for the first time.
+     * @param functionId the function id
+     * @return true if the function has function data
+     */
+    boolean hasScriptFunctionData(final int functionId) {
+        return compiledFunction != null && compiledFunction.getScriptFunctionData(functionId) != null;
+    }
+
     boolean isGlobalSymbol(final FunctionNode fn, final String name) {
         return getScriptFunctionData(fn.getId()).isGlobalSymbol(fn, name);
     }
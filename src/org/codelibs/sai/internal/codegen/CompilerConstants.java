@@ -197,7 +197,13 @@ public enum CompilerConstants {
         }
     }
 
-    private static Set<String> symbolNames;
+    private static final Set<String> symbolNames = new HashSet<>();
+
+    static {
+        for (final CompilerConstants cc : CompilerConstants.values()) {
+            symbolNames.add(cc.symbolName);
+        }
+    }
 
     /**
      * Prefix used for internal methods generated in script classes.
@@ -238,19 +244,9 @@ public enum CompilerConstants {
      * @return true if compiler constant name
      */
     public static boolean isCompilerConstant(final String name) {
-        ensureSymbolNames();
         return symbolNames.contains(name);
     }
 
-    private static void ensureSymbolNames() {
-        if (symbolNames == null) {
-            symbolNames = new HashSet<>();
-            for (final CompilerConstants cc : CompilerConstants.values()) {
-                symbolNames.add(cc.symbolName);
-            }
-        }
-    }
-
     /**
      * Return the tag for this compile constant. Deliberately avoiding "name" here
      * not to conflate with enum implementation. This is the master string for the
@@ -27,6 +27,7 @@ package org.codelibs.sai.internal.codegen;
 
 import static org.codelibs.sai.internal.runtime.logging.DebugLogger.quote;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -38,6 +39,7 @@ import org.codelibs.sai.internal.ir.FunctionNode;
 import org.codelibs.sai.internal.ir.IdentNode;
 import org.codelibs.sai.internal.ir.LexicalContext;
 import org.codelibs.sai.internal.ir.Node;
+import org.codelibs.sai.internal.ir.Statement;
 import org.codelibs.sai.internal.ir.Symbol;
 import org.codelibs.sai.internal.ir.WithNode;
 import org.codelibs.sai.internal.ir.visitor.SimpleNodeVisitor;
@@ -157,9 +159,25 @@ final class FindScopeDepths extends SimpleNodeVisitor implements Loggable {
         return withBodies.contains(block);
     }
 
+    /**
+     * Checks if function data for the function was created by a previous compilation. During on-demand compilation,
+     * it is only missing for functions nested in a pre-parsed function that is compiled for the first time. These are
+     * processed as in an eager compilation.
+     */
+    private boolean hasFunctionData(final FunctionNode functionNode) {
+        return compiler.isOnDemandCompilation() && compiler.hasScriptFunctionData(functionNode.getId());
+    }
+
     @Override
     public boolean enterFunctionNode(final FunctionNode functionNode) {
-        if (compiler.isOnDemandCompilation()) {
+        if (hasFunctionData(functionNode)) {
+            if (functionNode == lc.getOutermostFunction()) {
+                // Collects the function data created for nested functions, if this function was pre-parsed.
+                fnIdToNestedFunctions.put(functionNode.getId(), new HashMap<Integer, RecompilableScriptFunctionData>());
+                if (compiler.getScriptFunctionData(functionNode.getId()).inDynamicContext()) {
+                    increaseDynamicScopeCount(functionNode);
+                }
+            }
             return true;
         }
 
@@ -182,14 +200,24 @@ final class FindScopeDepths extends SimpleNodeVisitor implements Loggable {
     public Node leaveFunctionNode(final FunctionNode functionNode) {
         final String name = functionNode.getName();
         FunctionNode newFunctionNode = functionNode;
-        if (compiler.isOnDemandCompilation()) {
+        if (hasFunctionData(newFunctionNode)) {
             final RecompilableScriptFunctionData data = compiler.getScriptFunctionData(newFunctionNode.getId());
             if (data.inDynamicContext()) {
                 log.fine("Reviving scriptfunction ", quote(name), " as defined in previous (now lost) dynamic scope.");
                 newFunctionNode = newFunctionNode.setInDynamicContext(lc);
             }
-            if (newFunctionNode == lc.getOutermostFunction() && !newFunctionNode.hasApplyToCallSpecialization()) {
-                data.setCachedAst(newFunctionNode);
+            if (newFunctionNode == lc.getOutermostFunction()) {
+                final Map<Integer, RecompilableScriptFunctionData> nestedFunctions = fnIdToNestedFunctions.remove(newFunctionNode.getId());
+                if (!nestedFunctions.isEmpty()) {
+                    data.addNestedFunctions(nestedFunctions);
+                }
+                if (!newFunctionNode.hasApplyToCallSpecialization()) {
+                    data.updatePreParsedFlags(newFunctionNode);
+                    data.setCachedAst(newFunctionNode);
+                }
+                if (data.inDynamicContext()) {
+                    decreaseDynamicScopeCount(newFunctionNode);
+                }
             }
             return newFunctionNode;
         }
@@ -223,6 +251,16 @@ final class FindScopeDepths extends SimpleNodeVisitor implements Loggable {
             decreaseDynamicScopeCount(functionNode);
         }
 
+        if (compiler.isOnDemandCompilation()) {
+            // Nested in a pre-parsed function. Split functions can't be reparsed, so their AST is cached as CacheAst
+            // would in an eager compilation. The body is then removed, leaving the outer function looking as if
+            // it was lazily parsed, so it can be compiled and cached as usual.
+            if (newFunctionNode.isSplit()) {
+                data.setCachedAst(newFunctionNode);
+            }
+            return newFunctionNode.setBody(lc, newFunctionNode.getBody().setStatements(null, Collections.<Statement> emptyList()));
+        }
+
         return newFunctionNode;
     }
 
@@ -256,7 +294,7 @@ final class FindScopeDepths extends SimpleNodeVisitor implements Loggable {
 
     @Override
     public boolean enterBlock(final Block block) {
-        if (compiler.isOnDemandCompilation()) {
+        if (hasFunctionData(lc.getCurrentFunction())) {
             return true;
         }
 
@@ -286,6 +324,21 @@ final class FindScopeDepths extends SimpleNodeVisitor implements Loggable {
             }
         });
 
+        if (fn.isPreParsed()) {
+            // The body of a pre-parsed function was discarded, resolve the names it used in the enclosing blocks.
+            for (final String name : fn.getPreParsedUses()) {
+                for (final Iterator<Block> iter = lc.getAncestorBlocks(block); iter.hasNext();) {
+                    final Symbol symbol = iter.next().getExistingSymbol(name);
+                    if (symbol != null) {
+                        if (symbol.isScope()) {
+                            symbols.add(symbol);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
         final Map<String, Integer> internals = new HashMap<>();
 
         final Block globalBlock = findGlobalBlock(lc, block);
@@ -310,20 +363,30 @@ final class FindScopeDepths extends SimpleNodeVisitor implements Loggable {
                 int depthAtStart = 0;
                 //not internal - keep looking.
                 iter = lc.getAncestorBlocks(bodyBlock);
+                boolean found = false;
                 while (iter.hasNext()) {
                     final Block b2 = iter.next();
                     if (definedInBlock(b2, symbol)) {
                         addExternalSymbol(fn, symbol, depthAtStart);
+                        found = true;
                         break;
                     }
                     if (b2.needsScope()) {
                         depthAtStart++;
                     }
                 }
+                if (!found && compiler.isOnDemandCompilation()) {
+                    // defined outside of the pre-parsed function being compiled, which knows the rest of the depth
+                    final int outerDepth =
+                            compiler.getScriptFunctionData(lc.getOutermostFunction().getId()).getExternalSymbolDepth(symbol.getName());
+                    if (outerDepth != -1) {
+                        addExternalSymbol(fn, symbol, depthAtStart + outerDepth);
+                    }
+                }
             }
         }
 
-        addInternalSymbols(fn, internals.keySet());
+        addInternalSymbols(fn, fn.isPreParsed() ? fn.getPreParsedDeclarations() : internals.keySet());
 
         if (log.isEnabled()) {
             log.info(fn.getName() + " internals=" + internals + " externals=" + externalSymbolDepths.get(fn.getId()));
@@ -334,7 +397,7 @@ final class FindScopeDepths extends SimpleNodeVisitor implements Loggable {
 
     @Override
     public Node leaveBlock(final Block block) {
-        if (compiler.isOnDemandCompilation()) {
+        if (hasFunctionData(lc.getCurrentFunction())) {
             return block;
         }
         if (isDynamicScopeBoundary(block)) {
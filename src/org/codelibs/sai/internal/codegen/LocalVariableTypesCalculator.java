@@ -1333,8 +1333,9 @@ final class LocalVariableTypesCalculator extends SimpleNodeVisitor {
 
             @Override
             public boolean enterFunctionNode(final FunctionNode fn) {
-                if (compiler.isOnDemandCompilation()) {
-                    // Only calculate nested function local variable types if we're doing eager compilation
+                if (compiler.isOnDemandCompilation() || fn.isPreParsed()) {
+                    // Only calculate nested function local variable types if we're doing eager compilation, and
+                    // the function still has its body
                     return false;
                 }
                 inOuterFunction = false;
@@ -58,6 +58,22 @@ public final class AccessNode extends BaseNode {
         this.property = property;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    AccessNode(final AstDecoder in) {
+        super(in);
+        this.property = in.readString();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeString(property);
+    }
+
     /**
      * Assist in IR navigation.
      * @param visitor IR navigating visitor.
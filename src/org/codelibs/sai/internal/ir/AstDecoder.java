@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.ir;
+
+import static org.codelibs.sai.internal.ir.AstEncoder.ACCESS_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.ARRAY_LITERAL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.BINARY_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.BLOCK;
+import static org.codelibs.sai.internal.ir.AstEncoder.BLOCK_STATEMENT;
+import static org.codelibs.sai.internal.ir.AstEncoder.BOOLEAN_LITERAL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.BREAK_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.CALL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.CASE_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.CATCH_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.CONTINUE_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.DOUBLE_ARRAY_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.DOUBLE_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.EMPTY_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.EXPRESSION_STATEMENT;
+import static org.codelibs.sai.internal.ir.AstEncoder.FALSE_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.FIRST_REFERENCE;
+import static org.codelibs.sai.internal.ir.AstEncoder.FOR_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.FUNCTION_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.GET_SPLIT_STATE;
+import static org.codelibs.sai.internal.ir.AstEncoder.IDENT_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.IF_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.INDEX_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.INT_ARRAY_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.INT_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.JOIN_PREDECESSOR_EXPRESSION;
+import static org.codelibs.sai.internal.ir.AstEncoder.JUMP_TO_INLINED_FINALLY;
+import static org.codelibs.sai.internal.ir.AstEncoder.LABEL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.LEXER_TOKEN_LITERAL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.LONG_ARRAY_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.LONG_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NEW_REFERENCE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NODE_ARRAY_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NODE_REFERENCE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NULL_LITERAL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NULL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NULL_REFERENCE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NULL_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.NUMBER_LITERAL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.OBJECT_ARRAY_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.OBJECT_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.PROPERTY_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.REGEX_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.RETURN_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.RUNTIME_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.SET_SPLIT_STATE;
+import static org.codelibs.sai.internal.ir.AstEncoder.SPLIT_RETURN;
+import static org.codelibs.sai.internal.ir.AstEncoder.STRING_LITERAL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.STRING_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.SWITCH_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.TERNARY_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.THROW_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.TRUE_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.TRY_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.TYPES;
+import static org.codelibs.sai.internal.ir.AstEncoder.UNARY_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.UNDEFINED_LITERAL_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.UNDEFINED_VALUE;
+import static org.codelibs.sai.internal.ir.AstEncoder.VAR_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.VERSION;
+import static org.codelibs.sai.internal.ir.AstEncoder.WHILE_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.WITH_NODE;
+import static org.codelibs.sai.internal.ir.AstEncoder.XML_VALUE;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.sai.internal.codegen.CompileUnit;
+import org.codelibs.sai.internal.codegen.types.Type;
+import org.codelibs.sai.internal.parser.Lexer.RegexToken;
+import org.codelibs.sai.internal.parser.Lexer.XMLToken;
+import org.codelibs.sai.internal.runtime.ScriptRuntime;
+
+/**
+ * Decodes a function node tree written by {@link AstEncoder}.
+ */
+public final class AstDecoder {
+    private final byte[] buf;
+    private int pos;
+
+    private final List<String> strings = new ArrayList<>();
+    private final List<Symbol> symbols = new ArrayList<>();
+    private final List<CompileUnit> compileUnits = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+
+    private AstDecoder(final byte[] buf) {
+        this.buf = buf;
+    }
+
+    /**
+     * Decode a function node. The returned function node, like all function nodes nested in it, has neither a
+     * source nor a namespace; see {@link FunctionNode#initializeDeserialized(org.codelibs.sai.internal.runtime.Source,
+     * org.codelibs.sai.internal.codegen.Namespace)}.
+     *
+     * @param encoded the encoded form
+     * @return the decoded function node
+     * @throws IllegalArgumentException if the encoded form was written by an incompatible version of the encoder
+     */
+    public static FunctionNode decode(final byte[] encoded) {
+        final AstDecoder in = new AstDecoder(encoded);
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported AST encoding version " + version);
+        }
+        return in.readNode();
+    }
+
+    int readByte() {
+        return buf[pos++] & 0xff;
+    }
+
+    boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    int readInt() {
+        final int v = readUnsigned();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    long readLong() {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf[pos++];
+            v |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private int readUnsigned() {
+        int v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf[pos++];
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return v;
+    }
+
+    double readDouble() {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = bits << 8 | (buf[pos++] & 0xff);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    String readString() {
+        final int ref = readUnsigned();
+        if (ref == NULL_REFERENCE) {
+            return null;
+        } else if (ref != NEW_REFERENCE) {
+            return strings.get(ref - FIRST_REFERENCE);
+        }
+        final int length = readUnsigned();
+        final String str = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        strings.add(str);
+        return str;
+    }
+
+    Type readType() {
+        final int index = readUnsigned();
+        if (index == 0) {
+            return null;
+        } else if (index <= TYPES.length) {
+            return TYPES[index - 1];
+        }
+        final String className = readString();
+        try {
+            return Type.typeFor(Class.forName(className, false, AstDecoder.class.getClassLoader()));
+        } catch (final ClassNotFoundException e) {
+            throw new AssertionError("Unexpected type in serialized AST: " + className, e);
+        }
+    }
+
+    Symbol readSymbol() {
+        final int ref = readUnsigned();
+        if (ref == NULL_REFERENCE) {
+            return null;
+        } else if (ref != NEW_REFERENCE) {
+            return symbols.get(ref - FIRST_REFERENCE);
+        }
+        // Symbols don't reference other objects, so they can be registered once they are complete.
+        final Symbol symbol = new Symbol(this);
+        symbols.add(symbol);
+        return symbol;
+    }
+
+    CompileUnit readCompileUnit() {
+        final int ref = readUnsigned();
+        if (ref == NULL_REFERENCE) {
+            return null;
+        } else if (ref != NEW_REFERENCE) {
+            return compileUnits.get(ref - FIRST_REFERENCE);
+        }
+        final CompileUnit compileUnit = CompileUnit.createPlaceholder();
+        compileUnits.add(compileUnit);
+        return compileUnit;
+    }
+
+    LocalVariableConversion readConversion() {
+        if (!readBoolean()) {
+            return null;
+        }
+        final Symbol symbol = readSymbol();
+        final Type from = readType();
+        final Type to = readType();
+        return new LocalVariableConversion(symbol, from, to, readConversion());
+    }
+
+    List<Splittable.SplitRange> readSplitRanges() {
+        final int size = readInt();
+        if (size == -1) {
+            return null;
+        }
+        final List<Splittable.SplitRange> splitRanges = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final CompileUnit compileUnit = readCompileUnit();
+            final int low = readInt();
+            final int high = readInt();
+            splitRanges.add(new Splittable.SplitRange(compileUnit, low, high));
+        }
+        return splitRanges;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends Node> T readNode() {
+        final int tag = readUnsigned();
+        if (tag == NULL_NODE) {
+            return null;
+        } else if (tag == NODE_REFERENCE) {
+            return (T) nodes.get(readUnsigned());
+        }
+        final Node node = createNode(tag);
+        nodes.add(node);
+        return (T) node;
+    }
+
+    <T extends Node> List<T> readNodes() {
+        final int size = readInt();
+        if (size == -1) {
+            return null;
+        }
+        final List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(this.<T> readNode());
+        }
+        return list;
+    }
+
+    private Node createNode(final int tag) {
+        switch (tag) {
+        case ACCESS_NODE:
+            return new AccessNode(this);
+        case ARRAY_LITERAL_NODE:
+            return new LiteralNode.ArrayLiteralNode(this);
+        case BINARY_NODE:
+            return new BinaryNode(this);
+        case BLOCK:
+            return new Block(this);
+        case BLOCK_STATEMENT:
+            return new BlockStatement(this);
+        case BREAK_NODE:
+            return new BreakNode(this);
+        case CALL_NODE:
+            return new CallNode(this);
+        case CASE_NODE:
+            return new CaseNode(this);
+        case CATCH_NODE:
+            return new CatchNode(this);
+        case CONTINUE_NODE:
+            return new ContinueNode(this);
+        case EMPTY_NODE:
+            return new EmptyNode(this);
+        case EXPRESSION_STATEMENT:
+            return new ExpressionStatement(this);
+        case FOR_NODE:
+            return new ForNode(this);
+        case FUNCTION_NODE:
+            return new FunctionNode(this);
+        case GET_SPLIT_STATE:
+            return GetSplitState.INSTANCE;
+        case IDENT_NODE:
+            return new IdentNode(this);
+        case IF_NODE:
+            return new IfNode(this);
+        case INDEX_NODE:
+            return new IndexNode(this);
+        case JOIN_PREDECESSOR_EXPRESSION:
+            return new JoinPredecessorExpression(this);
+        case JUMP_TO_INLINED_FINALLY:
+            return new JumpToInlinedFinally(this);
+        case LABEL_NODE:
+            return new LabelNode(this);
+        case BOOLEAN_LITERAL_NODE:
+        case NUMBER_LITERAL_NODE:
+        case UNDEFINED_LITERAL_NODE:
+        case STRING_LITERAL_NODE:
+        case LEXER_TOKEN_LITERAL_NODE:
+        case NULL_LITERAL_NODE:
+            return LiteralNode.decode(tag, this);
+        case OBJECT_NODE:
+            return new ObjectNode(this);
+        case PROPERTY_NODE:
+            return new PropertyNode(this);
+        case RETURN_NODE:
+            return new ReturnNode(this);
+        case RUNTIME_NODE:
+            return new RuntimeNode(this);
+        case SET_SPLIT_STATE:
+            return new SetSplitState(this);
+        case SPLIT_RETURN:
+            return SplitReturn.INSTANCE;
+        case SWITCH_NODE:
+            return new SwitchNode(this);
+        case TERNARY_NODE:
+            return new TernaryNode(this);
+        case THROW_NODE:
+            return new ThrowNode(this);
+        case TRY_NODE:
+            return new TryNode(this);
+        case UNARY_NODE:
+            return new UnaryNode(this);
+        case VAR_NODE:
+            return new VarNode(this);
+        case WHILE_NODE:
+            return new WhileNode(this);
+        case WITH_NODE:
+            return new WithNode(this);
+        default:
+            throw new AssertionError("Unexpected node tag in serialized AST: " + tag);
+        }
+    }
+
+    /**
+     * Read a value written by {@link AstEncoder#writeValue(Object)}.
+     * @return the value
+     */
+    Object readValue() {
+        final int tag = readByte();
+        switch (tag) {
+        case NULL_VALUE:
+            return null;
+        case FALSE_VALUE:
+            return Boolean.FALSE;
+        case TRUE_VALUE:
+            return Boolean.TRUE;
+        case INT_VALUE:
+            return readInt();
+        case LONG_VALUE:
+            return readLong();
+        case DOUBLE_VALUE:
+            return readDouble();
+        case STRING_VALUE:
+            return readString();
+        case UNDEFINED_VALUE:
+            return ScriptRuntime.UNDEFINED;
+        case REGEX_VALUE: {
+            final String expression = readString();
+            return new RegexToken(expression, readString());
+        }
+        case XML_VALUE:
+            return new XMLToken(readString());
+        case NODE_ARRAY_VALUE: {
+            final Expression[] array = new Expression[readInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readNode();
+            }
+            return array;
+        }
+        case INT_ARRAY_VALUE: {
+            final int[] array = new int[readInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readInt();
+            }
+            return array;
+        }
+        case LONG_ARRAY_VALUE: {
+            final long[] array = new long[readInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readLong();
+            }
+            return array;
+        }
+        case DOUBLE_ARRAY_VALUE: {
+            final double[] array = new double[readInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readDouble();
+            }
+            return array;
+        }
+        case OBJECT_ARRAY_VALUE: {
+            final Object[] array = new Object[readInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readValue();
+            }
+            return array;
+        }
+        default:
+            throw new AssertionError("Unexpected value tag in serialized AST: " + tag);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.ir;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.sai.internal.codegen.CompileUnit;
+import org.codelibs.sai.internal.codegen.types.Type;
+import org.codelibs.sai.internal.parser.Lexer.LexerToken;
+import org.codelibs.sai.internal.parser.Lexer.RegexToken;
+import org.codelibs.sai.internal.parser.Lexer.XMLToken;
+import org.codelibs.sai.internal.runtime.Undefined;
+
+/**
+ * Encodes a function node tree into a compact binary form that can be turned back into an equivalent tree with
+ * {@link AstDecoder}. This is used to keep the ASTs of split functions in memory without holding on to the nodes
+ * themselves.
+ * <p>
+ * Every node class writes its own fields in its {@code encode} method and reads them back in a constructor taking an
+ * {@link AstDecoder}, in the same order; there is no reflection involved. Integers are written as variable length
+ * zig-zag encoded values, strings, symbols, compile units and nodes are written in full only the first time they are
+ * seen and as back references afterwards, so shared objects are shared again after decoding.
+ */
+public final class AstEncoder {
+    /** Format version, to be incremented whenever the encoding of any node changes. */
+    static final int VERSION = 1;
+
+    // Node tags
+    static final int NULL_NODE = 0;
+    static final int NODE_REFERENCE = 1;
+    static final int ACCESS_NODE = 2;
+    static final int ARRAY_LITERAL_NODE = 3;
+    static final int BINARY_NODE = 4;
+    static final int BLOCK = 5;
+    static final int BLOCK_STATEMENT = 6;
+    static final int BOOLEAN_LITERAL_NODE = 7;
+    static final int BREAK_NODE = 8;
+    static final int CALL_NODE = 9;
+    static final int CASE_NODE = 10;
+    static final int CATCH_NODE = 11;
+    static final int CONTINUE_NODE = 12;
+    static final int EMPTY_NODE = 13;
+    static final int EXPRESSION_STATEMENT = 14;
+    static final int FOR_NODE = 15;
+    static final int FUNCTION_NODE = 16;
+    static final int GET_SPLIT_STATE = 17;
+    static final int IDENT_NODE = 18;
+    static final int IF_NODE = 19;
+    static final int INDEX_NODE = 20;
+    static final int JOIN_PREDECESSOR_EXPRESSION = 21;
+    static final int JUMP_TO_INLINED_FINALLY = 22;
+    static final int LABEL_NODE = 23;
+    static final int LEXER_TOKEN_LITERAL_NODE = 24;
+    static final int NULL_LITERAL_NODE = 25;
+    static final int NUMBER_LITERAL_NODE = 26;
+    static final int OBJECT_NODE = 27;
+    static final int PROPERTY_NODE = 28;
+    static final int RETURN_NODE = 29;
+    static final int RUNTIME_NODE = 30;
+    static final int SET_SPLIT_STATE = 31;
+    static final int SPLIT_RETURN = 32;
+    static final int STRING_LITERAL_NODE = 33;
+    static final int SWITCH_NODE = 34;
+    static final int TERNARY_NODE = 35;
+    static final int THROW_NODE = 36;
+    static final int TRY_NODE = 37;
+    static final int UNARY_NODE = 38;
+    static final int UNDEFINED_LITERAL_NODE = 39;
+    static final int VAR_NODE = 40;
+    static final int WHILE_NODE = 41;
+    static final int WITH_NODE = 42;
+
+    // Literal value tags
+    static final int NULL_VALUE = 0;
+    static final int FALSE_VALUE = 1;
+    static final int TRUE_VALUE = 2;
+    static final int INT_VALUE = 3;
+    static final int LONG_VALUE = 4;
+    static final int DOUBLE_VALUE = 5;
+    static final int STRING_VALUE = 6;
+    static final int UNDEFINED_VALUE = 7;
+    static final int REGEX_VALUE = 8;
+    static final int XML_VALUE = 9;
+    static final int NODE_ARRAY_VALUE = 10;
+    static final int INT_ARRAY_VALUE = 11;
+    static final int LONG_ARRAY_VALUE = 12;
+    static final int DOUBLE_ARRAY_VALUE = 13;
+    static final int OBJECT_ARRAY_VALUE = 14;
+
+    // Reference encoding shared by strings, symbols and compile units: 0 is null, 1 is a new object that follows
+    // and anything else is a reference to the (n - 2)th object seen.
+    static final int NULL_REFERENCE = 0;
+    static final int NEW_REFERENCE = 1;
+    static final int FIRST_REFERENCE = 2;
+
+    /** Types that are encoded by their index in this array. Other types are encoded by their class name. */
+    static final Type[] TYPES = { Type.UNKNOWN, Type.BOOLEAN, Type.INT, Type.LONG, Type.NUMBER, Type.STRING, Type.CHARSEQUENCE,
+            Type.OBJECT, Type.UNDEFINED, Type.SCRIPT_OBJECT, Type.INT_ARRAY, Type.LONG_ARRAY, Type.NUMBER_ARRAY, Type.OBJECT_ARRAY,
+            Type.THIS, Type.SCOPE, Type.SLOT_2 };
+
+    private static final Map<Class<?>, Integer> TAGS = new IdentityHashMap<>();
+
+    static {
+        TAGS.put(AccessNode.class, ACCESS_NODE);
+        TAGS.put(LiteralNode.ArrayLiteralNode.class, ARRAY_LITERAL_NODE);
+        TAGS.put(BinaryNode.class, BINARY_NODE);
+        TAGS.put(Block.class, BLOCK);
+        TAGS.put(BlockStatement.class, BLOCK_STATEMENT);
+        TAGS.put(BreakNode.class, BREAK_NODE);
+        TAGS.put(CallNode.class, CALL_NODE);
+        TAGS.put(CaseNode.class, CASE_NODE);
+        TAGS.put(CatchNode.class, CATCH_NODE);
+        TAGS.put(ContinueNode.class, CONTINUE_NODE);
+        TAGS.put(EmptyNode.class, EMPTY_NODE);
+        TAGS.put(ExpressionStatement.class, EXPRESSION_STATEMENT);
+        TAGS.put(ForNode.class, FOR_NODE);
+        TAGS.put(FunctionNode.class, FUNCTION_NODE);
+        TAGS.put(GetSplitState.class, GET_SPLIT_STATE);
+        TAGS.put(IdentNode.class, IDENT_NODE);
+        TAGS.put(IfNode.class, IF_NODE);
+        TAGS.put(IndexNode.class, INDEX_NODE);
+        TAGS.put(JoinPredecessorExpression.class, JOIN_PREDECESSOR_EXPRESSION);
+        TAGS.put(JumpToInlinedFinally.class, JUMP_TO_INLINED_FINALLY);
+        TAGS.put(LabelNode.class, LABEL_NODE);
+        TAGS.put(ObjectNode.class, OBJECT_NODE);
+        TAGS.put(PropertyNode.class, PROPERTY_NODE);
+        TAGS.put(ReturnNode.class, RETURN_NODE);
+        TAGS.put(RuntimeNode.class, RUNTIME_NODE);
+        TAGS.put(SetSplitState.class, SET_SPLIT_STATE);
+        TAGS.put(SplitReturn.class, SPLIT_RETURN);
+        TAGS.put(SwitchNode.class, SWITCH_NODE);
+        TAGS.put(TernaryNode.class, TERNARY_NODE);
+        TAGS.put(ThrowNode.class, THROW_NODE);
+        TAGS.put(TryNode.class, TRY_NODE);
+        TAGS.put(UnaryNode.class, UNARY_NODE);
+        TAGS.put(VarNode.class, VAR_NODE);
+        TAGS.put(WhileNode.class, WHILE_NODE);
+        TAGS.put(WithNode.class, WITH_NODE);
+    }
+
+    private byte[] buf = new byte[4096];
+    private int pos;
+
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Symbol, Integer> symbols = new IdentityHashMap<>();
+    private final Map<CompileUnit, Integer> compileUnits = new IdentityHashMap<>();
+    private final Map<Node, Integer> nodes = new IdentityHashMap<>();
+
+    private AstEncoder() {
+    }
+
+    /**
+     * Encode a function node and everything reachable from it.
+     *
+     * @param fn the function node
+     * @return the encoded form
+     */
+    public static byte[] encode(final FunctionNode fn) {
+        final AstEncoder out = new AstEncoder();
+        out.writeInt(VERSION);
+        out.writeNode(fn);
+        return Arrays.copyOf(out.buf, out.pos);
+    }
+
+    private void ensureCapacity(final int length) {
+        if (pos + length > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + length));
+        }
+    }
+
+    void writeByte(final int b) {
+        ensureCapacity(1);
+        buf[pos++] = (byte) b;
+    }
+
+    void writeBoolean(final boolean b) {
+        writeByte(b ? 1 : 0);
+    }
+
+    /**
+     * Write an int as a zig-zag encoded variable length value, so small negative values such as
+     * {@code -1} are as short as small positive ones.
+     * @param i the int
+     */
+    void writeInt(final int i) {
+        writeUnsigned((i << 1) ^ (i >> 31));
+    }
+
+    void writeLong(final long l) {
+        long v = (l << 1) ^ (l >> 63);
+        ensureCapacity(10);
+        while ((v & ~0x7fL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void writeUnsigned(final int i) {
+        int v = i;
+        ensureCapacity(5);
+        while ((v & ~0x7f) != 0) {
+            buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    void writeDouble(final double d) {
+        final long bits = Double.doubleToRawLongBits(d);
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[pos++] = (byte) (bits >>> shift);
+        }
+    }
+
+    void writeString(final String str) {
+        if (str == null) {
+            writeUnsigned(NULL_REFERENCE);
+            return;
+        }
+        final Integer index = strings.get(str);
+        if (index != null) {
+            writeUnsigned(index);
+            return;
+        }
+        strings.put(str, FIRST_REFERENCE + strings.size());
+        writeUnsigned(NEW_REFERENCE);
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        writeUnsigned(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    void writeType(final Type type) {
+        if (type == null) {
+            writeUnsigned(0);
+            return;
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i] == type) {
+                writeUnsigned(i + 1);
+                return;
+            }
+        }
+        writeUnsigned(TYPES.length + 1);
+        writeString(type.getTypeClass().getName());
+    }
+
+    void writeSymbol(final Symbol symbol) {
+        if (symbol == null) {
+            writeUnsigned(NULL_REFERENCE);
+            return;
+        }
+        final Integer index = symbols.get(symbol);
+        if (index != null) {
+            writeUnsigned(index);
+            return;
+        }
+        symbols.put(symbol, FIRST_REFERENCE + symbols.size());
+        writeUnsigned(NEW_REFERENCE);
+        symbol.encode(this);
+    }
+
+    void writeCompileUnit(final CompileUnit compileUnit) {
+        if (compileUnit == null) {
+            writeUnsigned(NULL_REFERENCE);
+            return;
+        }
+        final Integer index = compileUnits.get(compileUnit);
+        if (index != null) {
+            writeUnsigned(index);
+            return;
+        }
+        // Compile units are only distinguished by identity; they are replaced before code is generated.
+        compileUnits.put(compileUnit, FIRST_REFERENCE + compileUnits.size());
+        writeUnsigned(NEW_REFERENCE);
+    }
+
+    void writeConversion(final LocalVariableConversion conversion) {
+        for (LocalVariableConversion c = conversion; c != null; c = c.getNext()) {
+            writeBoolean(true);
+            writeSymbol(c.getSymbol());
+            writeType(c.getFrom());
+            writeType(c.getTo());
+        }
+        writeBoolean(false);
+    }
+
+    void writeSplitRanges(final List<Splittable.SplitRange> splitRanges) {
+        if (splitRanges == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(splitRanges.size());
+        for (final Splittable.SplitRange range : splitRanges) {
+            writeCompileUnit(range.getCompileUnit());
+            writeInt(range.getLow());
+            writeInt(range.getHigh());
+        }
+    }
+
+    void writeNode(final Node node) {
+        if (node == null) {
+            writeUnsigned(NULL_NODE);
+            return;
+        }
+        final Integer index = nodes.get(node);
+        if (index != null) {
+            writeUnsigned(NODE_REFERENCE);
+            writeUnsigned(index);
+            return;
+        }
+        writeUnsigned(getTag(node));
+        node.encode(this);
+        // Registered after the children so that indices match the order in which the decoder completes nodes.
+        nodes.put(node, nodes.size());
+    }
+
+    void writeNodes(final List<? extends Node> list) {
+        if (list == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(list.size());
+        for (final Node node : list) {
+            writeNode(node);
+        }
+    }
+
+    private static int getTag(final Node node) {
+        final Integer tag = TAGS.get(node.getClass());
+        if (tag != null) {
+            return tag;
+        } else if (node instanceof LiteralNode) {
+            // The other literal node classes are private, but like the LiteralNode.newInstance factory
+            // methods we can tell them apart by the type of their value.
+            final Object value = ((LiteralNode<?>) node).getValue();
+            if (value == null) {
+                return NULL_LITERAL_NODE;
+            } else if (value instanceof Boolean) {
+                return BOOLEAN_LITERAL_NODE;
+            } else if (value instanceof Number) {
+                return NUMBER_LITERAL_NODE;
+            } else if (value instanceof Undefined) {
+                return UNDEFINED_LITERAL_NODE;
+            } else if (value instanceof String) {
+                return STRING_LITERAL_NODE;
+            } else if (value instanceof LexerToken) {
+                return LEXER_TOKEN_LITERAL_NODE;
+            }
+        }
+        throw new AssertionError("Unexpected node in serialized AST: " + node.getClass().getName());
+    }
+
+    /**
+     * Write the value of a literal node, or the presets of an array literal.
+     * @param value the value
+     */
+    void writeValue(final Object value) {
+        if (value == null) {
+            writeByte(NULL_VALUE);
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? TRUE_VALUE : FALSE_VALUE);
+        } else if (value instanceof Integer) {
+            writeByte(INT_VALUE);
+            writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            writeByte(LONG_VALUE);
+            writeLong((Long) value);
+        } else if (value instanceof Double) {
+            writeByte(DOUBLE_VALUE);
+            writeDouble((Double) value);
+        } else if (value instanceof String) {
+            writeByte(STRING_VALUE);
+            writeString((String) value);
+        } else if (value instanceof Undefined) {
+            writeByte(UNDEFINED_VALUE);
+        } else if (value instanceof RegexToken) {
+            writeByte(REGEX_VALUE);
+            writeString(((LexerToken) value).getExpression());
+            writeString(((RegexToken) value).getOptions());
+        } else if (value instanceof XMLToken) {
+            writeByte(XML_VALUE);
+            writeString(((LexerToken) value).getExpression());
+        } else if (value instanceof Node[]) {
+            final Node[] array = (Node[]) value;
+            writeByte(NODE_ARRAY_VALUE);
+            writeInt(array.length);
+            for (final Node node : array) {
+                writeNode(node);
+            }
+        } else if (value instanceof int[]) {
+            final int[] array = (int[]) value;
+            writeByte(INT_ARRAY_VALUE);
+            writeInt(array.length);
+            for (final int i : array) {
+                writeInt(i);
+            }
+        } else if (value instanceof long[]) {
+            final long[] array = (long[]) value;
+            writeByte(LONG_ARRAY_VALUE);
+            writeInt(array.length);
+            for (final long l : array) {
+                writeLong(l);
+            }
+        } else if (value instanceof double[]) {
+            final double[] array = (double[]) value;
+            writeByte(DOUBLE_ARRAY_VALUE);
+            writeInt(array.length);
+            for (final double d : array) {
+                writeDouble(d);
+            }
+        } else if (value instanceof Object[]) {
+            final Object[] array = (Object[]) value;
+            writeByte(OBJECT_ARRAY_VALUE);
+            writeInt(array.length);
+            for (final Object o : array) {
+                writeValue(o);
+            }
+        } else {
+            throw new AssertionError("Unexpected literal value in serialized AST: " + value.getClass().getName());
+        }
+    }
+}
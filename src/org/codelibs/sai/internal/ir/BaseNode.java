@@ -85,6 +85,28 @@ public abstract class BaseNode extends Expression implements FunctionCall, Optim
         this.programPoint = programPoint;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    BaseNode(final AstDecoder in) {
+        super(in);
+        this.base = in.readNode();
+        this.isFunction = in.readBoolean();
+        this.type = in.readType();
+        this.programPoint = in.readInt();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(base);
+        out.writeBoolean(isFunction);
+        out.writeType(type);
+        out.writeInt(programPoint);
+    }
+
     /**
      * Get the base node for this access
      * @return the base node
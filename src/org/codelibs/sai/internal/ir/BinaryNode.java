@@ -89,6 +89,28 @@ public final class BinaryNode extends Expression implements Assignment<Expressio
         this.type = type;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    BinaryNode(final AstDecoder in) {
+        super(in);
+        this.lhs = in.readNode();
+        this.rhs = in.readNode();
+        this.programPoint = in.readInt();
+        this.type = in.readType();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(lhs);
+        out.writeNode(rhs);
+        out.writeInt(programPoint);
+        out.writeType(type);
+    }
+
     /**
      * Returns true if the node is a comparison operation (either equality, inequality, or relational).
      * @return true if the node is a comparison operation.
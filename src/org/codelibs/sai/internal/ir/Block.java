@@ -123,6 +123,39 @@ public class Block extends Node implements BreakableNode, Terminal, Flags<Block>
         this.conversion = conversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    Block(final AstDecoder in) {
+        super(in);
+        this.statements = in.readNodes();
+        final int symbolCount = in.readInt();
+        this.symbols = new LinkedHashMap<>();
+        for (int i = 0; i < symbolCount; i++) {
+            final String key = in.readString();
+            symbols.put(key, in.readSymbol());
+        }
+        this.entryLabel = new Label("block_entry");
+        this.breakLabel = new Label("block_break");
+        this.flags = in.readInt();
+        this.conversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNodes(statements);
+        out.writeInt(symbols.size());
+        for (final Map.Entry<String, Symbol> entry : symbols.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeSymbol(entry.getValue());
+        }
+        out.writeInt(flags);
+        out.writeConversion(conversion);
+    }
+
     /**
      * Is this block the outermost eager global scope - i.e. the primordial program?
      * Used for global anchor point for scope depth computation for recompilation code
@@ -63,6 +63,22 @@ public class BlockStatement extends Statement {
         this.block = block;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    BlockStatement(final AstDecoder in) {
+        super(in);
+        this.block = in.readNode();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(block);
+    }
+
     /**
      * Use this method to create a block statement meant to replace a single statement.
      * @param stmt the statement to replace
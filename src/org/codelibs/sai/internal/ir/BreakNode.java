@@ -52,6 +52,15 @@ public final class BreakNode extends JumpStatement {
         super(breakNode, conversion);
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    BreakNode(final AstDecoder in) {
+        super(in);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterBreakNode(this)) {
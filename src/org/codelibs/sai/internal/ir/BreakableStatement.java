@@ -67,6 +67,24 @@ abstract class BreakableStatement extends LexicalContextStatement implements Bre
         this.conversion = conversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in         decoder to read the fields from
+     * @param breakLabel break label
+     */
+    BreakableStatement(final AstDecoder in, final Label breakLabel) {
+        super(in);
+        this.breakLabel = breakLabel;
+        this.conversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeConversion(conversion);
+    }
+
     /**
      * Check whether this can be broken out from without using a label,
      * e.g. everything but Blocks, basically
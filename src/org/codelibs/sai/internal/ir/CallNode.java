@@ -149,6 +149,43 @@ public final class CallNode extends LexicalContextExpression implements Optimist
         this.optimisticType = optimisticType;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    CallNode(final AstDecoder in) {
+        super(in);
+        this.function = in.readNode();
+        this.args = in.readNodes();
+        this.flags = in.readInt();
+        this.lineNumber = in.readInt();
+        this.programPoint = in.readInt();
+        this.optimisticType = in.readType();
+        if (in.readBoolean()) {
+            final List<Expression> evalArgsArgs = in.readNodes();
+            this.evalArgs = new EvalArgs(evalArgsArgs, in.readString());
+        } else {
+            this.evalArgs = null;
+        }
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(function);
+        out.writeNodes(args);
+        out.writeInt(flags);
+        out.writeInt(lineNumber);
+        out.writeInt(programPoint);
+        out.writeType(optimisticType);
+        out.writeBoolean(evalArgs != null);
+        if (evalArgs != null) {
+            out.writeNodes(evalArgs.args);
+            out.writeString(evalArgs.location);
+        }
+    }
+
     /**
      * Returns the line number.
      * @return the line number.
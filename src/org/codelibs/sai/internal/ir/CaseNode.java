@@ -81,6 +81,27 @@ public final class CaseNode extends Node implements JoinPredecessor, Labels, Ter
         this.conversion = conversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    CaseNode(final AstDecoder in) {
+        super(in);
+        this.test = in.readNode();
+        this.body = in.readNode();
+        this.entry = new Label("entry");
+        this.conversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(test);
+        out.writeNode(body);
+        out.writeConversion(conversion);
+    }
+
     /**
      * Is this a terminal case node, i.e. does it end control flow like having a throw or return?
      *
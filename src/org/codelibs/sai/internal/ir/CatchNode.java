@@ -75,6 +75,28 @@ public final class CatchNode extends Statement {
         this.isSyntheticRethrow = isSyntheticRethrow;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    CatchNode(final AstDecoder in) {
+        super(in);
+        this.exception = in.readNode();
+        this.exceptionCondition = in.readNode();
+        this.body = in.readNode();
+        this.isSyntheticRethrow = in.readBoolean();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(exception);
+        out.writeNode(exceptionCondition);
+        out.writeNode(body);
+        out.writeBoolean(isSyntheticRethrow);
+    }
+
     /**
      * Assist in IR navigation.
      * @param visitor IR navigating visitor.
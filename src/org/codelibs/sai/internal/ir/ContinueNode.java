@@ -52,6 +52,15 @@ public class ContinueNode extends JumpStatement {
         super(continueNode, conversion);
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    ContinueNode(final AstDecoder in) {
+        super(in);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterContinueNode(this)) {
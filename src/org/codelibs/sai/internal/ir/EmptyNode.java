@@ -55,6 +55,15 @@ public final class EmptyNode extends Statement {
         super(lineNumber, token, finish);
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    EmptyNode(final AstDecoder in) {
+        super(in);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterEmptyNode(this)) {
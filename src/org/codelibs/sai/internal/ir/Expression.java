@@ -50,6 +50,15 @@ public abstract class Expression extends Node {
         super(expr);
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    Expression(final AstDecoder in) {
+        super(in);
+    }
+
     /**
      * Returns the type of the expression.
      *
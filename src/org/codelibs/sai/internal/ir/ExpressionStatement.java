@@ -58,6 +58,22 @@ public final class ExpressionStatement extends Statement {
         this.expression = expression;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    ExpressionStatement(final AstDecoder in) {
+        super(in);
+        this.expression = in.readNode();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(expression);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterExpressionStatement(this)) {
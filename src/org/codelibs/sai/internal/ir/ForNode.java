@@ -83,6 +83,28 @@ public final class ForNode extends LoopNode {
         this.iterator = iterator;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    ForNode(final AstDecoder in) {
+        super(in);
+        this.init = in.readNode();
+        this.modify = in.readNode();
+        this.iterator = in.readSymbol();
+        this.flags = in.readInt();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(init);
+        out.writeNode(modify);
+        out.writeSymbol(iterator);
+        out.writeInt(flags);
+    }
+
     @Override
     public Node ensureUniqueLabels(final LexicalContext lc) {
         return Node.replaceInLexicalContext(lc, this, new ForNode(this, init, test, body, modify, flags, controlFlowEscapes, conversion,
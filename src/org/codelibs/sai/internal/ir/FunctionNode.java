@@ -35,6 +35,7 @@ import static org.codelibs.sai.internal.runtime.linker.SaiCallSiteDescriptor.CAL
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.codelibs.sai.internal.codegen.CompileUnit;
 import org.codelibs.sai.internal.codegen.Compiler;
@@ -114,6 +115,14 @@ public final class FunctionNode extends LexicalContextExpression implements Flag
     @Ignore
     private final int thisProperties;
 
+    /** Names referenced by the discarded body of a pre-parsed function, null if the body was kept. */
+    @Ignore
+    private final Set<String> preParsedUses;
+
+    /** Names declared in the discarded body of a pre-parsed function, null if the body was kept. */
+    @Ignore
+    private final Set<String> preParsedDeclarations;
+
     /** Function flags. */
     private final int flags;
 
@@ -219,9 +228,9 @@ public final class FunctionNode extends LexicalContextExpression implements Flag
 
     /**
      * Whether this function needs the callee {@link ScriptFunction} instance passed to its code as a
-     * parameter on invocation. Note that we aren't, in fact using this flag in function nodes.
-     * Rather, it is always calculated (see {@link #needsCallee()}). {@link RecompilableScriptFunctionData}
-     * will, however, cache the value of this flag.
+     * parameter on invocation. Note that we mostly aren't, in fact using this flag in function nodes.
+     * Rather, it is calculated (see {@link #needsCallee()}). {@link RecompilableScriptFunctionData}
+     * will, however, cache the value of this flag, and it is also set on pre-parsed functions.
      */
     public static final int NEEDS_CALLEE = 1 << 26;
 
@@ -284,11 +293,21 @@ public final class FunctionNode extends LexicalContextExpression implements Flag
         this.thisProperties = 0;
         this.rootClass = null;
         this.endParserState = null;
+        this.preParsedUses = null;
+        this.preParsedDeclarations = null;
     }
 
     private FunctionNode(final FunctionNode functionNode, final long lastToken, final Object endParserState, final int flags,
             final String name, final Type returnType, final CompileUnit compileUnit, final Block body, final List<IdentNode> parameters,
             final int thisProperties, final Class<?> rootClass, final Source source, final Namespace namespace) {
+        this(functionNode, lastToken, endParserState, flags, name, returnType, compileUnit, body, parameters, thisProperties, rootClass,
+                source, namespace, functionNode.preParsedUses, functionNode.preParsedDeclarations);
+    }
+
+    private FunctionNode(final FunctionNode functionNode, final long lastToken, final Object endParserState, final int flags,
+            final String name, final Type returnType, final CompileUnit compileUnit, final Block body, final List<IdentNode> parameters,
+            final int thisProperties, final Class<?> rootClass, final Source source, final Namespace namespace,
+            final Set<String> preParsedUses, final Set<String> preParsedDeclarations) {
         super(functionNode);
 
         this.endParserState = endParserState;
@@ -304,6 +323,8 @@ public final class FunctionNode extends LexicalContextExpression implements Flag
         this.rootClass = rootClass;
         this.source = source;
         this.namespace = namespace;
+        this.preParsedUses = preParsedUses;
+        this.preParsedDeclarations = preParsedDeclarations;
 
         // the fields below never change - they are final and assigned in constructor
         this.ident = functionNode.ident;
@@ -311,6 +332,54 @@ public final class FunctionNode extends LexicalContextExpression implements Flag
         this.firstToken = functionNode.firstToken;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}. Like with java serialization, source and namespace are not
+     * preserved. Neither are the end parser state and the pre-parsed names, which are only used when creating the
+     * function data of a freshly parsed function, nor the root class, which is only set once the function has been
+     * installed.
+     *
+     * @param in decoder to read the fields from
+     */
+    FunctionNode(final AstDecoder in) {
+        super(in);
+        this.source = null;
+        this.endParserState = null;
+        this.ident = in.readNode();
+        this.body = in.readNode();
+        this.name = in.readString();
+        this.compileUnit = in.readCompileUnit();
+        this.kind = Kind.values()[in.readInt()];
+        this.parameters = in.readNodes();
+        this.firstToken = in.readLong();
+        this.lastToken = in.readLong();
+        this.namespace = null;
+        this.thisProperties = in.readInt();
+        this.flags = in.readInt();
+        this.lineNumber = in.readInt();
+        this.rootClass = null;
+        this.returnType = in.readType();
+        this.preParsedUses = null;
+        this.preParsedDeclarations = null;
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        assert rootClass == null : "Encoding installed function " + getName();
+        super.encode(out);
+        out.writeNode(ident);
+        out.writeNode(body);
+        out.writeString(name);
+        out.writeCompileUnit(compileUnit);
+        out.writeInt(kind.ordinal());
+        out.writeNodes(parameters);
+        out.writeLong(firstToken);
+        out.writeLong(lastToken);
+        out.writeInt(thisProperties);
+        out.writeInt(flags);
+        out.writeInt(lineNumber);
+        out.writeType(returnType);
+    }
+
     @Override
     public Node accept(final LexicalContext lc, final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterFunctionNode(this)) {
@@ -589,7 +658,9 @@ public final class FunctionNode extends LexicalContextExpression implements Flag
      */
     public boolean needsCallee() {
         // NOTE: we only need isSplit() here to ensure that :scope can never drop below slot 2 for splitting array units.
-        return needsParentScope() || usesSelfSymbol() || isSplit() || (needsArguments() && !isStrict()) || hasApplyToCallSpecialization();
+        // A NEEDS_CALLEE flag restored from function data is honored so recompilation can't drop the callee parameter.
+        return getFlag(NEEDS_CALLEE) || needsParentScope() || usesSelfSymbol() || isSplit() || (needsArguments() && !isStrict())
+                || hasApplyToCallSpecialization();
     }
 
     /**
@@ -791,6 +862,46 @@ public final class FunctionNode extends LexicalContextExpression implements Flag
                 compileUnit, body, parameters, thisProperties, rootClass, source, namespace));
     }
 
+    /**
+     * Returns true if this function was pre-parsed: its body was parsed for syntax errors and then discarded, and
+     * it will only be parsed again when the function is compiled on demand.
+     * @return true if this function was pre-parsed
+     */
+    public boolean isPreParsed() {
+        return preParsedUses != null;
+    }
+
+    /**
+     * Returns the names referenced from the discarded body of a pre-parsed function, excluding its parameters and
+     * variables.
+     * @return the names used by the function, or null if it was not pre-parsed
+     */
+    public Set<String> getPreParsedUses() {
+        return preParsedUses;
+    }
+
+    /**
+     * Returns the names declared in the discarded body of a pre-parsed function, including its parameters.
+     * @return the names declared by the function, or null if it was not pre-parsed
+     */
+    public Set<String> getPreParsedDeclarations() {
+        return preParsedDeclarations;
+    }
+
+    /**
+     * Discards the body of this function, keeping only the names it uses and declares. The function also always
+     * needs a callee, as whether it would need one can only be determined by compiling its body.
+     * @param lc lexical context
+     * @param uses the names referenced from the body, excluding the function's parameters and variables
+     * @param declarations the names declared in the body, including the function's parameters
+     * @return a new, pre-parsed function node
+     */
+    public FunctionNode setPreParsed(final LexicalContext lc, final Set<String> uses, final Set<String> declarations) {
+        return Node.replaceInLexicalContext(lc, this, new FunctionNode(this, lastToken, endParserState, flags | NEEDS_CALLEE, name,
+                returnType, compileUnit, body.setStatements(null, Collections.<Statement> emptyList()), parameters, thisProperties,
+                rootClass, source, namespace, uses, declarations));
+    }
+
     /**
      * Get the name of this function
      * @return the name
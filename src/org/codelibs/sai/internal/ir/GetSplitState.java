@@ -45,6 +45,11 @@ public final class GetSplitState extends Expression {
         super(NO_TOKEN, NO_FINISH);
     }
 
+    @Override
+    void encode(final AstEncoder out) {
+        // Nothing to write, decoded as INSTANCE
+    }
+
     @Override
     public Type getType() {
         return Type.INT;
@@ -92,6 +92,32 @@ public final class IdentNode extends Expression implements PropertyKey, Function
         this.symbol = identNode.symbol;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    IdentNode(final AstDecoder in) {
+        super(in);
+        this.name = in.readString();
+        this.type = in.readType();
+        this.flags = in.readInt();
+        this.programPoint = in.readInt();
+        this.conversion = in.readConversion();
+        this.symbol = in.readSymbol();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeString(name);
+        out.writeType(type);
+        out.writeInt(flags);
+        out.writeInt(programPoint);
+        out.writeConversion(conversion);
+        out.writeSymbol(symbol);
+    }
+
     /**
      * Copy constructor - create a new IdentNode for the same location
      *
@@ -77,6 +77,28 @@ public final class IfNode extends Statement implements JoinPredecessor {
         this.conversion = conversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    IfNode(final AstDecoder in) {
+        super(in);
+        this.test = in.readNode();
+        this.pass = in.readNode();
+        this.fail = in.readNode();
+        this.conversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(test);
+        out.writeNode(pass);
+        out.writeNode(fail);
+        out.writeConversion(conversion);
+    }
+
     @Override
     public boolean isTerminal() {
         return pass.isTerminal() && fail != null && fail.isTerminal();
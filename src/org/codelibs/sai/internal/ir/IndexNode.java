@@ -58,6 +58,22 @@ public final class IndexNode extends BaseNode {
         this.index = index;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    IndexNode(final AstDecoder in) {
+        super(in);
+        this.index = in.readNode();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(index);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterIndexNode(this)) {
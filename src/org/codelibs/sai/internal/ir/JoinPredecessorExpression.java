@@ -43,7 +43,7 @@ public class JoinPredecessorExpression extends Expression implements JoinPredece
      * variable conversion in a place where an expression can otherwise stand.
      */
     public JoinPredecessorExpression() {
-        this(null);
+        this((Expression) null);
     }
 
     /**
@@ -63,6 +63,24 @@ public class JoinPredecessorExpression extends Expression implements JoinPredece
         this.conversion = conversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    JoinPredecessorExpression(final AstDecoder in) {
+        super(in);
+        this.expression = in.readNode();
+        this.conversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(expression);
+        out.writeConversion(conversion);
+    }
+
     @Override
     public JoinPredecessor setLocalVariableConversion(final LexicalContext lc, final LocalVariableConversion conversion) {
         if (conversion == this.conversion) {
@@ -62,6 +62,24 @@ public abstract class JumpStatement extends Statement implements JoinPredecessor
         this.conversion = conversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    JumpStatement(final AstDecoder in) {
+        super(in);
+        this.labelName = in.readString();
+        this.conversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeString(labelName);
+        out.writeConversion(conversion);
+    }
+
     @Override
     public boolean hasGoto() {
         return true;
@@ -51,6 +51,15 @@ public final class JumpToInlinedFinally extends JumpStatement {
         super(breakNode, conversion);
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    JumpToInlinedFinally(final AstDecoder in) {
+        super(in);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterJumpToInlinedFinally(this)) {
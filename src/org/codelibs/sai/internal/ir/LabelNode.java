@@ -71,6 +71,26 @@ public final class LabelNode extends LexicalContextStatement implements JoinPred
         this.localVariableConversion = localVariableConversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    LabelNode(final AstDecoder in) {
+        super(in);
+        this.labelName = in.readString();
+        this.body = in.readNode();
+        this.localVariableConversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeString(labelName);
+        out.writeNode(body);
+        out.writeConversion(localVariableConversion);
+    }
+
     @Override
     public boolean isTerminal() {
         return body.isTerminal();
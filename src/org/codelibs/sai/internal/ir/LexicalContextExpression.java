@@ -42,6 +42,15 @@ abstract class LexicalContextExpression extends Expression implements LexicalCon
         super(token, finish);
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    LexicalContextExpression(final AstDecoder in) {
+        super(in);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         return Acceptor.accept(this, visitor);
@@ -88,6 +88,49 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
         this.value = newValue;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    @SuppressWarnings("unchecked")
+    LiteralNode(final AstDecoder in) {
+        super(in);
+        this.value = (T) in.readValue();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeValue(value);
+    }
+
+    /**
+     * Decode a literal node other than an array literal.
+     *
+     * @param tag tag of the literal node class
+     * @param in  decoder to read the fields from
+     * @return the literal node
+     */
+    static LiteralNode<?> decode(final int tag, final AstDecoder in) {
+        switch (tag) {
+        case AstEncoder.BOOLEAN_LITERAL_NODE:
+            return new BooleanLiteralNode(in);
+        case AstEncoder.NUMBER_LITERAL_NODE:
+            return new NumberLiteralNode(in);
+        case AstEncoder.UNDEFINED_LITERAL_NODE:
+            return new UndefinedLiteralNode(in);
+        case AstEncoder.STRING_LITERAL_NODE:
+            return new StringLiteralNode(in);
+        case AstEncoder.LEXER_TOKEN_LITERAL_NODE:
+            return new LexerTokenLiteralNode(in);
+        case AstEncoder.NULL_LITERAL_NODE:
+            return new NullLiteralNode(in);
+        default:
+            throw new AssertionError("Unexpected literal node tag " + tag);
+        }
+    }
+
     /**
      * Initialization setter, if required for immutable state. This is used for
      * things like ArrayLiteralNodes that need to carry state for the splitter.
@@ -273,6 +316,10 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
             super(literalNode);
         }
 
+        private PrimitiveLiteralNode(final AstDecoder in) {
+            super(in);
+        }
+
         /**
          * Check if the literal value is boolean true
          * @return true if literal value is boolean true
@@ -310,6 +357,10 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
             super(literalNode);
         }
 
+        private BooleanLiteralNode(final AstDecoder in) {
+            super(in);
+        }
+
         @Override
         public boolean isTrue() {
             return value;
@@ -366,6 +417,10 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
             super(literalNode);
         }
 
+        private NumberLiteralNode(final AstDecoder in) {
+            super(in);
+        }
+
         private static Type numberGetType(final Number number) {
             if (number instanceof Integer) {
                 return Type.INT;
@@ -427,6 +482,10 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
         private UndefinedLiteralNode(final UndefinedLiteralNode literalNode) {
             super(literalNode);
         }
+
+        private UndefinedLiteralNode(final AstDecoder in) {
+            super(in);
+        }
     }
 
     /**
@@ -467,6 +526,10 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
             super(literalNode);
         }
 
+        private StringLiteralNode(final AstDecoder in) {
+            super(in);
+        }
+
         @Override
         public void toString(final StringBuilder sb, final boolean printType) {
             sb.append('\"');
@@ -513,6 +576,10 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
             super(literalNode);
         }
 
+        private LexerTokenLiteralNode(final AstDecoder in) {
+            super(in);
+        }
+
         @Override
         public Type getType() {
             return Type.OBJECT;
@@ -584,6 +651,10 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
             super(Token.recast(token, TokenType.OBJECT), finish, null);
         }
 
+        private NullLiteralNode(final AstDecoder in) {
+            super(in);
+        }
+
         @Override
         public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
             if (visitor.enterLiteralNode(this)) {
@@ -794,6 +865,28 @@ public abstract class LiteralNode<T> extends Expression implements PropertyKey {
             this.splitRanges = splitRanges;
         }
 
+        /**
+         * Constructor used by {@link AstDecoder}
+         *
+         * @param in decoder to read the fields from
+         */
+        ArrayLiteralNode(final AstDecoder in) {
+            super(in);
+            this.elementType = in.readType();
+            this.presets = in.readValue();
+            this.postsets = (int[]) in.readValue();
+            this.splitRanges = in.readSplitRanges();
+        }
+
+        @Override
+        void encode(final AstEncoder out) {
+            super.encode(out);
+            out.writeType(elementType);
+            out.writeValue(presets);
+            out.writeValue(postsets);
+            out.writeSplitRanges(splitRanges);
+        }
+
         /**
          * Returns a list of array element expressions. Note that empty array elements manifest themselves as
          * null.
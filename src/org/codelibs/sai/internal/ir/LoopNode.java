@@ -84,6 +84,27 @@ public abstract class LoopNode extends BreakableStatement {
         this.controlFlowEscapes = controlFlowEscapes;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    LoopNode(final AstDecoder in) {
+        super(in, new Label("while_break"));
+        this.continueLabel = new Label("while_continue");
+        this.test = in.readNode();
+        this.body = in.readNode();
+        this.controlFlowEscapes = in.readBoolean();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(test);
+        out.writeNode(body);
+        out.writeBoolean(controlFlowEscapes);
+    }
+
     @Override
     public abstract Node ensureUniqueLabels(final LexicalContext lc);
 
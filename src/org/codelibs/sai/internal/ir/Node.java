@@ -93,6 +93,33 @@ public abstract class Node implements Cloneable, Serializable {
         this.finish = node.finish;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    Node(final AstDecoder in) {
+        final int position = in.readInt();
+        this.token = (long) position << 32 | in.readInt() & 0xffffffffL;
+        this.start = position + in.readInt();
+        this.finish = start + in.readInt();
+    }
+
+    /**
+     * Write the fields of this node for {@link AstDecoder}. Every subclass that adds fields writes those of its
+     * superclass first, and reads them back in the same order in a constructor taking an {@code AstDecoder}.
+     *
+     * @param out encoder to write the fields to
+     */
+    void encode(final AstEncoder out) {
+        // positions are mostly close to the token position, so write them relative to it
+        final int position = Token.descPosition(token);
+        out.writeInt(position);
+        out.writeInt((int) token);
+        out.writeInt(start - position);
+        out.writeInt(finish - start);
+    }
+
     /**
      * Is this a loop node?
      *
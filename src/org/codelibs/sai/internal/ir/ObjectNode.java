@@ -67,6 +67,24 @@ public final class ObjectNode extends Expression implements LexicalContextNode,
         this.splitRanges = splitRanges;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    ObjectNode(final AstDecoder in) {
+        super(in);
+        this.elements = in.readNodes();
+        this.splitRanges = in.readSplitRanges();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNodes(elements);
+        out.writeSplitRanges(splitRanges);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         return Acceptor.accept(this, visitor);
@@ -76,6 +76,28 @@ public final class PropertyNode extends Node {
         this.setter = setter;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    PropertyNode(final AstDecoder in) {
+        super(in);
+        this.key = (PropertyKey) in.readNode();
+        this.value = in.readNode();
+        this.getter = in.readNode();
+        this.setter = in.readNode();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode((Node) key);
+        out.writeNode(value);
+        out.writeNode(getter);
+        out.writeNode(setter);
+    }
+
     /**
      * Get the name of the property key
      * @return key name
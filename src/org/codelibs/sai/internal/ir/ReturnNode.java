@@ -59,6 +59,22 @@ public class ReturnNode extends Statement {
         this.expression = expression;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    ReturnNode(final AstDecoder in) {
+        super(in);
+        this.expression = in.readNode();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(expression);
+    }
+
     @Override
     public boolean isTerminal() {
         return true;
@@ -357,6 +357,24 @@ public class RuntimeNode extends Expression {
         this.args = args;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    RuntimeNode(final AstDecoder in) {
+        super(in);
+        this.request = Request.values()[in.readInt()];
+        this.args = in.readNodes();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeInt(request.ordinal());
+        out.writeNodes(args);
+    }
+
     /**
      * Constructor
      *
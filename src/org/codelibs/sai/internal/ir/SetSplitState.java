@@ -49,6 +49,22 @@ public final class SetSplitState extends Statement {
         this.state = state;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    SetSplitState(final AstDecoder in) {
+        super(in);
+        this.state = in.readInt();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeInt(state);
+    }
+
     /**
      * Returns the state this setter sets.
      * @return the state this setter sets.
@@ -43,6 +43,11 @@ public final class SplitReturn extends Statement {
         super(NO_LINE_NUMBER, NO_TOKEN, NO_FINISH);
     }
 
+    @Override
+    void encode(final AstEncoder out) {
+        // Nothing to write, decoded as INSTANCE
+    }
+
     @Override
     public boolean isTerminal() {
         return true;
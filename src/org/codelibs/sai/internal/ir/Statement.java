@@ -70,6 +70,22 @@ public abstract class Statement extends Node implements Terminal {
         this.lineNumber = node.lineNumber;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    Statement(final AstDecoder in) {
+        super(in);
+        this.lineNumber = in.readInt();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeInt(lineNumber);
+    }
+
     /**
      * Return the line number
      * @return line number
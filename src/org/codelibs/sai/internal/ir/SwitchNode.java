@@ -87,6 +87,30 @@ public final class SwitchNode extends BreakableStatement {
         this.uniqueInteger = uniqueInteger;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    SwitchNode(final AstDecoder in) {
+        super(in, new Label("switch_break"));
+        this.expression = in.readNode();
+        this.cases = in.readNodes();
+        this.defaultCaseIndex = in.readInt();
+        this.uniqueInteger = in.readBoolean();
+        this.tag = in.readSymbol();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(expression);
+        out.writeNodes(cases);
+        out.writeInt(defaultCaseIndex);
+        out.writeBoolean(uniqueInteger);
+        out.writeSymbol(tag);
+    }
+
     @Override
     public Node ensureUniqueLabels(final LexicalContext lc) {
         final List<CaseNode> newCases = new ArrayList<>();
@@ -148,6 +148,23 @@ public final class Symbol implements Comparable<Symbol>, Cloneable, Serializable
         }
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    Symbol(final AstDecoder in) {
+        this.name = in.readString();
+        this.flags = in.readInt();
+        this.useCount = in.readInt();
+    }
+
+    void encode(final AstEncoder out) {
+        out.writeString(name);
+        out.writeInt(flags);
+        out.writeInt(useCount);
+    }
+
     @Override
     public Symbol clone() {
         try {
@@ -66,6 +66,26 @@ public final class TernaryNode extends Expression {
         this.falseExpr = falseExpr;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    TernaryNode(final AstDecoder in) {
+        super(in);
+        this.test = in.readNode();
+        this.trueExpr = in.readNode();
+        this.falseExpr = in.readNode();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(test);
+        out.writeNode(trueExpr);
+        out.writeNode(falseExpr);
+    }
+
     @Override
     public Node accept(final NodeVisitor<? extends LexicalContext> visitor) {
         if (visitor.enterTernaryNode(this)) {
@@ -67,6 +67,26 @@ public final class ThrowNode extends Statement implements JoinPredecessor {
         this.conversion = conversion;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    ThrowNode(final AstDecoder in) {
+        super(in);
+        this.expression = in.readNode();
+        this.conversion = in.readConversion();
+        this.isSyntheticRethrow = in.readBoolean();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(expression);
+        out.writeConversion(conversion);
+        out.writeBoolean(isSyntheticRethrow);
+    }
+
     @Override
     public boolean isTerminal() {
         return true;
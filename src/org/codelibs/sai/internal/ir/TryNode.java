@@ -103,6 +103,32 @@ public final class TryNode extends LexicalContextStatement implements JoinPredec
         this.exception = exception;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    TryNode(final AstDecoder in) {
+        super(in);
+        this.body = in.readNode();
+        this.catchBlocks = in.readNodes();
+        this.finallyBody = in.readNode();
+        this.inlinedFinallies = in.readNodes();
+        this.exception = in.readSymbol();
+        this.conversion = in.readConversion();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(body);
+        out.writeNodes(catchBlocks);
+        out.writeNode(finallyBody);
+        out.writeNodes(inlinedFinallies);
+        out.writeSymbol(exception);
+        out.writeConversion(conversion);
+    }
+
     @Override
     public Node ensureUniqueLabels(final LexicalContext lc) {
         //try nodes are never in lex context
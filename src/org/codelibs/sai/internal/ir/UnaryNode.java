@@ -93,6 +93,26 @@ public final class UnaryNode extends Expression implements Assignment<Expression
         this.type = type;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    UnaryNode(final AstDecoder in) {
+        super(in);
+        this.expression = in.readNode();
+        this.programPoint = in.readInt();
+        this.type = in.readType();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(expression);
+        out.writeInt(programPoint);
+        out.writeType(type);
+    }
+
     /**
      * Is this an assignment - i.e. that mutates something such as a++
      *
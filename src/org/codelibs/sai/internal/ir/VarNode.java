@@ -75,6 +75,26 @@ public final class VarNode extends Statement implements Assignment<IdentNode> {
         this.flags = flags;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    VarNode(final AstDecoder in) {
+        super(in);
+        this.name = in.readNode();
+        this.init = in.readNode();
+        this.flags = in.readInt();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(name);
+        out.writeNode(init);
+        out.writeInt(flags);
+    }
+
     /**
      * Constructor
      *
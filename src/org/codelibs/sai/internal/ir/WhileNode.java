@@ -67,6 +67,22 @@ public final class WhileNode extends LoopNode {
         this.isDoWhile = whileNode.isDoWhile;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    WhileNode(final AstDecoder in) {
+        super(in);
+        this.isDoWhile = in.readBoolean();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeBoolean(isDoWhile);
+    }
+
     @Override
     public Node ensureUniqueLabels(final LexicalContext lc) {
         return Node.replaceInLexicalContext(lc, this, new WhileNode(this, test, body, controlFlowEscapes, conversion));
@@ -60,6 +60,24 @@ public final class WithNode extends LexicalContextStatement {
         this.body = body;
     }
 
+    /**
+     * Constructor used by {@link AstDecoder}
+     *
+     * @param in decoder to read the fields from
+     */
+    WithNode(final AstDecoder in) {
+        super(in);
+        this.expression = in.readNode();
+        this.body = in.readNode();
+    }
+
+    @Override
+    void encode(final AstEncoder out) {
+        super.encode(out);
+        out.writeNode(expression);
+        out.writeNode(body);
+    }
+
     /**
      * Assist in IR navigation.
      *
@@ -259,9 +259,11 @@ public abstract class ArrayBufferView extends ScriptObject {
             throw typeError("constructor.requires.new", factory.getClassName());
         }
 
-        if (arg0 instanceof NativeArrayBuffer) {
+        if (arg0 instanceof NativeArrayBuffer || arg0 instanceof ByteBuffer) {
             // Constructor(ArrayBuffer buffer, optional unsigned long byteOffset, optional unsigned long length)
-            final NativeArrayBuffer buffer = (NativeArrayBuffer) arg0;
+            // A java.nio.ByteBuffer is viewed in place, as if it was wrapped in an ArrayBuffer first.
+            final NativeArrayBuffer buffer =
+                    arg0 instanceof ByteBuffer ? NativeArrayBuffer.wrap((ByteBuffer) arg0) : (NativeArrayBuffer) arg0;
             final int byteOffset = args.length > 1 ? JSType.toInt32(args[1]) : 0;
 
             if (args.length > 2) {
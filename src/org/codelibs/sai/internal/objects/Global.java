@@ -76,6 +76,7 @@ import org.codelibs.sai.internal.runtime.ScriptFunction;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.ScriptRuntime;
 import org.codelibs.sai.internal.runtime.ScriptingFunctions;
+import org.codelibs.sai.internal.runtime.SharedBuiltins;
 import org.codelibs.sai.internal.runtime.Specialization;
 import org.codelibs.sai.internal.runtime.arrays.ArrayData;
 import org.codelibs.sai.internal.runtime.linker.Bootstrap;
@@ -923,6 +924,9 @@ public final class Global extends Scope {
     // context to which this global belongs to
     private final Context context;
 
+    // shared builtin function data and maps of the context, only set while builtin objects are created
+    private SharedBuiltins sharedBuiltins;
+
     // current ScriptContext to use - can be null.
     private ThreadLocal<ScriptContext> scontext;
     // current ScriptEngine associated - can be null.
@@ -1091,7 +1095,22 @@ public final class Global extends Scope {
         if (this.engine != null) {
             this.scontext = new ThreadLocal<>();
         }
-        init(eng);
+        this.sharedBuiltins = context.getSharedBuiltins();
+        try {
+            init(eng);
+        } finally {
+            this.sharedBuiltins = null;
+        }
+    }
+
+    /**
+     * Get the function data and property maps to share with the other globals of the context when creating
+     * builtin objects.
+     *
+     * @return the shared builtins, or null if this global is not creating its builtin objects
+     */
+    public SharedBuiltins getSharedBuiltins() {
+        return sharedBuiltins;
     }
 
     /**
@@ -2553,6 +2572,9 @@ public final class Global extends Scope {
     }
 
     private <T extends ScriptObject> T initConstructor(final String name, final Class<T> clazz) {
+        // lazily initialized constructors are created after init, so share their builtins here too
+        final SharedBuiltins oldSharedBuiltins = sharedBuiltins;
+        sharedBuiltins = context.getSharedBuiltins();
         try {
             // Assuming class name pattern for built-in JS constructors.
             final StringBuilder sb = new StringBuilder("org.codelibs.sai.internal.objects.");
@@ -2580,6 +2602,8 @@ public final class Global extends Scope {
             return res;
         } catch (final ClassNotFoundException | InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
             throw new RuntimeException(e);
+        } finally {
+            sharedBuiltins = oldSharedBuiltins;
         }
     }
 
@@ -42,6 +42,8 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.codelibs.sai.api.scripting.JSObject;
 import org.codelibs.sai.internal.dynalink.CallSiteDescriptor;
@@ -62,6 +64,7 @@ import org.codelibs.sai.internal.runtime.JSType;
 import org.codelibs.sai.internal.runtime.OptimisticBuiltins;
 import org.codelibs.sai.internal.runtime.PropertyDescriptor;
 import org.codelibs.sai.internal.runtime.PropertyMap;
+import org.codelibs.sai.internal.runtime.ScriptFunction;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.ScriptRuntime;
 import org.codelibs.sai.internal.runtime.Undefined;
@@ -111,11 +114,39 @@ public final class NativeArray extends ScriptObject implements OptimisticBuiltin
     }
 
     NativeArray(final long[] array) {
-        this(ArrayData.allocate(array.length));
+        this(allocate(array));
+    }
 
-        ArrayData arrayData = this.getArray();
+    private static ArrayData allocate(final long[] array) {
+        // find the narrowest storage for all elements, then copy them in one pass
         Class<?> widest = int.class;
+        for (final long value : array) {
+            if (!JSType.isRepresentableAsInt(value)) {
+                if (!JSType.isRepresentableAsDouble(value)) {
+                    widest = Object.class;
+                    break;
+                }
+                widest = double.class;
+            }
+        }
+
+        if (widest == int.class) {
+            final int[] ints = new int[array.length];
+            for (int index = 0; index < array.length; index++) {
+                ints[index] = (int) array[index];
+            }
+            return ArrayData.allocate(ints);
+        } else if (widest == double.class) {
+            final double[] doubles = new double[array.length];
+            for (int index = 0; index < array.length; index++) {
+                doubles[index] = array[index];
+            }
+            return ArrayData.allocate(doubles);
+        }
 
+        // mixed storage: leading elements as numbers, then objects from the first unrepresentable one
+        ArrayData arrayData = ArrayData.allocate(array.length);
+        widest = int.class;
         for (int index = 0; index < array.length; index++) {
             final long value = array[index];
 
@@ -129,8 +160,7 @@ public final class NativeArray extends ScriptObject implements OptimisticBuiltin
                 widest = Object.class;
             }
         }
-
-        this.setArray(arrayData);
+        return arrayData;
     }
 
     NativeArray(final Object[] array) {
@@ -1227,11 +1257,13 @@ public final class NativeArray extends ScriptObject implements OptimisticBuiltin
         return comparefn;
     }
 
-    private static Object[] sort(final Object[] array, final Object comparefn) {
-        final Object cmp = compareFunction(comparefn);
+    private static Object[] sort(final Object[] array, final Object cmp) {
+        if (cmp == null) {
+            return sortByString(array);
+        }
 
         final List<Object> list = Arrays.asList(array);
-        final Object cmpThis = cmp == null || Bootstrap.isStrictCallable(cmp) ? ScriptRuntime.UNDEFINED : Global.instance();
+        final Object cmpThis = Bootstrap.isStrictCallable(cmp) ? ScriptRuntime.UNDEFINED : Global.instance();
 
         try {
             Collections.sort(list, new Comparator<Object>() {
@@ -1247,17 +1279,13 @@ public final class NativeArray extends ScriptObject implements OptimisticBuiltin
                         return -1;
                     }
 
-                    if (cmp != null) {
-                        try {
-                            return (int) Math.signum((double) call_cmp.invokeExact(cmp, cmpThis, x, y));
-                        } catch (final RuntimeException | Error e) {
-                            throw e;
-                        } catch (final Throwable t) {
-                            throw new RuntimeException(t);
-                        }
+                    try {
+                        return (int) Math.signum((double) call_cmp.invokeExact(cmp, cmpThis, x, y));
+                    } catch (final RuntimeException | Error e) {
+                        throw e;
+                    } catch (final Throwable t) {
+                        throw new RuntimeException(t);
                     }
-
-                    return JSType.toString(x).compareTo(JSType.toString(y));
                 }
             });
         } catch (final IllegalArgumentException iae) {
@@ -1273,6 +1301,75 @@ public final class NativeArray extends ScriptObject implements OptimisticBuiltin
         return list.toArray(new Object[array.length]);
     }
 
+    // Default sort order compares the string values of elements, so convert each element only once
+    // instead of on every comparison. Undefined elements go to the end.
+    private static Object[] sortByString(final Object[] array) {
+        final StringSortKey[] keys = new StringSortKey[array.length];
+        int count = 0;
+        for (final Object element : array) {
+            if (element != ScriptRuntime.UNDEFINED) {
+                keys[count++] = new StringSortKey(JSType.toString(element), element);
+            }
+        }
+
+        Arrays.sort(keys, 0, count);
+
+        final Object[] sorted = new Object[array.length];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = keys[i].value;
+        }
+        Arrays.fill(sorted, count, sorted.length, ScriptRuntime.UNDEFINED);
+        return sorted;
+    }
+
+    private static final class StringSortKey implements Comparable<StringSortKey> {
+        final String key;
+        final Object value;
+
+        StringSortKey(final String key, final Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(final StringSortKey other) {
+            return key.compareTo(other.key);
+        }
+    }
+
+    // Matches the source of comparison functions that just subtract their parameters,
+    // such as "function(a, b) { return a - b; }".
+    private static final Pattern NUMERIC_COMPARATOR =
+            Pattern.compile("function\\s*[\\w$]*\\s*\\(\\s*([\\w$]+)\\s*,\\s*([\\w$]+)\\s*\\)\\s*"
+                    + "\\{\\s*return\\s+([\\w$]+)\\s*-\\s*([\\w$]+)\\s*;?\\s*\\}");
+
+    /**
+     * Check whether a comparison function orders numbers like {@code function(a, b) { return a - b; }}
+     * or its reverse, so that arrays of primitive numbers can be sorted without calling it.
+     *
+     * @param cmp the comparison function
+     * @return 1 for ascending order, -1 for descending order, 0 if the function is not recognized
+     */
+    private static int numericOrder(final Object cmp) {
+        if (!(cmp instanceof ScriptFunction)) {
+            return 0;
+        }
+        final String source = ((ScriptFunction) cmp).toSource();
+        if (source.length() > 64) {
+            return 0;
+        }
+        final Matcher m = NUMERIC_COMPARATOR.matcher(source);
+        if (!m.matches() || m.group(1).equals(m.group(2))) {
+            return 0;
+        }
+        if (m.group(3).equals(m.group(1)) && m.group(4).equals(m.group(2))) {
+            return 1;
+        } else if (m.group(3).equals(m.group(2)) && m.group(4).equals(m.group(1))) {
+            return -1;
+        }
+        return 0;
+    }
+
     /**
      * ECMA 15.4.4.11 Array.prototype.sort ( comparefn )
      *
@@ -1288,6 +1385,17 @@ public final class NativeArray extends ScriptObject implements OptimisticBuiltin
             ArrayData array = sobj.getArray();
 
             if (len > 1) {
+                final Object cmp = compareFunction(comparefn);
+
+                // dense arrays of primitive numbers sorted by a plain numeric comparison function
+                // are sorted in place without calling the function
+                if (cmp != null && array.length() == len) {
+                    final int order = numericOrder(cmp);
+                    if (order != 0 && array.sortNumeric(order < 0)) {
+                        return sobj;
+                    }
+                }
+
                 // Get only non-missing elements. Missing elements go at the end
                 // of the sorted array. So, just don't copy these to sort input.
                 final ArrayList<Object> src = new ArrayList<>();
@@ -1300,7 +1408,7 @@ public final class NativeArray extends ScriptObject implements OptimisticBuiltin
                     src.add(array.getObject((int) index));
                 }
 
-                final Object[] sorted = sort(src.toArray(), comparefn);
+                final Object[] sorted = sort(src.toArray(), cmp);
 
                 for (int i = 0; i < sorted.length; i++) {
                     array = array.set(i, sorted[i], true);
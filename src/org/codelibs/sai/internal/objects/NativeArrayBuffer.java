@@ -106,18 +106,37 @@ public final class NativeArrayBuffer extends ScriptObject {
             return new NativeArrayBuffer(0);
         }
 
+        if (args[0] instanceof ByteBuffer) {
+            return wrap((ByteBuffer) args[0]);
+        }
+
         return new NativeArrayBuffer(JSType.toInt32(args[0]));
     }
 
+    /**
+     * Wrap a caller supplied nio buffer without copying it. The remaining bytes
+     * of the buffer, from its position to its limit, become the contents of the
+     * array buffer. Heap, direct and memory mapped buffers are all supported and
+     * writes through typed array views are visible in the original buffer. Read
+     * only buffers are rejected, as array buffers are always writable.
+     *
+     * @param nb buffer to wrap
+     * @return new NativeArrayBuffer sharing the contents of nb
+     * @throws org.codelibs.sai.internal.runtime.ECMAException TypeError if nb is read only
+     */
+    static NativeArrayBuffer wrap(final ByteBuffer nb) {
+        if (nb.isReadOnly()) {
+            throw typeError("read.only.bytebuffer");
+        }
+        return new NativeArrayBuffer(nb.slice());
+    }
+
     private static ByteBuffer cloneBuffer(final ByteBuffer original, final int begin, final int end) {
-        final ByteBuffer clone = ByteBuffer.allocateDirect(original.capacity());
-        original.rewind();//copy from the beginning
-        clone.put(original);
-        original.rewind();
-        clone.flip();
-        clone.position(begin);
-        clone.limit(end);
-        return clone.slice();
+        // copy just the sliced range and keep the kind of the original (heap or direct) buffer
+        final ByteBuffer source = original.duplicate().position(begin).limit(end);
+        final ByteBuffer clone = original.isDirect() ? ByteBuffer.allocateDirect(end - begin) : ByteBuffer.allocate(end - begin);
+        clone.put(source);
+        return clone.flip();
     }
 
     ByteBuffer getNioBuffer() {
@@ -28,6 +28,8 @@ package org.codelibs.sai.internal.objects;
 import static org.codelibs.sai.internal.runtime.ECMAErrors.typeError;
 import static org.codelibs.sai.internal.runtime.ScriptRuntime.UNDEFINED;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,11 +49,17 @@ import org.codelibs.sai.internal.objects.annotations.Where;
 import org.codelibs.sai.internal.runtime.ConsString;
 import org.codelibs.sai.internal.runtime.JSONFunctions;
 import org.codelibs.sai.internal.runtime.JSType;
+import org.codelibs.sai.internal.runtime.Property;
 import org.codelibs.sai.internal.runtime.PropertyMap;
 import org.codelibs.sai.internal.runtime.ScriptObject;
+import org.codelibs.sai.internal.runtime.arrays.ArrayData;
 import org.codelibs.sai.internal.runtime.arrays.ArrayLikeIterator;
+import org.codelibs.sai.internal.runtime.arrays.IntElements;
+import org.codelibs.sai.internal.runtime.arrays.NumericElements;
 import org.codelibs.sai.internal.runtime.linker.Bootstrap;
 import org.codelibs.sai.internal.runtime.linker.InvokeByName;
+import org.codelibs.sai.internal.scripts.JD;
+import org.codelibs.sai.internal.scripts.JO;
 
 /**
  * ECMAScript 262 Edition 5, Section 15.12 The NativeJSON Object
@@ -127,6 +135,81 @@ public final class NativeJSON extends ScriptObject {
      */
     @Function(attributes = Attribute.NOT_ENUMERABLE, where = Where.CONSTRUCTOR)
     public static Object stringify(final Object self, final Object value, final Object replacer, final Object space) {
+        final StringifyState state = createState(replacer, space, null);
+        if (!str("", wrap(value), state)) {
+            return UNDEFINED;
+        }
+        return state.out.toString();
+    }
+
+    /**
+     * Serialize a value like {@code JSON.stringify} and write the result to an {@link Appendable}.
+     * Output is collected in a buffer that is flushed to {@code out} whenever it has grown large,
+     * so the serialized text is never held in memory as a whole. If an error occurs during
+     * serialization, part of the text may already have been written.
+     *
+     * @param value    ECMA script value (usually object or array)
+     * @param replacer either a function or an array of strings and numbers, or undefined
+     * @param space    optional parameter - allows result to have whitespace injection
+     * @param out      the destination of the JSON text
+     *
+     * @return false if the value can not be serialized and nothing was written
+     * @throws java.io.UncheckedIOException if writing to {@code out} fails
+     */
+    public static boolean stringify(final Object value, final Object replacer, final Object space, final Appendable out) {
+        final StringifyState state = createState(replacer, space, out);
+        if (!str("", wrap(value), state)) {
+            return false;
+        }
+        state.flush();
+        return true;
+    }
+
+    // -- Internals only below this point
+
+    // stringify helpers.
+
+    // flush threshold for output written to an Appendable
+    private static final int FLUSH_SIZE = 8192;
+
+    // name prefixes of JSON and object literal structure classes
+    private static final String JO_PREFIX = JO.class.getName();
+    private static final String JD_PREFIX = JD.class.getName();
+
+    private static class StringifyState {
+        final Map<Object, Object> stack = new IdentityHashMap<>();
+
+        String indent = "";
+        String gap = "";
+        List<String> propertyList = null;
+        Object replacerFunction = null;
+
+        final StringBuilder out = new StringBuilder();
+        final Appendable target;
+
+        StringifyState(final Appendable target) {
+            this.target = target;
+        }
+
+        void flushIfFull() {
+            if (target != null && out.length() >= FLUSH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (target != null) {
+                try {
+                    target.append(out);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                out.setLength(0);
+            }
+        }
+    }
+
+    private static StringifyState createState(final Object replacer, final Object space, final Appendable target) {
         // The stringify method takes a value and an optional replacer, and an optional
         // space parameter, and returns a JSON text. The replacer can be a function
         // that can replace values, or an array of strings that will select the keys.
@@ -134,7 +217,7 @@ public final class NativeJSON extends ScriptObject {
         // A default replacer method can be provided. Use of the space parameter can
         // produce text that is more easily readable.
 
-        final StringifyState state = new StringifyState();
+        final StringifyState state = new StringifyState(target);
 
         // If there is a replacer, it must be a function or an array.
         if (Bootstrap.isCallable(replacer)) {
@@ -196,31 +279,34 @@ public final class NativeJSON extends ScriptObject {
         }
 
         state.gap = gap;
+        return state;
+    }
 
+    private static ScriptObject wrap(final Object value) {
         final ScriptObject wrapper = Global.newEmptyInstance();
         wrapper.set("", value, 0);
-
-        return str("", wrapper, state);
+        return wrapper;
     }
 
-    // -- Internals only below this point
-
-    // stringify helpers.
-
-    private static class StringifyState {
-        final Map<Object, Object> stack = new IdentityHashMap<>();
-
-        StringBuilder indent = new StringBuilder();
-        String gap = "";
-        List<String> propertyList = null;
-        Object replacerFunction = null;
+    // Spec: The abstract operation Str(key, holder). Returns false if the value is undefined in JSON.
+    private static boolean str(final Object key, final Object holder, final StringifyState state) {
+        final Object value = getValue(key, holder, state);
+        if (!isSerializable(value)) {
+            return false;
+        }
+        write(value, state);
+        return true;
     }
 
-    // Spec: The abstract operation Str(key, holder).
-    private static Object str(final Object key, final Object holder, final StringifyState state) {
+    // The value of the property after applying toJSON and replacer function, and unwrapping primitive wrappers.
+    private static Object getValue(final Object key, final Object holder, final StringifyState state) {
         assert holder instanceof ScriptObject || holder instanceof JSObject;
 
-        Object value = getProperty(holder, key);
+        return filterValue(key, holder, getProperty(holder, key), state);
+    }
+
+    private static Object filterValue(final Object key, final Object holder, final Object property, final StringifyState state) {
+        Object value = property;
         try {
             if (value instanceof ScriptObject) {
                 final InvokeByName toJSONInvoker = getTO_JSON();
@@ -255,39 +341,66 @@ public final class NativeJSON extends ScriptObject {
                 value = ((NativeBoolean) value).booleanValue();
             }
         }
+        return value;
+    }
 
-        if (value == null) {
-            return "null";
-        } else if (Boolean.TRUE.equals(value)) {
-            return "true";
-        } else if (Boolean.FALSE.equals(value)) {
-            return "false";
+    private static boolean isSerializable(final Object value) {
+        if (value == null || value instanceof Boolean || value instanceof String || value instanceof ConsString || value instanceof Number) {
+            return true;
         }
+        return JSType.of(value) == JSType.OBJECT
+                && (isArray(value) || isJSObjectArray(value) || value instanceof ScriptObject || value instanceof JSObject);
+    }
 
-        if (value instanceof String) {
-            return JSONFunctions.quote((String) value);
+    private static void write(final Object value, final StringifyState state) {
+        final StringBuilder out = state.out;
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Boolean) {
+            out.append(((Boolean) value).booleanValue() ? "true" : "false");
+        } else if (value instanceof String) {
+            JSONFunctions.quote(out, (String) value);
         } else if (value instanceof ConsString) {
-            return JSONFunctions.quote(value.toString());
+            JSONFunctions.quote(out, value.toString());
+        } else if (value instanceof Integer) {
+            out.append(((Integer) value).intValue());
+        } else if (value instanceof Number) {
+            out.append(JSType.isFinite(((Number) value).doubleValue()) ? JSType.toString(value) : "null");
+        } else if (isArray(value) || isJSObjectArray(value)) {
+            JA(value, state);
+        } else {
+            JO(value, state);
         }
+    }
 
-        if (value instanceof Number) {
-            return JSType.isFinite(((Number) value).doubleValue()) ? JSType.toString(value) : "null";
+    private static void writeNumber(final double value, final StringifyState state) {
+        if (!JSType.isFinite(value)) {
+            state.out.append("null");
+        } else if (JSType.isRepresentableAsInt(value)) {
+            state.out.append((int) value);
+        } else {
+            state.out.append(JSType.toString(value));
         }
+    }
 
-        final JSType type = JSType.of(value);
-        if (type == JSType.OBJECT) {
-            if (isArray(value) || isJSObjectArray(value)) {
-                return JA(value, state);
-            } else if (value instanceof ScriptObject || value instanceof JSObject) {
-                return JO(value, state);
-            }
+    // Append the opening bracket or separator and indentation of an object member or array element.
+    private static void writeSeparator(final boolean first, final char open, final StringifyState state) {
+        state.out.append(first ? open : ',');
+        if (!state.gap.isEmpty()) {
+            state.out.append('\n').append(state.indent);
         }
+    }
 
-        return UNDEFINED;
+    // Append the closing bracket of a non-empty object or array.
+    private static void writeClose(final char close, final String stepback, final StringifyState state) {
+        if (!state.gap.isEmpty()) {
+            state.out.append('\n').append(stepback);
+        }
+        state.out.append(close);
     }
 
     // Spec: The abstract operation JO(value) serializes an object.
-    private static String JO(final Object value, final StringifyState state) {
+    private static void JO(final Object value, final StringifyState state) {
         assert value instanceof ScriptObject || value instanceof JSObject;
 
         if (state.stack.containsKey(value)) {
@@ -295,77 +408,71 @@ public final class NativeJSON extends ScriptObject {
         }
 
         state.stack.put(value, value);
-        final StringBuilder stepback = new StringBuilder(state.indent.toString());
-        state.indent.append(state.gap);
-
-        final StringBuilder finalStr = new StringBuilder();
-        final List<Object> partial = new ArrayList<>();
-        final List<String> k = state.propertyList == null ? Arrays.asList(getOwnKeys(value)) : state.propertyList;
-
-        for (final Object p : k) {
-            final Object strP = str(p, value, state);
-
-            if (strP != UNDEFINED) {
-                final StringBuilder member = new StringBuilder();
-
-                member.append(JSONFunctions.quote(p.toString())).append(':');
-                if (!state.gap.isEmpty()) {
-                    member.append(' ');
+        final String stepback = state.indent;
+        state.indent = stepback + state.gap;
+
+        boolean empty = true;
+        if (state.propertyList == null && isPlainObject(value)) {
+            // walk the property map of JSON and object literal objects directly
+            final ScriptObject sobj = (ScriptObject) value;
+            final PropertyMap map = sobj.getMap();
+            for (final Property property : map.getProperties()) {
+                if (!property.isEnumerable()) {
+                    continue;
+                }
+                final String key = property.getKey();
+                // getters and toJSON functions may modify the object, so only use the property if the map is unchanged
+                final Object propertyValue = sobj.getMap() == map ? property.getObjectValue(sobj, sobj) : sobj.get(key);
+                final Object v = filterValue(key, sobj, propertyValue, state);
+                if (isSerializable(v)) {
+                    writeMember(empty, key, v, state);
+                    empty = false;
                 }
-
-                member.append(strP);
-                partial.add(member);
             }
-        }
-
-        if (partial.isEmpty()) {
-            finalStr.append("{}");
         } else {
-            if (state.gap.isEmpty()) {
-                final int size = partial.size();
-                int index = 0;
-
-                finalStr.append('{');
-
-                for (final Object str : partial) {
-                    finalStr.append(str);
-                    if (index < size - 1) {
-                        finalStr.append(',');
-                    }
-                    index++;
-                }
-
-                finalStr.append('}');
-            } else {
-                final int size = partial.size();
-                int index = 0;
-
-                finalStr.append("{\n");
-                finalStr.append(state.indent);
-
-                for (final Object str : partial) {
-                    finalStr.append(str);
-                    if (index < size - 1) {
-                        finalStr.append(",\n");
-                        finalStr.append(state.indent);
-                    }
-                    index++;
+            final List<String> k = state.propertyList == null ? Arrays.asList(getOwnKeys(value)) : state.propertyList;
+            for (final String p : k) {
+                final Object v = getValue(p, value, state);
+                if (isSerializable(v)) {
+                    writeMember(empty, p, v, state);
+                    empty = false;
                 }
-
-                finalStr.append('\n');
-                finalStr.append(stepback);
-                finalStr.append('}');
             }
         }
 
+        if (empty) {
+            state.out.append("{}");
+        } else {
+            writeClose('}', stepback, state);
+        }
+
         state.stack.remove(value);
         state.indent = stepback;
+    }
+
+    private static void writeMember(final boolean first, final String key, final Object value, final StringifyState state) {
+        writeSeparator(first, '{', state);
+        JSONFunctions.quote(state.out, key);
+        state.out.append(':');
+        if (!state.gap.isEmpty()) {
+            state.out.append(' ');
+        }
+        write(value, state);
+        state.flushIfFull();
+    }
 
-        return finalStr.toString();
+    // Objects created from JSON text and object literals, which have no special property behavior.
+    private static boolean isPlainObject(final Object value) {
+        final Class<?> clazz = value.getClass();
+        if (clazz.getSuperclass() != ScriptObject.class) {
+            return false;
+        }
+        final String name = clazz.getName();
+        return (name.startsWith(JO_PREFIX) || name.startsWith(JD_PREFIX)) && ((ScriptObject) value).getArray().length() == 0;
     }
 
     // Spec: The abstract operation JA(value) serializes an array.
-    private static Object JA(final Object value, final StringifyState state) {
+    private static void JA(final Object value, final StringifyState state) {
         assert value instanceof ScriptObject || value instanceof JSObject;
 
         if (state.stack.containsKey(value)) {
@@ -373,63 +480,45 @@ public final class NativeJSON extends ScriptObject {
         }
 
         state.stack.put(value, value);
-        final StringBuilder stepback = new StringBuilder(state.indent.toString());
-        state.indent.append(state.gap);
-        final List<Object> partial = new ArrayList<>();
+        final String stepback = state.indent;
+        state.indent = stepback + state.gap;
 
         final int length = JSType.toInteger(getLength(value));
-        int index = 0;
-
-        while (index < length) {
-            Object strP = str(index, value, state);
-            if (strP == UNDEFINED) {
-                strP = "null";
+        final ArrayData data = value instanceof NativeArray ? ((NativeArray) value).getArray() : null;
+
+        if (length == 0) {
+            state.out.append("[]");
+        } else if (state.replacerFunction == null && data instanceof IntElements && data.length() == length) {
+            // elements of int and number arrays are written without boxing
+            for (int index = 0; index < length; index++) {
+                writeSeparator(index == 0, '[', state);
+                state.out.append(data.getInt(index));
+                state.flushIfFull();
             }
-            partial.add(strP);
-            index++;
-        }
-
-        final StringBuilder finalStr = new StringBuilder();
-        if (partial.isEmpty()) {
-            finalStr.append("[]");
+            writeClose(']', stepback, state);
+        } else if (state.replacerFunction == null && data instanceof NumericElements && data.length() == length) {
+            for (int index = 0; index < length; index++) {
+                writeSeparator(index == 0, '[', state);
+                writeNumber(data.getDouble(index), state);
+                state.flushIfFull();
+            }
+            writeClose(']', stepback, state);
         } else {
-            if (state.gap.isEmpty()) {
-                final int size = partial.size();
-                index = 0;
-                finalStr.append('[');
-                for (final Object str : partial) {
-                    finalStr.append(str);
-                    if (index < size - 1) {
-                        finalStr.append(',');
-                    }
-                    index++;
+            for (int index = 0; index < length; index++) {
+                writeSeparator(index == 0, '[', state);
+                final Object v = getValue(index, value, state);
+                if (isSerializable(v)) {
+                    write(v, state);
+                } else {
+                    state.out.append("null");
                 }
-
-                finalStr.append(']');
-            } else {
-                final int size = partial.size();
-                index = 0;
-                finalStr.append("[\n");
-                finalStr.append(state.indent);
-                for (final Object str : partial) {
-                    finalStr.append(str);
-                    if (index < size - 1) {
-                        finalStr.append(",\n");
-                        finalStr.append(state.indent);
-                    }
-                    index++;
-                }
-
-                finalStr.append('\n');
-                finalStr.append(stepback);
-                finalStr.append(']');
+                state.flushIfFull();
             }
+            writeClose(']', stepback, state);
         }
 
         state.stack.remove(value);
         state.indent = stepback;
-
-        return finalStr.toString();
     }
 
     private static String[] getOwnKeys(final Object obj) {
@@ -30,6 +30,7 @@ import static org.codelibs.sai.internal.runtime.ScriptRuntime.UNDEFINED;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
@@ -425,9 +426,9 @@ public final class NativeJava {
         if (objArray == null) {
             return null;
         } else if (objArray instanceof Collection) {
-            return new NativeArray(((Collection<?>) objArray).toArray());
+            return copyNumbers(((Collection<?>) objArray).toArray());
         } else if (objArray instanceof Object[]) {
-            return new NativeArray(((Object[]) objArray).clone());
+            return copyNumbers(((Object[]) objArray).clone());
         } else if (objArray instanceof int[]) {
             return new NativeArray(((int[]) objArray).clone());
         } else if (objArray instanceof double[]) {
@@ -449,6 +450,54 @@ public final class NativeJava {
         throw typeError("cant.convert.to.javascript.array", objArray.getClass().getName());
     }
 
+    /**
+     * Given a {@link ByteBuffer}, returns an ArrayBuffer over its remaining bytes, like {@code new ArrayBuffer(buffer)}
+     * does. The bytes are not copied: typed arrays and DataViews over the returned ArrayBuffer read and write the
+     * Java buffer directly. Example:
+     * <pre>
+     * var FileChannel = Java.type("java.nio.channels.FileChannel")
+     * var mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, 4096)
+     * var ints = new Int32Array(Java.wrapBuffer(mapped))
+     * </pre>
+     * @param self not used
+     * @param buffer the heap, direct or memory mapped buffer. Must not be read only.
+     * @return an ArrayBuffer sharing the remaining bytes of the buffer
+     */
+    @Function(attributes = Attribute.NOT_ENUMERABLE, where = Where.CONSTRUCTOR)
+    public static NativeArrayBuffer wrapBuffer(final Object self, final Object buffer) {
+        if (!(buffer instanceof ByteBuffer)) {
+            throw typeError("not.a.bytebuffer", ScriptRuntime.safeToString(buffer));
+        }
+        return NativeArrayBuffer.wrap((ByteBuffer) buffer);
+    }
+
+    // Elements that are all Integer or Double objects are unboxed into int or double array storage
+    // in one pass, other arrays are stored element by element.
+    private static NativeArray copyNumbers(final Object[] in) {
+        boolean ints = true;
+        for (final Object element : in) {
+            if (element instanceof Double) {
+                ints = ints && JSType.isRepresentableAsInt((double) (Double) element);
+            } else if (!(element instanceof Integer)) {
+                return new NativeArray(in);
+            }
+        }
+
+        if (ints) {
+            final int[] out = new int[in.length];
+            for (int i = 0; i < in.length; ++i) {
+                out[i] = ((Number) in[i]).intValue();
+            }
+            return new NativeArray(out);
+        }
+
+        final double[] out = new double[in.length];
+        for (int i = 0; i < in.length; ++i) {
+            out[i] = ((Number) in[i]).doubleValue();
+        }
+        return new NativeArray(out);
+    }
+
     private static int[] copyArray(final byte[] in) {
         final int[] out = new int[in.length];
         for (int i = 0; i < in.length; ++i) {
@@ -49,6 +49,7 @@ import org.codelibs.sai.internal.runtime.PropertyMap;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.ScriptRuntime;
 import org.codelibs.sai.internal.runtime.linker.Bootstrap;
+import org.codelibs.sai.internal.runtime.regexp.LiteralRegExp;
 import org.codelibs.sai.internal.runtime.regexp.RegExp;
 import org.codelibs.sai.internal.runtime.regexp.RegExpFactory;
 import org.codelibs.sai.internal.runtime.regexp.RegExpMatcher;
@@ -834,6 +835,10 @@ public final class NativeRegExp extends ScriptObject {
             return new NativeArray();
         }
 
+        if (regexp instanceof LiteralRegExp) {
+            return splitLiteral(string, limit);
+        }
+
         final List<Object> matches = new ArrayList<>();
 
         RegExpResult match;
@@ -885,6 +890,35 @@ public final class NativeRegExp extends ScriptObject {
         return new NativeArray(matches.toArray());
     }
 
+    /**
+     * Split on the matches of a literal regexp. These are never empty and have no groups, so a
+     * single matcher finds them all, and only the last one is kept as the last regexp result.
+     */
+    private NativeArray splitLiteral(final String string, final long limit) {
+        final List<Object> matches = new ArrayList<>();
+        final RegExpMatcher matcher = regexp.match(string);
+        int lastIndex = 0;
+        int matchIndex = -1;
+
+        while (matcher.search(lastIndex)) {
+            matchIndex = matcher.start();
+            matches.add(string.substring(lastIndex, matchIndex));
+            lastIndex = matcher.end();
+            if (matches.size() >= limit) {
+                break;
+            }
+        }
+
+        if (matchIndex >= 0) {
+            globalObject.setLastRegExpResult(new RegExpResult(string, matchIndex, new Object[] { string.substring(matchIndex, lastIndex) }));
+        }
+        if (matches.size() < limit) {
+            matches.add(string.substring(lastIndex));
+        }
+
+        return new NativeArray(matches.toArray());
+    }
+
     /**
      * Tests for a match in a string. It returns the index of the match, or -1
      * if not found.
@@ -27,7 +27,16 @@ package org.codelibs.sai.internal.parser;
 
 import static org.codelibs.sai.internal.parser.TokenType.STRING;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.codelibs.sai.internal.codegen.ObjectClassGenerator;
@@ -50,18 +59,35 @@ import org.codelibs.sai.internal.scripts.JO;
 /**
  * Parses JSON text and returns the corresponding IR node. This is derived from
  * the objectLiteral production of the main parser.
+ * <p>
+ * The text is either given as a string or read incrementally from a {@link Reader}
+ * or a UTF-8 encoded {@link ByteBuffer}. A string is scanned directly. Streams are
+ * scanned from a buffer that only holds the token being parsed, so parsing a stream
+ * does not require the whole text to be in memory.
  *
  * See: 15.12.1.2 The JSON Syntactic Grammar
  */
 public class JSONParser {
 
     final private String source;
+    final private Reader reader;
+    final private ByteBuffer bytes;
+    final private CharsetDecoder decoder;
     final private Global global;
     final private boolean dualFields;
-    final int length;
     int pos = 0;
 
+    // characters of a streamed text starting at position bufferStart, null for a string
+    private char[] buffer;
+    private int bufferStart;
+    private int bufferLimit;
+    // start of the token being scanned, characters from here on are kept in the buffer
+    private int mark = -1;
+    // number of lines that have been dropped from the buffer, used for error messages of streams
+    private int bufferLine;
+
     private static final int EOF = -1;
+    private static final int BUFFER_SIZE = 8192;
 
     private static final String TRUE = "true";
     private static final String FALSE = "false";
@@ -79,10 +105,43 @@ public class JSONParser {
      * @param dualFields whether the parser should regard dual field representation
      */
     public JSONParser(final String source, final Global global, final boolean dualFields) {
+        this(source, null, null, global, dualFields);
+    }
+
+    /**
+     * Constructor for JSON text read from a character stream. The reader is not closed by the parser.
+     * I/O errors of the reader are thrown as {@link UncheckedIOException} by {@link #parse()}.
+     *
+     * @param reader     the reader providing the text
+     * @param global     the global object
+     * @param dualFields whether the parser should regard dual field representation
+     */
+    public JSONParser(final Reader reader, final Global global, final boolean dualFields) {
+        this(null, reader, null, global, dualFields);
+    }
+
+    /**
+     * Constructor for UTF-8 encoded JSON text. The text is decoded incrementally from the
+     * remaining bytes of the buffer, the position of the buffer is not changed.
+     *
+     * @param bytes      the buffer containing the text
+     * @param global     the global object
+     * @param dualFields whether the parser should regard dual field representation
+     */
+    public JSONParser(final ByteBuffer bytes, final Global global, final boolean dualFields) {
+        this(null, null, bytes.duplicate(), global, dualFields);
+    }
+
+    private JSONParser(final String source, final Reader reader, final ByteBuffer bytes, final Global global, final boolean dualFields) {
         this.source = source;
+        this.reader = reader;
+        this.bytes = bytes;
+        this.decoder = bytes == null ? null
+                : StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
         this.global = global;
-        this.length = source.length();
         this.dualFields = dualFields;
+        this.buffer = source != null ? null : new char[BUFFER_SIZE];
     }
 
     /**
@@ -95,13 +154,31 @@ public class JSONParser {
      * @return quoted and escaped string
      */
     public static String quote(final String value) {
+        final StringBuilder product = new StringBuilder(value.length() + 2);
+        quote(product, value);
+        return product.toString();
+    }
 
-        final StringBuilder product = new StringBuilder();
-
-        product.append("\"");
+    /**
+     * Append the result of the Quote(value) operation to a string builder.
+     *
+     * @param product string builder to append to
+     * @param value string to quote
+     */
+    public static void quote(final StringBuilder product, final String value) {
+        product.append('"');
+
+        // characters that need no escaping are appended in runs
+        final int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            if (ch >= ' ' && ch != '\\' && ch != '"') {
+                continue;
+            }
+            product.append(value, start, i);
+            start = i + 1;
 
-        for (final char ch : value.toCharArray()) {
-            // TODO: should use a table?
             switch (ch) {
             case '\\':
                 product.append("\\\\");
@@ -125,19 +202,13 @@ public class JSONParser {
                 product.append("\\t");
                 break;
             default:
-                if (ch < ' ') {
-                    product.append(Lexer.unicodeEscape(ch));
-                    break;
-                }
-
-                product.append(ch);
+                product.append(Lexer.unicodeEscape(ch));
                 break;
             }
         }
+        product.append(value, start, length);
 
-        product.append("\"");
-
-        return product.toString();
+        product.append('"');
     }
 
     /**
@@ -148,7 +219,7 @@ public class JSONParser {
     public Object parse() {
         final Object value = parseLiteral();
         skipWhiteSpace();
-        if (pos < length) {
+        if (peek() != EOF) {
             throw expectedError(pos, "eof", toString(peek()));
         }
         return value;
@@ -194,11 +265,13 @@ public class JSONParser {
         assert peek() == '{';
         pos++;
 
-        while (pos < length) {
+        for (;;) {
             skipWhiteSpace();
             final int c = peek();
 
             switch (c) {
+            case EOF:
+                throw expectedError(pos, ", or }", "eof");
             case '"':
                 if (state == STATE_ELEMENT_PARSED) {
                     throw expectedError(pos - 1, ", or }", toString(c));
@@ -231,7 +304,6 @@ public class JSONParser {
                 throw expectedError(pos, ", or }", toString(c));
             }
         }
-        throw expectedError(pos, ", or }", "eof");
     }
 
     private static ArrayData addArrayElement(final ArrayData arrayData, final int index, final Object value) {
@@ -315,11 +387,13 @@ public class JSONParser {
         assert peek() == '[';
         pos++;
 
-        while (pos < length) {
+        for (;;) {
             skipWhiteSpace();
             final int c = peek();
 
             switch (c) {
+            case EOF:
+                throw expectedError(pos, ", or ]", "eof");
             case ',':
                 if (state != STATE_ELEMENT_PARSED) {
                     throw error(AbstractParser.message("trailing.comma.in.json"), pos);
@@ -343,17 +417,20 @@ public class JSONParser {
                 break;
             }
         }
-
-        throw expectedError(pos, ", or ]", "eof");
     }
 
     private String parseString() {
         // String buffer is only instantiated if string contains escape sequences.
         int start = ++pos;
         StringBuilder sb = null;
+        mark = start;
 
-        while (pos < length) {
-            final int c = next();
+        for (;;) {
+            final int c = peek();
+            if (c == EOF) {
+                break;
+            }
+            pos++;
             if (c <= 0x1f) {
                 // Characters < 0x1f are not allowed in JSON strings.
                 throw syntaxError(pos, "String contains control character");
@@ -362,20 +439,22 @@ public class JSONParser {
                 if (sb == null) {
                     sb = new StringBuilder(pos - start + 16);
                 }
-                sb.append(source, start, pos - 1);
+                appendText(sb, start, pos - 1);
                 sb.append(parseEscapeSequence());
                 start = pos;
+                mark = start;
 
             } else if (c == '"') {
+                mark = -1;
                 if (sb != null) {
-                    sb.append(source, start, pos - 1);
+                    appendText(sb, start, pos - 1);
                     return sb.toString();
                 }
-                return source.substring(start, pos - 1);
+                return text(start, pos - 1);
             }
         }
 
-        throw error(Lexer.message("missing.close.quote"), pos, length);
+        throw error(Lexer.message("missing.close.quote"), pos);
     }
 
     private char parseEscapeSequence() {
@@ -400,7 +479,7 @@ public class JSONParser {
         case 'u':
             return parseUnicodeEscape();
         default:
-            throw error(Lexer.message("invalid.escape.char"), pos - 1, length);
+            throw error(Lexer.message("invalid.escape.char"), pos - 1);
         }
     }
 
@@ -417,7 +496,7 @@ public class JSONParser {
         } else if (c >= 'a' && c <= 'f') {
             return c + 10 - 'a';
         }
-        throw error(Lexer.message("invalid.hex"), pos - 1, length);
+        throw error(Lexer.message("invalid.hex"), pos - 1);
     }
 
     private boolean isDigit(final int c) {
@@ -425,17 +504,14 @@ public class JSONParser {
     }
 
     private void skipDigits() {
-        while (pos < length) {
-            final int c = peek();
-            if (!isDigit(c)) {
-                break;
-            }
+        while (isDigit(peek())) {
             pos++;
         }
     }
 
     private Number parseNumber() {
         final int start = pos;
+        mark = start;
         int c = next();
 
         if (c == '-') {
@@ -472,7 +548,26 @@ public class JSONParser {
             skipDigits();
         }
 
-        final double d = Double.parseDouble(source.substring(start, pos));
+        mark = -1;
+        final int length = pos - start;
+        final boolean negative = charAt(start) == '-';
+        // integers of up to 9 digits can not overflow, convert them without creating a string
+        if (length <= (negative ? 10 : 9)) {
+            int value = 0;
+            for (int i = negative ? 1 : 0; i < length; i++) {
+                final char ch = charAt(start + i);
+                if (!isDigit(ch)) {
+                    value = -1;
+                    break;
+                }
+                value = value * 10 + ch - '0';
+            }
+            if (value >= 0) {
+                return negative ? -value : value;
+            }
+        }
+
+        final double d = Double.parseDouble(text(start, pos));
         if (JSType.isRepresentableAsInt(d)) {
             return (int) d;
         }
@@ -480,18 +575,87 @@ public class JSONParser {
     }
 
     private Object parseKeyword(final String keyword, final Object value) {
-        if (!source.regionMatches(pos, keyword, 0, keyword.length())) {
-            throw expectedError(pos, "json literal", "ident");
+        final int start = pos;
+        for (int i = 0; i < keyword.length(); i++) {
+            if (next() != keyword.charAt(i)) {
+                throw expectedError(start, "json literal", "ident");
+            }
         }
-        pos += keyword.length();
         return value;
     }
 
     private int peek() {
-        if (pos >= length) {
-            return -1;
+        if (source != null) {
+            return pos < source.length() ? source.charAt(pos) : EOF;
+        }
+        final int index = pos - bufferStart;
+        if (index < bufferLimit) {
+            return buffer[index];
+        }
+        return fill() ? buffer[pos - bufferStart] : EOF;
+    }
+
+    // Character at a position of the current token, which is still in the buffer of a stream.
+    private char charAt(final int position) {
+        return source != null ? source.charAt(position) : buffer[position - bufferStart];
+    }
+
+    // Text between two positions of the current token.
+    private String text(final int start, final int end) {
+        return source != null ? source.substring(start, end) : new String(buffer, start - bufferStart, end - start);
+    }
+
+    private void appendText(final StringBuilder sb, final int start, final int end) {
+        if (source != null) {
+            sb.append(source, start, end);
+        } else {
+            sb.append(buffer, start - bufferStart, end - start);
+        }
+    }
+
+    // Read more characters of a stream into the buffer, dropping those before the current token. Returns false at
+    // end of text.
+    private boolean fill() {
+        final int keep = Math.min(mark >= 0 ? mark : pos, bufferStart + bufferLimit);
+        final int drop = keep - bufferStart;
+        if (drop > 0) {
+            for (int i = 0; i < drop; i++) {
+                if (buffer[i] == '\n') {
+                    bufferLine++;
+                }
+            }
+            System.arraycopy(buffer, drop, buffer, 0, bufferLimit - drop);
+            bufferLimit -= drop;
+            bufferStart = keep;
+        }
+        // a surrogate pair needs room for two characters
+        if (buffer.length - bufferLimit < 2) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, BUFFER_SIZE));
+        }
+
+        while (pos - bufferStart >= bufferLimit) {
+            final int read = read(buffer, bufferLimit, buffer.length - bufferLimit);
+            if (read < 0) {
+                return false;
+            }
+            bufferLimit += read;
+        }
+        return true;
+    }
+
+    private int read(final char[] buf, final int off, final int len) {
+        if (reader != null) {
+            try {
+                return reader.read(buf, off, len);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            final CharBuffer out = CharBuffer.wrap(buf, off, len);
+            decoder.decode(bytes, out, true);
+            final int count = out.position() - off;
+            return count == 0 && !bytes.hasRemaining() ? -1 : count;
         }
-        return source.charAt(pos);
     }
 
     private int next() {
@@ -501,7 +665,7 @@ public class JSONParser {
     }
 
     private void skipWhiteSpace() {
-        while (pos < length) {
+        for (;;) {
             switch (peek()) {
             case '\t':
             case '\r':
@@ -520,6 +684,16 @@ public class JSONParser {
     }
 
     ParserException error(final String message, final int start, final int length) throws ParserException {
+        if (source == null) {
+            // only the buffered part of a stream is available, report the error relative to it
+            final int bufferPos = Math.max(0, Math.min(start - bufferStart, bufferLimit));
+            final long token = Token.toDesc(STRING, bufferPos, bufferLimit);
+            final Source src = Source.sourceFor("<json>", Arrays.copyOf(buffer, bufferLimit));
+            final int lineNum = bufferLine + src.getLine(bufferPos);
+            final int columnNum = src.getColumn(bufferPos);
+            final String formatted = ErrorManager.format(message, src, lineNum, columnNum, token);
+            return new ParserException(JSErrorType.SYNTAX_ERROR, formatted, src, lineNum, columnNum, token);
+        }
         final long token = Token.toDesc(STRING, start, length);
         final int pos = Token.descPosition(token);
         final Source src = Source.sourceFor("<json>", source);
@@ -530,7 +704,7 @@ public class JSONParser {
     }
 
     private ParserException error(final String message, final int start) {
-        return error(message, start, length);
+        return error(message, start, source != null ? source.length() : 0);
     }
 
     private ParserException numberError(final int start) {
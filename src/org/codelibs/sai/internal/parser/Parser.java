@@ -64,6 +64,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.codelibs.sai.internal.codegen.CompilerConstants;
 import org.codelibs.sai.internal.codegen.Namespace;
@@ -110,6 +111,7 @@ import org.codelibs.sai.internal.ir.WhileNode;
 import org.codelibs.sai.internal.ir.WithNode;
 import org.codelibs.sai.internal.ir.debug.ASTWriter;
 import org.codelibs.sai.internal.ir.debug.PrintVisitor;
+import org.codelibs.sai.internal.ir.visitor.SimpleNodeVisitor;
 import org.codelibs.sai.internal.runtime.Context;
 import org.codelibs.sai.internal.runtime.ErrorManager;
 import org.codelibs.sai.internal.runtime.JSErrorType;
@@ -129,6 +131,7 @@ import org.codelibs.sai.internal.runtime.logging.Logger;
 @Logger(name = "parser")
 public class Parser extends AbstractParser implements Loggable {
     private static final String ARGUMENTS_NAME = CompilerConstants.ARGUMENTS_VAR.symbolName();
+    private static final String THIS_NAME = CompilerConstants.THIS.symbolName();
 
     /** Current env. */
     private final ScriptEnvironment env;
@@ -151,6 +154,9 @@ public class Parser extends AbstractParser implements Loggable {
 
     private RecompilableScriptFunctionData reparsedFunction;
 
+    /** Should bodies of nested functions be discarded after parsing them? */
+    private boolean preParseFunctions;
+
     /**
      * Constructor
      *
@@ -237,6 +243,17 @@ public class Parser extends AbstractParser implements Loggable {
         this.reparsedFunction = reparsedFunction;
     }
 
+    /**
+     * Enables pre-parsing of nested functions, meant for scripts and functions compiled lazily. Bodies of
+     * nested functions are still parsed in full, so syntax errors are reported right away, but those without
+     * eval, with statements and block scoped declarations are then discarded. Only the names they use and declare
+     * are kept, and the bodies are parsed again when the functions are compiled on demand.
+     * @param preParseFunctions true to pre-parse nested functions.
+     */
+    public void setPreParseFunctions(final boolean preParseFunctions) {
+        this.preParseFunctions = preParseFunctions;
+    }
+
     /**
      * Execute parse and return the resulting function node.
      * Errors will be thrown and the error manager will contain information
@@ -269,7 +286,7 @@ public class Parser extends AbstractParser implements Loggable {
      */
     public FunctionNode parse(final String scriptName, final int startPos, final int len, final boolean allowPropertyFunction) {
         final boolean isTimingEnabled = env.isTimingEnabled();
-        final long t0 = isTimingEnabled ? System.nanoTime() : 0L;
+        final long t0 = System.nanoTime();
         log.info(this, " begin for '", scriptName, "'");
 
         try {
@@ -289,8 +306,8 @@ public class Parser extends AbstractParser implements Loggable {
             return null;
         } finally {
             final String end = this + " end '" + scriptName + "'";
+            env._timing.accumulateTime(toString(), System.nanoTime() - t0);
             if (isTimingEnabled) {
-                env._timing.accumulateTime(toString(), System.nanoTime() - t0);
                 log.info(end, "' in ", Timing.toMillisPrint(System.nanoTime() - t0), " ms");
             } else {
                 log.info(end);
@@ -458,7 +475,11 @@ public class Parser extends AbstractParser implements Loggable {
 
         final FunctionNode parentFunction = lc.getCurrentFunction();
         if (parentFunction != null && !parentFunction.isProgram()) {
-            sb.append(parentFunction.getName()).append(CompilerConstants.NESTED_FUNCTION_SEPARATOR.symbolName());
+            // A reparsed anonymous function only gets its original name after parsing, but the functions nested in a
+            // pre-parsed one are named here for the first time.
+            final boolean isReparsed = reparsedFunction != null && parentFunction.getId() == reparsedFunction.getFunctionNodeId();
+            sb.append(isReparsed ? reparsedFunction.getFunctionName() : parentFunction.getName())
+                    .append(CompilerConstants.NESTED_FUNCTION_SEPARATOR.symbolName());
         }
 
         assert ident.getName() != null;
@@ -2836,7 +2857,9 @@ public class Parser extends AbstractParser implements Loggable {
             functionNode = newFunctionNode(firstToken, ident, parameters, kind, functionLine);
             assert functionNode != null;
             final int functionId = functionNode.getId();
-            parseBody = reparsedFunction == null || functionId <= reparsedFunction.getFunctionNodeId();
+            // Nested functions of a pre-parsed function have no function data yet, so their bodies are parsed too.
+            parseBody = reparsedFunction == null || functionId <= reparsedFunction.getFunctionNodeId()
+                    || reparsedFunction.getScriptFunctionData(functionId) == null;
             // Sai extension: expression closures
             if (!env._no_syntax_extensions && type != LBRACE) {
                 /*
@@ -2906,6 +2929,13 @@ public class Parser extends AbstractParser implements Loggable {
 
         if (parseBody) {
             functionNode = functionNode.setEndParserState(lc, endParserState);
+            // When reparsing, only the functions nested in the reparsed one are pre-parsed. Functions with debug
+            // directives keep their bodies, as these might be printed right away.
+            if (preParseFunctions && endParserState != null && !functionNode.hasEval()
+                    && !functionNode.getFlag(FunctionNode.EXTENSION_CALLSITE_FLAGS)
+                    && (reparsedFunction == null || functionNode.getId() > reparsedFunction.getFunctionNodeId())) {
+                functionNode = preParse(functionNode);
+            }
         } else if (functionNode.getBody().getStatementCount() > 0) {
             // This is to ensure the body is empty when !parseBody but we couldn't skip parsing it (see
             // skipFunctionBody() for possible reasons). While it is not strictly necessary for correctness to
@@ -2937,6 +2967,132 @@ public class Parser extends AbstractParser implements Loggable {
         return functionNode;
     }
 
+    private FunctionNode preParse(final FunctionNode functionNode) {
+        final FunctionBodyScanner scanner = new FunctionBodyScanner(functionNode);
+        functionNode.getBody().accept(scanner);
+        if (!scanner.canDiscard) {
+            return functionNode;
+        }
+
+        final Set<String> uses = scanner.uses.pop();
+        final Set<String> declarations = scanner.locals.pop();
+        uses.removeAll(declarations);
+        uses.remove(THIS_NAME);
+        uses.remove(ARGUMENTS_NAME);
+        declarations.addAll(scanner.catchParameters);
+
+        return functionNode.setThisProperties(lc, scanner.thisProperties.size()).setPreParsed(lc, uses, declarations);
+    }
+
+    /**
+     * Collects the names used and declared in the body of a function being pre-parsed. Names declared by nested
+     * functions are removed from the names they use before these are added to the names used by the enclosing
+     * function.
+     */
+    private static class FunctionBodyScanner extends SimpleNodeVisitor {
+        private final Deque<Set<String>> uses = new ArrayDeque<>();
+        private final Deque<Set<String>> locals = new ArrayDeque<>();
+        private final Set<String> catchParameters = new HashSet<>();
+        private final Set<String> thisProperties = new HashSet<>();
+        private boolean canDiscard = true;
+
+        FunctionBodyScanner(final FunctionNode functionNode) {
+            enterFunction(functionNode);
+        }
+
+        private void enterFunction(final FunctionNode functionNode) {
+            final Set<String> parameters = new HashSet<>();
+            for (final IdentNode param : functionNode.getParameters()) {
+                parameters.add(param.getName());
+            }
+            uses.push(new HashSet<String>());
+            locals.push(parameters);
+        }
+
+        private boolean isTopFunction() {
+            return uses.size() == 1;
+        }
+
+        @Override
+        public boolean enterFunctionNode(final FunctionNode functionNode) {
+            if (functionNode.hasEval()) {
+                canDiscard = false;
+                return false;
+            }
+            enterFunction(functionNode);
+            if (functionNode.isNamedFunctionExpression()) {
+                locals.peek().add(functionNode.getIdent().getName());
+            }
+            if (functionNode.isPreParsed()) {
+                // Its body was already discarded, use the names collected from it instead.
+                uses.peek().addAll(functionNode.getPreParsedUses());
+                leaveFunctionNode(functionNode);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Node leaveFunctionNode(final FunctionNode functionNode) {
+            final Set<String> nestedUses = uses.pop();
+            nestedUses.removeAll(locals.pop());
+            nestedUses.remove(THIS_NAME);
+            nestedUses.remove(ARGUMENTS_NAME);
+            uses.peek().addAll(nestedUses);
+            return functionNode;
+        }
+
+        @Override
+        public boolean enterWithNode(final WithNode withNode) {
+            canDiscard = false;
+            return false;
+        }
+
+        @Override
+        public boolean enterVarNode(final VarNode varNode) {
+            if (varNode.isBlockScoped()) {
+                // Redeclarations of block scoped variables are early errors detected during symbol assignment.
+                canDiscard = false;
+                return false;
+            }
+            locals.peek().add(varNode.getName().getName());
+            return true;
+        }
+
+        @Override
+        public boolean enterCatchNode(final CatchNode catchNode) {
+            if (isTopFunction()) {
+                catchParameters.add(catchNode.getException().getName());
+            }
+            return canDiscard;
+        }
+
+        @Override
+        public boolean enterIdentNode(final IdentNode identNode) {
+            if (!identNode.isPropertyName()) {
+                uses.peek().add(identNode.getName());
+            }
+            return false;
+        }
+
+        @Override
+        public boolean enterBinaryNode(final BinaryNode binaryNode) {
+            if (isTopFunction() && binaryNode.isTokenType(ASSIGN) && binaryNode.lhs() instanceof AccessNode) {
+                final AccessNode accessNode = (AccessNode) binaryNode.lhs();
+                final Expression base = accessNode.getBase();
+                if (base instanceof IdentNode && ((IdentNode) base).getName().equals(THIS_NAME)) {
+                    thisProperties.add(accessNode.getProperty());
+                }
+            }
+            return canDiscard;
+        }
+
+        @Override
+        protected boolean enterDefault(final Node node) {
+            return canDiscard;
+        }
+    }
+
     private boolean skipFunctionBody(final FunctionNode functionNode) {
         if (reparsedFunction == null) {
             // Not reparsing, so don't skip any function body.
@@ -26,20 +26,24 @@ package org.codelibs.sai.internal.runtime;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.InputStream;
 import java.util.zip.InflaterInputStream;
 
+import org.codelibs.sai.internal.ir.AstDecoder;
 import org.codelibs.sai.internal.ir.FunctionNode;
 
 /**
  * This static utility class performs deserialization of FunctionNode ASTs from a byte array.
- * The format is a standard Java serialization stream, deflated.
+ * The format is the compact binary encoding of {@link AstDecoder}, deflated.
  */
 final class AstDeserializer {
     static FunctionNode deserialize(final byte[] serializedAst) {
-        try {
-            return (FunctionNode) new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(serializedAst))).readObject();
-        } catch (final ClassNotFoundException | IOException e) {
+        if (!AstSerializer.isCompressed()) {
+            return AstDecoder.decode(serializedAst);
+        }
+        try (final InputStream in = new InflaterInputStream(new ByteArrayInputStream(serializedAst))) {
+            return AstDecoder.decode(in.readAllBytes());
+        } catch (final IOException e) {
             // This is internal, can't happen
             throw new AssertionError("Unexpected exception deserializing function", e);
         }
@@ -26,27 +26,31 @@ package org.codelibs.sai.internal.runtime;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
+import org.codelibs.sai.internal.ir.AstEncoder;
 import org.codelibs.sai.internal.ir.FunctionNode;
 import org.codelibs.sai.internal.runtime.options.Options;
 
 /**
  * This static utility class performs serialization of FunctionNode ASTs to a byte array.
- * The format is a standard Java serialization stream, deflated.
+ * The format is the compact binary encoding of {@link AstEncoder}, deflated.
  */
 final class AstSerializer {
     // Experimentally, we concluded that compression level 4 gives a good tradeoff between serialization speed
-    // and size.
+    // and size. Level 0 stores the encoded AST uncompressed.
     private static final int COMPRESSION_LEVEL = Options.getIntProperty("sai.serialize.compression", 4);
 
     static byte[] serialize(final FunctionNode fn) {
-        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] encoded = AstEncoder.encode(fn);
+        if (COMPRESSION_LEVEL == 0) {
+            return encoded;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length / 2);
         final Deflater deflater = new Deflater(COMPRESSION_LEVEL);
-        try (final ObjectOutputStream oout = new ObjectOutputStream(new DeflaterOutputStream(out, deflater))) {
-            oout.writeObject(fn);
+        try (final DeflaterOutputStream dout = new DeflaterOutputStream(out, deflater)) {
+            dout.write(encoded);
         } catch (final IOException e) {
             throw new AssertionError("Unexpected exception serializing function", e);
         } finally {
@@ -54,4 +58,8 @@ final class AstSerializer {
         }
         return out.toByteArray();
     }
+
+    static boolean isCompressed() {
+        return COMPRESSION_LEVEL != 0;
+    }
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.runtime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache for classes compiled from script sources, bounded by number of entries and optionally by
+ * an estimate of the bytecode each entry retains.
+ * <p>
+ * Lookups are served by a concurrent map and never block. Eviction follows a segmented LRU policy:
+ * new entries enter a probationary segment and are promoted to a protected segment when they are
+ * hit again, so a burst of one-off scripts (such as {@code eval} strings) can only displace other
+ * one-off scripts and not the working set. Recency updates on hits are best effort; if the policy
+ * lock is busy the update is skipped rather than waited for.
+ * <p>
+ * Entries are held strongly until evicted. Unlike soft references this keeps the cache from being
+ * cleared all at once under memory pressure, which would force every script to recompile at the
+ * same time.
+ */
+public final class ClassCache {
+    /** Share of the entry capacity reserved for entries that have been hit at least once. */
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final ConcurrentMap<Source, Node> map = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final int maxSize;
+    private final long maxWeight;
+    private final int maxProtected;
+
+    // policy state, guarded by lock
+    private final Node probation = new Node(null, null, 0L);
+    private final Node protectedSegment = new Node(null, null, 0L);
+    private int protectedSize;
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param maxSize maximum number of cached classes
+     * @param maxWeight maximum estimated bytecode size in bytes of all cached classes, or 0 for no limit
+     */
+    ClassCache(final int maxSize, final long maxWeight) {
+        assert maxSize > 0;
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.maxProtected = Math.max(1, (int) ((long) maxSize * PROTECTED_PERCENT / 100));
+        probation.prev = probation.next = probation;
+        protectedSegment.prev = protectedSegment.next = protectedSegment;
+    }
+
+    /**
+     * Look up the class compiled for a source.
+     *
+     * @param source the source
+     * @return the cached class, or null if not cached
+     */
+    Class<?> get(final Source source) {
+        final Node node = map.get(source);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                onHit(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.clazz;
+    }
+
+    /**
+     * Cache the class compiled for a source.
+     *
+     * @param source the source
+     * @param clazz the compiled class
+     * @param classWeight estimated number of bytes of bytecode retained by the class
+     */
+    void cache(final Source source, final Class<?> clazz, final long classWeight) {
+        if (maxWeight > 0 && classWeight > maxWeight) {
+            // would evict everything else and still not fit
+            return;
+        }
+
+        final Node node = new Node(source, clazz, classWeight);
+        lock.lock();
+        try {
+            final Node old = map.put(source, node);
+            if (old != null) {
+                unlink(old);
+                weight -= old.weight;
+            }
+            linkFirst(probation, node);
+            weight += classWeight;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of lookups that found a cached class.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that did not find a cached class.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of classes evicted to stay within the size and weight limits.
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of cached classes.
+     * @return current size
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Get the estimated bytecode size in bytes of all cached classes.
+     * @return current weight
+     */
+    public long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the maximum number of cached classes.
+     * @return maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the maximum estimated bytecode size of all cached classes.
+     * @return maximum weight in bytes, or 0 if not bounded by weight
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    private void onHit(final Node node) {
+        if (node.prev == null) {
+            // evicted or replaced concurrently
+            return;
+        }
+        unlink(node);
+        linkFirst(protectedSegment, node);
+        while (protectedSize > maxProtected) {
+            // demote the least recently used protected entry, giving it another chance in probation
+            final Node demoted = protectedSegment.prev;
+            unlink(demoted);
+            linkFirst(probation, demoted);
+        }
+    }
+
+    private void evict() {
+        while (map.size() > maxSize || (maxWeight > 0 && weight > maxWeight)) {
+            final Node victim = probation.prev != probation ? probation.prev : protectedSegment.prev;
+            if (victim == protectedSegment) {
+                break;
+            }
+            unlink(victim);
+            weight -= victim.weight;
+            map.remove(victim.source, victim);
+            evictions.increment();
+        }
+    }
+
+    private void linkFirst(final Node segment, final Node node) {
+        node.segment = segment;
+        node.prev = segment;
+        node.next = segment.next;
+        segment.next.prev = node;
+        segment.next = node;
+        if (segment == protectedSegment) {
+            protectedSize++;
+        }
+    }
+
+    private void unlink(final Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+        if (node.segment == protectedSegment) {
+            protectedSize--;
+        }
+        node.segment = null;
+    }
+
+    private static final class Node {
+        final Source source;
+        final Class<?> clazz;
+        final long weight;
+
+        // guarded by the cache lock
+        Node segment;
+        Node prev;
+        Node next;
+
+        Node(final Source source, final Class<?> clazz, final long weight) {
+            this.source = source;
+            this.clazz = clazz;
+            this.weight = weight;
+        }
+    }
+}
@@ -25,6 +25,7 @@
 
 package org.codelibs.sai.internal.runtime;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Map;
 
@@ -56,6 +57,14 @@ public interface CodeInstaller {
      */
     public Class<?> install(final String className, final byte[] bytecode);
 
+    /**
+     * Install a class from a buffer, without copying the bytecode to the heap first.
+     * @param className name of the class with / separation
+     * @param bytecode  bytecode, from the buffer's position to its limit
+     * @return the installed class
+     */
+    public Class<?> install(final String className, final ByteBuffer bytecode);
+
     /**
      * Initialize already installed classes.
      * @param classes the class to initialize
@@ -99,10 +99,13 @@ public abstract class CodeStore implements Loggable {
             if (iterator.hasNext()) {
                 final CodeStore store = iterator.next();
                 store.initLogger(context).info("using code store provider ", store.getClass().getCanonicalName());
+                store.initialize(context);
                 return store;
             }
         } catch (final AccessControlException e) {
             context.getLogger(CodeStore.class).warning("failed to load code store provider ", e);
+        } catch (final IOException e) {
+            context.getLogger(CodeStore.class).warning("failed to initialize code store provider ", e);
         }
         try {
             final CodeStore store = new DirectoryCodeStore(context);
@@ -114,6 +117,27 @@ public abstract class CodeStore implements Loggable {
         }
     }
 
+    /**
+     * Prepare a code store instantiated through {@link ServiceLoader} for use by a context.
+     * The default implementation does nothing.
+     *
+     * @param context the context using this code store
+     * @throws IOException if the code store could not be opened
+     */
+    protected void initialize(final Context context) throws IOException {
+        // nothing to do by default
+    }
+
+    /**
+     * Release the resources held by this code store. Called once the context using it is no longer
+     * reachable. The default implementation does nothing.
+     *
+     * @throws IOException if the code store could not be closed
+     */
+    public void close() throws IOException {
+        // nothing to do by default
+    }
+
     /**
      * Store a compiled script in the cache.
      *
@@ -231,7 +255,7 @@ public abstract class CodeStore implements Loggable {
         }
 
         @SuppressWarnings("removal")
-        private static File checkDirectory(final String path, final ScriptEnvironment env, final boolean readOnly) throws IOException {
+        static File checkDirectory(final String path, final ScriptEnvironment env, final boolean readOnly) throws IOException {
             try {
                 return AccessController.doPrivileged(new PrivilegedExceptionAction<File>() {
                     @Override
@@ -258,7 +282,7 @@ public abstract class CodeStore implements Loggable {
             }
         }
 
-        private static String getVersionDir(final ScriptEnvironment env) throws IOException {
+        static String getVersionDir(final ScriptEnvironment env) throws IOException {
             try {
                 final String versionDir = OptimisticTypesPersistence.getVersionDirName();
                 return env._optimistic_types ? versionDir + "_opt" : versionDir;
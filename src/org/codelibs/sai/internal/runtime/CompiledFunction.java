@@ -34,6 +34,7 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.MutableCallSite;
 import java.lang.invoke.SwitchPoint;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -41,6 +42,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 
@@ -51,10 +58,12 @@ import org.codelibs.sai.internal.codegen.types.ArrayType;
 import org.codelibs.sai.internal.codegen.types.Type;
 import org.codelibs.sai.internal.dynalink.linker.GuardedInvocation;
 import org.codelibs.sai.internal.ir.FunctionNode;
+import org.codelibs.sai.internal.objects.Global;
 import org.codelibs.sai.internal.objects.annotations.SpecializedFunction.LinkLogic;
 import org.codelibs.sai.internal.runtime.events.RecompilationEvent;
 import org.codelibs.sai.internal.runtime.linker.Bootstrap;
 import org.codelibs.sai.internal.runtime.logging.DebugLogger;
+import org.codelibs.sai.internal.runtime.options.Options;
 
 /**
  * An version of a JavaScript function, native or JavaScript.
@@ -69,6 +78,13 @@ final class CompiledFunction {
             CompiledFunction.class, OptimismInfo.class, RewriteException.class);
     private static final MethodHandle RESTOF_INVOKER = MethodHandles.exactInvoker(MethodType.methodType(Object.class,
             RewriteException.class));
+    private static final MethodHandle COUNT_INVOCATION = findOwnMH("countInvocation", void.class, CompiledFunction.class);
+
+    /** Number of invocations after which baseline code of a tiered function is recompiled with optimistic types. */
+    private static final int TIERED_THRESHOLD = Math.max(1, Options.getIntProperty("sai.tiered.threshold", 1000));
+
+    /** Executor service for background optimistic recompilation of tiered functions. */
+    private static final ExecutorService tieredExecutorService = createTieredExecutorService();
 
     private final DebugLogger log;
 
@@ -83,6 +99,7 @@ final class CompiledFunction {
     private MethodHandle invoker;
     private MethodHandle constructor;
     private OptimismInfo optimismInfo;
+    private TieredInfo tieredInfo;
     private final int flags; // from FunctionNode
     private final MethodType callSiteType;
 
@@ -563,12 +580,107 @@ final class CompiledFunction {
         return optimismInfo != null;
     }
 
+    /**
+     * Marks this function as baseline code of a tiered function. Its invocations are counted, and once the function
+     * gets hot, it is recompiled with optimistic types in the background and the new code replaces the baseline code.
+     * @param data the function data
+     * @param actualCallSiteType the call site type the baseline code was compiled for
+     * @param runtimeScope the runtime scope of the baseline compilation
+     */
+    synchronized void startTieredCompilation(final RecompilableScriptFunctionData data, final MethodType actualCallSiteType,
+            final ScriptObject runtimeScope) {
+        assert !canBeDeoptimized();
+        tieredInfo = new TieredInfo(data, actualCallSiteType, runtimeScope, Context.getGlobal());
+    }
+
+    @SuppressWarnings("unused")
+    private static void countInvocation(final CompiledFunction function) {
+        // The count is deliberately unsynchronized, a lost update only delays the recompilation. Threads passing the
+        // threshold concurrently are kept from scheduling the recompilation more than once by the scheduled flag.
+        final TieredInfo info = function.tieredInfo;
+        if (info != null && ++info.invocations >= TIERED_THRESHOLD && info.scheduled.compareAndSet(false, true)) {
+            function.scheduleTierUp(info);
+        }
+    }
+
+    private void scheduleTierUp(final TieredInfo info) {
+        log.info("Scheduling optimistic recompilation of '", info.data.getName(), "' (", Debug.id(this), ")");
+        tieredExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                tierUp(info);
+            }
+        });
+    }
+
+    private void tierUp(final TieredInfo info) {
+        FunctionInitializer fnInit = null;
+        MethodHandle newInvoker = null;
+        final Global global = info.global.get();
+        if (global != null) {
+            Context.setCompilerThreadGlobal(global);
+            try {
+                fnInit = info.data.compileOptimisticSpecialization(info.callSiteType, info.getRuntimeScope());
+                newInvoker = info.data.lookupForCallSite(fnInit, info.callSiteType);
+            } catch (final RuntimeException | StackOverflowError e) {
+                // Keep running the baseline code.
+                log.warning("Optimistic recompilation of '", info.data.getName(), "' failed: ", e);
+            } finally {
+                Context.setCompilerThreadGlobal(null);
+            }
+        }
+
+        synchronized (this) {
+            if (newInvoker != null) {
+                invoker = newInvoker.asType(type().changeReturnType(newInvoker.type().returnType()));
+                constructor = null; // Will be regenerated when needed
+                if ((fnInit.getFlags() & FunctionNode.IS_DEOPTIMIZABLE) != 0) {
+                    optimismInfo = new OptimismInfo(info.data, fnInit.getInvalidatedProgramPoints());
+                }
+                EngineMetrics.tierUp();
+                log.info("Replaced baseline code of '", info.data.getName(), "' (", Debug.id(this), ") with ", invoker);
+            }
+            // Only adjust the switch point after the invoker was set, so that relinked call sites pick up the new code.
+            tieredInfo = null;
+            SwitchPoint.invalidateAll(new SwitchPoint[] { info.baselineAssumptions });
+            notifyAll();
+        }
+    }
+
+    private static ExecutorService createTieredExecutorService() {
+        final int threads = Math.max(1, Options.getIntProperty("sai.tiered.threads", Runtime.getRuntime().availableProcessors() / 2));
+        final ThreadPoolExecutor service =
+                new ThreadPoolExecutor(threads, threads, 1L, TimeUnit.MINUTES, new LinkedBlockingDeque<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "Sai Tiered Compiler");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    }
+                });
+        service.allowCoreThreadTimeOut(true);
+        return service;
+    }
+
+    /**
+     * Returns the switch point guarding the current code of this function: the optimistic assumptions if it can be
+     * deoptimized, the baseline assumptions if it is baseline code awaiting optimistic recompilation, or null if its
+     * code will never change.
+     */
+    private SwitchPoint getAssumptions() {
+        if (canBeDeoptimized()) {
+            return optimismInfo.optimisticAssumptions;
+        }
+        return tieredInfo != null ? tieredInfo.baselineAssumptions : null;
+    }
+
     private MethodHandle createComposableInvoker(final boolean isConstructor) {
         final MethodHandle handle = getInvokerOrConstructor(isConstructor);
 
         // If compiled function is not optimistic, it can't ever change its invoker/constructor, so just return them
         // directly.
-        if (!canBeDeoptimized()) {
+        if (!canBeDeoptimized() && tieredInfo == null) {
             return handle;
         }
 
@@ -611,7 +723,7 @@ final class CompiledFunction {
     private synchronized HandleAndAssumptions getValidOptimisticInvocation(final Supplier<MethodHandle> invocationSupplier) {
         for (;;) {
             final MethodHandle handle = invocationSupplier.get();
-            final SwitchPoint assumptions = canBeDeoptimized() ? optimismInfo.optimisticAssumptions : null;
+            final SwitchPoint assumptions = getAssumptions();
             if (assumptions != null && assumptions.hasBeenInvalidated()) {
                 // We can be in a situation where one thread is in the middle of a deoptimizing compilation when we hit
                 // this and thus, it has invalidated the old switch point, but hasn't created the new one yet. Note that
@@ -713,6 +825,9 @@ final class CompiledFunction {
             final MethodHandle typedHandleRewriteException = changeReturnType(handleRewriteException, inv.type().returnType());
             return MH.catchException(inv, RewriteException.class, typedHandleRewriteException);
         }
+        if (tieredInfo != null) {
+            return MH.foldArguments(inv, MH.insertArguments(COUNT_INVOCATION, 0, this));
+        }
         return inv;
     }
 
@@ -814,6 +929,7 @@ final class CompiledFunction {
         // Effective optimism info, for subsequent use. We'll normally try to use the current (latest) one, but if it
         // isn't available, we'll use the old one bound into the call site.
         final OptimismInfo effectiveOptInfo = currentOptInfo != null ? currentOptInfo : oldOptInfo;
+        EngineMetrics.deoptimization(effectiveOptInfo.data.getName(), re);
         FunctionNode fn = effectiveOptInfo.reparse();
         final boolean cached = fn.isCached();
         final Compiler compiler = effectiveOptInfo.getCompiler(fn, ct, re); //set to non rest-of
@@ -954,6 +1070,30 @@ final class CompiledFunction {
         }
     }
 
+    private static class TieredInfo {
+        private final RecompilableScriptFunctionData data;
+        private final MethodType callSiteType;
+        // The scope and global are only weakly held, as functions that never get hot keep their tiered info
+        private final WeakReference<ScriptObject> runtimeScope;
+        private final WeakReference<Global> global;
+        private final SwitchPoint baselineAssumptions = new SwitchPoint();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private int invocations;
+
+        TieredInfo(final RecompilableScriptFunctionData data, final MethodType callSiteType, final ScriptObject runtimeScope,
+                final Global global) {
+            this.data = data;
+            this.callSiteType = callSiteType;
+            this.runtimeScope = runtimeScope == null ? null : new WeakReference<>(runtimeScope);
+            this.global = new WeakReference<>(global);
+        }
+
+        ScriptObject getRuntimeScope() {
+            // the optimistic code is compiled without type information from the scope if it is gone
+            return runtimeScope == null ? null : runtimeScope.get();
+        }
+    }
+
     @SuppressWarnings("unused")
     private static Object newFilter(final Object result, final Object allocation) {
         return (result instanceof ScriptObject || !JSType.isPrimitive(result)) ? result : allocation;
@@ -37,18 +37,18 @@ import static org.codelibs.sai.internal.runtime.Source.sourceFor;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.ref.Cleaner;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.SwitchPoint;
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.CodeSigner;
@@ -60,9 +60,12 @@ import java.security.PrivilegedExceptionAction;
 import java.security.ProtectionDomain;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -202,6 +205,14 @@ public final class Context {
             return loader.installClass(binaryName, bytecode, codeSource);
         }
 
+        @Override
+        public Class<?> install(final String className, final ByteBuffer bytecode) {
+            usageCount++;
+            bytesDefined += bytecode.remaining();
+            final String binaryName = Compiler.binaryName(className);
+            return loader.installClass(binaryName, bytecode, codeSource);
+        }
+
         @Override
         @SuppressWarnings("removal")
         public void initialize(final Collection<Class<?>> classes, final Source source, final Object[] constants) {
@@ -248,10 +259,7 @@ public final class Context {
 
         @Override
         public StoredScript loadScript(final Source source, final String functionKey) {
-            if (context.codeStore != null) {
-                return context.codeStore.load(source, functionKey);
-            }
-            return null;
+            return context.loadStoredScript(source, functionKey);
         }
 
         @Override
@@ -276,14 +284,29 @@ public final class Context {
     /** Is Context global debug mode enabled ? */
     public static final boolean DEBUG = Options.getBooleanProperty("sai.debug");
 
+    /** Should nested function bodies be discarded after the initial parse of a lazily compiled script? */
+    private static final boolean PRE_PARSE = Options.getBooleanProperty("sai.parser.preparse", true);
+
     private static final ThreadLocal<Global> currentGlobal = new ThreadLocal<>();
 
     // in-memory cache for loaded classes
-    private ClassCache classCache;
+    private final ClassCache classCache;
+
+    // function data and property maps of builtin objects shared by all globals of this context
+    private final SharedBuiltins sharedBuiltins = new SharedBuiltins();
+
+    // property lookup cache for megamorphic call sites
+    private final MegamorphicCache megamorphicCache = new MegamorphicCache();
+
+    // compilations currently in progress, keyed by source
+    private final ConcurrentMap<Source, CompletableFuture<Class<?>>> pendingCompiles = new ConcurrentHashMap<>();
 
     // persistent code store
     private CodeStore codeStore;
 
+    // read only code snapshot, consulted before the code store
+    private MappedCodeStore codeSnapshot;
+
     // A factory for linking global properties as constant method handles. It is created when the first Global
     // is created, and invalidated forever once the second global is created.
     private final AtomicReference<GlobalConstants> globalConstantsRef = new AtomicReference<>();
@@ -323,10 +346,31 @@ public final class Context {
             if (globalConstants != null) {
                 globalConstants.invalidateAll();
             }
+            ScriptThreads.register();
         }
         currentGlobal.set(global);
     }
 
+    /**
+     * Set the current global scope of a background compiler thread. Unlike {@link #setGlobal(Global)} this does
+     * not invalidate the global constants, as no script code is run on the thread.
+     * @param global the global scope, or null to clear it
+     */
+    static void setCompilerThreadGlobal(final Global global) {
+        currentGlobal.set(global);
+    }
+
+    /**
+     * Checks if nested function bodies should be pre-parsed. Bodies are only parsed again on demand with lazy
+     * compilation, and must be kept if the AST is printed.
+     * @param env the script environment
+     * @return true if the parser should pre-parse nested functions.
+     */
+    static boolean preParseFunctions(final ScriptEnvironment env) {
+        return PRE_PARSE && env._lazy_compilation && !env._parse_only && !env._print_ast && !env._print_parse && !env._print_lower_ast
+                && !env._print_lower_parse;
+    }
+
     /**
      * Get context of the current global
      * @return current global scope's context.
@@ -437,6 +481,33 @@ public final class Context {
         return theStructLoader;
     }
 
+    /**
+     * Closes a code store once the context using it is no longer reachable.
+     */
+    private static final class CodeStoreCloser implements Runnable {
+        // created on first use, most contexts have no code store
+        private static final Cleaner CLEANER = Cleaner.create();
+
+        private final CodeStore store;
+
+        private CodeStoreCloser(final CodeStore store) {
+            this.store = store;
+        }
+
+        static void register(final Context context, final CodeStore store) {
+            CLEANER.register(context, new CodeStoreCloser(store));
+        }
+
+        @Override
+        public void run() {
+            try {
+                store.close();
+            } catch (final IOException e) {
+                store.getLogger().warning("failed to close code store ", e);
+            }
+        }
+    }
+
     /**
      * ThrowErrorManager that throws ParserException upon error conditions.
      */
@@ -534,11 +605,25 @@ public final class Context {
 
         final int cacheSize = env._class_cache_size;
         if (cacheSize > 0) {
-            classCache = new ClassCache(cacheSize);
+            classCache = new ClassCache(cacheSize, env._class_cache_weight);
+        } else {
+            classCache = null;
         }
 
         if (env._persistent_cache) {
             codeStore = newCodeStore(this);
+            if (codeStore != null) {
+                CodeStoreCloser.register(this, codeStore);
+            }
+        }
+
+        if (env._code_snapshot != null) {
+            try {
+                codeSnapshot = MappedCodeStore.openSnapshot(this, new File(env._code_snapshot), false);
+                CodeStoreCloser.register(this, codeSnapshot);
+            } catch (final IOException e) {
+                getLogger(CodeStore.class).warning("failed to open code snapshot ", env._code_snapshot, ": ", e);
+            }
         }
 
         // print version info if asked.
@@ -670,6 +755,40 @@ public final class Context {
         };
     }
 
+    /**
+     * Compile scripts ahead of time into a code snapshot that can later be loaded with the
+     * {@code --code-snapshot} option. Scripts are compiled but not run. Compile errors are
+     * reported to this context's error manager. This context must not compile other scripts
+     * while the snapshot is being written.
+     *
+     * @param file    the snapshot file to write, any existing file is replaced
+     * @param sources the scripts to compile
+     * @return true if all scripts compiled without errors, false otherwise
+     * @throws IOException if the snapshot file can not be written
+     */
+    public boolean compileSnapshot(final File file, final List<Source> sources) throws IOException {
+        final MappedCodeStore snapshot = MappedCodeStore.openSnapshot(this, file, true);
+        final CodeStore oldCodeStore = codeStore;
+        final Global oldGlobal = getGlobal();
+        boolean success = true;
+        codeStore = snapshot;
+        setGlobal(createGlobal());
+        try {
+            for (final Source source : sources) {
+                // bypass the class cache, which would skip storing a script compiled before
+                errors.reset();
+                if (compileSource(source, errors, this._strict) == null || errors.hasErrors()) {
+                    success = false;
+                }
+            }
+        } finally {
+            setGlobal(oldGlobal);
+            codeStore = oldCodeStore;
+            snapshot.close();
+        }
+        return success;
+    }
+
     /**
      * Entry point for {@code eval}
      *
@@ -1159,6 +1278,7 @@ public final class Context {
     public Global initGlobal(final Global global, final ScriptEngine engine) {
         // Need only minimal global object, if we are just compiling.
         if (!env._compile_only) {
+            final long start = System.nanoTime();
             final Global oldGlobal = Context.getGlobal();
             try {
                 Context.setGlobal(global);
@@ -1167,6 +1287,7 @@ public final class Context {
             } finally {
                 Context.setGlobal(oldGlobal);
             }
+            EngineMetrics.globalCreation(System.nanoTime() - start);
         }
 
         return global;
@@ -1267,29 +1388,60 @@ public final class Context {
         return getProgramFunction(compile(source, errMan, this._strict), scope);
     }
 
-    private synchronized Class<?> compile(final Source source, final ErrorManager errMan, final boolean strict) {
+    private Class<?> compile(final Source source, final ErrorManager errMan, final boolean strict) {
         // start with no errors, no warnings.
         errMan.reset();
 
-        Class<?> script = findCachedClass(source);
-        if (script != null) {
-            final DebugLogger log = getLogger(Compiler.class);
-            if (log.isEnabled()) {
-                log.fine(new RuntimeEvent<>(Level.INFO, source), "Code cache hit for ", source, " avoiding recompile.");
+        final Class<?> cached = findCachedClass(source);
+        if (cached != null) {
+            logCacheHit(source);
+            return cached;
+        }
+
+        // Compilations of different sources run concurrently. Concurrent compilations of the same
+        // source are collapsed into one: the first thread compiles, the others wait for its result.
+        final CompletableFuture<Class<?>> pending = new CompletableFuture<>();
+        final CompletableFuture<Class<?>> inFlight = pendingCompiles.putIfAbsent(source, pending);
+        if (inFlight != null) {
+            final Class<?> shared = inFlight.join();
+            if (shared != null) {
+                logCacheHit(source);
+                return shared;
             }
+            // The other compilation failed. Compile again so that errors are reported to our own error manager.
+            return compileSource(source, errMan, strict);
+        }
+
+        Class<?> script = null;
+        try {
+            script = compileSource(source, errMan, strict);
             return script;
+        } finally {
+            pendingCompiles.remove(source, pending);
+            pending.complete(script);
+        }
+    }
+
+    private void logCacheHit(final Source source) {
+        final DebugLogger log = getLogger(Compiler.class);
+        if (log.isEnabled()) {
+            log.fine(new RuntimeEvent<>(Level.INFO, source), "Code cache hit for ", source, " avoiding recompile.");
         }
+    }
 
+    private Class<?> compileSource(final Source source, final ErrorManager errMan, final boolean strict) {
+        Class<?> script;
         StoredScript storedScript = null;
         FunctionNode functionNode = null;
         // Don't use code store if optimistic types is enabled but lazy compilation is not.
         // This would store a full script compilation with many wrong optimistic assumptions that would
         // do more harm than good on later runs with both optimistic types and lazy compilation enabled.
-        final boolean useCodeStore = codeStore != null && !env._parse_only && (!env._optimistic_types || env._lazy_compilation);
+        final boolean useCodeStore = (codeStore != null || codeSnapshot != null) && !env._parse_only
+                && (!env._optimistic_types || env._lazy_compilation);
         final String cacheKey = useCodeStore ? CodeStore.getCacheKey("script", null) : null;
 
         if (useCodeStore) {
-            storedScript = codeStore.load(source, cacheKey);
+            storedScript = loadStoredScript(source, cacheKey);
         }
 
         if (storedScript == null) {
@@ -1297,7 +1449,9 @@ public final class Context {
                 source.dump(env._dest_dir);
             }
 
-            functionNode = new Parser(env, source, errMan, strict, getLogger(Parser.class)).parse();
+            final Parser parser = new Parser(env, source, errMan, strict, getLogger(Parser.class));
+            parser.setPreParseFunctions(preParseFunctions(env));
+            functionNode = parser.parse();
 
             if (errMan.hasErrors()) {
                 return null;
@@ -1319,7 +1473,7 @@ public final class Context {
         final URL url = source.getURL();
         final ScriptLoader loader = env._loader_per_compile ? createNewLoader() : scriptLoader;
         final CodeSource cs = new CodeSource(url, (CodeSigner[]) null);
-        final CodeInstaller installer = new ContextCodeInstaller(this, loader, cs);
+        final ContextCodeInstaller installer = new ContextCodeInstaller(this, loader, cs);
 
         if (storedScript == null) {
             final CompilationPhases phases = Compiler.CompilationPhases.COMPILE_ALL;
@@ -1331,16 +1485,30 @@ public final class Context {
                 return null;
             }
             script = compiledFunction.getRootClass();
-            compiler.persistClassInfo(cacheKey, compiledFunction);
+            compiler.persistClassInfo(codeStore != null ? cacheKey : null, compiledFunction);
         } else {
             Compiler.updateCompilationId(storedScript.getCompilationId());
             script = storedScript.installScript(source, installer);
         }
 
-        cacheClass(source, script);
+        cacheClass(source, script, installer.bytesDefined);
         return script;
     }
 
+    private StoredScript loadStoredScript(final Source source, final String functionKey) {
+        StoredScript storedScript = null;
+        if (codeSnapshot != null) {
+            storedScript = codeSnapshot.load(source, functionKey);
+        }
+        if (storedScript == null && codeStore != null) {
+            storedScript = codeStore.load(source, functionKey);
+        }
+        if (codeSnapshot != null || codeStore != null) {
+            EngineMetrics.codeStoreLookup(storedScript != null);
+        }
+        return storedScript;
+    }
+
     @SuppressWarnings("removal")
     private ScriptLoader createNewLoader() {
         return AccessController.doPrivileged(new PrivilegedAction<ScriptLoader>() {
@@ -1355,62 +1523,51 @@ public final class Context {
         return uniqueScriptId.getAndIncrement();
     }
 
-    /**
-     * Cache for compiled script classes.
-     */
-    @SuppressWarnings("serial")
-    private static class ClassCache extends LinkedHashMap<Source, ClassReference> {
-        private final int size;
-        private final ReferenceQueue<Class<?>> queue;
-
-        ClassCache(final int size) {
-            super(size, 0.75f, true);
-            this.size = size;
-            this.queue = new ReferenceQueue<>();
-        }
-
-        void cache(final Source source, final Class<?> clazz) {
-            put(source, new ClassReference(clazz, queue, source));
-        }
-
-        @Override
-        protected boolean removeEldestEntry(final Map.Entry<Source, ClassReference> eldest) {
-            return size() > size;
+    // Class cache management
+    private Class<?> findCachedClass(final Source source) {
+        if (classCache == null) {
+            return null;
         }
+        final Class<?> clazz = classCache.get(source);
+        EngineMetrics.classCacheLookup(clazz != null);
+        return clazz;
+    }
 
-        @Override
-        public ClassReference get(final Object key) {
-            for (ClassReference ref; (ref = (ClassReference) queue.poll()) != null;) {
-                remove(ref.source);
-            }
-            return super.get(key);
+    private void cacheClass(final Source source, final Class<?> clazz, final long weight) {
+        if (classCache != null) {
+            classCache.cache(source, clazz, weight);
         }
-
     }
 
-    private static class ClassReference extends SoftReference<Class<?>> {
-        private final Source source;
-
-        ClassReference(final Class<?> clazz, final ReferenceQueue<Class<?>> queue, final Source source) {
-            super(clazz, queue);
-            this.source = source;
-        }
+    /**
+     * Get the cache of classes compiled from script sources by this context.
+     *
+     * @return the class cache, or null if class caching is disabled
+     */
+    public ClassCache getClassCache() {
+        return classCache;
     }
 
-    // Class cache management
-    private Class<?> findCachedClass(final Source source) {
-        final ClassReference ref = classCache == null ? null : classCache.get(source);
-        return ref != null ? ref.get() : null;
+    /**
+     * Get the property lookup cache used by megamorphic call sites of this context.
+     *
+     * @return the megamorphic lookup cache
+     */
+    public MegamorphicCache getMegamorphicCache() {
+        return megamorphicCache;
     }
 
-    private void cacheClass(final Source source, final Class<?> clazz) {
-        if (classCache != null) {
-            classCache.cache(source, clazz);
-        }
+    /**
+     * Get the function data and property maps of builtin objects shared by all globals of this context.
+     *
+     * @return the shared builtins
+     */
+    public SharedBuiltins getSharedBuiltins() {
+        return sharedBuiltins;
     }
 
     // logging
-    private final Map<String, DebugLogger> loggers = new HashMap<>();
+    private final Map<String, DebugLogger> loggers = new ConcurrentHashMap<>();
 
     private void initLoggers() {
         ((Loggable) MethodHandleFactory.getFunctionality()).initLogger(this);
@@ -1439,11 +1596,14 @@ public final class Context {
                 return DebugLogger.DISABLED_LOGGER;
             }
             final LoggerInfo info = env._loggers.get(name);
-            logger = new DebugLogger(name, info.getLevel(), info.isQuiet());
-            if (initHook != null) {
-                initHook.accept(logger);
+            final DebugLogger newLogger = new DebugLogger(name, info.getLevel(), info.isQuiet());
+            logger = loggers.putIfAbsent(name, newLogger);
+            if (logger == null) {
+                logger = newLogger;
+                if (initHook != null) {
+                    initHook.accept(logger);
+                }
             }
-            loggers.put(name, logger);
         }
         return logger;
     }
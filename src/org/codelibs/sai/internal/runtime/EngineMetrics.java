@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.codelibs.sai.api.scripting.EngineMetricsMXBean;
+import org.codelibs.sai.internal.runtime.events.EngineEvents;
+import org.codelibs.sai.internal.runtime.options.Options;
+
+/**
+ * Engine wide counters for compilation, linking, deoptimization, caching and
+ * global creation. Unlike {@link Timing} and the debug loggers these are always
+ * collected, so that a running application can be inspected over JMX or with
+ * JDK Flight Recorder without restarting it with diagnostic options. All
+ * counters are {@link LongAdder}s, so recording is cheap and never contends.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+    private static final EngineMetrics INSTANCE = new EngineMetrics();
+
+    /** Should the metrics be registered with the platform MBean server? */
+    private static final boolean JMX_ENABLED = Options.getBooleanProperty("sai.metrics.jmx", true);
+
+    /** Maximum number of call sites whose relink counts are tracked individually. */
+    private static final int MAX_TRACKED_CALL_SITES = Options.getIntProperty("sai.metrics.callsites", 256);
+
+    /** Number of relinks after which a call site is tracked individually. */
+    public static final int CALL_SITE_TRACKING_THRESHOLD = 4;
+
+    /**
+     * Flight recorder events are only emitted if the jdk.jfr module is present. They are
+     * also only created once the recorder is initialized, as loading event classes
+     * initializes the recorder metadata, which is costly at startup.
+     */
+    private static final boolean JFR_AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private static final AtomicBoolean registered = new AtomicBoolean();
+
+    private static final Function<String, LongAdder> NEW_ADDER = new Function<String, LongAdder>() {
+        @Override
+        public LongAdder apply(final String s) {
+            return new LongAdder();
+        }
+    };
+
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder compilationTime = new LongAdder();
+    private final Map<String, LongAdder> phaseTimes = new ConcurrentHashMap<>();
+    private final LongAdder relinks = new LongAdder();
+    private final Map<String, Long> callSiteRelinks = new ConcurrentHashMap<>();
+    private final LongAdder megamorphicTransitions = new LongAdder();
+    private final LongAdder deoptimizations = new LongAdder();
+    private final LongAdder tierUps = new LongAdder();
+    private final LongAdder classCacheHits = new LongAdder();
+    private final LongAdder classCacheMisses = new LongAdder();
+    private final LongAdder codeStoreHits = new LongAdder();
+    private final LongAdder codeStoreMisses = new LongAdder();
+    private final LongAdder globals = new LongAdder();
+    private final LongAdder globalCreationTime = new LongAdder();
+
+    private EngineMetrics() {
+    }
+
+    /**
+     * Get the engine metrics instance
+     * @return engine metrics
+     */
+    public static EngineMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register the engine metrics with the platform MBean server. Only the first
+     * invocation has an effect. Failures are ignored, as metrics are a diagnostic
+     * aid and must not prevent the engine from running. This is done for script
+     * engines only, as creating the platform MBean server would noticeably slow
+     * down the startup of the shell.
+     */
+    @SuppressWarnings("removal")
+    public static void register() {
+        if (!JMX_ENABLED || !registered.compareAndSet(false, true)) {
+            return;
+        }
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            @Override
+            public Void run() {
+                try {
+                    final ObjectName name = new ObjectName(OBJECT_NAME);
+                    if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                        ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+                    }
+                } catch (final JMException | SecurityException e) {
+                    // metrics are not available over JMX then
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Record a finished compile job
+     * @param function name of the compiled function
+     * @param phases   description of the compilation phases run
+     * @param duration compilation time in nanoseconds
+     */
+    public static void compilation(final String function, final String phases, final long duration) {
+        INSTANCE.compilations.increment();
+        INSTANCE.compilationTime.add(duration);
+        if (JFR_AVAILABLE && EngineEvents.isRecorderInitialized()) {
+            EngineEvents.compilation(function, phases, duration);
+        }
+    }
+
+    /**
+     * Record the time spent in a compilation phase
+     * @param phase    phase name
+     * @param duration time in nanoseconds
+     */
+    static void phase(final String phase, final long duration) {
+        LongAdder time = INSTANCE.phaseTimes.get(phase);
+        if (time == null) {
+            time = INSTANCE.phaseTimes.computeIfAbsent(phase, NEW_ADDER);
+        }
+        time.add(duration);
+    }
+
+    /**
+     * Record a call site relink
+     * @param callSite    description and location of the call site, or null if it isn't tracked individually
+     * @param relinkCount number of times the call site relinked so far
+     */
+    public static void relink(final String callSite, final int relinkCount) {
+        INSTANCE.relinks.increment();
+        if (callSite != null) {
+            final Map<String, Long> sites = INSTANCE.callSiteRelinks;
+            if (sites.size() < MAX_TRACKED_CALL_SITES || sites.containsKey(callSite)) {
+                sites.put(callSite, (long) relinkCount);
+            }
+            if (JFR_AVAILABLE && EngineEvents.isRecorderInitialized()) {
+                EngineEvents.relink(callSite, relinkCount);
+            }
+        }
+    }
+
+    /**
+     * Record a call site that became megamorphic
+     * @param callSite description and location of the call site
+     */
+    public static void megamorphic(final String callSite) {
+        INSTANCE.megamorphicTransitions.increment();
+        if (JFR_AVAILABLE && EngineEvents.isRecorderInitialized()) {
+            EngineEvents.megamorphic(callSite);
+        }
+    }
+
+    /**
+     * Record a deoptimization
+     * @param function name of the deoptimized function
+     * @param re       rewrite exception raised by the failed assumption
+     */
+    static void deoptimization(final String function, final RewriteException re) {
+        INSTANCE.deoptimizations.increment();
+        if (JFR_AVAILABLE && EngineEvents.isRecorderInitialized()) {
+            EngineEvents.deoptimization(function, re.getProgramPoint(), re.getReturnType().toString());
+        }
+    }
+
+    /**
+     * Record the replacement of baseline code by optimistic code
+     */
+    static void tierUp() {
+        INSTANCE.tierUps.increment();
+    }
+
+    /**
+     * Record a class cache lookup
+     * @param hit true if the class was found in the cache
+     */
+    static void classCacheLookup(final boolean hit) {
+        (hit ? INSTANCE.classCacheHits : INSTANCE.classCacheMisses).increment();
+    }
+
+    /**
+     * Record a code store lookup
+     * @param hit true if the code was loaded from the store
+     */
+    static void codeStoreLookup(final boolean hit) {
+        (hit ? INSTANCE.codeStoreHits : INSTANCE.codeStoreMisses).increment();
+    }
+
+    /**
+     * Record the initialization of a global object
+     * @param duration initialization time in nanoseconds
+     */
+    static void globalCreation(final long duration) {
+        INSTANCE.globals.increment();
+        INSTANCE.globalCreationTime.add(duration);
+        if (JFR_AVAILABLE && EngineEvents.isRecorderInitialized()) {
+            EngineEvents.globalCreation(duration);
+        }
+    }
+
+    @Override
+    public long getCompilationCount() {
+        return compilations.sum();
+    }
+
+    @Override
+    public long getCompilationTimeNanos() {
+        return compilationTime.sum();
+    }
+
+    @Override
+    public Map<String, Long> getPhaseTimeNanos() {
+        final Map<String, Long> times = new TreeMap<>();
+        for (final Map.Entry<String, LongAdder> entry : phaseTimes.entrySet()) {
+            times.put(entry.getKey(), entry.getValue().sum());
+        }
+        return times;
+    }
+
+    @Override
+    public long getRelinkCount() {
+        return relinks.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCallSiteRelinkCounts() {
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(callSiteRelinks.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(final Map.Entry<String, Long> o1, final Map.Entry<String, Long> o2) {
+                return Long.compare(o2.getValue(), o1.getValue());
+            }
+        });
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        for (final Map.Entry<String, Long> entry : entries) {
+            counts.put(entry.getKey(), entry.getValue());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getMegamorphicTransitionCount() {
+        return megamorphicTransitions.sum();
+    }
+
+    @Override
+    public long getDeoptimizationCount() {
+        return deoptimizations.sum();
+    }
+
+    @Override
+    public long getTierUpCount() {
+        return tierUps.sum();
+    }
+
+    @Override
+    public long getClassCacheHitCount() {
+        return classCacheHits.sum();
+    }
+
+    @Override
+    public long getClassCacheMissCount() {
+        return classCacheMisses.sum();
+    }
+
+    @Override
+    public long getCodeStoreHitCount() {
+        return codeStoreHits.sum();
+    }
+
+    @Override
+    public long getCodeStoreMissCount() {
+        return codeStoreMisses.sum();
+    }
+
+    @Override
+    public long getGlobalCount() {
+        return globals.sum();
+    }
+
+    @Override
+    public long getGlobalCreationTimeNanos() {
+        return globalCreationTime.sum();
+    }
+
+    @Override
+    public void reset() {
+        compilations.reset();
+        compilationTime.reset();
+        phaseTimes.clear();
+        relinks.reset();
+        callSiteRelinks.clear();
+        megamorphicTransitions.reset();
+        deoptimizations.reset();
+        tierUps.reset();
+        classCacheHits.reset();
+        classCacheMisses.reset();
+        codeStoreHits.reset();
+        codeStoreMisses.reset();
+        globals.reset();
+        globalCreationTime.reset();
+    }
+}
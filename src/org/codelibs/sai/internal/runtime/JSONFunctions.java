@@ -25,7 +25,9 @@
 
 package org.codelibs.sai.internal.runtime;
 
+import java.io.Reader;
 import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
 import java.util.concurrent.Callable;
 
 import org.codelibs.sai.internal.objects.Global;
@@ -61,6 +63,16 @@ public final class JSONFunctions {
         return JSONParser.quote(str);
     }
 
+    /**
+     * Appends JSON-compatible quoted version of the given string to a string builder.
+     *
+     * @param sb string builder to append to
+     * @param str String to be quoted
+     */
+    public static void quote(final StringBuilder sb, final String str) {
+        JSONParser.quote(sb, str);
+    }
+
     /**
      * Parses the given JSON text string and returns object representation.
      *
@@ -71,23 +83,47 @@ public final class JSONFunctions {
     public static Object parse(final Object text, final Object reviver) {
         final String str = JSType.toString(text);
         final Global global = Context.getGlobal();
-        final boolean dualFields = ((ScriptObject) global).useDualFields();
-        final JSONParser parser = new JSONParser(str, global, dualFields);
-        final Object value;
+        final Object value = parse(new JSONParser(str, global, ((ScriptObject) global).useDualFields()));
+        return applyReviver(global, value, reviver);
+    }
 
-        try {
-            value = parser.parse();
-        } catch (final ParserException e) {
-            throw ECMAErrors.syntaxError(e, "invalid.json", e.getMessage());
-        }
+    /**
+     * Parses JSON text read from the given reader and returns object representation.
+     * The text is read incrementally and never held in memory as a whole.
+     *
+     * @param reader reader providing the JSON text
+     * @return Object representation of JSON text read
+     * @throws java.io.UncheckedIOException if reading fails
+     */
+    public static Object parse(final Reader reader) {
+        final Global global = Context.getGlobal();
+        return parse(new JSONParser(reader, global, ((ScriptObject) global).useDualFields()));
+    }
 
-        return applyReviver(global, value, reviver);
+    /**
+     * Parses UTF-8 encoded JSON text from the remaining bytes of the given buffer and returns
+     * object representation. The position of the buffer is not changed.
+     *
+     * @param bytes buffer containing the JSON text
+     * @return Object representation of JSON text given
+     */
+    public static Object parse(final ByteBuffer bytes) {
+        final Global global = Context.getGlobal();
+        return parse(new JSONParser(bytes, global, ((ScriptObject) global).useDualFields()));
     }
 
     // -- Internals only below this point
 
     // parse helpers
 
+    private static Object parse(final JSONParser parser) {
+        try {
+            return parser.parse();
+        } catch (final ParserException e) {
+            throw ECMAErrors.syntaxError(e, "invalid.json", e.getMessage());
+        }
+    }
+
     // apply 'reviver' function if available
     private static Object applyReviver(final Global global, final Object unfiltered, final Object reviver) {
         if (Bootstrap.isCallable(reviver)) {
@@ -28,6 +28,7 @@ package org.codelibs.sai.internal.runtime;
 import java.lang.invoke.MethodHandle;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
@@ -128,6 +129,31 @@ public class ListAdapter extends AbstractList<Object> implements RandomAccess, D
         return obj.getSlot(index);
     }
 
+    // Bulk copy that reads the length once instead of checking the range for every element
+    @Override
+    public Object[] toArray() {
+        final int size = size();
+        final Object[] array = new Object[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = getAt(i);
+        }
+        return array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(final T[] a) {
+        final Object[] elements = toArray();
+        if (a.length < elements.length) {
+            return (T[]) Arrays.copyOf(elements, elements.length, a.getClass());
+        }
+        System.arraycopy(elements, 0, a, 0, elements.length);
+        if (a.length > elements.length) {
+            a[elements.length] = null;
+        }
+        return a;
+    }
+
     @Override
     public Object set(final int index, final Object element) {
         checkRange(index);
@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.sai.internal.runtime.options.Options;
+
+/**
+ * A code store that appends all compiled scripts to a single memory mapped segment file.
+ * <p>
+ * Unlike {@link CodeStore.DirectoryCodeStore}, which writes one serialized file per function, this store
+ * keeps an in-memory index of (source digest, function key) to record offsets and serves loads from a
+ * read-only mapping of the segment. Class bytes are handed to the class loader as slices of the mapping
+ * without being copied; only the constants and function initializers of a script are java serialized.
+ * <p>
+ * The segment is mapped in regions of doubling capacity. Appended records are mapped by growing the
+ * last region until it reaches its capacity, so existing regions are never remapped.
+ * <p>
+ * The segment is append-only. Records appended by other processes sharing the cache directory are
+ * picked up when a lookup misses, at most twice a second.
+ * Appends are serialized with a file lock; a record torn by a crashed writer is discarded by the next append.
+ * <p>
+ * To use this store instead of the default one, name it in a
+ * {@code META-INF/services/org.codelibs.sai.internal.runtime.CodeStore} provider file.
+ * <p>
+ * A segment file can also be used as a code snapshot, see {@link #openSnapshot(Context, File, boolean)}.
+ */
+public class MappedCodeStore extends CodeStore {
+    /** Name of the segment file within the code cache directory. */
+    public static final String SEGMENT_FILE_NAME = "code.segment";
+
+    // "SAIC" and "SAIR" in ASCII
+    private static final int FILE_MAGIC = 0x53414943;
+    private static final int RECORD_MAGIC = 0x53414952;
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // Mappings are addressed with int offsets
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    // Capacity of the first region, each further region has twice the capacity of the one before
+    private static final long MIN_REGION_CAPACITY = 64 * 1024;
+    private static final long MAX_REGION_CAPACITY = 64 * 1024 * 1024;
+
+    // Minimum time between refreshes for lookups missing the index
+    private static final long MISS_REFRESH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+
+    // Default minimum size for storing a compiled script class
+    private final static int DEFAULT_MIN_SIZE = 1000;
+
+    private final ConcurrentMap<String, Record> index = new ConcurrentHashMap<>();
+
+    private File file;
+    private boolean readOnly;
+    private int minSize;
+    private FileChannel channel;
+    // prepended to the keys of records, to tell apart code generated by different versions in a snapshot
+    private String keyPrefix = "";
+
+    // guarded by this
+    private long indexedEnd;
+    private long mappedSize;
+    private Region lastRegion;
+
+    private volatile long lastRefresh;
+
+    /**
+     * Constructor used when this store is instantiated as a service provider. The segment is opened
+     * in the directory given by the {@code sai.persistent.code.cache} system property once the store
+     * is initialized for a context.
+     */
+    public MappedCodeStore() {
+    }
+
+    /**
+     * Constructor
+     *
+     * @param context the current context
+     * @param path    directory to store code in
+     * @param readOnly is this a read only code store
+     * @param minSize minimum file size for caching scripts
+     * @throws IOException if there are read/write problems with the cache and cache directory
+     */
+    public MappedCodeStore(final Context context, final String path, final boolean readOnly, final int minSize) throws IOException {
+        open(context, path, readOnly, minSize);
+    }
+
+    @Override
+    protected void initialize(final Context context) throws IOException {
+        if (channel == null) {
+            open(context, Options.getStringProperty("sai.persistent.code.cache", "sai_code_cache"), false, DEFAULT_MIN_SIZE);
+        }
+    }
+
+    /**
+     * Open a code snapshot: a segment file holding scripts compiled ahead of time, that is
+     * distributed with an application instead of being filled at runtime. Unlike a code cache
+     * directory, a snapshot file is not specific to the version of sai or to optimistic types.
+     * The records of a snapshot are keyed by both instead, so a snapshot built by a different
+     * version or with different optimistic types setting is simply not used.
+     *
+     * @param context the current context
+     * @param file    the snapshot file
+     * @param create  true to create a new, empty snapshot for writing, replacing any existing
+     *                file, false to open an existing snapshot read only
+     * @return the code store for the snapshot
+     * @throws IOException if the snapshot can not be opened or created
+     * @throws SecurityException if the caller may not provide a code store
+     */
+    @SuppressWarnings("removal")
+    public static MappedCodeStore openSnapshot(final Context context, final File file, final boolean create) throws IOException {
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(new RuntimePermission(SAI_PROVIDE_CODE_STORE));
+        }
+        final MappedCodeStore store = new MappedCodeStore();
+        store.initLogger(context);
+        store.keyPrefix = DirectoryCodeStore.getVersionDir(context.getEnv()) + '/';
+        if (create) {
+            try {
+                AccessController.doPrivileged(new PrivilegedExceptionAction<Void>() {
+                    @Override
+                    public Void run() throws IOException {
+                        Files.deleteIfExists(file.toPath());
+                        return null;
+                    }
+                });
+            } catch (final PrivilegedActionException e) {
+                throw (IOException) e.getException();
+            }
+        }
+        // snapshots hold every script given to the snapshot compiler, regardless of size
+        store.open(file.getAbsoluteFile(), !create, 0);
+        return store;
+    }
+
+    private void open(final Context context, final String path, final boolean readOnly, final int minSize) throws IOException {
+        open(new File(DirectoryCodeStore.checkDirectory(path, context.getEnv(), readOnly), SEGMENT_FILE_NAME), readOnly, minSize);
+    }
+
+    @SuppressWarnings("removal")
+    private void open(final File segmentFile, final boolean readOnly, final int minSize) throws IOException {
+        this.file = segmentFile;
+        this.readOnly = readOnly;
+        this.minSize = minSize;
+
+        try {
+            AccessController.doPrivileged(new PrivilegedExceptionAction<Void>() {
+                @Override
+                public Void run() throws IOException {
+                    if (readOnly) {
+                        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    } else {
+                        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE);
+                    }
+                    initSegment();
+                    return null;
+                }
+            });
+        } catch (final PrivilegedActionException e) {
+            throw (IOException) e.getException();
+        }
+    }
+
+    private synchronized void initSegment() throws IOException {
+        if (readOnly) {
+            checkHeader();
+        } else {
+            final FileLock lock = channel.lock();
+            try {
+                if (channel.size() < FILE_HEADER_SIZE || !hasValidHeader()) {
+                    // new segment, or one written by an incompatible version
+                    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putInt(FILE_VERSION);
+                    header.flip();
+                    channel.truncate(0);
+                    channel.write(header, 0);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+        indexedEnd = FILE_HEADER_SIZE;
+        refresh();
+    }
+
+    private void checkHeader() throws IOException {
+        if (channel.size() < FILE_HEADER_SIZE || !hasValidHeader()) {
+            throw new IOException("Not a code segment file: " + file.getPath());
+        }
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // keep reading
+        }
+        return header.getInt(0) == FILE_MAGIC && header.getInt(4) == FILE_VERSION;
+    }
+
+    /**
+     * Map records appended since the last call and add them to the index.
+     */
+    private synchronized void refresh() throws IOException {
+        if (!channel.isOpen()) {
+            // closed, the index is final
+            return;
+        }
+        lastRefresh = System.nanoTime();
+        final long size = Math.min(channel.size(), MAX_SEGMENT_SIZE);
+        if (size == mappedSize || size <= indexedEnd) {
+            return;
+        }
+
+        Region region = lastRegion;
+        if (region == null || size - region.start > region.capacity) {
+            // start a new region at the first record not indexed yet, so no record spans two regions
+            final long capacity = region == null ? MIN_REGION_CAPACITY : Math.min(region.capacity * 2, MAX_REGION_CAPACITY);
+            region = new Region(indexedEnd, Math.max(capacity, size - indexedEnd));
+        }
+        // a grown mapping covers all records of the region indexed so far
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, region.start, size - region.start);
+        final Map<String, Record> records = new HashMap<>();
+        long pos = Math.min(indexedEnd, size);
+        while (pos + RECORD_HEADER_SIZE <= size) {
+            final int offset = (int) (pos - region.start);
+            final int length = buffer.getInt(offset + 4);
+            if (buffer.getInt(offset) != RECORD_MAGIC || length < 0 || pos + RECORD_HEADER_SIZE + length > size) {
+                // torn or partially written record
+                break;
+            }
+            final int start = offset + RECORD_HEADER_SIZE;
+            records.put(getString(buffer, start), new Record(region, start, length));
+            pos += RECORD_HEADER_SIZE + length;
+        }
+
+        indexedEnd = pos;
+        mappedSize = size;
+        // publish the new mapping before its records, so load never slices a record out of an older, smaller one
+        region.buffer = buffer;
+        lastRegion = region;
+        index.putAll(records);
+    }
+
+    @Override
+    @SuppressWarnings("removal")
+    public StoredScript load(final Source source, final String functionKey) {
+        if (belowThreshold(source)) {
+            return null;
+        }
+
+        final String key = getKey(source, functionKey);
+
+        try {
+            return AccessController.doPrivileged(new PrivilegedExceptionAction<StoredScript>() {
+                @Override
+                public StoredScript run() throws IOException, ClassNotFoundException {
+                    Record record = index.get(key);
+                    if (record == null) {
+                        // may have been added by another process
+                        if (System.nanoTime() - lastRefresh < MISS_REFRESH_INTERVAL) {
+                            return null;
+                        }
+                        refresh();
+                        record = index.get(key);
+                        if (record == null) {
+                            return null;
+                        }
+                    }
+                    final StoredScript storedScript = readScript(record.slice());
+                    getLogger().info("loaded ", source, "-", functionKey);
+                    return storedScript;
+                }
+            });
+        } catch (final PrivilegedActionException e) {
+            getLogger().warning("failed to load ", source, "-", functionKey, ": ", e.getException());
+            return null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("removal")
+    public StoredScript store(final String functionKey, final Source source, final StoredScript script) {
+        if (readOnly || script == null || belowThreshold(source)) {
+            return null;
+        }
+
+        final String key = getKey(source, functionKey);
+
+        try {
+            return AccessController.doPrivileged(new PrivilegedExceptionAction<StoredScript>() {
+                @Override
+                public StoredScript run() throws IOException {
+                    if (!append(writeRecord(key, script))) {
+                        getLogger().warning("code segment full, not storing ", source, "-", functionKey);
+                        return null;
+                    }
+                    getLogger().info("stored ", source, "-", functionKey);
+                    return script;
+                }
+            });
+        } catch (final PrivilegedActionException e) {
+            getLogger().warning("failed to store ", script, "-", functionKey, ": ", e.getException());
+            return null;
+        }
+    }
+
+    private synchronized boolean append(final byte[] record) throws IOException {
+        final FileLock lock = channel.lock();
+        try {
+            // index records appended by other processes and drop any torn record at the end
+            refresh();
+            if (channel.size() > indexedEnd) {
+                channel.truncate(indexedEnd);
+            }
+            if (indexedEnd + record.length > MAX_SEGMENT_SIZE) {
+                return false;
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(record);
+            long pos = indexedEnd;
+            while (buffer.hasRemaining()) {
+                pos += channel.write(buffer, pos);
+            }
+            // maps just the new record, by growing the last region
+            refresh();
+        } finally {
+            lock.release();
+        }
+        return true;
+    }
+
+    /*
+     * Record layout, all integers big endian:
+     *
+     *   int     RECORD_MAGIC
+     *   int     length of the remainder of the record
+     *   string  key
+     *   int     compilation id
+     *   string  main class name
+     *   int     class count, followed by that many (string class name, int length, class bytes)
+     *   int     length of the serialized initializers and constants, followed by the serialized form
+     *
+     * Strings are stored as an int byte length followed by UTF-8 bytes.
+     */
+    private static byte[] writeRecord(final String key, final StoredScript script) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(RECORD_MAGIC);
+        out.writeInt(0); // patched below
+        putString(out, key);
+        out.writeInt(script.getCompilationId());
+        putString(out, script.getMainClassName());
+
+        final Map<String, ByteBuffer> classBuffers = script.getClassBuffers();
+        out.writeInt(classBuffers.size());
+        for (final Map.Entry<String, ByteBuffer> entry : classBuffers.entrySet()) {
+            final ByteBuffer buffer = entry.getValue();
+            putString(out, entry.getKey());
+            out.writeInt(buffer.remaining());
+            final byte[] array = new byte[buffer.remaining()];
+            buffer.get(array);
+            out.write(array);
+        }
+
+        final ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(meta)) {
+            oos.writeObject(script.getInitializers());
+            oos.writeObject(script.getConstants());
+        }
+        out.writeInt(meta.size());
+        meta.writeTo(out);
+        out.flush();
+
+        final byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(4, record.length - RECORD_HEADER_SIZE);
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StoredScript readScript(final ByteBuffer record) throws IOException, ClassNotFoundException {
+        getString(record); // key
+        final int compilationId = record.getInt();
+        final String mainClassName = getString(record);
+
+        final int classCount = record.getInt();
+        final Map<String, ByteBuffer> classBuffers = new LinkedHashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            final String className = getString(record);
+            classBuffers.put(className, slice(record, record.getInt()));
+        }
+
+        final ByteBuffer meta = slice(record, record.getInt());
+        try (ObjectInputStream in = new ObjectInputStream(new ByteBufferInputStream(meta))) {
+            final Map<Integer, FunctionInitializer> initializers = (Map<Integer, FunctionInitializer>) in.readObject();
+            final Object[] constants = (Object[]) in.readObject();
+            return StoredScript.forClassBuffers(compilationId, mainClassName, classBuffers, initializers, constants);
+        }
+    }
+
+    private static void putString(final DataOutputStream out, final String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer, final int offset) {
+        final int length = buffer.getInt(offset);
+        final byte[] bytes = new byte[length];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        final String str = getString(buffer, buffer.position());
+        buffer.position(buffer.position() + 4 + str.getBytes(StandardCharsets.UTF_8).length);
+        return str;
+    }
+
+    /**
+     * Returns a buffer over the next {@code length} bytes of {@code buffer} and advances past them.
+     */
+    private static ByteBuffer slice(final ByteBuffer buffer, final int length) {
+        final ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private String getKey(final Source source, final String functionKey) {
+        return keyPrefix + source.getDigest() + '-' + functionKey;
+    }
+
+    /**
+     * Close the segment file. Loads of scripts indexed so far keep working from the existing
+     * mapping, but no more scripts can be stored.
+     *
+     * @throws IOException if closing the file fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        readOnly = true;
+        channel.close();
+    }
+
+    private boolean belowThreshold(final Source source) {
+        if (source.getLength() < minSize) {
+            getLogger().info("below size threshold ", source);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A mapped region of the segment.
+     */
+    private static final class Region {
+        final long start;
+        final long capacity;
+        // grows as records are appended to the region
+        volatile MappedByteBuffer buffer;
+
+        Region(final long start, final long capacity) {
+            this.start = start;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Location of a record's contents within a region of the segment.
+     */
+    private static final class Record {
+        final Region region;
+        final int start;
+        final int length;
+
+        Record(final Region region, final int start, final int length) {
+            this.region = region;
+            this.start = start;
+            this.length = length;
+        }
+
+        ByteBuffer slice() {
+            return region.buffer.slice(start, length);
+        }
+    }
+
+    /**
+     * An input stream reading from a byte buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
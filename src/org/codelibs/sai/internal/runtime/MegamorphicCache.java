@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.codelibs.sai.internal.runtime;
+
+import java.lang.invoke.SwitchPoint;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codelibs.sai.internal.runtime.options.Options;
+
+/**
+ * Lookup cache for megamorphic property access sites. Call sites that have seen too many different
+ * property maps are linked to a generic getter or setter that would otherwise have to walk the
+ * prototype chain on every access. This cache remembers the result of that walk for a given
+ * {@link PropertyMap} and property key: the {@link Property} and the depth of the prototype owning it,
+ * or the fact that the property does not exist.
+ * <p>
+ * Entries are stored in a fixed size, two-way set associative table where the least recently added
+ * entry of a set is dropped when a new one is added. An entry
+ * is only used as long as the prototype switch points that a regular call site would link with
+ * (see {@link ScriptObject#getProtoSwitchPoints(String, ScriptObject)}) are still valid, and for
+ * objects with the same prototype as the one the entry was created for. The cache is shared by all
+ * globals of a context, and property maps can be shared between globals with different prototypes.
+ */
+public final class MegamorphicCache {
+    private static final int DEFAULT_SIZE = 4096;
+    private static final int WAYS = 2;
+
+    private final Entry[] entries;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor
+     */
+    MegamorphicCache() {
+        this(Options.getIntProperty("sai.megamorphic.cache.size", DEFAULT_SIZE));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param size number of entries, rounded up to a power of two
+     */
+    MegamorphicCache(final int size) {
+        final int length = size <= WAYS ? WAYS : Integer.highestOneBit(size - 1) << 1;
+        this.entries = new Entry[length];
+        this.mask = length - WAYS;
+    }
+
+    /**
+     * Find the cache entry for property {@code key} of {@code self}, performing and caching a
+     * full property lookup on a miss. Scope objects are never cached as their property lookup
+     * may depend on the start object, see {@link WithObject} and the global lexical scope.
+     *
+     * @param self the object on which the lookup is initiated
+     * @param key property key
+     * @return the entry, or null if the lookup can not be cached
+     */
+    Entry lookup(final ScriptObject self, final String key) {
+        if (self.isScope()) {
+            return null;
+        }
+
+        final PropertyMap map = self.getMap();
+        final int index = index(map, key);
+        for (int i = index; i < index + WAYS; i++) {
+            final Entry entry = entries[i];
+            if (entry != null && entry.map == map && entry.key.equals(key) && entry.hasProto(self.getProto()) && entry.isValid()) {
+                hits.increment();
+                return entry;
+            }
+        }
+
+        misses.increment();
+        final FindProperty find = self.findProperty(key, true);
+        // the lookup may have replaced the map of self if its shared prototype map was invalidated
+        final PropertyMap newMap = self.getMap();
+        final Entry newEntry;
+        if (find == null) {
+            newEntry = new Entry(newMap, self.getProto(), key, null, -1, self.getProtoSwitchPoints(key, null));
+        } else {
+            newEntry = new Entry(newMap, self.getProto(), key, find.getProperty(), find.getProtoChainLength(),
+                    self.getProtoSwitchPoints(key, find.getOwner()));
+        }
+        final int newIndex = index(newMap, key);
+        System.arraycopy(entries, newIndex, entries, newIndex + 1, WAYS - 1);
+        entries[newIndex] = newEntry;
+        return newEntry;
+    }
+
+    // index of the first entry of the set for the given map and key
+    private int index(final PropertyMap map, final String key) {
+        final int hash = System.identityHashCode(map) * 31 + key.hashCode();
+        return (hash ^ hash >>> 16) * WAYS & mask;
+    }
+
+    /**
+     * Get the number of lookups that found a valid cache entry.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that required a full property lookup.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the ratio of lookups that found a valid cache entry.
+     * @return hit rate between 0 and 1, or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        final long h = hits.sum();
+        final long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Get the number of entries in the cache table.
+     * @return table size
+     */
+    public int getSize() {
+        return entries.length;
+    }
+
+    /**
+     * A cached property lookup result.
+     */
+    static final class Entry {
+        final PropertyMap map;
+        /** The prototype of the object the entry was created for, weakly referenced as the cache outlives globals. */
+        private final WeakReference<ScriptObject> proto;
+        final String key;
+        /** The property, or null if it does not exist in the prototype chain. */
+        final Property property;
+        /** Number of prototypes to traverse to reach the owner of the property. */
+        final int depth;
+        private final SwitchPoint[] switchPoints;
+
+        Entry(final PropertyMap map, final ScriptObject proto, final String key, final Property property, final int depth,
+                final SwitchPoint[] switchPoints) {
+            this.map = map;
+            this.proto = proto == null ? null : new WeakReference<>(proto);
+            this.key = key;
+            this.property = property;
+            this.depth = depth;
+            this.switchPoints = switchPoints;
+        }
+
+        boolean hasProto(final ScriptObject other) {
+            return proto == null ? other == null : other != null && proto.get() == other;
+        }
+
+        boolean isValid() {
+            if (switchPoints != null) {
+                for (final SwitchPoint sp : switchPoints) {
+                    if (sp.hasBeenInvalidated()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get the object owning the cached property.
+         *
+         * @param self the object on which the lookup was initiated
+         * @return the owner
+         */
+        ScriptObject getOwner(final ScriptObject self) {
+            ScriptObject owner = self;
+            for (int i = 0; i < depth; i++) {
+                owner = owner.getProto();
+            }
+            return owner;
+        }
+
+        /**
+         * Get the value of the cached property.
+         *
+         * @param self the object on which the lookup was initiated
+         * @return the property value
+         */
+        Object getObjectValue(final ScriptObject self) {
+            final ScriptObject owner = getOwner(self);
+            return property.getObjectValue(property instanceof UserAccessorProperty ? self : owner, owner);
+        }
+    }
+}
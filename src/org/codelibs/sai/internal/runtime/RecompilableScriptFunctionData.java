@@ -35,6 +35,7 @@ import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Map;
@@ -125,13 +126,17 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
     /** Code installer used for all further recompilation/specialization of this ScriptFunction */
     private transient CodeInstaller installer;
 
-    private final Map<Integer, RecompilableScriptFunctionData> nestedFunctions;
+    /** Nested functions, only added after construction for a function that was pre-parsed */
+    private volatile Map<Integer, RecompilableScriptFunctionData> nestedFunctions;
 
     /** Id to parent function if one exists */
     private RecompilableScriptFunctionData parent;
 
     /** Copy of the {@link FunctionNode} flags. */
-    private final int functionFlags;
+    private volatile int functionFlags;
+
+    /** Was the body of the function discarded by the parser, so the flags don't reflect it yet? */
+    private volatile boolean preParsed;
 
     private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
 
@@ -164,6 +169,7 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
         this.functionName = functionNode.getName();
         this.lineNumber = functionNode.getLineNumber();
         this.functionFlags = functionNode.getFlags() | (functionNode.needsCallee() ? FunctionNode.NEEDS_CALLEE : 0);
+        this.preParsed = functionNode.isPreParsed();
         this.functionNodeId = functionNode.getId();
         this.source = functionNode.getSource();
         this.endParserState = functionNode.getEndParserState();
@@ -264,6 +270,22 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
         return parent;
     }
 
+    /**
+     * Adds the function data of nested functions of a pre-parsed function, which is only created when the function
+     * is first compiled. Nested functions that already have function data keep it.
+     * @param functions function data of the nested functions by function id
+     */
+    public synchronized void addNestedFunctions(final Map<Integer, RecompilableScriptFunctionData> functions) {
+        final Map<Integer, RecompilableScriptFunctionData> newNestedFunctions = new HashMap<>(nestedFunctions);
+        for (final Map.Entry<Integer, RecompilableScriptFunctionData> entry : functions.entrySet()) {
+            if (!newNestedFunctions.containsKey(entry.getKey())) {
+                entry.getValue().setParent(this);
+                newNestedFunctions.put(entry.getKey(), entry.getValue());
+            }
+        }
+        nestedFunctions = newNestedFunctions;
+    }
+
     void setParent(final RecompilableScriptFunctionData parent) {
         this.parent = parent;
     }
@@ -391,6 +413,7 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
             parser.setFunctionName(functionName);
         }
         parser.setReparsedFunction(this);
+        parser.setPreParseFunctions(Context.preParseFunctions(context.getEnv()));
 
         final FunctionNode program =
                 parser.parse(CompilerConstants.PROGRAM.symbolName(), descPosition, Token.descLength(token), isPropertyAccessor());
@@ -636,8 +659,9 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
         return locals;
     }
 
-    private Compiler getCompiler(final FunctionNode fn, final MethodType actualCallSiteType, final ScriptObject runtimeScope) {
-        return getCompiler(fn, actualCallSiteType, newLocals(runtimeScope), null, null);
+    private Compiler getCompiler(final FunctionNode fn, final MethodType actualCallSiteType, final ScriptObject runtimeScope,
+            final boolean optimistic) {
+        return getCompiler(fn, actualCallSiteType, newLocals(runtimeScope), null, null, optimistic);
     }
 
     /**
@@ -653,6 +677,11 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
 
     Compiler getCompiler(final FunctionNode functionNode, final MethodType actualCallSiteType, final ScriptObject runtimeScope,
             final Map<Integer, Type> invalidatedProgramPoints, final int[] continuationEntryPoints) {
+        return getCompiler(functionNode, actualCallSiteType, runtimeScope, invalidatedProgramPoints, continuationEntryPoints, true);
+    }
+
+    private Compiler getCompiler(final FunctionNode functionNode, final MethodType actualCallSiteType, final ScriptObject runtimeScope,
+            final Map<Integer, Type> invalidatedProgramPoints, final int[] continuationEntryPoints, final boolean optimistic) {
         final TypeMap typeMap = typeMap(actualCallSiteType);
         final Type[] paramTypes = typeMap == null ? null : typeMap.getParameterTypes(functionNodeId);
         final Object typeInformationFile = OptimisticTypesPersistence.getLocationDescriptor(source, functionNodeId, paramTypes);
@@ -662,7 +691,8 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
                 typeMap, // type map
                 getEffectiveInvalidatedProgramPoints(invalidatedProgramPoints, typeInformationFile), // invalidated program points
                 typeInformationFile, continuationEntryPoints, // continuation entry points
-                runtimeScope); // runtime scope
+                runtimeScope, // runtime scope
+                optimistic); // use optimistic types
     }
 
     /**
@@ -686,6 +716,23 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
 
     private FunctionInitializer compileTypeSpecialization(final MethodType actualCallSiteType, final ScriptObject runtimeScope,
             final boolean persist) {
+        return compileTypeSpecialization(actualCallSiteType, runtimeScope, persist, true);
+    }
+
+    /**
+     * Compiles the optimistic version of a function whose code was first compiled without optimistic types in tiered
+     * compilation mode. Invoked on a background compiler thread, and synchronized like {@link #getBest} as both
+     * reparse the function and update its cached AST and nested function data.
+     * @param actualCallSiteType the call site type the baseline code was compiled for
+     * @param runtimeScope the runtime scope of the baseline compilation, or null
+     * @return the function initializer for the optimistic code
+     */
+    synchronized FunctionInitializer compileOptimisticSpecialization(final MethodType actualCallSiteType, final ScriptObject runtimeScope) {
+        return compileTypeSpecialization(actualCallSiteType, runtimeScope, true, true);
+    }
+
+    private FunctionInitializer compileTypeSpecialization(final MethodType actualCallSiteType, final ScriptObject runtimeScope,
+            final boolean persist, final boolean optimistic) {
         // We're creating an empty script object for holding local variables. AssignSymbols will populate it with
         // explicit Undefined values for undefined local variables (see AssignSymbols#defineSymbol() and
         // CompilationEnvironment#declareLocalSymbol()).
@@ -694,9 +741,10 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
             log.info("Parameter type specialization of '", functionName, "' signature: ", actualCallSiteType);
         }
 
-        final boolean persistentCache = persist && usePersistentCodeCache();
+        // a code snapshot is consulted even if compiled code is not persisted
+        final boolean lookupStoredScript = persist && (usePersistentCodeCache() || useCodeSnapshot());
         String cacheKey = null;
-        if (persistentCache) {
+        if (lookupStoredScript) {
             final TypeMap typeMap = typeMap(actualCallSiteType);
             final Type[] paramTypes = typeMap == null ? null : typeMap.getParameterTypes(functionNodeId);
             cacheKey = CodeStore.getCacheKey(functionNodeId, paramTypes);
@@ -710,20 +758,28 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
         }
 
         final FunctionNode fn = reparse();
-        final Compiler compiler = getCompiler(fn, actualCallSiteType, runtimeScope);
+        final Compiler compiler = getCompiler(fn, actualCallSiteType, runtimeScope, optimistic);
         final FunctionNode compiledFn =
                 compiler.compile(fn, fn.isCached() ? CompilationPhases.COMPILE_ALL_CACHED : CompilationPhases.COMPILE_ALL);
 
-        if (persist && !compiledFn.hasApplyToCallSpecialization()) {
+        if (persist && usePersistentCodeCache() && !compiledFn.hasApplyToCallSpecialization()) {
             compiler.persistClassInfo(cacheKey, compiledFn);
         }
         return new FunctionInitializer(compiledFn, compiler.getInvalidatedProgramPoints());
     }
 
+    private boolean useTieredCompilation() {
+        return installer != null && installer.getContext().getEnv()._tiered_compilation && !isProgram();
+    }
+
     boolean usePersistentCodeCache() {
         return installer != null && installer.getContext().getEnv()._persistent_cache;
     }
 
+    private boolean useCodeSnapshot() {
+        return installer != null && installer.getContext().getEnv()._code_snapshot != null;
+    }
+
     private MethodType explicitParams(final MethodType callSiteType) {
         if (CompiledFunction.isVarArgsType(callSiteType)) {
             return null;
@@ -833,8 +889,19 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
      * @return the compiled function object, with its type matching that of the call site type.
      */
     private CompiledFunction addCode(final FunctionInitializer fnInit, final MethodType callSiteType) {
+        return addCode(lookupForCallSite(fnInit, callSiteType), fnInit.getInvalidatedProgramPoints(), callSiteType, fnInit.getFlags());
+    }
+
+    /**
+     * Looks up the code of a function initializer and adapts its type to the call site type, as described in
+     * {@link #addCode(FunctionInitializer, MethodType)}.
+     * @param fnInit the function
+     * @param callSiteType the call site type
+     * @return the method handle for the code
+     */
+    MethodHandle lookupForCallSite(final FunctionInitializer fnInit, final MethodType callSiteType) {
         if (isVariableArity()) {
-            return addCode(lookup(fnInit, true), fnInit.getInvalidatedProgramPoints(), callSiteType, fnInit.getFlags());
+            return lookup(fnInit, true);
         }
 
         final MethodHandle handle = lookup(fnInit, true);
@@ -863,7 +930,7 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
             toType = toType.dropParameterTypes(fromCount, toCount);
         }
 
-        return addCode(lookup(fnInit, false).asType(toType), fnInit.getInvalidatedProgramPoints(), callSiteType, fnInit.getFlags());
+        return lookup(fnInit, false).asType(toType);
     }
 
     /**
@@ -893,7 +960,14 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
             existingBest = pickFunction(callSiteType, true); // try vararg last
         }
         if (existingBest == null) {
-            existingBest = addCode(compileTypeSpecialization(callSiteType, runtimeScope, true), callSiteType);
+            if (useTieredCompilation()) {
+                // Start out with code that doesn't use optimistic types; it is replaced by the optimistic code once
+                // the function gets hot.
+                existingBest = addCode(compileTypeSpecialization(callSiteType, runtimeScope, false, false), callSiteType);
+                existingBest.startTieredCompilation(this, callSiteType, runtimeScope);
+            } else {
+                existingBest = addCode(compileTypeSpecialization(callSiteType, runtimeScope, true), callSiteType);
+            }
         }
 
         assert existingBest != null;
@@ -929,6 +1003,21 @@ public final class RecompilableScriptFunctionData extends ScriptFunctionData imp
         return functionFlags;
     }
 
+    /**
+     * Updates the {@link FunctionNode} flags of a pre-parsed function once it is compiled for the first time, as
+     * the flags that depend on its body were missing when its body was discarded. Does nothing for other functions.
+     * Must not be invoked with an apply to call specialized function node, as its flags differ from the generic one.
+     * @param functionNode the compiled function node
+     */
+    public void updatePreParsedFlags(final FunctionNode functionNode) {
+        assert functionNode.getId() == functionNodeId && !functionNode.hasApplyToCallSpecialization();
+        if (preParsed) {
+            // NEEDS_CALLEE is kept, code compiled so far might rely on it
+            functionFlags = functionNode.getFlags() | FunctionNode.NEEDS_CALLEE;
+            preParsed = false;
+        }
+    }
+
     @Override
     MethodType getGenericType() {
         // 2 is for (callee, this)
@@ -67,6 +67,12 @@ public final class ScriptEnvironment {
     /** Size of the per-global Class cache size */
     public final int _class_cache_size;
 
+    /** Maximum estimated bytecode size in bytes of the Class cache, 0 for no limit */
+    public final int _class_cache_weight;
+
+    /** Code snapshot file to load compiled scripts from, or null */
+    public final String _code_snapshot;
+
     /** Only compile script, do not run it or generate other ScriptObjects */
     public final boolean _compile_only;
 
@@ -151,6 +157,9 @@ public final class ScriptEnvironment {
     /** Do not support typed arrays. */
     public final boolean _no_typed_arrays;
 
+    /** Assemble the classes of independent compile units in parallel */
+    public final boolean _parallel_codegen;
+
     /** Only parse the source code, do not compile */
     public final boolean _parse_only;
 
@@ -193,6 +202,9 @@ public final class ScriptEnvironment {
     /** is this environment in strict mode? */
     public final boolean _strict;
 
+    /** Should hot functions be recompiled with optimistic types in the background */
+    public final boolean _tiered_compilation;
+
     /** print version info of Sai */
     public final boolean _version;
 
@@ -226,6 +238,8 @@ public final class ScriptEnvironment {
         this.options = options;
 
         _class_cache_size = options.getInteger("class.cache.size");
+        _class_cache_weight = options.getInteger("class.cache.weight");
+        _code_snapshot = options.getString("code.snapshot");
         _compile_only = options.getBoolean("compile.only");
         _const_as_var = options.getBoolean("const.as.var");
         _debug_lines = options.getBoolean("debug.lines");
@@ -260,6 +274,7 @@ public final class ScriptEnvironment {
         _no_java = options.getBoolean("no.java");
         _no_syntax_extensions = options.getBoolean("no.syntax.extensions");
         _no_typed_arrays = options.getBoolean("no.typed.arrays");
+        _parallel_codegen = options.getBoolean("parallel.codegen");
         _parse_only = options.getBoolean("parse.only");
         _persistent_cache = options.getBoolean("persistent.code.cache");
         _print_ast = options.getBoolean("print.ast");
@@ -272,6 +287,7 @@ public final class ScriptEnvironment {
         _print_symbols = options.getBoolean("print.symbols");
         _scripting = options.getBoolean("scripting");
         _strict = options.getBoolean("strict");
+        _tiered_compilation = _optimistic_types && options.getBoolean("tiered.compilation");
         _version = options.getBoolean("version");
         _verify_code = options.getBoolean("verify.code");
 
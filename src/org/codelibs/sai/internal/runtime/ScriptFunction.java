@@ -125,6 +125,8 @@ public class ScriptFunction extends ScriptObject {
     private static final PropertyMap boundfunctionmap$;
     // property map for non-strict, non-bound functions.
     private static final PropertyMap map$;
+    // property map for non-constructor builtin functions, which lack the "prototype" property.
+    private static final PropertyMap builtinmap$;
 
     // Marker object for lazily initialized prototype object
     private static final Object LAZY_PROTOTYPE = new Object();
@@ -155,6 +157,7 @@ public class ScriptFunction extends ScriptObject {
         map$ = PropertyMap.newMap(properties);
         strictmodemap$ = createStrictModeMap(map$);
         boundfunctionmap$ = createBoundFunctionMap(strictmodemap$);
+        builtinmap$ = map$.deleteProperty(map$.findProperty("prototype"));
     }
 
     private static boolean isStrict(final int flags) {
@@ -229,23 +232,32 @@ public class ScriptFunction extends ScriptObject {
     @SuppressWarnings("this-escape")
     private ScriptFunction(final String name, final MethodHandle methodHandle, final PropertyMap map, final ScriptObject scope,
             final Specialization[] specs, final int flags, final Global global) {
-        this(new FinalScriptFunctionData(name, methodHandle, specs, flags), map, scope, global);
+        this(createBuiltinData(name, methodHandle, specs, flags, global), map, scope, global);
+    }
+
+    private static ScriptFunctionData createBuiltinData(final String name, final MethodHandle methodHandle, final Specialization[] specs,
+            final int flags, final Global global) {
+        final SharedBuiltins sharedBuiltins = global.getSharedBuiltins();
+        if (sharedBuiltins != null) {
+            return sharedBuiltins.getFunctionData(name, methodHandle, specs, flags);
+        }
+        return new FinalScriptFunctionData(name, methodHandle, specs, flags);
     }
 
     /**
-     * Constructor
+     * Constructor for non-constructor built-in functions, which have no "prototype" property.
      *
-     * @param name name of function
+     * @param name function name
      * @param methodHandle handle for invocation
-     * @param scope scope object
-     * @param specs specialized versions of this method, if available, null
-     * otherwise
+     * @param specs specialized versions of this function, if available, null otherwise
      * @param flags {@link ScriptFunctionData} flags
+     * @param global the global the function belongs to
      */
     @SuppressWarnings("this-escape")
-    private ScriptFunction(final String name, final MethodHandle methodHandle, final ScriptObject scope, final Specialization[] specs,
-            final int flags) {
-        this(name, methodHandle, getMap(isStrict(flags)), scope, specs, flags, Global.instance());
+    private ScriptFunction(final String name, final MethodHandle methodHandle, final Specialization[] specs, final int flags,
+            final Global global) {
+        this(name, methodHandle, isStrict(flags) ? boundfunctionmap$ : builtinmap$, null, specs, flags, global);
+        this.prototype = UNDEFINED;
     }
 
     /**
@@ -274,7 +286,18 @@ public class ScriptFunction extends ScriptObject {
      */
     @SuppressWarnings("this-escape")
     protected ScriptFunction(final String name, final MethodHandle invokeHandle, final PropertyMap map, final Specialization[] specs) {
-        this(name, invokeHandle, map.addAll(map$), null, specs, ScriptFunctionData.IS_BUILTIN_CONSTRUCTOR, Global.instance());
+        this(name, invokeHandle, map, specs, Global.instance());
+    }
+
+    @SuppressWarnings("this-escape")
+    private ScriptFunction(final String name, final MethodHandle invokeHandle, final PropertyMap map, final Specialization[] specs,
+            final Global global) {
+        this(name, invokeHandle, getConstructorMap(map, global), null, specs, ScriptFunctionData.IS_BUILTIN_CONSTRUCTOR, global);
+    }
+
+    private static PropertyMap getConstructorMap(final PropertyMap map, final Global global) {
+        final SharedBuiltins sharedBuiltins = global.getSharedBuiltins();
+        return sharedBuiltins != null ? sharedBuiltins.getConstructorMap(map, map$) : map.addAll(map$);
     }
 
     // Factory methods to create various functions
@@ -318,12 +341,8 @@ public class ScriptFunction extends ScriptObject {
     // builtin function create helper factory
     private static ScriptFunction createBuiltin(final String name, final MethodHandle methodHandle, final Specialization[] specs,
             final int flags) {
-        final ScriptFunction func = new ScriptFunction(name, methodHandle, null, specs, flags);
-        func.setPrototype(UNDEFINED);
         // Non-constructor built-in functions do not have "prototype" property
-        func.deleteOwnProperty(func.getMap().findProperty("prototype"));
-
-        return func;
+        return new ScriptFunction(name, methodHandle, specs, flags, Global.instance());
     }
 
     /**
@@ -25,6 +25,7 @@
 
 package org.codelibs.sai.internal.runtime;
 
+import java.nio.ByteBuffer;
 import java.security.CodeSource;
 import java.util.Objects;
 
@@ -96,4 +97,17 @@ final class ScriptLoader extends SaiLoader {
     synchronized Class<?> installClass(final String name, final byte[] data, final CodeSource cs) {
         return defineClass(name, data, 0, data.length, Objects.requireNonNull(cs));
     }
+
+    /**
+     * Install a class for use by the Sai runtime
+     *
+     * @param name Binary name of class.
+     * @param data Class data bytes, from the buffer's position to its limit.
+     * @param cs CodeSource code source of the class bytes.
+     *
+     * @return Installed class.
+     */
+    synchronized Class<?> installClass(final String name, final ByteBuffer data, final CodeSource cs) {
+        return defineClass(name, data, Objects.requireNonNull(cs));
+    }
 }
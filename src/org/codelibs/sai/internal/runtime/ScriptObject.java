@@ -83,6 +83,7 @@ import org.codelibs.sai.internal.runtime.linker.Bootstrap;
 import org.codelibs.sai.internal.runtime.linker.LinkerCallSite;
 import org.codelibs.sai.internal.runtime.linker.SaiCallSiteDescriptor;
 import org.codelibs.sai.internal.runtime.linker.SaiGuards;
+import org.codelibs.sai.internal.runtime.logging.DebugLogger;
 
 /**
  * Base class for generic JavaScript objects.
@@ -149,7 +150,10 @@ public abstract class ScriptObject implements PropertyAccess, Cloneable {
     /** Method handle to retrieve prototype of this object */
     public static final MethodHandle GETPROTO = findOwnMH_V("getProto", ScriptObject.class);
 
-    static final MethodHandle MEGAMORPHIC_GET = findOwnMH_V("megamorphicGet", Object.class, String.class, boolean.class, boolean.class);
+    static final MethodHandle MEGAMORPHIC_GET = findOwnMH_V("megamorphicGet", Object.class, MegamorphicCache.class, String.class, boolean.class,
+            boolean.class);
+    static final MethodHandle MEGAMORPHIC_SET = findOwnMH_V("megamorphicSet", void.class, MegamorphicCache.class, String.class, int.class,
+            Object.class);
     static final MethodHandle GLOBALFILTER = findOwnMH_S("globalFilter", Object.class, Object.class);
     static final MethodHandle DECLARE_AND_SET = findOwnMH_V("declareAndSet", void.class, String.class, Object.class);
 
@@ -1995,18 +1999,29 @@ public abstract class ScriptObject implements PropertyAccess, Cloneable {
     }
 
     private static GuardedInvocation findMegaMorphicGetMethod(final CallSiteDescriptor desc, final String name, final boolean isMethod) {
-        Context.getContextTrusted().getLogger(ObjectClassGenerator.class)
-                .warning("Megamorphic getter: " + desc + " " + name + " " + isMethod);
-        final MethodHandle invoker = MH.insertArguments(MEGAMORPHIC_GET, 1, name, isMethod, SaiCallSiteDescriptor.isScope(desc));
+        final Context context = Context.getContextTrusted();
+        final DebugLogger log = context.getLogger(ObjectClassGenerator.class);
+        if (log.isEnabled()) {
+            log.info("Megamorphic getter: " + desc + " " + name + " " + isMethod);
+        }
+        final MethodHandle invoker =
+                MH.insertArguments(MEGAMORPHIC_GET, 1, context.getMegamorphicCache(), name, isMethod, SaiCallSiteDescriptor.isScope(desc));
         final MethodHandle guard = getScriptObjectGuard(desc.getMethodType(), true);
         return new GuardedInvocation(invoker, guard);
     }
 
     @SuppressWarnings("unused")
-    private Object megamorphicGet(final String key, final boolean isMethod, final boolean isScope) {
-        final FindProperty find = findProperty(key, true);
-        if (find != null) {
-            return find.getObjectValue();
+    private Object megamorphicGet(final MegamorphicCache cache, final String key, final boolean isMethod, final boolean isScope) {
+        final MegamorphicCache.Entry entry = cache.lookup(this, key);
+        if (entry != null) {
+            if (entry.property != null) {
+                return entry.getObjectValue(this);
+            }
+        } else {
+            final FindProperty find = findProperty(key, true);
+            if (find != null) {
+                return find.getObjectValue();
+            }
         }
 
         return isMethod ? getNoSuchMethod(key, isScope, INVALID_PROGRAM_POINT) : invokeNoSuchProperty(key, isScope, INVALID_PROGRAM_POINT);
@@ -2210,11 +2225,30 @@ public abstract class ScriptObject implements PropertyAccess, Cloneable {
         }
     }
 
-    private GuardedInvocation findMegaMorphicSetMethod(final CallSiteDescriptor desc, final String name) {
-        final MethodType type = desc.getMethodType().insertParameterTypes(1, Object.class);
+    private static GuardedInvocation findMegaMorphicSetMethod(final CallSiteDescriptor desc, final String name) {
+        final Context context = Context.getContextTrusted();
+        final DebugLogger log = context.getLogger(ObjectClassGenerator.class);
+        if (log.isEnabled()) {
+            log.info("Megamorphic setter: " + desc + " " + name);
+        }
+        final MethodHandle invoker =
+                MH.insertArguments(MEGAMORPHIC_SET, 1, context.getMegamorphicCache(), name, SaiCallSiteDescriptor.getFlags(desc));
         //never bother with ClassCastExceptionGuard for megamorphic callsites
-        final GuardedInvocation inv = findSetIndexMethod(getClass(), desc, false, type);
-        return inv.replaceMethods(MH.insertArguments(inv.getInvocation(), 1, name), inv.getGuard());
+        final MethodHandle guard = getScriptObjectGuard(desc.getMethodType(), true);
+        return new GuardedInvocation(invoker, guard);
+    }
+
+    // The value is set as an object like the generic setObject path does, which avoids creating primitive setters
+    // for properties of a different type. Only writes to own writable data properties are done through the cache.
+    @SuppressWarnings("unused")
+    private void megamorphicSet(final MegamorphicCache cache, final String key, final int callSiteFlags, final Object value) {
+        final MegamorphicCache.Entry entry = cache.lookup(this, key);
+        if (entry != null && entry.depth == 0 && entry.property.isWritable() && !(entry.property instanceof UserAccessorProperty)) {
+            invalidateGlobalConstant(key);
+            entry.property.setValue(this, this, value, isStrictFlag(callSiteFlags));
+        } else {
+            set((Object) key, value, callSiteFlags);
+        }
     }
 
     @SuppressWarnings("unused")
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.runtime;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The threads that have run script code, for tools such as the sampling profiler that only look
+ * at script threads. A thread is registered the first time a global is set on it, and dropped once
+ * it is no longer reachable.
+ */
+public final class ScriptThreads {
+    private static final ThreadLocal<Boolean> registered = new ThreadLocal<>();
+
+    // guarded by itself
+    private static final Map<Thread, Boolean> threads = new WeakHashMap<>();
+
+    private ScriptThreads() {
+    }
+
+    static void register() {
+        if (registered.get() == null) {
+            registered.set(Boolean.TRUE);
+            synchronized (threads) {
+                threads.put(Thread.currentThread(), Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Get the ids of the live threads that have run script code.
+     *
+     * @return thread ids
+     */
+    public static long[] getThreadIds() {
+        synchronized (threads) {
+            final long[] ids = new long[threads.size()];
+            int count = 0;
+            for (final Thread thread : threads.keySet()) {
+                if (thread.isAlive()) {
+                    ids[count++] = thread.threadId();
+                }
+            }
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.codelibs.sai.internal.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Function data and property maps of builtin objects, shared by all globals of a context.
+ * <p>
+ * Neither the function data of builtin functions nor the property maps of builtin objects refer to a
+ * global, so instead of creating them again for every new global they are created by the first global
+ * of the context and reused by the following ones. Every global still gets its own builtin objects, so
+ * changes scripts make to the builtins of one global remain invisible in the others.
+ * <p>
+ * Only the builtins created while a global initializes its builtin objects are shared (see
+ * {@code Global.getSharedBuiltins()}); their method handles are constants, which keeps this cache
+ * bounded by the number of builtins.
+ */
+public final class SharedBuiltins {
+    private static final BiFunction<Entry, Entry, Entry> ADD_ENTRY = new BiFunction<Entry, Entry, Entry>() {
+        @Override
+        public Entry apply(final Entry oldEntry, final Entry newEntry) {
+            return oldEntry.with(newEntry);
+        }
+    };
+
+    // keyed by method handle; the rare builtins sharing a method handle are chained off its entry
+    private final ConcurrentMap<MethodHandle, Entry> functionData = new ConcurrentHashMap<>();
+    private final ConcurrentMap<PropertyMap, PropertyMap> constructorMaps = new ConcurrentHashMap<>();
+
+    SharedBuiltins() {
+    }
+
+    /**
+     * Get the function data for a builtin function, creating it if this is the first global to need it.
+     *
+     * @param name function name
+     * @param mh method handle for the generic version of the function
+     * @param specs specializations of the function, or null
+     * @param flags {@link ScriptFunctionData} flags
+     * @return shared function data
+     */
+    ScriptFunctionData getFunctionData(final String name, final MethodHandle mh, final Specialization[] specs, final int flags) {
+        final Entry first = functionData.get(mh);
+        for (Entry entry = first; entry != null; entry = entry.next) {
+            if (entry.matches(name, specs, flags)) {
+                return entry.data;
+            }
+        }
+
+        final ScriptFunctionData newData = new FinalScriptFunctionData(name, mh, specs, flags);
+        // Another global may have created the same data concurrently; either copy is fine to use.
+        functionData.merge(mh, new Entry(name, specs, flags, newData, null), ADD_ENTRY);
+        return newData;
+    }
+
+    /**
+     * Get the property map of a builtin constructor: the map of its own properties combined with the
+     * map common to all functions.
+     *
+     * @param map map of the constructor's own properties
+     * @param functionMap map common to all functions
+     * @return shared property map
+     */
+    PropertyMap getConstructorMap(final PropertyMap map, final PropertyMap functionMap) {
+        final PropertyMap constructorMap = constructorMaps.get(map);
+        if (constructorMap != null) {
+            return constructorMap;
+        }
+        final PropertyMap newMap = map.addAll(functionMap);
+        final PropertyMap existing = constructorMaps.putIfAbsent(map, newMap);
+        return existing != null ? existing : newMap;
+    }
+
+    /**
+     * Get the number of builtin functions whose data is shared.
+     * @return number of shared function data objects
+     */
+    public int getFunctionDataCount() {
+        int count = 0;
+        for (final Entry first : functionData.values()) {
+            for (Entry entry = first; entry != null; entry = entry.next) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final Specialization[] specs;
+        private final int flags;
+        private final ScriptFunctionData data;
+        private final Entry next;
+
+        Entry(final String name, final Specialization[] specs, final int flags, final ScriptFunctionData data, final Entry next) {
+            this.name = name;
+            this.specs = specs;
+            this.flags = flags;
+            this.data = data;
+            this.next = next;
+        }
+
+        boolean matches(final String otherName, final Specialization[] otherSpecs, final int otherFlags) {
+            if (flags != otherFlags || !name.equals(otherName)) {
+                return false;
+            }
+            if (specs == null || otherSpecs == null) {
+                return specs == otherSpecs;
+            }
+            if (specs.length != otherSpecs.length) {
+                return false;
+            }
+            for (int i = 0; i < specs.length; i++) {
+                if (specs[i].getMethodHandle() != otherSpecs[i].getMethodHandle()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Entry with(final Entry entry) {
+            for (Entry e = this; e != null; e = e.next) {
+                if (e.matches(entry.name, entry.specs, entry.flags)) {
+                    return this;
+                }
+            }
+            return new Entry(entry.name, entry.specs, entry.flags, entry.data, this);
+        }
+    }
+}
@@ -26,8 +26,10 @@
 package org.codelibs.sai.internal.runtime;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -45,6 +47,9 @@ public final class StoredScript implements Serializable {
     /** Map of class names to class bytes. */
     private final Map<String, byte[]> classBytes;
 
+    /** Map of class names to class bytes in buffers, used instead of {@link #classBytes} when not null. */
+    private final transient Map<String, ByteBuffer> classBuffers;
+
     /** Constants array. */
     private final Object[] constants;
 
@@ -64,13 +69,35 @@ public final class StoredScript implements Serializable {
      */
     public StoredScript(final int compilationId, final String mainClassName, final Map<String, byte[]> classBytes,
             final Map<Integer, FunctionInitializer> initializers, final Object[] constants) {
+        this(compilationId, mainClassName, classBytes, null, initializers, constants);
+    }
+
+    private StoredScript(final int compilationId, final String mainClassName, final Map<String, byte[]> classBytes,
+            final Map<String, ByteBuffer> classBuffers, final Map<Integer, FunctionInitializer> initializers, final Object[] constants) {
         this.compilationId = compilationId;
         this.mainClassName = mainClassName;
         this.classBytes = classBytes;
+        this.classBuffers = classBuffers;
         this.constants = constants;
         this.initializers = initializers;
     }
 
+    /**
+     * Create a stored script whose class bytes are held in buffers, such as slices of a memory mapped file.
+     * The classes are installed directly from the buffers.
+     *
+     * @param compilationId compilation id
+     * @param mainClassName main class name
+     * @param classBuffers map of class names to buffers holding the class bytes
+     * @param initializers initializer map, id -&gt; FunctionInitializer
+     * @param constants constants array
+     * @return the stored script
+     */
+    public static StoredScript forClassBuffers(final int compilationId, final String mainClassName,
+            final Map<String, ByteBuffer> classBuffers, final Map<Integer, FunctionInitializer> initializers, final Object[] constants) {
+        return new StoredScript(compilationId, mainClassName, null, classBuffers, initializers, constants);
+    }
+
     /**
      * Get the compilation id for this StoredScript
      * @return compilation id
@@ -79,18 +106,53 @@ public final class StoredScript implements Serializable {
         return compilationId;
     }
 
+    String getMainClassName() {
+        return mainClassName;
+    }
+
+    /**
+     * Get the class bytes of this script, wrapping them in buffers if necessary.
+     * @return map of class names to read-only buffers holding the class bytes
+     */
+    Map<String, ByteBuffer> getClassBuffers() {
+        final Map<String, ByteBuffer> buffers = new LinkedHashMap<>();
+        if (classBuffers != null) {
+            for (final Map.Entry<String, ByteBuffer> entry : classBuffers.entrySet()) {
+                buffers.put(entry.getKey(), entry.getValue().asReadOnlyBuffer());
+            }
+        } else {
+            for (final Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+                buffers.put(entry.getKey(), ByteBuffer.wrap(entry.getValue()).asReadOnlyBuffer());
+            }
+        }
+        return buffers;
+    }
+
+    Map<Integer, FunctionInitializer> getInitializers() {
+        return initializers;
+    }
+
+    Object[] getConstants() {
+        return constants;
+    }
+
+    private Class<?> installClass(final String className, final CodeInstaller installer) {
+        if (classBuffers != null) {
+            // duplicate so concurrent installs of the same script don't share buffer positions
+            return installer.install(className, classBuffers.get(className).duplicate());
+        }
+        return installer.install(className, classBytes.get(className));
+    }
+
     private Map<String, Class<?>> installClasses(final Source source, final CodeInstaller installer) {
         final Map<String, Class<?>> installedClasses = new HashMap<>();
-        final byte[] mainClassBytes = classBytes.get(mainClassName);
-        final Class<?> mainClass = installer.install(mainClassName, mainClassBytes);
+        final Class<?> mainClass = installClass(mainClassName, installer);
 
         installedClasses.put(mainClassName, mainClass);
 
-        for (final Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
-            final String className = entry.getKey();
-
+        for (final String className : (classBuffers != null ? classBuffers : classBytes).keySet()) {
             if (!className.equals(mainClassName)) {
-                installedClasses.put(className, installer.install(className, entry.getValue()));
+                installedClasses.put(className, installClass(className, installer));
             }
         }
 
@@ -146,10 +208,28 @@ public final class StoredScript implements Serializable {
         return installedClasses.get(mainClassName);
     }
 
+    /**
+     * Scripts with class bytes in buffers are serialized with the class bytes copied to arrays.
+     * @return the object to serialize in place of this one
+     */
+    private Object writeReplace() {
+        if (classBuffers == null) {
+            return this;
+        }
+        final Map<String, byte[]> bytes = new LinkedHashMap<>();
+        for (final Map.Entry<String, ByteBuffer> entry : getClassBuffers().entrySet()) {
+            final ByteBuffer buffer = entry.getValue();
+            final byte[] array = new byte[buffer.remaining()];
+            buffer.get(array);
+            bytes.put(entry.getKey(), array);
+        }
+        return new StoredScript(compilationId, mainClassName, bytes, initializers, constants);
+    }
+
     @Override
     public int hashCode() {
         int hash = mainClassName.hashCode();
-        hash = 31 * hash + classBytes.hashCode();
+        hash = 31 * hash + getClassBuffers().hashCode();
         hash = 31 * hash + Arrays.hashCode(constants);
         return hash;
     }
@@ -164,6 +244,7 @@ public final class StoredScript implements Serializable {
         }
 
         final StoredScript cs = (StoredScript) obj;
-        return mainClassName.equals(cs.mainClassName) && classBytes.equals(cs.classBytes) && Arrays.equals(constants, cs.constants);
+        return mainClassName.equals(cs.mainClassName) && getClassBuffers().equals(cs.getClassBuffers())
+                && Arrays.equals(constants, cs.constants);
     }
 }
@@ -93,13 +93,15 @@ public final class Timing implements Loggable {
     }
 
     /**
-     * When timing, this can be called to register a new module for timing
-     * or add to its accumulated time
+     * Register a new module for timing or add to its accumulated time. The time
+     * is always added to the {@link EngineMetrics}, and also to the timing log
+     * if timing is enabled.
      *
      * @param module   module name
      * @param durationNano duration to add to accumulated time for module, in nanoseconds.
      */
     public void accumulateTime(final String module, final long durationNano) {
+        EngineMetrics.phase(module, durationNano);
         if (isEnabled()) {
             ensureInitialized(Context.getContextTrusted());
             timeSupplier.accumulateTime(module, durationNano);
@@ -754,6 +754,18 @@ public abstract class ArrayData {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Sort the elements of this array in place in ascending or descending numeric order.
+     * This is only supported by dense arrays of primitive numbers that contain no values
+     * a numeric comparison function can't order, such as NaN. Other arrays are left unchanged.
+     *
+     * @param descending true to sort in descending order
+     * @return true if the elements were sorted, false if the caller has to sort them
+     */
+    public boolean sortNumeric(final boolean descending) {
+        return false;
+    }
+
     static Class<?> widestType(final Object... items) {
         assert items.length > 0;
 
@@ -38,11 +38,6 @@ import org.codelibs.sai.internal.runtime.ScriptRuntime;
 final class ByteBufferArrayData extends ArrayData {
     private final ByteBuffer buf;
 
-    ByteBufferArrayData(final int length) {
-        super(length);
-        this.buf = ByteBuffer.allocateDirect(length);
-    }
-
     /**
      * Constructor
      *
@@ -128,9 +128,23 @@ final class IntArrayData extends ContinuousArrayData implements IntElements {
 
     @Override
     public Object asArrayOfType(final Class<?> componentType) {
+        final int len = (int) length();
         if (componentType == int.class) {
-            final int len = (int) length();
             return array.length == len ? array.clone() : Arrays.copyOf(array, len);
+        } else if (componentType == double.class) {
+            final double[] darray = new double[len];
+            for (int index = 0; index < len; index++) {
+                darray[index] = array[index];
+            }
+            return darray;
+        } else if (componentType == long.class) {
+            final long[] larray = new long[len];
+            for (int index = 0; index < len; index++) {
+                larray[index] = array[index];
+            }
+            return larray;
+        } else if (componentType == Object.class) {
+            return toObjectArray(true);
         }
         return super.asArrayOfType(componentType);
     }
@@ -315,6 +329,20 @@ final class IntArrayData extends ContinuousArrayData implements IntElements {
         return new IntArrayData(Arrays.copyOfRange(array, (int) from, (int) to), (int) (to - (from < 0 ? from + length() : from)));
     }
 
+    @Override
+    public boolean sortNumeric(final boolean descending) {
+        final int len = (int) length();
+        Arrays.sort(array, 0, len);
+        if (descending) {
+            for (int i = 0, j = len - 1; i < j; i++, j--) {
+                final int tmp = array[i];
+                array[i] = array[j];
+                array[j] = tmp;
+            }
+        }
+        return true;
+    }
+
     @Override
     public ArrayData fastSplice(final int start, final int removed, final int added) throws UnsupportedOperationException {
         final long oldLength = length();
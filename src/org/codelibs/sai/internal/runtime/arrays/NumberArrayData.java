@@ -103,6 +103,8 @@ final class NumberArrayData extends ContinuousArrayData implements NumericElemen
         if (componentType == double.class) {
             final int len = (int) length();
             return array.length == len ? array.clone() : Arrays.copyOf(array, len);
+        } else if (componentType == Object.class) {
+            return toObjectArray(true);
         }
         return super.asArrayOfType(componentType);
     }
@@ -283,6 +285,28 @@ final class NumberArrayData extends ContinuousArrayData implements NumericElemen
         return new NumberArrayData(Arrays.copyOfRange(array, (int) from, (int) to), (int) newLength);
     }
 
+    @Override
+    public boolean sortNumeric(final boolean descending) {
+        final int len = (int) length();
+        for (int i = 0; i < len; i++) {
+            // NaN compares equal to everything and -0 equal to 0, so a stable sort
+            // by comparison function may leave them in places Arrays.sort does not
+            final double d = array[i];
+            if (d != d || d == 0.0 && Double.doubleToRawLongBits(d) != 0L) {
+                return false;
+            }
+        }
+        Arrays.sort(array, 0, len);
+        if (descending) {
+            for (int i = 0, j = len - 1; i < j; i++, j--) {
+                final double tmp = array[i];
+                array[i] = array[j];
+                array[j] = tmp;
+            }
+        }
+        return true;
+    }
+
     @Override
     public ArrayData fastSplice(final int start, final int removed, final int added) throws UnsupportedOperationException {
         final long oldLength = length();
@@ -26,8 +26,6 @@
 package org.codelibs.sai.internal.runtime.arrays;
 
 import java.util.Arrays;
-import java.util.Map;
-import java.util.TreeMap;
 
 import org.codelibs.sai.internal.codegen.types.Type;
 import org.codelibs.sai.internal.runtime.JSType;
@@ -47,13 +45,13 @@ class SparseArrayData extends ArrayData {
     private final long maxDenseLength;
 
     /** Sparse elements. */
-    private TreeMap<Long, Object> sparseMap;
+    private final SparseElementMap sparseMap;
 
     SparseArrayData(final ArrayData underlying, final long length) {
-        this(underlying, length, new TreeMap<Long, Object>());
+        this(underlying, length, new SparseElementMap());
     }
 
-    private SparseArrayData(final ArrayData underlying, final long length, final TreeMap<Long, Object> sparseMap) {
+    private SparseArrayData(final ArrayData underlying, final long length, final SparseElementMap sparseMap) {
         super(length);
         assert underlying.length() <= length;
         this.underlying = underlying;
@@ -63,7 +61,7 @@ class SparseArrayData extends ArrayData {
 
     @Override
     public ArrayData copy() {
-        return new SparseArrayData(underlying.copy(), length(), new TreeMap<>(sparseMap));
+        return new SparseArrayData(underlying.copy(), length(), sparseMap.copy());
     }
 
     @Override
@@ -78,10 +76,10 @@ class SparseArrayData extends ArrayData {
 
         Arrays.fill(objArray, underlyingLength, len, ScriptRuntime.UNDEFINED);
 
-        for (final Map.Entry<Long, Object> entry : sparseMap.entrySet()) {
-            final long key = entry.getKey();
+        for (int i = 0; i < sparseMap.size(); i++) {
+            final long key = sparseMap.keyAt(i);
             if (key < Integer.MAX_VALUE) {
-                objArray[(int) key] = entry.getValue();
+                objArray[(int) key] = sparseMap.get(key);
             } else {
                 break; // ascending key order
             }
@@ -93,24 +91,21 @@ class SparseArrayData extends ArrayData {
     @Override
     public ArrayData shiftLeft(final int by) {
         underlying = underlying.shiftLeft(by);
+        sparseMap.shift(-by);
 
-        final TreeMap<Long, Object> newSparseMap = new TreeMap<>();
-
-        for (final Map.Entry<Long, Object> entry : sparseMap.entrySet()) {
-            final long newIndex = entry.getKey().longValue() - by;
+        // move elements now below the maximum dense length to the underlying array, drop those below zero
+        while (!sparseMap.isEmpty()) {
+            final long newIndex = sparseMap.firstKey();
+            if (newIndex >= maxDenseLength) {
+                break;
+            }
+            final Object value = sparseMap.remove(newIndex);
             if (newIndex >= 0) {
-                if (newIndex < maxDenseLength) {
-                    final long oldLength = underlying.length();
-                    underlying =
-                            underlying.ensure(newIndex).set((int) newIndex, entry.getValue(), false)
-                                    .safeDelete(oldLength, newIndex - 1, false);
-                } else {
-                    newSparseMap.put(Long.valueOf(newIndex), entry.getValue());
-                }
+                final long oldLength = underlying.length();
+                underlying = underlying.ensure(newIndex).set((int) newIndex, value, false).safeDelete(oldLength, newIndex - 1, false);
             }
         }
 
-        sparseMap = newSparseMap;
         setLength(Math.max(length() - by, 0));
 
         return sparseMap.isEmpty() ? underlying : this;
@@ -118,7 +113,7 @@ class SparseArrayData extends ArrayData {
 
     @Override
     public ArrayData shiftRight(final int by) {
-        final TreeMap<Long, Object> newSparseMap = new TreeMap<>();
+        sparseMap.shift(by);
         // Move elements from underlying to sparse map if necessary
         final long len = underlying.length();
         if (len + by > maxDenseLength) {
@@ -126,7 +121,7 @@ class SparseArrayData extends ArrayData {
             final long tempLength = Math.max(0, maxDenseLength - by);
             for (long i = tempLength; i < len; i++) {
                 if (underlying.has((int) i)) {
-                    newSparseMap.put(Long.valueOf(i + by), underlying.getObject((int) i));
+                    sparseMap.put(i + by, underlying.getObject((int) i));
                 }
             }
             underlying = underlying.shrink((int) tempLength);
@@ -134,13 +129,6 @@ class SparseArrayData extends ArrayData {
         }
 
         underlying = underlying.shiftRight(by);
-
-        for (final Map.Entry<Long, Object> entry : sparseMap.entrySet()) {
-            final long newIndex = entry.getKey().longValue() + by;
-            newSparseMap.put(Long.valueOf(newIndex), entry.getValue());
-        }
-
-        sparseMap = newSparseMap;
         setLength(length() + by);
 
         return this;
@@ -163,7 +151,7 @@ class SparseArrayData extends ArrayData {
             setLength(newLength);
         }
 
-        sparseMap.subMap(Long.valueOf(newLength), Long.MAX_VALUE).clear();
+        sparseMap.removeRange(newLength, Long.MAX_VALUE);
         setLength(newLength);
         return this;
     }
@@ -175,7 +163,7 @@ class SparseArrayData extends ArrayData {
             underlying = underlying.ensure(index).set(index, value, strict).safeDelete(oldLength, index - 1, strict);
             setLength(Math.max(underlying.length(), length()));
         } else {
-            final Long longIndex = indexToKey(index);
+            final long longIndex = indexToKey(index);
             sparseMap.put(longIndex, value);
             setLength(Math.max(longIndex + 1, length()));
         }
@@ -190,7 +178,7 @@ class SparseArrayData extends ArrayData {
             underlying = underlying.ensure(index).set(index, value, strict).safeDelete(oldLength, index - 1, strict);
             setLength(Math.max(underlying.length(), length()));
         } else {
-            final Long longIndex = indexToKey(index);
+            final long longIndex = indexToKey(index);
             sparseMap.put(longIndex, value);
             setLength(Math.max(longIndex + 1, length()));
         }
@@ -204,7 +192,7 @@ class SparseArrayData extends ArrayData {
             underlying = underlying.ensure(index).set(index, value, strict).safeDelete(oldLength, index - 1, strict);
             setLength(Math.max(underlying.length(), length()));
         } else {
-            final Long longIndex = indexToKey(index);
+            final long longIndex = indexToKey(index);
             sparseMap.put(longIndex, value);
             setLength(Math.max(longIndex + 1, length()));
         }
@@ -233,7 +221,11 @@ class SparseArrayData extends ArrayData {
         if (index >= 0 && index < maxDenseLength) {
             return underlying.getInt(index);
         }
-        return JSType.toInt32(sparseMap.get(indexToKey(index)));
+        final int slot = sparseMap.find(indexToKey(index));
+        if (slot >= 0 && sparseMap.isNumber(slot)) {
+            return JSType.toInt32(sparseMap.getNumber(slot));
+        }
+        return JSType.toInt32(slot >= 0 ? sparseMap.getObject(slot) : null);
     }
 
     @Override
@@ -241,7 +233,11 @@ class SparseArrayData extends ArrayData {
         if (index >= 0 && index < maxDenseLength) {
             return underlying.getIntOptimistic(index, programPoint);
         }
-        return JSType.toInt32Optimistic(sparseMap.get(indexToKey(index)), programPoint);
+        final int slot = sparseMap.find(indexToKey(index));
+        if (slot >= 0 && sparseMap.isInt(slot)) {
+            return (int) sparseMap.getNumber(slot);
+        }
+        return JSType.toInt32Optimistic(slot >= 0 ? sparseMap.getObject(slot) : null, programPoint);
     }
 
     @Override
@@ -249,7 +245,11 @@ class SparseArrayData extends ArrayData {
         if (index >= 0 && index < maxDenseLength) {
             return underlying.getDouble(index);
         }
-        return JSType.toNumber(sparseMap.get(indexToKey(index)));
+        final int slot = sparseMap.find(indexToKey(index));
+        if (slot >= 0 && sparseMap.isNumber(slot)) {
+            return sparseMap.getNumber(slot);
+        }
+        return JSType.toNumber(slot >= 0 ? sparseMap.getObject(slot) : null);
     }
 
     @Override
@@ -257,7 +257,11 @@ class SparseArrayData extends ArrayData {
         if (index >= 0 && index < maxDenseLength) {
             return underlying.getDouble(index);
         }
-        return JSType.toNumberOptimistic(sparseMap.get(indexToKey(index)), programPoint);
+        final int slot = sparseMap.find(indexToKey(index));
+        if (slot >= 0 && sparseMap.isNumber(slot)) {
+            return sparseMap.getNumber(slot);
+        }
+        return JSType.toNumberOptimistic(slot >= 0 ? sparseMap.getObject(slot) : null, programPoint);
     }
 
     @Override
@@ -266,12 +270,8 @@ class SparseArrayData extends ArrayData {
             return underlying.getObject(index);
         }
 
-        final Long key = indexToKey(index);
-        if (sparseMap.containsKey(key)) {
-            return sparseMap.get(key);
-        }
-
-        return ScriptRuntime.UNDEFINED;
+        final int slot = sparseMap.find(indexToKey(index));
+        return slot >= 0 ? sparseMap.getObject(slot) : ScriptRuntime.UNDEFINED;
     }
 
     @Override
@@ -302,13 +302,13 @@ class SparseArrayData extends ArrayData {
             underlying = underlying.delete(fromIndex, Math.min(toIndex, underlying.length() - 1));
         }
         if (toIndex >= maxDenseLength) {
-            sparseMap.subMap(fromIndex, true, toIndex, true).clear();
+            sparseMap.removeRange(fromIndex, toIndex);
         }
         return this;
     }
 
-    private static Long indexToKey(final int index) {
-        return Long.valueOf(ArrayIndex.toLongIndex(index));
+    private static long indexToKey(final int index) {
+        return ArrayIndex.toLongIndex(index);
     }
 
     @Override
@@ -330,10 +330,103 @@ class SparseArrayData extends ArrayData {
             return result;
         }
         setLength(len - 1);
-        final Long key = Long.valueOf(len - 1);
+        final long key = len - 1;
         return sparseMap.containsKey(key) ? sparseMap.remove(key) : ScriptRuntime.UNDEFINED;
     }
 
+    /**
+     * Copy all elements to a double array if this is an array without holes that fits a Java array
+     * and all its elements are numbers, both in the underlying array and the sparse map.
+     *
+     * @return the elements, or null if they are not all numbers
+     */
+    private double[] toNumberArray() {
+        final long len = length();
+        final int underlyingLength = (int) underlying.length();
+        if (len > Integer.MAX_VALUE || underlyingLength + sparseMap.size() != len
+                || underlyingLength > 0 && !(underlying instanceof NumericElements)
+                || !sparseMap.isEmpty() && sparseMap.firstKey() < underlyingLength) {
+            return null;
+        }
+
+        final double[] values = new double[(int) len];
+        for (int i = 0; i < underlyingLength; i++) {
+            values[i] = underlying.getDouble(i);
+        }
+        for (int i = 0; i < sparseMap.size(); i++) {
+            final int slot = sparseMap.find(sparseMap.keyAt(i));
+            if (!sparseMap.isNumber(slot)) {
+                return null;
+            }
+            values[underlyingLength + i] = sparseMap.getNumber(slot);
+        }
+        return values;
+    }
+
+    /**
+     * Check if all numbers returned by {@link #toNumberArray()} are ints.
+     *
+     * @return true if the underlying array and the sparse map only hold int elements
+     */
+    private boolean hasOnlyInts() {
+        if (underlying.length() > 0 && !(underlying instanceof IntElements)) {
+            return false;
+        }
+        for (int i = 0; i < sparseMap.size(); i++) {
+            if (!sparseMap.isInt(sparseMap.find(sparseMap.keyAt(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object asArrayOfType(final Class<?> componentType) {
+        if (componentType == double.class || (componentType == int.class || componentType == long.class) && hasOnlyInts()) {
+            final double[] values = toNumberArray();
+            if (values != null) {
+                if (componentType == double.class) {
+                    return values;
+                } else if (componentType == int.class) {
+                    final int[] ints = new int[values.length];
+                    for (int i = 0; i < values.length; i++) {
+                        ints[i] = (int) values[i];
+                    }
+                    return ints;
+                }
+                final long[] longs = new long[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    longs[i] = (long) values[i];
+                }
+                return longs;
+            }
+        }
+        return super.asArrayOfType(componentType);
+    }
+
+    @Override
+    public boolean sortNumeric(final boolean descending) {
+        final double[] values = toNumberArray();
+        if (values == null || !new NumberArrayData(values, values.length).sortNumeric(descending)) {
+            return false;
+        }
+
+        final boolean ints = hasOnlyInts();
+        final int underlyingLength = (int) underlying.length();
+        for (int i = 0; i < underlyingLength; i++) {
+            underlying = ints ? underlying.set(i, (int) values[i], false) : underlying.set(i, values[i], false);
+        }
+        for (int i = 0; i < sparseMap.size(); i++) {
+            final long key = sparseMap.keyAt(i);
+            if (ints) {
+                sparseMap.put(key, (int) values[underlyingLength + i]);
+            } else {
+                sparseMap.put(key, values[underlyingLength + i]);
+            }
+        }
+        return true;
+    }
+
     @Override
     public ArrayData slice(final long from, final long to) {
         assert to <= length();
@@ -366,8 +459,8 @@ class SparseArrayData extends ArrayData {
             return underlying.nextIndex(index);
         }
 
-        final Long nextKey = sparseMap.higherKey(index);
-        if (nextKey != null) {
+        final long nextKey = sparseMap.higherKey(index);
+        if (nextKey != -1) {
             return nextKey;
         }
 
@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.codelibs.sai.internal.runtime.arrays;
+
+import java.util.Arrays;
+
+/**
+ * Map from array indices to elements used by {@link SparseArrayData} for elements beyond its dense part.
+ * <p>
+ * Keys are primitive longs in an open addressing hash table with linear probing. Values are kept in
+ * parallel lanes: int and double elements are stored unboxed in a double lane and marked in the object
+ * lane, all other elements are stored in the object lane.
+ * <p>
+ * Ordered access uses a separately kept array of sorted keys. Adding keys in ascending order and removing
+ * the first or last key keeps it up to date, other changes make it stale and it is sorted again on the next
+ * ordered access.
+ * <p>
+ * All keys are stored relative to an offset, so shifting every key by the same distance does not touch
+ * the table.
+ */
+final class SparseElementMap {
+    /** Key of unused slots. Stored keys are array indices minus the offset and never reach this value. */
+    private static final long FREE = Long.MIN_VALUE;
+
+    /** Marker in the object lane for an int element in the number lane. */
+    private static final Object INT = new Object();
+
+    /** Marker in the object lane for a double element in the number lane. */
+    private static final Object DOUBLE = new Object();
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Hash table of stored keys. */
+    private long[] keys;
+
+    /** Unboxed int and double elements. */
+    private double[] numbers;
+
+    /** Object elements, or {@link #INT} or {@link #DOUBLE} for elements in {@link #numbers}. */
+    private Object[] objects;
+
+    /** Number of elements. */
+    private int size;
+
+    /** Number of bits to shift a hash code to get a table index. */
+    private int hashShift;
+
+    /** Difference between array indices and stored keys. */
+    private long offset;
+
+    /** Sorted stored keys from orderStart (inclusive) to orderEnd (exclusive), valid if orderValid is set. */
+    private long[] order;
+    private int orderStart;
+    private int orderEnd;
+    private boolean orderValid;
+
+    SparseElementMap() {
+        allocate(INITIAL_CAPACITY);
+        this.order = new long[INITIAL_CAPACITY];
+        this.orderValid = true;
+    }
+
+    private SparseElementMap(final SparseElementMap map) {
+        this.keys = map.keys.clone();
+        this.numbers = map.numbers.clone();
+        this.objects = map.objects.clone();
+        this.size = map.size;
+        this.hashShift = map.hashShift;
+        this.offset = map.offset;
+        this.order = map.order.clone();
+        this.orderStart = map.orderStart;
+        this.orderEnd = map.orderEnd;
+        this.orderValid = map.orderValid;
+    }
+
+    /**
+     * Copy this map.
+     *
+     * @return a new map with the same elements
+     */
+    SparseElementMap copy() {
+        return new SparseElementMap(this);
+    }
+
+    /**
+     * Get the number of elements.
+     *
+     * @return number of elements
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Check if this map has no elements.
+     *
+     * @return true if the map is empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all elements.
+     */
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE);
+            Arrays.fill(objects, null);
+            size = 0;
+        }
+        orderStart = orderEnd = 0;
+        orderValid = true;
+    }
+
+    /**
+     * Find the slot of an element.
+     *
+     * @param index array index
+     * @return slot of the element or -1 if there is none
+     */
+    int find(final long index) {
+        final long key = index - offset;
+        final int mask = keys.length - 1;
+        for (int slot = hash(key);; slot = slot + 1 & mask) {
+            final long k = keys[slot];
+            if (k == key) {
+                return slot;
+            } else if (k == FREE) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Check if there is an element for an array index.
+     *
+     * @param index array index
+     * @return true if there is an element
+     */
+    boolean containsKey(final long index) {
+        return find(index) >= 0;
+    }
+
+    /**
+     * Get an element.
+     *
+     * @param index array index
+     * @return the element, int and double elements boxed, or null if there is none
+     */
+    Object get(final long index) {
+        final int slot = find(index);
+        return slot < 0 ? null : getObject(slot);
+    }
+
+    /**
+     * Get the element in a slot, int and double elements boxed.
+     *
+     * @param slot slot returned by {@link #find(long)}
+     * @return the element
+     */
+    Object getObject(final int slot) {
+        final Object value = objects[slot];
+        if (value == INT) {
+            return (int) numbers[slot];
+        } else if (value == DOUBLE) {
+            return numbers[slot];
+        }
+        return value;
+    }
+
+    /**
+     * Check if the element in a slot is an int.
+     *
+     * @param slot slot returned by {@link #find(long)}
+     * @return true for an int element
+     */
+    boolean isInt(final int slot) {
+        return objects[slot] == INT;
+    }
+
+    /**
+     * Check if the element in a slot is an int or a double.
+     *
+     * @param slot slot returned by {@link #find(long)}
+     * @return true for an int or double element
+     */
+    boolean isNumber(final int slot) {
+        final Object value = objects[slot];
+        return value == INT || value == DOUBLE;
+    }
+
+    /**
+     * Get the value of an int or double element.
+     *
+     * @param slot slot of an element for which {@link #isNumber(int)} is true
+     * @return the number
+     */
+    double getNumber(final int slot) {
+        assert isNumber(slot);
+        return numbers[slot];
+    }
+
+    /**
+     * Set an element. Integer and Double values are stored unboxed.
+     *
+     * @param index array index
+     * @param value the element
+     */
+    void put(final long index, final Object value) {
+        if (value instanceof Integer) {
+            put(index, ((Integer) value).doubleValue(), INT);
+        } else if (value instanceof Double) {
+            put(index, ((Double) value).doubleValue(), DOUBLE);
+        } else {
+            put(index, 0.0, value);
+        }
+    }
+
+    /**
+     * Set an int element.
+     *
+     * @param index array index
+     * @param value the element
+     */
+    void put(final long index, final int value) {
+        put(index, value, INT);
+    }
+
+    /**
+     * Set a double element.
+     *
+     * @param index array index
+     * @param value the element
+     */
+    void put(final long index, final double value) {
+        put(index, value, DOUBLE);
+    }
+
+    private void put(final long index, final double number, final Object object) {
+        final long key = index - offset;
+        final int mask = keys.length - 1;
+        int slot = hash(key);
+        for (long k; (k = keys[slot]) != FREE; slot = slot + 1 & mask) {
+            if (k == key) {
+                numbers[slot] = number;
+                objects[slot] = object;
+                return;
+            }
+        }
+
+        keys[slot] = key;
+        numbers[slot] = number;
+        objects[slot] = object;
+        size++;
+        addOrder(key);
+
+        if (size > keys.length - (keys.length >>> 2)) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Remove an element.
+     *
+     * @param index array index
+     * @return the removed element, or null if there was none
+     */
+    Object remove(final long index) {
+        final int slot = find(index);
+        if (slot < 0) {
+            return null;
+        }
+        final Object value = getObject(slot);
+        removeOrder(keys[slot]);
+        removeSlot(slot);
+        return value;
+    }
+
+    /**
+     * Remove all elements with an index in a range.
+     *
+     * @param from first index of the range
+     * @param to last index of the range (inclusive)
+     */
+    void removeRange(final long from, final long to) {
+        if (size == 0 || from > to) {
+            return;
+        }
+        ensureOrder();
+        final int lo = lowerBound(from - offset);
+        // offsets are small, so only an unbounded range end can overflow
+        final int hi = to >= Long.MAX_VALUE >>> 1 ? orderEnd : lowerBound(to - offset + 1);
+        if (hi - lo == size) {
+            clear();
+            return;
+        }
+        for (int i = lo; i < hi; i++) {
+            removeSlot(findKey(order[i]));
+        }
+        System.arraycopy(order, hi, order, lo, orderEnd - hi);
+        orderEnd -= hi - lo;
+    }
+
+    /**
+     * Add a distance to the index of every element.
+     *
+     * @param distance distance to add, negative to shift to lower indices
+     */
+    void shift(final long distance) {
+        offset += distance;
+    }
+
+    /**
+     * Get the lowest index of all elements.
+     *
+     * @return the lowest index, undefined if the map is empty
+     */
+    long firstKey() {
+        assert size > 0;
+        ensureOrder();
+        return order[orderStart] + offset;
+    }
+
+    /**
+     * Get the lowest index of all elements that is higher than the given index.
+     *
+     * @param index the index
+     * @return the next higher index, or -1 if there is none
+     */
+    long higherKey(final long index) {
+        if (size == 0) {
+            return -1;
+        }
+        ensureOrder();
+        final long key = index - offset;
+        if (key >= order[orderEnd - 1]) {
+            return -1;
+        }
+        return order[lowerBound(key + 1)] + offset;
+    }
+
+    /**
+     * Get the index of the n-th element in ascending index order.
+     *
+     * @param n position of the element, from 0 to {@code size() - 1}
+     * @return the index
+     */
+    long keyAt(final int n) {
+        ensureOrder();
+        return order[orderStart + n] + offset;
+    }
+
+    private int hash(final long key) {
+        return (int) (key * 0x9E37_79B9_7F4A_7C15L >>> hashShift);
+    }
+
+    private int findKey(final long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key);
+        while (keys[slot] != key) {
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        numbers = new double[capacity];
+        objects = new Object[capacity];
+        hashShift = Long.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final double[] oldNumbers = numbers;
+        final Object[] oldObjects = objects;
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (key != FREE) {
+                int slot = hash(key);
+                while (keys[slot] != FREE) {
+                    slot = slot + 1 & mask;
+                }
+                keys[slot] = key;
+                numbers[slot] = oldNumbers[i];
+                objects[slot] = oldObjects[i];
+            }
+        }
+    }
+
+    // Backward shift deletion: move following entries of the probe sequence into the freed slot
+    // unless their home slot lies cyclically after it, so lookups never need tombstones.
+    private void removeSlot(final int removed) {
+        final int mask = keys.length - 1;
+        int free = removed;
+        for (int slot = free + 1 & mask; keys[slot] != FREE; slot = slot + 1 & mask) {
+            final int home = hash(keys[slot]);
+            if (free <= slot ? free < home && home <= slot : free < home || home <= slot) {
+                continue;
+            }
+            keys[free] = keys[slot];
+            numbers[free] = numbers[slot];
+            objects[free] = objects[slot];
+            free = slot;
+        }
+        keys[free] = FREE;
+        objects[free] = null;
+        size--;
+    }
+
+    private void addOrder(final long key) {
+        if (!orderValid) {
+            return;
+        }
+        if (orderStart == orderEnd) {
+            orderStart = orderEnd = 0;
+        } else if (key < order[orderEnd - 1]) {
+            orderValid = false;
+            return;
+        }
+        if (orderEnd == order.length) {
+            if (orderStart > order.length >>> 1) {
+                System.arraycopy(order, orderStart, order, 0, orderEnd - orderStart);
+                orderEnd -= orderStart;
+                orderStart = 0;
+            } else {
+                order = Arrays.copyOf(order, order.length << 1);
+            }
+        }
+        order[orderEnd++] = key;
+    }
+
+    private void removeOrder(final long key) {
+        if (!orderValid) {
+            return;
+        }
+        if (order[orderEnd - 1] == key) {
+            orderEnd--;
+        } else if (order[orderStart] == key) {
+            orderStart++;
+        } else {
+            orderValid = false;
+        }
+    }
+
+    private void ensureOrder() {
+        if (orderValid) {
+            return;
+        }
+        if (order.length < size) {
+            order = new long[keys.length];
+        }
+        int n = 0;
+        for (final long key : keys) {
+            if (key != FREE) {
+                order[n++] = key;
+            }
+        }
+        Arrays.sort(order, 0, n);
+        orderStart = 0;
+        orderEnd = n;
+        orderValid = true;
+    }
+
+    // Position of the first stored key not lower than the given key in the ordered keys.
+    private int lowerBound(final long key) {
+        int lo = orderStart;
+        int hi = orderEnd;
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (order[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
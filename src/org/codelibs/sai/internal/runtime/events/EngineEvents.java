@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.runtime.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events emitted by the engine metrics. This is the only
+ * class that refers to the jdk.jfr module, so callers must check that the
+ * module is present before using it. Events are cheap to create when no
+ * recording is active: they are only populated and committed if enabled.
+ * Event classes are only loaded once the recorder is initialized, see
+ * {@link #isRecorderInitialized()}.
+ */
+public final class EngineEvents {
+    private static final String CATEGORY = "Sai";
+
+    private EngineEvents() {
+    }
+
+    /**
+     * Check if the flight recorder is initialized, that is, if a recording was ever started
+     * @return true if events can be recorded
+     */
+    public static boolean isRecorderInitialized() {
+        return FlightRecorder.isInitialized();
+    }
+
+    @Name("org.codelibs.sai.Compilation")
+    @Label("Script Compilation")
+    @Description("A compile job for a script or function")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class CompilationEvent extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Phases")
+        String phases;
+
+        @Label("Compilation Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long compilationTime;
+    }
+
+    @Name("org.codelibs.sai.Deoptimization")
+    @Label("Script Deoptimization")
+    @Description("An optimistic type assumption failed and the function is continued in deoptimized code")
+    @Category(CATEGORY)
+    static final class DeoptimizationEvent extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Program Point")
+        int programPoint;
+
+        @Label("Return Type")
+        String returnType;
+    }
+
+    @Name("org.codelibs.sai.Relink")
+    @Label("Call Site Relink")
+    @Description("A dynamic call site was relinked")
+    @Category(CATEGORY)
+    @Enabled(false)
+    static final class RelinkEvent extends Event {
+        @Label("Call Site")
+        String callSite;
+
+        @Label("Relink Count")
+        int relinkCount;
+    }
+
+    @Name("org.codelibs.sai.MegamorphicCallSite")
+    @Label("Megamorphic Call Site")
+    @Description("A dynamic call site relinked too often and switched to generic lookup")
+    @Category(CATEGORY)
+    static final class MegamorphicEvent extends Event {
+        @Label("Call Site")
+        String callSite;
+    }
+
+    @Name("org.codelibs.sai.GlobalCreation")
+    @Label("Global Creation")
+    @Description("A script global object was initialized")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class GlobalCreationEvent extends Event {
+        @Label("Initialization Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long initializationTime;
+    }
+
+    /**
+     * Emit a compilation event
+     * @param function name of the compiled function
+     * @param phases   description of the compilation phases run
+     * @param duration compilation time in nanoseconds
+     */
+    public static void compilation(final String function, final String phases, final long duration) {
+        final CompilationEvent event = new CompilationEvent();
+        if (event.isEnabled()) {
+            event.function = function;
+            event.phases = phases;
+            event.compilationTime = duration;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emit a deoptimization event
+     * @param function     name of the deoptimized function
+     * @param programPoint program point of the failed assumption
+     * @param returnType   actual type of the value at the program point
+     */
+    public static void deoptimization(final String function, final int programPoint, final String returnType) {
+        final DeoptimizationEvent event = new DeoptimizationEvent();
+        if (event.isEnabled()) {
+            event.function = function;
+            event.programPoint = programPoint;
+            event.returnType = returnType;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emit a relink event
+     * @param callSite    description of the call site
+     * @param relinkCount number of times the call site relinked so far
+     */
+    public static void relink(final String callSite, final int relinkCount) {
+        final RelinkEvent event = new RelinkEvent();
+        if (event.isEnabled()) {
+            event.callSite = callSite;
+            event.relinkCount = relinkCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emit a megamorphic call site event
+     * @param callSite description of the call site
+     */
+    public static void megamorphic(final String callSite) {
+        final MegamorphicEvent event = new MegamorphicEvent();
+        if (event.isEnabled()) {
+            event.callSite = callSite;
+            event.commit();
+        }
+    }
+
+    /**
+     * Emit a global creation event
+     * @param duration initialization time in nanoseconds
+     */
+    public static void globalCreation(final long duration) {
+        final GlobalCreationEvent event = new GlobalCreationEvent();
+        if (event.isEnabled()) {
+            event.initializationTime = duration;
+            event.commit();
+        }
+    }
+}
@@ -50,6 +50,7 @@ import org.codelibs.sai.internal.dynalink.DynamicLinker;
 import org.codelibs.sai.internal.dynalink.linker.GuardedInvocation;
 import org.codelibs.sai.internal.runtime.Context;
 import org.codelibs.sai.internal.runtime.Debug;
+import org.codelibs.sai.internal.runtime.EngineMetrics;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.ScriptRuntime;
 import org.codelibs.sai.internal.runtime.options.Options;
@@ -70,6 +71,9 @@ public class LinkerCallSite extends ChainedCallSite {
 
     private int catchInvalidations;
 
+    private int linkCount;
+    private String metricsName;
+
     LinkerCallSite(final SaiCallSiteDescriptor descriptor) {
         super(descriptor);
         if (Context.DEBUG) {
@@ -142,14 +146,34 @@ public class LinkerCallSite extends ChainedCallSite {
 
     @Override
     public void relink(final GuardedInvocation invocation, final MethodHandle relink) {
+        recordRelink();
         super.relink(invocation, getDebuggingRelink(relink));
     }
 
     @Override
     public void resetAndRelink(final GuardedInvocation invocation, final MethodHandle relink) {
+        // the linker resets a call site only once, when it becomes unstable
+        recordRelink();
+        EngineMetrics.megamorphic(getMetricsName());
         super.resetAndRelink(invocation, getDebuggingRelink(relink));
     }
 
+    private void recordRelink() {
+        // the first link of a call site is not a relink
+        final int relinkCount = linkCount++;
+        if (relinkCount > 0) {
+            // only describe call sites that keep relinking, as finding the script location walks the stack
+            EngineMetrics.relink(relinkCount >= EngineMetrics.CALL_SITE_TRACKING_THRESHOLD ? getMetricsName() : null, relinkCount);
+        }
+    }
+
+    private String getMetricsName() {
+        if (metricsName == null) {
+            metricsName = getDescriptor().getName() + " @ " + getScriptLocation();
+        }
+        return metricsName;
+    }
+
     private MethodHandle getDebuggingRelink(final MethodHandle relink) {
         if (Context.DEBUG) {
             return MH.filterArguments(relink, 0, getIncreaseMissCounter(relink.type().parameterType(0)));
@@ -25,16 +25,20 @@
 
 package org.codelibs.sai.internal.runtime.regexp;
 
+import java.lang.ref.SoftReference;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import org.codelibs.sai.internal.runtime.ECMAErrors;
 import org.codelibs.sai.internal.runtime.ParserException;
+import org.codelibs.sai.internal.runtime.options.Options;
 import org.codelibs.sai.internal.runtime.regexp.joni.Matcher;
 import org.codelibs.sai.internal.runtime.regexp.joni.Option;
 import org.codelibs.sai.internal.runtime.regexp.joni.Regex;
 import org.codelibs.sai.internal.runtime.regexp.joni.Region;
 import org.codelibs.sai.internal.runtime.regexp.joni.Syntax;
 import org.codelibs.sai.internal.runtime.regexp.joni.exception.JOniException;
+import org.codelibs.sai.internal.runtime.regexp.joni.exception.MatchLimitException;
 
 /**
  * Regular expression implementation based on the Joni engine from the JRuby project.
@@ -44,6 +48,29 @@ public class JoniRegExp extends RegExp {
     /** Compiled Joni Regex */
     private Regex regex;
 
+    /** Maximum number of backtracks of a single match, 0 for no limit */
+    private static final int BACKTRACK_LIMIT = Options.getIntProperty("sai.regexp.backtrack.limit", 0);
+
+    /** Maximum number of backtracking stack entries of a single match, 0 for no limit */
+    private static final int STACK_LIMIT = Options.getIntProperty("sai.regexp.stack.limit", 0);
+
+    /** Number of searches after which a regexp is compiled to JVM byte code, 0 to compile it right away, negative to never compile */
+    private static final int JIT_THRESHOLD = Options.getIntProperty("sai.regexp.jit.threshold", 1000);
+
+    /** Subjects shorter than this are copied for every match, as caching them costs more than copying */
+    private static final int MIN_SHARED_SUBJECT_LENGTH = 256;
+
+    /**
+     * Chars of the last long subject string matched on each thread, by any regexp. Loops calling exec
+     * or test on the same string reuse these instead of copying the whole string for every match. Kept
+     * per thread, so that threads sharing a cached regexp for different strings do not keep replacing
+     * each other's subject, and softly referenced, so an idle thread does not keep a large string alive.
+     */
+    private static final ThreadLocal<SoftReference<Subject>> lastSubject = new ThreadLocal<>();
+
+    /** Searches run so far, up to the JIT threshold. Updated without synchronization, as it is only a heuristic. */
+    private int searchCount;
+
     /**
      * Construct a Regular expression from the given {@code pattern} and {@code flags} strings.
      *
@@ -96,6 +123,39 @@ public class JoniRegExp extends RegExp {
         return new JoniMatcher(input);
     }
 
+    private void countSearch() {
+        if (searchCount < JIT_THRESHOLD) {
+            searchCount++;
+        } else if (searchCount == JIT_THRESHOLD) {
+            searchCount++;
+            regex.compileProgram();
+        }
+    }
+
+    private static char[] getChars(final String input) {
+        final SoftReference<Subject> ref = lastSubject.get();
+        final Subject subject = ref == null ? null : ref.get();
+        if (subject != null && subject.input == input) {
+            return subject.chars;
+        }
+        final char[] chars = input.toCharArray();
+        if (chars.length >= MIN_SHARED_SUBJECT_LENGTH) {
+            // never modified by the matcher, so it can be shared by other matches on this thread
+            lastSubject.set(new SoftReference<>(new Subject(input, chars)));
+        }
+        return chars;
+    }
+
+    private static final class Subject {
+        final String input;
+        final char[] chars;
+
+        Subject(final String input, final char[] chars) {
+            this.input = input;
+            this.chars = chars;
+        }
+    }
+
     /**
      * RegExp Factory class for Joni regexp engine.
      */
@@ -114,12 +174,18 @@ public class JoniRegExp extends RegExp {
 
         JoniMatcher(final String input) {
             this.input = input;
-            this.joniMatcher = regex.matcher(input.toCharArray());
+            this.joniMatcher = regex.matcher(getChars(input));
+            this.joniMatcher.setMatchLimits(BACKTRACK_LIMIT, STACK_LIMIT);
         }
 
         @Override
         public boolean search(final int start) {
-            return joniMatcher.search(start, input.length(), Option.NONE) > -1;
+            countSearch();
+            try {
+                return joniMatcher.search(start, input.length(), Option.NONE) > -1;
+            } catch (final MatchLimitException e) {
+                throw ECMAErrors.rangeError(e, "regex.match.limit", getSource(), e.getMessage());
+            }
         }
 
         @Override
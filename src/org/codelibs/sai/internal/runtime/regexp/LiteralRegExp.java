@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.runtime.regexp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Regular expression implementation for patterns that are a literal string or an alternation
+ * of literal strings, such as {@code /\r\n/} or {@code /GET|POST|PUT/}. These are matched with
+ * {@link String#indexOf(String, int)} or an Aho-Corasick automaton, without the overhead of a
+ * general regexp engine. Created by {@link RegExpFactory} when {@link #compile} accepts the pattern.
+ */
+public final class LiteralRegExp extends RegExp {
+
+    /** Alternations whose transition table may exceed this many entries are left to the regexp engine */
+    private static final long MAX_TRANSITIONS = 256 * 1024;
+
+    /** Alternatives of the pattern, in order */
+    private final String[] literals;
+
+    /** Length of the longest alternative */
+    private final int maxLength;
+
+    /** Char class of every ASCII char, 0 for chars that are not in any alternative */
+    private final int[] asciiClasses;
+
+    /** Sorted non-ASCII chars of the alternatives, the char class of others[i] is classCount - others.length + i */
+    private final char[] others;
+
+    /** Number of char classes, including 0 */
+    private final int classCount;
+
+    /** Automaton transitions, next state is transitions[state * classCount + class] */
+    private final int[] transitions;
+
+    /** For every automaton state, the length of the longest alternative ending there, 0 for none */
+    private final int[] matchLengths;
+
+    private LiteralRegExp(final String source, final String flags, final String[] literals) {
+        super(source, flags);
+        this.literals = literals;
+
+        int max = 0;
+        final int[] ascii = new int[128];
+        final StringBuilder nonAscii = new StringBuilder();
+        int classes = 1;
+        for (final String literal : literals) {
+            max = Math.max(max, literal.length());
+            for (int i = 0; i < literal.length(); i++) {
+                final char c = literal.charAt(i);
+                if (c < 128) {
+                    if (ascii[c] == 0) {
+                        ascii[c] = classes++;
+                    }
+                } else if (nonAscii.indexOf(String.valueOf(c)) < 0) {
+                    nonAscii.append(c);
+                }
+            }
+        }
+        this.maxLength = max;
+        this.asciiClasses = ascii;
+        this.others = nonAscii.toString().toCharArray();
+        Arrays.sort(others);
+        this.classCount = classes + others.length;
+
+        if (literals.length == 1) {
+            this.transitions = null;
+            this.matchLengths = null;
+        } else {
+            final int[][] automaton = buildAutomaton();
+            this.transitions = automaton[0];
+            this.matchLengths = automaton[1];
+        }
+    }
+
+    /**
+     * Compile a regexp if its pattern is a literal string or an alternation of literal strings.
+     *
+     * @param pattern RegExp pattern string
+     * @param flags RegExp flag string
+     * @return the literal regexp, or null if the pattern needs a general regexp engine
+     * @throws org.codelibs.sai.internal.runtime.ParserException if flags is invalid
+     */
+    public static LiteralRegExp compile(final String pattern, final String flags) {
+        final String[] literals = parseLiterals(pattern);
+        if (literals == null || flags.indexOf('i') >= 0) {
+            return null;
+        }
+        if (literals.length > 1 && maxTransitions(literals) > MAX_TRANSITIONS) {
+            return null;
+        }
+        return new LiteralRegExp(pattern, flags, literals);
+    }
+
+    /**
+     * Upper bound of the size of the transition table: one state per char of the alternatives
+     * plus the initial state, times one class per distinct char plus the class of other chars.
+     */
+    private static long maxTransitions(final String[] literals) {
+        long states = 1;
+        final BitSet chars = new BitSet();
+        for (final String literal : literals) {
+            states += literal.length();
+            for (int i = 0; i < literal.length(); i++) {
+                chars.set(literal.charAt(i));
+            }
+        }
+        return states * (chars.cardinality() + 1);
+    }
+
+    /**
+     * Split a pattern into its literal alternatives. Only escapes of ASCII punctuation and of
+     * control chars are allowed, everything else that has a meaning in a regexp rejects the pattern.
+     */
+    private static String[] parseLiterals(final String pattern) {
+        final List<String> alternatives = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            switch (c) {
+            case '\\':
+                if (++i == pattern.length()) {
+                    return null;
+                }
+                c = pattern.charAt(i);
+                switch (c) {
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                case 'f':
+                    c = '\f';
+                    break;
+                case 'v':
+                    c = '\u000B';
+                    break;
+                default:
+                    if (c >= 128 || Character.isLetterOrDigit(c)) {
+                        return null;
+                    }
+                    break;
+                }
+                break;
+            case '|':
+                if (sb.length() == 0) {
+                    return null;
+                }
+                alternatives.add(sb.toString());
+                sb.setLength(0);
+                continue;
+            case '^':
+            case '$':
+            case '.':
+            case '*':
+            case '+':
+            case '?':
+            case '(':
+            case ')':
+            case '[':
+            case ']':
+            case '{':
+            case '}':
+                return null;
+            default:
+                break;
+            }
+            sb.append(c);
+        }
+
+        if (sb.length() == 0) {
+            return null;
+        }
+        alternatives.add(sb.toString());
+        return alternatives.toArray(new String[alternatives.size()]);
+    }
+
+    private int charClass(final char c) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        final int index = Arrays.binarySearch(others, c);
+        return index < 0 ? 0 : classCount - others.length + index;
+    }
+
+    /**
+     * Build the Aho-Corasick automaton of the alternatives, with the failure transitions
+     * folded into a full transition table.
+     */
+    private int[][] buildAutomaton() {
+        int size = 1;
+        for (final String literal : literals) {
+            size += literal.length();
+        }
+
+        final int[] next = new int[size * classCount];
+        final int[] lengths = new int[size];
+        int states = 1;
+
+        // trie of the alternatives, 0 is the root and no state transitions back to it yet
+        for (final String literal : literals) {
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                final int t = state * classCount + charClass(literal.charAt(i));
+                if (next[t] == 0) {
+                    next[t] = states++;
+                }
+                state = next[t];
+            }
+            lengths[state] = Math.max(lengths[state], literal.length());
+        }
+
+        // breadth first, every missing transition follows the failure state of its source
+        final int[] failure = new int[states];
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classCount; c++) {
+            if (next[c] != 0) {
+                queue.add(next[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            lengths[state] = Math.max(lengths[state], lengths[failure[state]]);
+            for (int c = 0; c < classCount; c++) {
+                final int t = state * classCount + c;
+                final int fallback = next[failure[state] * classCount + c];
+                if (next[t] == 0) {
+                    next[t] = fallback;
+                } else {
+                    failure[next[t]] = fallback;
+                    queue.add(next[t]);
+                }
+            }
+        }
+
+        return new int[][] { Arrays.copyOf(next, states * classCount), Arrays.copyOf(lengths, states) };
+    }
+
+    @Override
+    public RegExpMatcher match(final String str) {
+        return new LiteralMatcher(str);
+    }
+
+    class LiteralMatcher implements RegExpMatcher {
+        final String input;
+        int start = -1;
+        int end = -1;
+
+        LiteralMatcher(final String input) {
+            this.input = input;
+        }
+
+        @Override
+        public boolean search(final int from) {
+            final int index = transitions == null ? input.indexOf(literals[0], from) : searchAlternatives(from);
+            if (index < 0) {
+                return false;
+            }
+            start = index;
+            end = index + (transitions == null ? literals[0] : matchingLiteral(index)).length();
+            return true;
+        }
+
+        /**
+         * Find the leftmost position where any alternative matches.
+         */
+        private int searchAlternatives(final int from) {
+            final String s = input;
+            final int length = s.length();
+            int best = -1;
+            int state = 0;
+            for (int i = from; i < length; i++) {
+                if (best >= 0 && i + 1 - maxLength >= best) {
+                    // no later match can start before the one found
+                    break;
+                }
+                state = transitions[state * classCount + charClass(s.charAt(i))];
+                final int matchLength = matchLengths[state];
+                if (matchLength > 0 && (best < 0 || i + 1 - matchLength < best)) {
+                    best = i + 1 - matchLength;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Like a regexp alternation, the first alternative matching at a position wins.
+         */
+        private String matchingLiteral(final int index) {
+            for (final String literal : literals) {
+                if (input.startsWith(literal, index)) {
+                    return literal;
+                }
+            }
+            throw new AssertionError();
+        }
+
+        @Override
+        public String getInput() {
+            return input;
+        }
+
+        @Override
+        public int start() {
+            return start;
+        }
+
+        @Override
+        public int start(final int group) {
+            checkGroup(group);
+            return start;
+        }
+
+        @Override
+        public int end() {
+            return end;
+        }
+
+        @Override
+        public int end(final int group) {
+            checkGroup(group);
+            return end;
+        }
+
+        @Override
+        public String group() {
+            return input.substring(start, end);
+        }
+
+        @Override
+        public String group(final int group) {
+            checkGroup(group);
+            return group();
+        }
+
+        @Override
+        public int groupCount() {
+            return 0;
+        }
+
+        private void checkGroup(final int group) {
+            if (group != 0) {
+                throw new IndexOutOfBoundsException("No group " + group);
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.codelibs.sai.internal.runtime.regexp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of compiled regular expressions, keyed by pattern and flags and bounded by number of entries.
+ * <p>
+ * Lookups go through a concurrent map keyed by the pattern string, with the few flag combinations used
+ * with a pattern chained off its entry, so a lookup neither blocks nor allocates a key. Eviction uses
+ * the CLOCK approximation of LRU: a hit only sets a flag on the entry, and on insertion into a full cache
+ * the clock hand sweeps over the entries, evicting the first one not hit since the hand last passed it.
+ */
+public final class RegExpCache {
+    private final ConcurrentMap<String, Node> map = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final int maxSize;
+
+    // policy state, guarded by lock
+    private final Node[] clock;
+    private int hand;
+    private int size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param maxSize maximum number of cached regular expressions
+     */
+    RegExpCache(final int maxSize) {
+        assert maxSize > 0;
+        this.maxSize = maxSize;
+        this.clock = new Node[maxSize];
+    }
+
+    /**
+     * Look up a compiled regular expression.
+     *
+     * @param pattern RegExp pattern string
+     * @param flags RegExp flags string
+     * @return the cached regular expression, or null if not cached
+     */
+    RegExp get(final String pattern, final String flags) {
+        for (Node node = map.get(pattern); node != null; node = node.next) {
+            if (node.flags.equals(flags)) {
+                hits.increment();
+                if (!node.referenced) {
+                    node.referenced = true;
+                }
+                return node.regexp;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache a compiled regular expression.
+     *
+     * @param pattern RegExp pattern string
+     * @param flags RegExp flags string
+     * @param regexp the compiled regular expression
+     */
+    void cache(final String pattern, final String flags, final RegExp regexp) {
+        lock.lock();
+        try {
+            final Node first = map.get(pattern);
+            for (Node node = first; node != null; node = node.next) {
+                if (node.flags.equals(flags)) {
+                    // compiled concurrently by another thread
+                    return;
+                }
+            }
+            final int slot = size < maxSize ? size++ : evict();
+            final Node node = new Node(pattern, flags, regexp, first);
+            node.slot = slot;
+            clock[slot] = node;
+            map.put(pattern, node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of lookups that found a cached regular expression.
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that did not find a cached regular expression.
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of regular expressions evicted to stay within the size limit.
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the ratio of lookups that found a cached regular expression.
+     * @return hit rate between 0 and 1, or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        final long h = hits.sum();
+        final long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Get the number of cached regular expressions.
+     * @return current size
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the maximum number of cached regular expressions.
+     * @return maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private int evict() {
+        for (;;) {
+            final Node node = clock[hand];
+            final int slot = hand;
+            hand = (hand + 1) % maxSize;
+            if (node.referenced) {
+                node.referenced = false;
+            } else {
+                remove(node);
+                evictions.increment();
+                return slot;
+            }
+        }
+    }
+
+    private void remove(final Node victim) {
+        // Chains are immutable so concurrent lookups can walk them; rebuild the prefix before the victim.
+        final Node first = map.get(victim.pattern);
+        Node rest = victim.next;
+        for (Node node = first; node != victim; node = node.next) {
+            rest = node.copy(rest);
+            clock[rest.slot] = rest;
+        }
+        if (rest == null) {
+            map.remove(victim.pattern);
+        } else {
+            map.put(victim.pattern, rest);
+        }
+    }
+
+    private static final class Node {
+        final String pattern;
+        final String flags;
+        final RegExp regexp;
+        final Node next;
+
+        // set on hit, cleared by the clock hand; races only make eviction slightly less accurate
+        volatile boolean referenced;
+        // guarded by the cache lock
+        int slot;
+
+        Node(final String pattern, final String flags, final RegExp regexp, final Node next) {
+            this.pattern = pattern;
+            this.flags = flags;
+            this.regexp = regexp;
+            this.next = next;
+        }
+
+        Node copy(final Node newNext) {
+            final Node node = new Node(pattern, flags, regexp, newNext);
+            node.referenced = referenced;
+            node.slot = slot;
+            return node;
+        }
+    }
+}
@@ -25,10 +25,6 @@
 
 package org.codelibs.sai.internal.runtime.regexp;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.WeakHashMap;
-
 import org.codelibs.sai.internal.runtime.ParserException;
 import org.codelibs.sai.internal.runtime.options.Options;
 
@@ -43,12 +39,15 @@ public class RegExpFactory {
     private final static String JDK = "org.codelibs";
     private final static String JONI = "joni";
 
-    /** Weak cache of already validated regexps - when reparsing, we don't, for example
+    /** Cache of already validated regexps - when reparsing, we don't, for example
      *  need to recompile (reverify) all regexps that have previously been parsed by this
      *  RegExpFactory in a previous compilation. This saves significant time in e.g. avatar
-     *  startup
+     *  startup, and in scripts that create the same RegExp objects over and over
      */
-    private static final Map<String, RegExp> REGEXP_CACHE = Collections.synchronizedMap(new WeakHashMap<String, RegExp>());
+    private static final RegExpCache REGEXP_CACHE = new RegExpCache(Math.max(1, Options.getIntProperty("sai.regexp.cache.size", 512)));
+
+    /** Whether literal patterns are matched without a regexp engine */
+    private static final boolean LITERALS = Options.getBooleanProperty("sai.regexp.literal", true);
 
     static {
         final String impl = Options.getStringProperty("sai.regexp.impl", JONI);
@@ -86,11 +85,14 @@ public class RegExpFactory {
      * @throws ParserException if invalid source or flags
      */
     public static RegExp create(final String pattern, final String flags) {
-        final String key = pattern + "/" + flags;
-        RegExp regexp = REGEXP_CACHE.get(key);
+        RegExp regexp = REGEXP_CACHE.get(pattern, flags);
         if (regexp == null) {
-            regexp = instance.compile(pattern, flags);
-            REGEXP_CACHE.put(key, regexp);
+            // literal strings and alternations of them don't need a regexp engine
+            regexp = LITERALS ? LiteralRegExp.compile(pattern, flags) : null;
+            if (regexp == null) {
+                regexp = instance.compile(pattern, flags);
+            }
+            REGEXP_CACHE.cache(pattern, flags, regexp);
         }
         return regexp;
     }
@@ -107,6 +109,15 @@ public class RegExpFactory {
         create(pattern, flags);
     }
 
+    /**
+     * Returns the cache of compiled regular expressions, for monitoring its size and hit rate.
+     *
+     * @return the regexp cache
+     */
+    public static RegExpCache getCache() {
+        return REGEXP_CACHE;
+    }
+
     /**
      * Returns true if the instance uses the JDK's {@code java.util.regex} package.
      *
@@ -28,6 +28,8 @@ import static org.codelibs.sai.internal.runtime.regexp.joni.Option.isNotBol;
 import static org.codelibs.sai.internal.runtime.regexp.joni.Option.isNotEol;
 import static org.codelibs.sai.internal.runtime.regexp.joni.Option.isPosixRegion;
 
+import java.lang.invoke.MethodHandles;
+
 import org.codelibs.sai.internal.runtime.regexp.joni.ast.CClassNode;
 import org.codelibs.sai.internal.runtime.regexp.joni.constants.OPCode;
 import org.codelibs.sai.internal.runtime.regexp.joni.encoding.IntHolder;
@@ -46,9 +48,17 @@ class ByteCodeMachine extends StackMachine {
     private final int[] code; // byte code
     private int ip; // instruction pointer
 
+    private final MatchProgram program; // compiled byte code, if any
+
     ByteCodeMachine(final Regex regex, final char[] chars, final int p, final int end) {
         super(regex, chars, p, end);
         this.code = regex.code;
+        this.program = regex.program;
+    }
+
+    // used by MatchProgramGenerator to define programs working on the private state of the machine
+    static MethodHandles.Lookup lookup() {
+        return MethodHandles.lookup();
     }
 
     private boolean stringCmpIC(final int caseFlodFlag, final int s1p, final IntHolder ps2, final int mbLen, final int textEnd) {
@@ -112,6 +122,10 @@ class ByteCodeMachine extends StackMachine {
         bestLen = -1;
         s = ss;
 
+        if (program != null) {
+            return program.run(this);
+        }
+
         final int[] c = this.code;
         while (true) {
             if (Config.DEBUG_MATCH) {
@@ -386,12 +400,12 @@ class ByteCodeMachine extends StackMachine {
                     // opt!
                     if (repeatStk[memEndStk + i] != INVALID_INDEX) {
                         region.beg[i] =
-                                bsAt(regex.btMemStart, i) ? stack[repeatStk[memStartStk + i]].getMemPStr() - str : repeatStk[memStartStk
+                                bsAt(regex.btMemStart, i) ? get(repeatStk[memStartStk + i], MEM_PSTR) - str : repeatStk[memStartStk
                                         + i]
                                         - str;
 
                         region.end[i] =
-                                bsAt(regex.btMemEnd, i) ? stack[repeatStk[memEndStk + i]].getMemPStr() : repeatStk[memEndStk + i] - str;
+                                bsAt(regex.btMemEnd, i) ? get(repeatStk[memEndStk + i], MEM_PSTR) : repeatStk[memEndStk + i] - str;
 
                     } else {
                         region.beg[i] = region.end[i] = Region.REGION_NOTPOS;
@@ -1057,7 +1071,7 @@ class ByteCodeMachine extends StackMachine {
         if (BitStatus.bsAt(regex.btMemStart, mem)) {
             repeatStk[memStartStk + mem] = stkp;
         } else {
-            repeatStk[memStartStk + mem] = stack[stkp].getMemPStr();
+            repeatStk[memStartStk + mem] = get(stkp, MEM_PSTR);
         }
 
         pushMemEndMark(mem);
@@ -1068,11 +1082,11 @@ class ByteCodeMachine extends StackMachine {
     }
 
     private int backrefStart(final int mem) {
-        return bsAt(regex.btMemStart, mem) ? stack[repeatStk[memStartStk + mem]].getMemPStr() : repeatStk[memStartStk + mem];
+        return bsAt(regex.btMemStart, mem) ? get(repeatStk[memStartStk + mem], MEM_PSTR) : repeatStk[memStartStk + mem];
     }
 
     private int backrefEnd(final int mem) {
-        return bsAt(regex.btMemEnd, mem) ? stack[repeatStk[memEndStk + mem]].getMemPStr() : repeatStk[memEndStk + mem];
+        return bsAt(regex.btMemEnd, mem) ? get(repeatStk[memEndStk + mem], MEM_PSTR) : repeatStk[memEndStk + mem];
     }
 
     private void backref(final int mem) {
@@ -1255,19 +1269,19 @@ class ByteCodeMachine extends StackMachine {
             final int memp) {
         int pend = -1;
         int level = 0;
-        int k = stk - 1;
+        int k = stk - ENTRY_SIZE;
 
         while (k >= 0) {
-            final StackEntry e = stack[k];
+            final int type = type(k);
 
-            if (e.type == CALL_FRAME) {
+            if (type == CALL_FRAME) {
                 level--;
-            } else if (e.type == RETURN) {
+            } else if (type == RETURN) {
                 level++;
             } else if (level == nest) {
-                if (e.type == MEM_START) {
-                    if (memIsInMemp(e.getMemNum(), memNum, memp)) {
-                        final int pstart = e.getMemPStr();
+                if (type == MEM_START) {
+                    if (memIsInMemp(get(k, MEM_NUM), memNum, memp)) {
+                        final int pstart = get(k, MEM_PSTR);
                         if (pend != -1) {
                             if (pend - pstart > end - s) {
                                 return false; /* or goto next_mem; */
@@ -1291,13 +1305,13 @@ class ByteCodeMachine extends StackMachine {
                             return true;
                         }
                     }
-                } else if (e.type == MEM_END) {
-                    if (memIsInMemp(e.getMemNum(), memNum, memp)) {
-                        pend = e.getMemPStr();
+                } else if (type == MEM_END) {
+                    if (memIsInMemp(get(k, MEM_NUM), memNum, memp)) {
+                        pend = get(k, MEM_PSTR);
                     }
                 }
             }
-            k--;
+            k -= ENTRY_SIZE;
         }
         return false;
     }
@@ -1439,17 +1453,17 @@ class ByteCodeMachine extends StackMachine {
     }
 
     private void repeatInc(final int mem, final int si) {
-        final StackEntry e = stack[si];
+        final int count = get(si, REPEAT_COUNT) + 1;
+        set(si, REPEAT_COUNT, count);
 
-        e.increaseRepeatCount();
-
-        if (e.getRepeatCount() >= regex.repeatRangeHi[mem]) {
+        if (count >= regex.repeatRangeHi[mem]) {
             /* end of repeat. Nothing to do. */
-        } else if (e.getRepeatCount() >= regex.repeatRangeLo[mem]) {
+        } else if (count >= regex.repeatRangeLo[mem]) {
+            final int pcode = get(si, REPEAT_PCODE);
             pushAlt(ip, s, sprev);
-            ip = e.getRepeatPCode(); /* Don't use stkp after PUSH. */
+            ip = pcode; /* Don't use stkp after PUSH. */
         } else {
-            ip = e.getRepeatPCode();
+            ip = get(si, REPEAT_PCODE);
         }
         pushRepeatInc(si);
     }
@@ -1467,20 +1481,19 @@ class ByteCodeMachine extends StackMachine {
     }
 
     private void repeatIncNG(final int mem, final int si) {
-        final StackEntry e = stack[si];
-
-        e.increaseRepeatCount();
+        final int count = get(si, REPEAT_COUNT) + 1;
+        set(si, REPEAT_COUNT, count);
 
-        if (e.getRepeatCount() < regex.repeatRangeHi[mem]) {
-            if (e.getRepeatCount() >= regex.repeatRangeLo[mem]) {
-                final int pcode = e.getRepeatPCode();
+        if (count < regex.repeatRangeHi[mem]) {
+            if (count >= regex.repeatRangeLo[mem]) {
+                final int pcode = get(si, REPEAT_PCODE);
                 pushRepeatInc(si);
                 pushAlt(pcode, s, sprev);
             } else {
-                ip = e.getRepeatPCode();
+                ip = get(si, REPEAT_PCODE);
                 pushRepeatInc(si);
             }
-        } else if (e.getRepeatCount() == regex.repeatRangeHi[mem]) {
+        } else if (count == regex.repeatRangeHi[mem]) {
             pushRepeatInc(si);
         }
     }
@@ -1502,9 +1515,9 @@ class ByteCodeMachine extends StackMachine {
     }
 
     private void opPopPos() {
-        final StackEntry e = stack[posEnd()];
-        s = e.getStatePStr();
-        sprev = e.getStatePStrPrev();
+        final int k = posEnd();
+        s = get(k, STATE_PSTR);
+        sprev = get(k, STATE_PSTR_PREV);
     }
 
     private void opPushPosNot() {
@@ -1562,10 +1575,11 @@ class ByteCodeMachine extends StackMachine {
             return;
         }
 
-        final StackEntry e = pop();
-        ip = e.getStatePCode();
-        s = e.getStatePStr();
-        sprev = e.getStatePStrPrev();
+        backtrack();
+        final int k = pop();
+        ip = get(k, STATE_PCODE);
+        s = get(k, STATE_PSTR);
+        sprev = get(k, STATE_PSTR_PREV);
     }
 
     private int finish() {
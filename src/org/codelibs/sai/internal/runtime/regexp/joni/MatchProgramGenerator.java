@@ -0,0 +1,568 @@
+/*
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.codelibs.sai.internal.runtime.regexp.joni;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CALOAD;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IAND;
+import static org.objectweb.asm.Opcodes.IASTORE;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISHL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.IUSHR;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_7;
+
+import java.lang.invoke.MethodHandles;
+
+import org.codelibs.sai.internal.runtime.regexp.joni.constants.OPCode;
+import org.codelibs.sai.internal.runtime.regexp.joni.exception.ErrorMessages;
+import org.codelibs.sai.internal.runtime.regexp.joni.exception.InternalException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Compiles the byte code of a regex to a JVM method, removing the dispatch overhead of the
+ * {@link ByteCodeMachine} interpreter loop for regexes that are matched often.
+ * <p>
+ * Every regex instruction becomes a block of the generated method, and control flow between
+ * instructions becomes plain jumps. Character matching, class checks, jumps and pushes of
+ * alternatives are generated inline; all other instructions call the interpreter's own
+ * implementation and continue at the address it leaves in {@code ip}. Backtracking always goes
+ * through the interpreter's {@code opFail} and resumes at the popped address through a switch
+ * over all instruction addresses. The generated class is a hidden nestmate of
+ * {@link ByteCodeMachine}, so it works directly on the machine's private state.
+ */
+final class MatchProgramGenerator {
+    /** Longer byte code is left to the interpreter, keeping the generated method below the JVM size limit */
+    private static final int MAX_CODE_LENGTH = 2048;
+    /** Longer EXACTN strings are compared by the interpreter */
+    private static final int MAX_INLINE_EXACT_LENGTH = 16;
+
+    private static final String CLASS_NAME = Type.getInternalName(MatchProgram.class) + "Impl";
+    private static final String MACHINE = Type.getInternalName(ByteCodeMachine.class);
+    private static final String RUN_DESC = Type.getMethodDescriptor(Type.INT_TYPE, Type.getType(ByteCodeMachine.class));
+
+    /* local variable slots of the run method */
+    private static final int MACHINE_SLOT = 1;
+    private static final int CHARS_SLOT = 2;
+    private static final int CODE_SLOT = 3;
+    private static final int RANGE_SLOT = 4;
+    private static final int S_SLOT = 5;
+    private static final int C_SLOT = 6;
+
+    /* interpreter methods of the instructions that are not generated inline */
+    private static final String[] OP_METHODS = new String[OPCode.SET_OPTION + 1];
+
+    static {
+        OP_METHODS[OPCode.EXACTN] = "opExactN";
+        OP_METHODS[OPCode.EXACTN_IC] = "opExactNIC";
+        OP_METHODS[OPCode.CCLASS_MB] = "opCClassMB";
+        OP_METHODS[OPCode.CCLASS_MIX] = "opCClassMIX";
+        OP_METHODS[OPCode.CCLASS_MB_NOT] = "opCClassMBNot";
+        OP_METHODS[OPCode.CCLASS_MIX_NOT] = "opCClassMIXNot";
+        OP_METHODS[OPCode.CCLASS_NODE] = "opCClassNode";
+        OP_METHODS[OPCode.ANYCHAR_STAR] = "opAnyCharStar";
+        OP_METHODS[OPCode.ANYCHAR_ML_STAR] = "opAnyCharMLStar";
+        OP_METHODS[OPCode.ANYCHAR_STAR_PEEK_NEXT] = "opAnyCharStarPeekNext";
+        OP_METHODS[OPCode.ANYCHAR_ML_STAR_PEEK_NEXT] = "opAnyCharMLStarPeekNext";
+        OP_METHODS[OPCode.WORD] = "opWord";
+        OP_METHODS[OPCode.NOT_WORD] = "opNotWord";
+        OP_METHODS[OPCode.WORD_BOUND] = "opWordBound";
+        OP_METHODS[OPCode.NOT_WORD_BOUND] = "opNotWordBound";
+        OP_METHODS[OPCode.WORD_BEGIN] = "opWordBegin";
+        OP_METHODS[OPCode.WORD_END] = "opWordEnd";
+        OP_METHODS[OPCode.BEGIN_BUF] = "opBeginBuf";
+        OP_METHODS[OPCode.END_BUF] = "opEndBuf";
+        OP_METHODS[OPCode.BEGIN_LINE] = "opBeginLine";
+        OP_METHODS[OPCode.END_LINE] = "opEndLine";
+        OP_METHODS[OPCode.SEMI_END_BUF] = "opSemiEndBuf";
+        OP_METHODS[OPCode.BEGIN_POSITION] = "opBeginPosition";
+        OP_METHODS[OPCode.MEMORY_END_PUSH_REC] = "opMemoryEndPushRec";
+        OP_METHODS[OPCode.MEMORY_END_REC] = "opMemoryEndRec";
+        OP_METHODS[OPCode.BACKREF1] = "opBackRef1";
+        OP_METHODS[OPCode.BACKREF2] = "opBackRef2";
+        OP_METHODS[OPCode.BACKREFN] = "opBackRefN";
+        OP_METHODS[OPCode.BACKREFN_IC] = "opBackRefNIC";
+        OP_METHODS[OPCode.BACKREF_MULTI] = "opBackRefMulti";
+        OP_METHODS[OPCode.BACKREF_MULTI_IC] = "opBackRefMultiIC";
+        OP_METHODS[OPCode.BACKREF_WITH_LEVEL] = "opBackRefAtLevel";
+        OP_METHODS[OPCode.NULL_CHECK_START] = "opNullCheckStart";
+        OP_METHODS[OPCode.NULL_CHECK_END] = "opNullCheckEnd";
+        OP_METHODS[OPCode.NULL_CHECK_END_MEMST] = "opNullCheckEndMemST";
+        OP_METHODS[OPCode.REPEAT] = "opRepeat";
+        OP_METHODS[OPCode.REPEAT_NG] = "opRepeatNG";
+        OP_METHODS[OPCode.REPEAT_INC] = "opRepeatInc";
+        OP_METHODS[OPCode.REPEAT_INC_SG] = "opRepeatIncSG";
+        OP_METHODS[OPCode.REPEAT_INC_NG] = "opRepeatIncNG";
+        OP_METHODS[OPCode.REPEAT_INC_NG_SG] = "opRepeatIncNGSG";
+        OP_METHODS[OPCode.PUSH_POS] = "opPushPos";
+        OP_METHODS[OPCode.POP_POS] = "opPopPos";
+        OP_METHODS[OPCode.PUSH_POS_NOT] = "opPushPosNot";
+        OP_METHODS[OPCode.FAIL_POS] = "opFailPos";
+        OP_METHODS[OPCode.PUSH_STOP_BT] = "opPushStopBT";
+        OP_METHODS[OPCode.POP_STOP_BT] = "opPopStopBT";
+        OP_METHODS[OPCode.LOOK_BEHIND] = "opLookBehind";
+        OP_METHODS[OPCode.PUSH_LOOK_BEHIND_NOT] = "opPushLookBehindNot";
+        OP_METHODS[OPCode.FAIL_LOOK_BEHIND_NOT] = "opFailLookBehindNot";
+    }
+
+    private final Regex regex;
+    private final int[] code;
+    private final int codeLength;
+
+    private final Label[] labels;
+    private final Label fail = new Label();
+    private final Label dispatch = new Label();
+    private final Label unexpected = new Label();
+
+    private MethodVisitor mv;
+
+    private MatchProgramGenerator(final Regex regex) {
+        this.regex = regex;
+        this.code = regex.code;
+        this.codeLength = regex.codeLength;
+        this.labels = new Label[codeLength];
+    }
+
+    /**
+     * Compile the byte code of a regex.
+     *
+     * @param regex the regex, already compiled to byte code
+     * @return the compiled program, or null if the regex byte code can't be compiled
+     */
+    static MatchProgram generate(final Regex regex) {
+        if (Config.DEBUG_MATCH || regex.codeLength > MAX_CODE_LENGTH) {
+            return null;
+        }
+
+        final byte[] bytes;
+        try {
+            bytes = new MatchProgramGenerator(regex).generateClass();
+        } catch (final MethodTooLargeException e) {
+            return null;
+        }
+        if (bytes == null) {
+            return null;
+        }
+
+        try {
+            final MethodHandles.Lookup lookup = ByteCodeMachine.lookup().defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            return (MatchProgram) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException e) {
+            throw new InternalException(e.toString());
+        }
+    }
+
+    private byte[] generateClass() {
+        final int[] next = new int[codeLength];
+        final ByteCodePrinter printer = new ByteCodePrinter(regex);
+        for (int ip = 0; ip < codeLength; ip = next[ip]) {
+            final int op = code[ip];
+            if (!isSupported(op)) {
+                return null;
+            }
+            labels[ip] = new Label();
+            next[ip] = printer.compiledByteCodeToString(new StringBuilder(), ip);
+            if (next[ip] > codeLength) {
+                return null;
+            }
+        }
+
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_7, ACC_FINAL | ACC_SUPER, CLASS_NAME, null, "java/lang/Object", new String[] { Type.getInternalName(MatchProgram.class) });
+
+        final MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "run", RUN_DESC, null, null);
+        mv.visitCode();
+        loadMachine();
+        mv.visitFieldInsn(GETFIELD, MACHINE, "chars", "[C");
+        mv.visitVarInsn(ASTORE, CHARS_SLOT);
+        loadMachine();
+        mv.visitFieldInsn(GETFIELD, MACHINE, "code", "[I");
+        mv.visitVarInsn(ASTORE, CODE_SLOT);
+        loadMachine();
+        mv.visitFieldInsn(GETFIELD, MACHINE, "range", "I");
+        mv.visitVarInsn(ISTORE, RANGE_SLOT);
+
+        // matching starts at ip 0
+        for (int ip = 0; ip < codeLength; ip = next[ip]) {
+            mv.visitLabel(labels[ip]);
+            if (!generateInstruction(ip, next[ip])) {
+                return null;
+            }
+        }
+        mv.visitJumpInsn(GOTO, unexpected);
+
+        mv.visitLabel(fail);
+        loadMachine();
+        mv.visitMethodInsn(INVOKEVIRTUAL, MACHINE, "opFail", "()V", false);
+
+        // continue at the instruction address left in ip
+        mv.visitLabel(dispatch);
+        loadMachine();
+        mv.visitFieldInsn(GETFIELD, MACHINE, "ip", "I");
+        final Label[] table = new Label[codeLength];
+        for (int i = 0; i < codeLength; i++) {
+            table[i] = labels[i] != null ? labels[i] : unexpected;
+        }
+        mv.visitTableSwitchInsn(0, codeLength - 1, unexpected, table);
+
+        mv.visitLabel(unexpected);
+        mv.visitTypeInsn(NEW, Type.getInternalName(InternalException.class));
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn(ErrorMessages.ERR_UNEXPECTED_BYTECODE);
+        mv.visitMethodInsn(INVOKESPECIAL, Type.getInternalName(InternalException.class), "<init>", "(Ljava/lang/String;)V", false);
+        mv.visitInsn(ATHROW);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+
+    private static boolean isSupported(final int op) {
+        switch (op) {
+        case OPCode.END:
+        case OPCode.EXACT1:
+        case OPCode.EXACT2:
+        case OPCode.EXACT3:
+        case OPCode.EXACT4:
+        case OPCode.EXACT5:
+        case OPCode.EXACT1_IC:
+        case OPCode.CCLASS:
+        case OPCode.CCLASS_NOT:
+        case OPCode.ANYCHAR:
+        case OPCode.ANYCHAR_ML:
+        case OPCode.MEMORY_START:
+        case OPCode.MEMORY_START_PUSH:
+        case OPCode.MEMORY_END:
+        case OPCode.MEMORY_END_PUSH:
+        case OPCode.JUMP:
+        case OPCode.PUSH:
+        case OPCode.POP:
+        case OPCode.PUSH_OR_JUMP_EXACT1:
+        case OPCode.PUSH_IF_PEEK_NEXT:
+        case OPCode.FINISH:
+        case OPCode.FAIL:
+            return true;
+        default:
+            return op >= 0 && op < OP_METHODS.length && OP_METHODS[op] != null;
+        }
+    }
+
+    private boolean generateInstruction(final int ip, final int next) {
+        final int op = code[ip];
+        switch (op) {
+        case OPCode.END:
+            setIp(ip + 1);
+            loadMachine();
+            mv.visitMethodInsn(INVOKEVIRTUAL, MACHINE, "opEnd", "()Z", false);
+            mv.visitJumpInsn(IFEQ, dispatch);
+            returnBestLen();
+            return true;
+
+        case OPCode.EXACT1:
+        case OPCode.EXACT2:
+        case OPCode.EXACT3:
+        case OPCode.EXACT4:
+        case OPCode.EXACT5:
+            return exact(ip + 1, op - OPCode.EXACT1 + 1, false, next);
+        case OPCode.EXACTN:
+            if (Config.USE_STRING_TEMPLATES && code[ip + 1] <= MAX_INLINE_EXACT_LENGTH) {
+                return exactTemplate(regex.templates[code[ip + 2]], code[ip + 3], code[ip + 1], ip + 4, next);
+            }
+            return callInterpreter(ip, next);
+        case OPCode.EXACT1_IC:
+            return exact(ip + 1, 1, true, next);
+
+        case OPCode.CCLASS:
+        case OPCode.CCLASS_NOT:
+            return cclass(ip + 1, op == OPCode.CCLASS_NOT, ip + 1 + BitSet.BITSET_SIZE, next);
+
+        case OPCode.ANYCHAR:
+        case OPCode.ANYCHAR_ML:
+            loadS();
+            mv.visitVarInsn(ILOAD, S_SLOT);
+            mv.visitVarInsn(ILOAD, RANGE_SLOT);
+            mv.visitJumpInsn(IF_ICMPGE, fail);
+            if (op == OPCode.ANYCHAR) {
+                loadChar(0);
+                mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(EncodingHelper.class), "isNewLine", "(I)Z", false);
+                mv.visitJumpInsn(IFNE, fail);
+            }
+            advance(1);
+            return checkNext(ip + 1, next);
+
+        case OPCode.MEMORY_START:
+        case OPCode.MEMORY_END:
+            loadMachine();
+            mv.visitFieldInsn(GETFIELD, MACHINE, "repeatStk", "[I");
+            loadMachine();
+            mv.visitFieldInsn(GETFIELD, MACHINE, op == OPCode.MEMORY_START ? "memStartStk" : "memEndStk", "I");
+            mv.visitLdcInsn(code[ip + 1]);
+            mv.visitInsn(IADD);
+            loadMachineField("s");
+            mv.visitInsn(IASTORE);
+            return checkNext(ip + 2, next);
+        case OPCode.MEMORY_START_PUSH:
+        case OPCode.MEMORY_END_PUSH:
+            loadMachine();
+            mv.visitLdcInsn(code[ip + 1]);
+            loadMachineField("s");
+            mv.visitMethodInsn(INVOKEVIRTUAL, MACHINE, op == OPCode.MEMORY_START_PUSH ? "pushMemStart" : "pushMemEnd", "(II)V", false);
+            return checkNext(ip + 2, next);
+
+        case OPCode.JUMP:
+            return checkNext(ip + 2, next) && jump(ip + 2 + code[ip + 1]);
+        case OPCode.PUSH:
+            pushAlt(ip + 2 + code[ip + 1]);
+            return checkNext(ip + 2, next);
+        case OPCode.POP:
+            loadMachine();
+            mv.visitMethodInsn(INVOKEVIRTUAL, MACHINE, "popOne", "()V", false);
+            return checkNext(ip + 1, next);
+        case OPCode.PUSH_OR_JUMP_EXACT1:
+        case OPCode.PUSH_IF_PEEK_NEXT: {
+            final int target = ip + 3 + code[ip + 1];
+            final Label noMatch = new Label();
+            loadS();
+            mv.visitVarInsn(ILOAD, S_SLOT);
+            mv.visitVarInsn(ILOAD, RANGE_SLOT);
+            mv.visitJumpInsn(IF_ICMPGE, noMatch);
+            loadChar(0);
+            mv.visitLdcInsn(code[ip + 2]);
+            mv.visitJumpInsn(IF_ICMPNE, noMatch);
+            pushAlt(target);
+            if (!checkNext(ip + 3, next) || !jump(next)) {
+                return false;
+            }
+            mv.visitLabel(noMatch);
+            return jump(op == OPCode.PUSH_OR_JUMP_EXACT1 ? target : next);
+        }
+
+        case OPCode.FINISH:
+            returnBestLen();
+            return true;
+        case OPCode.FAIL:
+            mv.visitJumpInsn(GOTO, fail);
+            return true;
+
+        default:
+            return callInterpreter(ip, next);
+        }
+    }
+
+    /**
+     * Match {@code length} chars of the byte code from {@code p}, lower casing the subject chars
+     * if {@code ignoreCase} is set.
+     */
+    private boolean exact(final int p, final int length, final boolean ignoreCase, final int next) {
+        checkLength(length);
+        for (int i = 0; i < length; i++) {
+            loadChar(i);
+            if (ignoreCase) {
+                mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(EncodingHelper.class), "toLowerCase", "(C)C", false);
+            }
+            mv.visitLdcInsn(code[p + i]);
+            mv.visitJumpInsn(IF_ICMPNE, fail);
+        }
+        advance(length);
+        return checkNext(p + length, next);
+    }
+
+    private boolean exactTemplate(final char[] template, final int p, final int length, final int end, final int next) {
+        checkLength(length);
+        for (int i = 0; i < length; i++) {
+            loadChar(i);
+            mv.visitLdcInsn((int) template[p + i]);
+            mv.visitJumpInsn(IF_ICMPNE, fail);
+        }
+        advance(length);
+        return checkNext(end, next);
+    }
+
+    private boolean cclass(final int bits, final boolean not, final int end, final int next) {
+        final Label notInSet = new Label();
+        final Label matched = new Label();
+        loadS();
+        mv.visitVarInsn(ILOAD, S_SLOT);
+        mv.visitVarInsn(ILOAD, RANGE_SLOT);
+        mv.visitJumpInsn(IF_ICMPGE, fail);
+        loadChar(0);
+        mv.visitVarInsn(ISTORE, C_SLOT);
+        mv.visitVarInsn(ILOAD, C_SLOT);
+        mv.visitLdcInsn(0xff);
+        mv.visitJumpInsn(IF_ICMPGT, notInSet);
+        mv.visitVarInsn(ALOAD, CODE_SLOT);
+        mv.visitLdcInsn(bits);
+        mv.visitVarInsn(ILOAD, C_SLOT);
+        mv.visitLdcInsn(BitSet.ROOM_SHIFT);
+        mv.visitInsn(IUSHR);
+        mv.visitInsn(IADD);
+        mv.visitInsn(IALOAD);
+        mv.visitInsn(ICONST_1);
+        mv.visitVarInsn(ILOAD, C_SLOT);
+        mv.visitInsn(ISHL);
+        mv.visitInsn(IAND);
+        mv.visitJumpInsn(not ? IFNE : IFEQ, fail);
+        mv.visitJumpInsn(GOTO, matched);
+        mv.visitLabel(notInSet);
+        if (!not) {
+            mv.visitJumpInsn(GOTO, fail);
+        }
+        mv.visitLabel(matched);
+        advance(1);
+        return checkNext(end, next);
+    }
+
+    /**
+     * Run an instruction with the interpreter, continuing with the next instruction if it leaves
+     * ip there, and at the address it leaves in ip otherwise.
+     */
+    private boolean callInterpreter(final int ip, final int next) {
+        setIp(ip + 1);
+        loadMachine();
+        loadMachineField("s");
+        mv.visitFieldInsn(PUTFIELD, MACHINE, "sbegin", "I");
+        loadMachine();
+        mv.visitMethodInsn(INVOKEVIRTUAL, MACHINE, OP_METHODS[code[ip]], "()V", false);
+        loadMachineField("ip");
+        mv.visitLdcInsn(next);
+        mv.visitJumpInsn(IF_ICMPNE, dispatch);
+        return true;
+    }
+
+    /** Fail unless there are {@code length} more chars before the range end. */
+    private void checkLength(final int length) {
+        loadS();
+        mv.visitVarInsn(ILOAD, S_SLOT);
+        mv.visitLdcInsn(length);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ILOAD, RANGE_SLOT);
+        mv.visitJumpInsn(IF_ICMPGT, fail);
+    }
+
+    /** Load the subject char at {@code offset} from the current position. */
+    private void loadChar(final int offset) {
+        mv.visitVarInsn(ALOAD, CHARS_SLOT);
+        mv.visitVarInsn(ILOAD, S_SLOT);
+        if (offset != 0) {
+            mv.visitLdcInsn(offset);
+            mv.visitInsn(IADD);
+        }
+        mv.visitInsn(CALOAD);
+    }
+
+    /** Move past {@code length} matched chars, the last of which becomes sprev. */
+    private void advance(final int length) {
+        loadMachine();
+        mv.visitVarInsn(ILOAD, S_SLOT);
+        mv.visitLdcInsn(length);
+        mv.visitInsn(IADD);
+        mv.visitFieldInsn(PUTFIELD, MACHINE, "s", "I");
+        loadMachine();
+        mv.visitVarInsn(ILOAD, S_SLOT);
+        if (length != 1) {
+            mv.visitLdcInsn(length - 1);
+            mv.visitInsn(IADD);
+        }
+        mv.visitFieldInsn(PUTFIELD, MACHINE, "sprev", "I");
+    }
+
+    private void pushAlt(final int target) {
+        loadMachine();
+        mv.visitLdcInsn(target);
+        loadMachineField("s");
+        loadMachineField("sprev");
+        mv.visitMethodInsn(INVOKEVIRTUAL, MACHINE, "pushAlt", "(III)V", false);
+    }
+
+    private boolean jump(final int target) {
+        if (target < 0 || target >= codeLength || labels[target] == null) {
+            return false;
+        }
+        mv.visitJumpInsn(GOTO, labels[target]);
+        return true;
+    }
+
+    /** Check the instruction length against the one found when the byte code was walked. */
+    private static boolean checkNext(final int end, final int next) {
+        return end == next;
+    }
+
+    private void setIp(final int ip) {
+        loadMachine();
+        mv.visitLdcInsn(ip);
+        mv.visitFieldInsn(PUTFIELD, MACHINE, "ip", "I");
+    }
+
+    private void loadS() {
+        loadMachineField("s");
+        mv.visitVarInsn(ISTORE, S_SLOT);
+    }
+
+    private void returnBestLen() {
+        loadMachineField("bestLen");
+        mv.visitInsn(IRETURN);
+    }
+
+    private void loadMachineField(final String name) {
+        loadMachine();
+        mv.visitFieldInsn(GETFIELD, MACHINE, name, "I");
+    }
+
+    private void loadMachine() {
+        mv.visitVarInsn(ALOAD, MACHINE_SLOT);
+    }
+}
@@ -42,6 +42,9 @@ public abstract class Matcher extends IntHolder {
     protected int msaBegin;
     protected int msaEnd;
 
+    protected int backtrackLimit; /* 0: unlimited */
+    protected int matchStackLimit = Config.DEFAULT_MATCH_STACK_LIMIT_SIZE;
+
     public Matcher(final Regex regex, final char[] chars) {
         this(regex, chars, 0, chars.length);
     }
@@ -59,6 +62,21 @@ public abstract class Matcher extends IntHolder {
     // main matching method
     protected abstract int matchAt(int range, int sstart, int sprev);
 
+    // called when a match or search is done, to release resources held by it
+    protected abstract void searchEnd();
+
+    /**
+     * Limit the work a single match or search may do. A match exceeding a limit fails with a
+     * {@link org.codelibs.sai.internal.runtime.regexp.joni.exception.MatchLimitException}.
+     *
+     * @param backtracks maximum number of backtracks, 0 for no limit
+     * @param stackEntries maximum number of backtracking stack entries, 0 for no limit
+     */
+    public final void setMatchLimits(final int backtracks, final int stackEntries) {
+        this.backtrackLimit = backtracks;
+        this.matchStackLimit = stackEntries;
+    }
+
     public final Region getRegion() {
         return msaRegion;
     }
@@ -84,10 +102,14 @@ public abstract class Matcher extends IntHolder {
 
         final int prev = EncodingHelper.prevCharHead(str, at);
 
-        if (Config.USE_MATCH_RANGE_MUST_BE_INSIDE_OF_SPECIFIED_RANGE) {
-            return matchAt(end /*range*/, at, prev);
+        try {
+            if (Config.USE_MATCH_RANGE_MUST_BE_INSIDE_OF_SPECIFIED_RANGE) {
+                return matchAt(end /*range*/, at, prev);
+            }
+            return matchAt(range /*range*/, at, prev);
+        } finally {
+            searchEnd();
         }
-        return matchAt(range /*range*/, at, prev);
     }
 
     int low, high; // these are the return values
@@ -297,6 +319,14 @@ public abstract class Matcher extends IntHolder {
     }
 
     public final int search(final int startp, final int rangep, final int option) {
+        try {
+            return searchRange(startp, rangep, option);
+        } finally {
+            searchEnd();
+        }
+    }
+
+    private int searchRange(final int startp, final int rangep, final int option) {
         int start = startp, range = rangep;
         int s, prev;
         int origStart = start;
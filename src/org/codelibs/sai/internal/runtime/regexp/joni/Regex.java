@@ -73,6 +73,9 @@ public final class Regex implements RegexState {
     char[][] templates;
     int templateNum;
 
+    volatile MatchProgram program; /* byte code compiled to a JVM method */
+    private boolean programGenerated;
+
     public Regex(final CharSequence cs) {
         this(cs.toString());
     }
@@ -142,6 +145,21 @@ public final class Regex implements RegexState {
         return factory;
     }
 
+    /**
+     * Compile the byte code of this regex to a JVM method used by its matchers from now on.
+     * Only the first call tries to compile it.
+     *
+     * @return true if the regex has a compiled program
+     */
+    public synchronized boolean compileProgram() {
+        if (!programGenerated) {
+            programGenerated = true;
+            compile();
+            program = MatchProgramGenerator.generate(this);
+        }
+        return program != null;
+    }
+
     public Matcher matcher(final char[] chars) {
         return matcher(chars, 0, chars.length);
     }
@@ -19,24 +19,61 @@
  */
 package org.codelibs.sai.internal.runtime.regexp.joni;
 
-import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.codelibs.sai.internal.runtime.regexp.joni.constants.StackPopLevel;
 import org.codelibs.sai.internal.runtime.regexp.joni.constants.StackType;
+import org.codelibs.sai.internal.runtime.regexp.joni.exception.ErrorMessages;
+import org.codelibs.sai.internal.runtime.regexp.joni.exception.MatchLimitException;
 
 abstract class StackMachine extends Matcher implements StackType {
     protected static final int INVALID_INDEX = -1;
 
-    protected StackEntry[] stack;
-    protected int stk; // stkEnd
+    /*
+     * The backtracking stack is a flat int array of fixed size entries. Entries are addressed by
+     * the offset of their first int, which holds the entry type. The meaning of the others depends
+     * on the type.
+     */
+    protected static final int ENTRY_SIZE = 5;
+    protected static final int TYPE = 0;
+    /* ALT, POS, POS_NOT, LOOK_BEHIND_NOT: byte code position, string position, previous char position */
+    protected static final int STATE_PCODE = 1;
+    protected static final int STATE_PSTR = 2;
+    protected static final int STATE_PSTR_PREV = 3;
+    /* REPEAT: repeat count, byte code position of the repeated target, repeat id */
+    protected static final int REPEAT_COUNT = 1;
+    protected static final int REPEAT_PCODE = 2;
+    protected static final int REPEAT_NUM = 3;
+    /* REPEAT_INC: index of the REPEAT entry */
+    protected static final int REPEAT_INC_SI = 1;
+    /* MEM_START, MEM_END, MEM_END_MARK: memory number, string position, previous start and end info */
+    protected static final int MEM_NUM = 1;
+    protected static final int MEM_PSTR = 2;
+    protected static final int MEM_PREV_START = 3;
+    protected static final int MEM_PREV_END = 4;
+    /* NULL_CHECK_START, NULL_CHECK_END: null check id, string position */
+    protected static final int NULL_CHECK_NUM = 1;
+    protected static final int NULL_CHECK_PSTR = 2;
+    /* CALL_FRAME: return address */
+    protected static final int CALL_FRAME_RET_ADDR = 1;
+
+    // stacks of finished searches, reused by later searches on any thread
+    private static final int POOL_SIZE = Math.max(Config.NUMBER_OF_POOLED_STACKS, Runtime.getRuntime().availableProcessors() * 2);
+    // larger stacks are left to the garbage collector instead of being pooled
+    private static final int MAX_POOLED_STACK_LENGTH = 16384 * ENTRY_SIZE;
+    private static final AtomicReferenceArray<int[]> pool = new AtomicReferenceArray<>(POOL_SIZE);
+
+    protected int[] stack;
+    protected int stk; // stkEnd, offset of the next entry
 
     protected final int[] repeatStk;
     protected final int memStartStk, memEndStk;
 
+    private int backtracks;
+
     protected StackMachine(final Regex regex, final char[] chars, final int p, final int end) {
         super(regex, chars, p, end);
 
-        this.stack = regex.stackNeeded ? fetchStack() : null;
         final int n = regex.numRepeat + (regex.numMem << 1);
         this.repeatStk = n > 0 ? new int[n] : null;
 
@@ -46,39 +83,52 @@ abstract class StackMachine extends Matcher implements StackType {
         /* for index start from 1, mem_end_stk[1]..mem_end_stk[num_mem] */
     }
 
-    private static StackEntry[] allocateStack() {
-        final StackEntry[] stack = new StackEntry[Config.INIT_MATCH_STACK_SIZE];
-        stack[0] = new StackEntry();
-        return stack;
-    }
-
     private void doubleStack() {
-        final StackEntry[] newStack = new StackEntry[stack.length << 1];
+        final int entries = stack.length / ENTRY_SIZE;
+        if (matchStackLimit > 0 && entries >= matchStackLimit) {
+            throw new MatchLimitException(ErrorMessages.ERR_MATCH_STACK_LIMIT_OVER);
+        }
+        final int newEntries = matchStackLimit > 0 ? Math.min(entries << 1, matchStackLimit) : entries << 1;
+        final int[] newStack = new int[newEntries * ENTRY_SIZE];
         System.arraycopy(stack, 0, newStack, 0, stack.length);
         stack = newStack;
     }
 
-    static final ThreadLocal<WeakReference<StackEntry[]>> stacks = new ThreadLocal<WeakReference<StackEntry[]>>() {
-        @SuppressWarnings("unused")
-        @Override
-        protected WeakReference<StackEntry[]> initialValue() {
-            return new WeakReference<StackEntry[]>(allocateStack());
+    private static int[] fetchStack() {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            final int[] pooled = pool.get(i);
+            if (pooled != null && pool.compareAndSet(i, pooled, null)) {
+                return pooled;
+            }
         }
-    };
-
-    @SuppressWarnings("unused")
-    private static StackEntry[] fetchStack() {
-        WeakReference<StackEntry[]> ref = stacks.get();
-        StackEntry[] stack = ref.get();
-        if (stack == null) {
-            ref = new WeakReference<StackEntry[]>(stack = allocateStack());
-            stacks.set(ref);
+        return new int[Config.INIT_MATCH_STACK_SIZE * ENTRY_SIZE];
+    }
+
+    private static void releaseStack(final int[] stack) {
+        if (stack.length > MAX_POOLED_STACK_LENGTH) {
+            return;
+        }
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (pool.get(i) == null && pool.compareAndSet(i, null, stack)) {
+                return;
+            }
         }
-        return stack;
     }
 
-    protected final void init() {
+    @Override
+    protected final void searchEnd() {
         if (stack != null) {
+            releaseStack(stack);
+            stack = null;
+        }
+        backtracks = 0;
+    }
+
+    protected final void init() {
+        if (regex.stackNeeded) {
+            if (stack == null) {
+                stack = fetchStack();
+            }
             pushEnsured(ALT, regex.codeLength - 1); /* bottom stack */
         }
         if (repeatStk != null) {
@@ -88,36 +138,53 @@ abstract class StackMachine extends Matcher implements StackType {
         }
     }
 
-    protected final StackEntry ensure1() {
-        if (stk >= stack.length) {
-            doubleStack();
+    /**
+     * Count a backtrack of the current search, failing it if there are more than allowed.
+     */
+    protected final void backtrack() {
+        if (backtrackLimit > 0 && ++backtracks > backtrackLimit) {
+            throw new MatchLimitException(ErrorMessages.ERR_MATCH_BACKTRACK_LIMIT_OVER);
         }
-        StackEntry e = stack[stk];
-        if (e == null) {
-            stack[stk] = e = new StackEntry();
+    }
+
+    protected final int type(final int k) {
+        return stack[k];
+    }
+
+    protected final int get(final int k, final int field) {
+        return stack[k + field];
+    }
+
+    protected final void set(final int k, final int field, final int value) {
+        stack[k + field] = value;
+    }
+
+    protected final int ensure1() {
+        if (stk + ENTRY_SIZE > stack.length) {
+            doubleStack();
         }
-        return e;
+        return stk;
     }
 
     protected final void pushType(final int type) {
-        ensure1().type = type;
-        stk++;
+        stack[ensure1()] = type;
+        stk += ENTRY_SIZE;
     }
 
     private void push(final int type, final int pat, final int s, final int prev) {
-        final StackEntry e = ensure1();
-        e.type = type;
-        e.setStatePCode(pat);
-        e.setStatePStr(s);
-        e.setStatePStrPrev(prev);
-        stk++;
+        final int e = ensure1();
+        final int[] st = stack;
+        st[e] = type;
+        st[e + STATE_PCODE] = pat;
+        st[e + STATE_PSTR] = s;
+        st[e + STATE_PSTR_PREV] = prev;
+        stk += ENTRY_SIZE;
     }
 
     protected final void pushEnsured(final int type, final int pat) {
-        final StackEntry e = stack[stk];
-        e.type = type;
-        e.setStatePCode(pat);
-        stk++;
+        stack[stk] = type;
+        stack[stk + STATE_PCODE] = pat;
+        stk += ENTRY_SIZE;
     }
 
     protected final void pushAlt(final int pat, final int s, final int prev) {
@@ -141,49 +208,52 @@ abstract class StackMachine extends Matcher implements StackType {
     }
 
     protected final void pushRepeat(final int id, final int pat) {
-        final StackEntry e = ensure1();
-        e.type = REPEAT;
-        e.setRepeatNum(id);
-        e.setRepeatPCode(pat);
-        e.setRepeatCount(0);
-        stk++;
+        final int e = ensure1();
+        final int[] st = stack;
+        st[e] = REPEAT;
+        st[e + REPEAT_NUM] = id;
+        st[e + REPEAT_PCODE] = pat;
+        st[e + REPEAT_COUNT] = 0;
+        stk += ENTRY_SIZE;
     }
 
     protected final void pushRepeatInc(final int sindex) {
-        final StackEntry e = ensure1();
-        e.type = REPEAT_INC;
-        e.setSi(sindex);
-        stk++;
+        final int e = ensure1();
+        stack[e] = REPEAT_INC;
+        stack[e + REPEAT_INC_SI] = sindex;
+        stk += ENTRY_SIZE;
     }
 
     protected final void pushMemStart(final int mnum, final int s) {
-        final StackEntry e = ensure1();
-        e.type = MEM_START;
-        e.setMemNum(mnum);
-        e.setMemPstr(s);
-        e.setMemStart(repeatStk[memStartStk + mnum]);
-        e.setMemEnd(repeatStk[memEndStk + mnum]);
+        final int e = ensure1();
+        final int[] st = stack;
+        st[e] = MEM_START;
+        st[e + MEM_NUM] = mnum;
+        st[e + MEM_PSTR] = s;
+        st[e + MEM_PREV_START] = repeatStk[memStartStk + mnum];
+        st[e + MEM_PREV_END] = repeatStk[memEndStk + mnum];
         repeatStk[memStartStk + mnum] = stk;
         repeatStk[memEndStk + mnum] = INVALID_INDEX;
-        stk++;
+        stk += ENTRY_SIZE;
     }
 
     protected final void pushMemEnd(final int mnum, final int s) {
-        final StackEntry e = ensure1();
-        e.type = MEM_END;
-        e.setMemNum(mnum);
-        e.setMemPstr(s);
-        e.setMemStart(repeatStk[memStartStk + mnum]);
-        e.setMemEnd(repeatStk[memEndStk + mnum]);
+        final int e = ensure1();
+        final int[] st = stack;
+        st[e] = MEM_END;
+        st[e + MEM_NUM] = mnum;
+        st[e + MEM_PSTR] = s;
+        st[e + MEM_PREV_START] = repeatStk[memStartStk + mnum];
+        st[e + MEM_PREV_END] = repeatStk[memEndStk + mnum];
         repeatStk[memEndStk + mnum] = stk;
-        stk++;
+        stk += ENTRY_SIZE;
     }
 
     protected final void pushMemEndMark(final int mnum) {
-        final StackEntry e = ensure1();
-        e.type = MEM_END_MARK;
-        e.setMemNum(mnum);
-        stk++;
+        final int e = ensure1();
+        stack[e] = MEM_END_MARK;
+        stack[e + MEM_NUM] = mnum;
+        stk += ENTRY_SIZE;
     }
 
     protected final int getMemStart(final int mnum) {
@@ -191,11 +261,11 @@ abstract class StackMachine extends Matcher implements StackType {
         int stkp = stk;
 
         while (stkp > 0) {
-            stkp--;
-            final StackEntry e = stack[stkp];
-            if ((e.type & MASK_MEM_END_OR_MARK) != 0 && e.getMemNum() == mnum) {
+            stkp -= ENTRY_SIZE;
+            final int type = type(stkp);
+            if ((type & MASK_MEM_END_OR_MARK) != 0 && get(stkp, MEM_NUM) == mnum) {
                 level++;
-            } else if (e.type == MEM_START && e.getMemNum() == mnum) {
+            } else if (type == MEM_START && get(stkp, MEM_NUM) == mnum) {
                 if (level == 0) {
                     break;
                 }
@@ -206,28 +276,33 @@ abstract class StackMachine extends Matcher implements StackType {
     }
 
     protected final void pushNullCheckStart(final int cnum, final int s) {
-        final StackEntry e = ensure1();
-        e.type = NULL_CHECK_START;
-        e.setNullCheckNum(cnum);
-        e.setNullCheckPStr(s);
-        stk++;
+        final int e = ensure1();
+        stack[e] = NULL_CHECK_START;
+        stack[e + NULL_CHECK_NUM] = cnum;
+        stack[e + NULL_CHECK_PSTR] = s;
+        stk += ENTRY_SIZE;
     }
 
     protected final void pushNullCheckEnd(final int cnum) {
-        final StackEntry e = ensure1();
-        e.type = NULL_CHECK_END;
-        e.setNullCheckNum(cnum);
-        stk++;
+        final int e = ensure1();
+        stack[e] = NULL_CHECK_END;
+        stack[e + NULL_CHECK_NUM] = cnum;
+        stk += ENTRY_SIZE;
     }
 
     // stack debug routines here
     // ...
 
     protected final void popOne() {
-        stk--;
+        stk -= ENTRY_SIZE;
     }
 
-    protected final StackEntry pop() {
+    /**
+     * Pop entries up to the next one used by backtracking, restoring the state saved by the others.
+     *
+     * @return the offset of the entry
+     */
+    protected final int pop() {
         switch (regex.stackPopLevel) {
         case StackPopLevel.FREE:
             return popFree();
@@ -238,100 +313,95 @@ abstract class StackMachine extends Matcher implements StackType {
         }
     }
 
-    private StackEntry popFree() {
+    private int popFree() {
         while (true) {
-            final StackEntry e = stack[--stk];
-
-            if ((e.type & MASK_POP_USED) != 0) {
-                return e;
+            stk -= ENTRY_SIZE;
+            if ((type(stk) & MASK_POP_USED) != 0) {
+                return stk;
             }
         }
     }
 
-    private StackEntry popMemStart() {
+    private int popMemStart() {
         while (true) {
-            final StackEntry e = stack[--stk];
+            stk -= ENTRY_SIZE;
+            final int type = type(stk);
 
-            if ((e.type & MASK_POP_USED) != 0) {
-                return e;
-            } else if (e.type == MEM_START) {
-                repeatStk[memStartStk + e.getMemNum()] = e.getMemStart();
-                repeatStk[memEndStk + e.getMemNum()] = e.getMemEnd();
+            if ((type & MASK_POP_USED) != 0) {
+                return stk;
+            } else if (type == MEM_START) {
+                restoreMem(stk, MEM_PREV_END);
             }
         }
     }
 
-    private StackEntry popDefault() {
+    private int popDefault() {
         while (true) {
-            final StackEntry e = stack[--stk];
-
-            if ((e.type & MASK_POP_USED) != 0) {
-                return e;
-            } else if (e.type == MEM_START) {
-                repeatStk[memStartStk + e.getMemNum()] = e.getMemStart();
-                repeatStk[memEndStk + e.getMemNum()] = e.getMemEnd();
-            } else if (e.type == REPEAT_INC) {
-                //int si = stack[stk + IREPEAT_INC_SI];
-                //stack[si + IREPEAT_COUNT]--;
-                stack[e.getSi()].decreaseRepeatCount();
-            } else if (e.type == MEM_END) {
-                repeatStk[memStartStk + e.getMemNum()] = e.getMemStart();
-                repeatStk[memEndStk + e.getMemNum()] = e.getMemEnd();
+            stk -= ENTRY_SIZE;
+            final int type = type(stk);
+
+            if ((type & MASK_POP_USED) != 0) {
+                return stk;
+            } else if (type == MEM_START || type == MEM_END) {
+                restoreMem(stk, MEM_PREV_END);
+            } else if (type == REPEAT_INC) {
+                decreaseRepeatCount(stk);
             }
         }
     }
 
     protected final void popTilPosNot() {
         while (true) {
-            stk--;
-            final StackEntry e = stack[stk];
+            stk -= ENTRY_SIZE;
+            final int type = type(stk);
 
-            if (e.type == POS_NOT) {
+            if (type == POS_NOT) {
                 break;
-            } else if (e.type == MEM_START) {
-                repeatStk[memStartStk + e.getMemNum()] = e.getMemStart();
-                repeatStk[memEndStk + e.getMemNum()] = e.getMemStart();
-            } else if (e.type == REPEAT_INC) {
-                //int si = stack[stk + IREPEAT_INC_SI];
-                //stack[si + IREPEAT_COUNT]--;
-                stack[e.getSi()].decreaseRepeatCount();
-            } else if (e.type == MEM_END) {
-                repeatStk[memStartStk + e.getMemNum()] = e.getMemStart();
-                repeatStk[memEndStk + e.getMemNum()] = e.getMemStart();
+            } else if (type == MEM_START || type == MEM_END) {
+                restoreMem(stk, MEM_PREV_START);
+            } else if (type == REPEAT_INC) {
+                decreaseRepeatCount(stk);
             }
         }
     }
 
     protected final void popTilLookBehindNot() {
         while (true) {
-            stk--;
-            final StackEntry e = stack[stk];
+            stk -= ENTRY_SIZE;
+            final int type = type(stk);
 
-            if (e.type == LOOK_BEHIND_NOT) {
+            if (type == LOOK_BEHIND_NOT) {
                 break;
-            } else if (e.type == MEM_START) {
-                repeatStk[memStartStk + e.getMemNum()] = e.getMemStart();
-                repeatStk[memEndStk + e.getMemNum()] = e.getMemEnd();
-            } else if (e.type == REPEAT_INC) {
-                //int si = stack[stk + IREPEAT_INC_SI];
-                //stack[si + IREPEAT_COUNT]--;
-                stack[e.getSi()].decreaseRepeatCount();
-            } else if (e.type == MEM_END) {
-                repeatStk[memStartStk + e.getMemNum()] = e.getMemStart();
-                repeatStk[memEndStk + e.getMemNum()] = e.getMemEnd();
+            } else if (type == MEM_START || type == MEM_END) {
+                restoreMem(stk, MEM_PREV_END);
+            } else if (type == REPEAT_INC) {
+                decreaseRepeatCount(stk);
             }
         }
     }
 
+    // popTilPosNot passes MEM_PREV_START, restoring the end info from the saved start info
+    private void restoreMem(final int k, final int endField) {
+        final int mnum = get(k, MEM_NUM);
+        repeatStk[memStartStk + mnum] = get(k, MEM_PREV_START);
+        repeatStk[memEndStk + mnum] = get(k, endField);
+    }
+
+    private void decreaseRepeatCount(final int k) {
+        //int si = stack[stk + IREPEAT_INC_SI];
+        //stack[si + IREPEAT_COUNT]--;
+        stack[get(k, REPEAT_INC_SI) + REPEAT_COUNT]--;
+    }
+
     protected final int posEnd() {
         int k = stk;
         while (true) {
-            k--;
-            final StackEntry e = stack[k];
-            if ((e.type & MASK_TO_VOID_TARGET) != 0) {
-                e.type = VOID;
-            } else if (e.type == POS) {
-                e.type = VOID;
+            k -= ENTRY_SIZE;
+            final int type = type(k);
+            if ((type & MASK_TO_VOID_TARGET) != 0) {
+                set(k, TYPE, VOID);
+            } else if (type == POS) {
+                set(k, TYPE, VOID);
                 break;
             }
         }
@@ -341,13 +411,13 @@ abstract class StackMachine extends Matcher implements StackType {
     protected final void stopBtEnd() {
         int k = stk;
         while (true) {
-            k--;
-            final StackEntry e = stack[k];
+            k -= ENTRY_SIZE;
+            final int type = type(k);
 
-            if ((e.type & MASK_TO_VOID_TARGET) != 0) {
-                e.type = VOID;
-            } else if (e.type == STOP_BT) {
-                e.type = VOID;
+            if ((type & MASK_TO_VOID_TARGET) != 0) {
+                set(k, TYPE, VOID);
+            } else if (type == STOP_BT) {
+                set(k, TYPE, VOID);
                 break;
             }
         }
@@ -357,12 +427,11 @@ abstract class StackMachine extends Matcher implements StackType {
     protected final int nullCheck(final int id, final int s) {
         int k = stk;
         while (true) {
-            k--;
-            final StackEntry e = stack[k];
+            k -= ENTRY_SIZE;
 
-            if (e.type == NULL_CHECK_START) {
-                if (e.getNullCheckNum() == id) {
-                    return e.getNullCheckPStr() == s ? 1 : 0;
+            if (type(k) == NULL_CHECK_START) {
+                if (get(k, NULL_CHECK_NUM) == id) {
+                    return get(k, NULL_CHECK_PSTR) == s ? 1 : 0;
                 }
             }
         }
@@ -377,18 +446,18 @@ abstract class StackMachine extends Matcher implements StackType {
         int level = 0;
         int k = stk;
         while (true) {
-            k--;
-            final StackEntry e = stack[k];
+            k -= ENTRY_SIZE;
+            final int type = type(k);
 
-            if (e.type == REPEAT) {
+            if (type == REPEAT) {
                 if (level == 0) {
-                    if (e.getRepeatNum() == id) {
+                    if (get(k, REPEAT_NUM) == id) {
                         return k;
                     }
                 }
-            } else if (e.type == CALL_FRAME) {
+            } else if (type == CALL_FRAME) {
                 level--;
-            } else if (e.type == RETURN) {
+            } else if (type == RETURN) {
                 level++;
             }
         }
@@ -398,15 +467,15 @@ abstract class StackMachine extends Matcher implements StackType {
         int level = 0;
         int k = stk;
         while (true) {
-            k--;
-            final StackEntry e = stack[k];
+            k -= ENTRY_SIZE;
+            final int type = type(k);
 
-            if (e.type == CALL_FRAME) {
+            if (type == CALL_FRAME) {
                 if (level == 0) {
-                    return e.getCallFrameRetAddr();
+                    return get(k, CALL_FRAME_RET_ADDR);
                 }
                 level--;
-            } else if (e.type == RETURN) {
+            } else if (type == RETURN) {
                 level++;
             }
         }
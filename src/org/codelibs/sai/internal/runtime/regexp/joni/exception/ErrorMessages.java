@@ -32,6 +32,10 @@ public interface ErrorMessages {
     final String ERR_UNDEFINED_BYTECODE = "undefined bytecode (bug)";
     final String ERR_UNEXPECTED_BYTECODE = "unexpected bytecode (bug)";
 
+    /* match error */
+    final String ERR_MATCH_STACK_LIMIT_OVER = "match-stack limit over";
+    final String ERR_MATCH_BACKTRACK_LIMIT_OVER = "backtrack limit over";
+
     /* syntax error */
     final String ERR_END_PATTERN_AT_LEFT_BRACE = "end pattern at left brace";
     final String ERR_END_PATTERN_AT_LEFT_BRACKET = "end pattern at left bracket";
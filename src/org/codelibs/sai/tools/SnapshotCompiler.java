@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.tools;
+
+import static org.codelibs.sai.internal.runtime.Source.sourceFor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codelibs.sai.internal.runtime.Context;
+import org.codelibs.sai.internal.runtime.ErrorManager;
+import org.codelibs.sai.internal.runtime.Source;
+import org.codelibs.sai.internal.runtime.options.Options;
+
+/**
+ * Command line tool compiling JavaScript files ahead of time into a code snapshot. A snapshot is
+ * a single file that is shipped with an application and loaded at runtime with the
+ * {@code --code-snapshot=<file>} option, so that the scripts in it do not need to be parsed or
+ * compiled again. Besides the {@code -o <file>} option naming the snapshot, the tool accepts the
+ * same options as the shell, and script files or directories that are searched for {@code .js}
+ * files. Every function is compiled eagerly unless optimistic types are enabled, as these only
+ * work with lazy compilation.
+ * <p>
+ * Scripts are looked up in the snapshot by their name, location and contents, so they must be
+ * loaded at runtime from the same path they were compiled from, and with the same optimistic
+ * types setting. Scripts that are not in the snapshot are compiled as usual.
+ */
+public final class SnapshotCompiler {
+
+    private static final String USAGE = "usage: SnapshotCompiler -o <snapshot-file> [<options>] <files or directories>";
+
+    private SnapshotCompiler() {
+    }
+
+    /**
+     * Main entry point with the default output and error streams.
+     *
+     * @param args The command line arguments
+     */
+    public static void main(final String[] args) {
+        final int exitCode = main(System.out, System.err, args);
+        if (exitCode != Shell.SUCCESS) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Compile the scripts given on the command line into a snapshot.
+     *
+     * @param out output stream for messages
+     * @param err error stream for messages
+     * @param args the command line arguments
+     * @return exit code, one of the {@link Shell} exit codes
+     */
+    public static int main(final OutputStream out, final OutputStream err, final String[] args) {
+        final PrintWriter wout = new PrintWriter(out instanceof PrintStream ? (PrintStream) out : new PrintStream(out), true);
+        final PrintWriter werr = new PrintWriter(err instanceof PrintStream ? (PrintStream) err : new PrintStream(err), true);
+
+        String output = null;
+        final List<String> engineArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (("-o".equals(arg) || "--output".equals(arg)) && i + 1 < args.length) {
+                output = args[++i];
+            } else if (arg.startsWith("--output=")) {
+                output = arg.substring("--output=".length());
+            } else {
+                engineArgs.add(arg);
+            }
+        }
+        if (output == null) {
+            werr.println(USAGE);
+            return Shell.COMMANDLINE_ERROR;
+        }
+
+        final ErrorManager errors = new ErrorManager(werr);
+        final Options options = new Options("sai", werr);
+        try {
+            options.process(engineArgs.toArray(new String[0]));
+        } catch (final IllegalArgumentException e) {
+            werr.println(USAGE);
+            options.displayHelp(e);
+            return Shell.COMMANDLINE_ERROR;
+        }
+        if (!options.getBoolean("optimistic.types")) {
+            // compile every function now, so none has to be compiled on first call at runtime
+            options.set("lazy.compilation", false);
+        }
+
+        final List<Source> sources = new ArrayList<>();
+        try {
+            for (final String fileName : options.getFiles()) {
+                addSources(new File(fileName), fileName, sources);
+            }
+        } catch (final IOException e) {
+            werr.println(e);
+            return Shell.IO_ERROR;
+        }
+        if (sources.isEmpty()) {
+            werr.println(USAGE);
+            return Shell.COMMANDLINE_ERROR;
+        }
+
+        final Context context = new Context(options, errors, wout, werr, Thread.currentThread().getContextClassLoader());
+        try {
+            if (!context.compileSnapshot(new File(output), sources)) {
+                return Shell.COMPILATION_ERROR;
+            }
+        } catch (final IOException e) {
+            werr.println(e);
+            return Shell.IO_ERROR;
+        }
+        wout.println("compiled " + sources.size() + " scripts into " + output);
+        return Shell.SUCCESS;
+    }
+
+    private static void addSources(final File file, final String fileName, final List<Source> sources) throws IOException {
+        if (file.isDirectory()) {
+            final String[] children = file.list();
+            if (children == null) {
+                throw new IOException("Can not list directory " + fileName);
+            }
+            Arrays.sort(children);
+            for (final String child : children) {
+                final File childFile = new File(file, child);
+                if (childFile.isDirectory() || child.endsWith(".js")) {
+                    addSources(childFile, new File(fileName, child).getPath(), sources);
+                }
+            }
+        } else {
+            sources.add(sourceFor(fileName, file));
+        }
+    }
+}
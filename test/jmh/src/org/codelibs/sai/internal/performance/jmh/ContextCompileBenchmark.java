@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.performance.jmh;
+
+import static org.codelibs.sai.internal.runtime.Source.sourceFor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.sai.internal.objects.Global;
+import org.codelibs.sai.internal.runtime.Context;
+import org.codelibs.sai.internal.runtime.ErrorManager;
+import org.codelibs.sai.internal.runtime.Source;
+import org.codelibs.sai.internal.runtime.options.Options;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@code Context.compileScript}. The cold benchmark compiles a distinct
+ * source on every invocation and therefore runs the full parse, lower and codegen pipeline;
+ * the warm benchmark compiles the same source repeatedly and is served by the class cache.
+ * The large benchmark compiles a script that is split into many compile units. All of them
+ * run with and without {@code --parallel-codegen}.
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextCompileBenchmark {
+
+    private static final String SCRIPT = String.join("\n",
+            "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }",
+            "var obj = { a: 1, b: 'two', c: [1, 2, 3], d: function(x) { return x * this.a; } };",
+            "for (var i = 0; i < 10; i++) { obj.a += fib(i); }",
+            "JSON.stringify(obj);");
+
+    private static final String LARGE_SCRIPT;
+
+    static {
+        // top level code is compiled eagerly, and this much of it is split into many compile units
+        final StringBuilder sb = new StringBuilder("var s = 0;\n");
+        for (int i = 0; i < 8000; i++) {
+            sb.append("s = (s + ").append(i).append(" * s) % 1000003;\n");
+        }
+        LARGE_SCRIPT = sb.toString();
+    }
+
+    @Param({ "false", "true" })
+    public boolean parallelCodegen;
+
+    private Context context;
+    private Global global;
+    private Global oldGlobal;
+    private Source warmSource;
+    private long counter;
+
+    @Setup
+    public void setup() {
+        final Options options = new Options("sai");
+        options.process(new String[] { "--parallel-codegen=" + parallelCodegen });
+        context = new Context(options, new ErrorManager(), Thread.currentThread().getContextClassLoader());
+        global = context.createGlobal();
+        oldGlobal = Context.getGlobal();
+        Context.setGlobal(global);
+        warmSource = sourceFor("warm.js", SCRIPT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Context.setGlobal(oldGlobal);
+    }
+
+    @Benchmark
+    public Object compileCold() {
+        // a trailing comment makes every source distinct so it can't be served from the class cache
+        return context.compileScript(sourceFor("cold.js", SCRIPT + "\n// " + counter++), global);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object compileLarge() {
+        return context.compileScript(sourceFor("large.js", LARGE_SCRIPT + "\n// " + counter++), global);
+    }
+
+    @Benchmark
+    public Object compileWarm() {
+        return context.compileScript(warmSource, global);
+    }
+}
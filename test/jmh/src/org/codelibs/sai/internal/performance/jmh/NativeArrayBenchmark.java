@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.codelibs.sai.api.scripting.SaiScriptEngineFactory;
+import org.codelibs.sai.api.scripting.ScriptObjectMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@code NativeArray} builtins over dense int, double and object arrays.
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeArrayBenchmark {
+
+    static final int OPS = 1000;
+
+    private static final String SCRIPT = String.join("\n",
+            "var ints = []; for (var i = 0; i < " + OPS + "; i++) { ints.push((i * 7919) % " + OPS + "); }",
+            "var doubles = ints.map(function(x) { return x + 0.5; });",
+            "var strings = ints.map(function(x) { return 'k' + x; });",
+            "function pushPop() { var a = []; for (var i = 0; i < " + OPS + "; i++) { a.push(i); } while (a.length > 0) { a.pop(); } return a; }",
+            "function indexOf(a) { return a.indexOf(" + (OPS - 1) + "); }",
+            "function slice(a) { return a.slice(1, a.length - 1); }",
+            "function map(a) { return a.map(function(x) { return x * 2; }); }",
+            "function sortDefault(a) { return a.slice().sort(); }",
+            "function sortNumeric(a) { return a.slice().sort(function(x, y) { return x - y; }); }");
+
+    private ScriptObjectMirror global;
+    private Object ints;
+    private Object doubles;
+    private Object strings;
+
+    @Setup
+    public void setup() throws ScriptException {
+        final ScriptEngine engine = new SaiScriptEngineFactory().getScriptEngine();
+        engine.eval(SCRIPT);
+        global = (ScriptObjectMirror) engine.eval("this");
+        ints = global.getMember("ints");
+        doubles = global.getMember("doubles");
+        strings = global.getMember("strings");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Object pushPop() {
+        return global.callMember("pushPop");
+    }
+
+    @Benchmark
+    public Object indexOfInt() {
+        return global.callMember("indexOf", ints);
+    }
+
+    @Benchmark
+    public Object sliceDouble() {
+        return global.callMember("slice", doubles);
+    }
+
+    @Benchmark
+    public Object mapInt() {
+        return global.callMember("map", ints);
+    }
+
+    @Benchmark
+    public Object sortDefaultString() {
+        return global.callMember("sortDefault", strings);
+    }
+
+    @Benchmark
+    public Object sortNumericInt() {
+        return global.callMember("sortNumeric", ints);
+    }
+
+    @Benchmark
+    public Object sortNumericDouble() {
+        return global.callMember("sortNumeric", doubles);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.codelibs.sai.api.scripting.SaiScriptEngineFactory;
+import org.codelibs.sai.api.scripting.ScriptObjectMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@code NativeJSON.parse} and {@code NativeJSON.stringify}.
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeJSONBenchmark {
+
+    private static final String SCRIPT = String.join("\n",
+            "var data = [];",
+            "for (var i = 0; i < 200; i++) {",
+            "    data.push({ id: i, name: 'item' + i, price: i * 1.25, tags: ['a', 'b', 'c'], nested: { flag: (i & 1) == 0, value: null } });",
+            "}",
+            "var text = JSON.stringify(data);",
+            "function parse() { return JSON.parse(text); }",
+            "function stringify() { return JSON.stringify(data); }",
+            "function stringifyIndent() { return JSON.stringify(data, null, 2); }");
+
+    private ScriptObjectMirror global;
+
+    @Setup
+    public void setup() throws ScriptException {
+        final ScriptEngine engine = new SaiScriptEngineFactory().getScriptEngine();
+        engine.eval(SCRIPT);
+        global = (ScriptObjectMirror) engine.eval("this");
+    }
+
+    @Benchmark
+    public Object parse() {
+        return global.callMember("parse");
+    }
+
+    @Benchmark
+    public Object stringify() {
+        return global.callMember("stringify");
+    }
+
+    @Benchmark
+    public Object stringifyIndent() {
+        return global.callMember("stringifyIndent");
+    }
+}
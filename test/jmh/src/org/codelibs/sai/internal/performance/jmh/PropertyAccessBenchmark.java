@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.codelibs.sai.api.scripting.SaiScriptEngineFactory;
+import org.codelibs.sai.api.scripting.ScriptObjectMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for property get and set from script code. Every access goes through a
+ * {@code LinkerCallSite}; the loops run inside the script so that the mirror call
+ * used to enter the script is amortized over {@value #OPS} accesses.
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyAccessBenchmark {
+
+    static final int OPS = 1000;
+
+    private static final String SCRIPT = String.join("\n",
+            "function Point(x, y) { this.x = x; this.y = y; }",
+            "var point = new Point(1, 2);",
+            "var shapes = [ { x: 1 }, { a: 0, x: 2 }, { a: 0, b: 0, x: 3 }, { a: 0, b: 0, c: 0, x: 4 } ];",
+            "function getLoop(o) { var s = 0; for (var i = 0; i < " + OPS + "; i++) { s += o.x; } return s; }",
+            "function setLoop(o) { for (var i = 0; i < " + OPS + "; i++) { o.x = i; } return o.x; }",
+            "function polyGetLoop(a) { var s = 0; for (var i = 0; i < " + OPS + "; i++) { s += a[i & 3].x; } return s; }");
+
+    private ScriptObjectMirror global;
+    private Object point;
+    private Object shapes;
+
+    @Setup
+    public void setup() throws ScriptException {
+        final ScriptEngine engine = new SaiScriptEngineFactory().getScriptEngine();
+        engine.eval(SCRIPT);
+        global = (ScriptObjectMirror) engine.eval("this");
+        point = global.getMember("point");
+        shapes = global.getMember("shapes");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Object monomorphicGet() {
+        return global.callMember("getLoop", point);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Object monomorphicSet() {
+        return global.callMember("setLoop", point);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public Object polymorphicGet() {
+        return global.callMember("polyGetLoop", shapes);
+    }
+}
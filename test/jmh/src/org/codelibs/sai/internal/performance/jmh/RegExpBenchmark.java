@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.codelibs.sai.internal.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.codelibs.sai.api.scripting.SaiScriptEngineFactory;
+import org.codelibs.sai.api.scripting.ScriptObjectMirror;
+import org.codelibs.sai.internal.runtime.regexp.JoniRegExp;
+import org.codelibs.sai.internal.runtime.regexp.RegExpMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@code RegExp.prototype.exec}, {@code test} and {@code String.prototype.replace}.
+ */
+@SuppressWarnings("javadoc")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegExpBenchmark {
+
+    private static final String SCRIPT = String.join("\n",
+            "var line = '';",
+            "for (var i = 0; i < 100; i++) { line += '2015-06-' + (10 + i % 20) + ' INFO [worker-' + i + '] request id=' + (i * 31) + ' took ' + i + 'ms\\n'; }",
+            "var entry = /(\\d{4})-(\\d{2})-(\\d{2}) (\\w+) \\[([^\\]]+)\\]/g;",
+            "function execAll() { var n = 0; entry.lastIndex = 0; while (entry.exec(line) !== null) { n++; } return n; }",
+            "function test() { return /took \\d+ms/.test(line); }",
+            "function replace() { return line.replace(/id=(\\d+)/g, 'id=<$1>'); }",
+            "function dynamic(i) { return new RegExp('worker-' + (i % 10)).test(line); }");
+
+    private ScriptObjectMirror global;
+    private int counter;
+
+    @Setup
+    public void setup() throws ScriptException {
+        final ScriptEngine engine = new SaiScriptEngineFactory().getScriptEngine();
+        engine.eval(SCRIPT);
+        global = (ScriptObjectMirror) engine.eval("this");
+    }
+
+    @Benchmark
+    public Object execGlobal() {
+        return global.callMember("execAll");
+    }
+
+    @Benchmark
+    public Object test() {
+        return global.callMember("test");
+    }
+
+    @Benchmark
+    public Object replace() {
+        return global.callMember("replace");
+    }
+
+    @Benchmark
+    public Object dynamicPattern() {
+        return global.callMember("dynamic", counter++);
+    }
+
+    /** A regexp shared by all threads, as regexps of a literal are through the regexp cache */
+    private final JoniRegExp shared = new JoniRegExp("\\d+ms", "g");
+
+    /** A subject string per thread */
+    @State(Scope.Thread)
+    public static class Subject {
+        String line;
+
+        @Setup
+        public void setup() {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                sb.append("request ").append(Thread.currentThread().getName()).append(" took ").append(i).append("ms\n");
+            }
+            line = sb.toString();
+        }
+    }
+
+    // Every match creates a new matcher, as exec does in a loop.
+    @Benchmark
+    @Threads(4)
+    public int sharedRegExpThreads(final Subject subject) {
+        int n = 0;
+        int start = 0;
+        for (;;) {
+            final RegExpMatcher matcher = shared.match(subject.line);
+            if (!matcher.search(start)) {
+                return n;
+            }
+            start = matcher.end();
+            n++;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+/**
+ * Nested function bodies are discarded after the initial parse and parsed
+ * again when the functions are first invoked.
+ *
+ * @test
+ * @run
+ */
+
+var lib = (function() {
+    var count = 0;
+
+    function add(a, b) {
+        count++;
+        return a + b;
+    }
+
+    function makeCounter(start) {
+        var n = start;
+        return {
+            next: function() { return n++; },
+            get current() { return n; }
+        };
+    }
+
+    var fact = function f(x) {
+        return x <= 1 ? 1 : x * f(x - 1);
+    };
+
+    function Point(x, y) {
+        this.x = x;
+        this.y = y;
+    }
+    Point.prototype.toString = function() {
+        return "(" + this.x + ", " + this.y + ")";
+    };
+
+    function forward() {
+        return add.apply(this, arguments);
+    }
+
+    function hoisted() {
+        return twice(21);
+        function twice(x) { return x * 2; }
+    }
+
+    function scoped() {
+        var result;
+        try {
+            throw "caught";
+        } catch (e) {
+            result = function() { return e; };
+        }
+        return result();
+    }
+
+    return {
+        add: add,
+        makeCounter: makeCounter,
+        fact: fact,
+        Point: Point,
+        forward: forward,
+        hoisted: hoisted,
+        scoped: scoped,
+        count: function() { return count; }
+    };
+})();
+
+print(lib.add(1, 2));
+print(lib.add("a", "b"));
+var c = lib.makeCounter(10);
+c.next();
+c.next();
+print(c.current);
+print(lib.fact(5));
+print(lib.fact("4"));
+print(new lib.Point(1, 2));
+print(lib.forward(3, 4));
+print(lib.forward("x", "y"));
+print(lib.hoisted());
+print(lib.scoped());
+print(lib.count());
+
+try {
+    eval("function outer() { function inner() { return 1 +; } }");
+} catch (e) {
+    print(e instanceof SyntaxError);
+}
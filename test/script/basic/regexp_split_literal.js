@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/**
+ * Splitting on a literal regexp honours the limit and sets RegExp.lastMatch
+ * like splitting on a regexp matched by the regexp engine.
+ *
+ * @test
+ * @run
+ */
+
+function test(literal, general, str, limit) {
+    var results = [];
+    [literal, general].forEach(function(re) {
+        RegExp.prototype.exec.call(/reset/, "reset");
+        var parts = str.split(re, limit);
+        results.push(JSON.stringify(parts) + " lastMatch=" + JSON.stringify(RegExp.lastMatch)
+            + " leftContext=" + JSON.stringify(RegExp.leftContext) + " rightContext=" + JSON.stringify(RegExp.rightContext));
+    });
+    if (results[0] !== results[1]) {
+        throw new Error(literal + " on " + str + " limit " + limit + ": " + results[0] + " != " + results[1]);
+    }
+    print(results[0]);
+}
+
+test(/,/, /[,]/, "a,b,c,d");
+test(/,/, /[,]/, "a,b,c,d", 2);
+test(/,/, /[,]/, "a,b,c,d", 4);
+test(/,/, /[,]/, "a,b,c,d", 5);
+test(/,/, /[,]/, "a,b,c,d", 0);
+test(/,/, /[,]/, ",a,,b,", undefined);
+test(/,/, /[,]/, ",a,,b,", 3);
+test(/,/, /[,]/, "none", 1);
+test(/\r\n/, /\r\n(?:)/, "l1\r\nl2\r\nl3", 2);
+test(/and|or/, /(?:and|or)/, "a and b or c and d", 3);
+test(/and|or/, /(?:and|or)/, "a and b or c and d");
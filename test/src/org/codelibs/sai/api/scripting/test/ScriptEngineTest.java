@@ -26,6 +26,7 @@
 package org.codelibs.sai.api.scripting.test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -33,14 +34,25 @@ import static org.testng.Assert.fail;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
@@ -52,7 +64,11 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleScriptContext;
 
+import org.codelibs.sai.api.scripting.EngineMetricsMXBean;
+import org.codelibs.sai.api.scripting.SamplingProfiler;
 import org.codelibs.sai.api.scripting.ScriptObjectMirror;
+import org.codelibs.sai.api.scripting.ScriptUtils;
+import org.codelibs.sai.internal.runtime.ScriptThreads;
 import org.testng.annotations.Test;
 
 /**
@@ -858,6 +874,99 @@ public class ScriptEngineTest {
         assertNull(ctx.removeAttribute("undefinedname", ScriptContext.ENGINE_SCOPE));
     }
 
+    @Test
+    public void typedArrayOverByteBufferTest() throws Exception {
+        final ScriptEngineManager manager = new ScriptEngineManager();
+        final ScriptEngine e = manager.getEngineByName("sai");
+
+        final ByteBuffer heap = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+        heap.putInt(4, 42);
+        e.put("heap", heap);
+        assertEquals(e.eval("new ArrayBuffer(heap).byteLength"), 16);
+        assertEquals(e.eval("new Int32Array(heap)[1]"), 42);
+        e.eval("new Int32Array(new ArrayBuffer(heap), 8)[1] = 7");
+        assertEquals(heap.getInt(12), 7);
+        assertEquals(e.eval("new Uint8Array(new ArrayBuffer(heap).slice(4, 8)).length"), 4);
+
+        final Path file = Files.createTempFile("sai", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            e.put("mapped", channel.map(FileChannel.MapMode.READ_WRITE, 0, 1024));
+            e.eval("var bytes = new Uint8Array(mapped); for (var i = 0; i < bytes.length; i++) bytes[i] = i");
+            assertEquals(e.eval("new DataView(new ArrayBuffer(mapped)).getUint8(255)"), 255);
+        } finally {
+            Files.delete(file);
+        }
+
+        // array buffers are writable, so read only buffers are rejected
+        e.put("readOnly", heap.asReadOnlyBuffer());
+        assertEquals(e.eval("try { new ArrayBuffer(readOnly); 'wrapped' } catch (ex) { ex instanceof TypeError }"), true);
+        assertEquals(e.eval("try { new Int32Array(readOnly); 'wrapped' } catch (ex) { ex instanceof TypeError }"), true);
+    }
+
+    @Test
+    public void engineMetricsTest() throws Exception {
+        final ScriptEngineManager manager = new ScriptEngineManager();
+        final ScriptEngine e = manager.getEngineByName("sai");
+        final EngineMetricsMXBean metrics = ScriptUtils.getEngineMetrics();
+
+        final long compilations = metrics.getCompilationCount();
+        final long relinks = metrics.getRelinkCount();
+        final long megamorphic = metrics.getMegamorphicTransitionCount();
+        e.eval("function get(o) { return o.x; }\n"
+                + "for (var i = 0; i < 50; i++) { var o = {}; o['p' + i] = i; o.x = i; get(o); }");
+
+        assertTrue(metrics.getCompilationCount() > compilations);
+        assertTrue(metrics.getCompilationTimeNanos() > 0);
+        assertTrue(metrics.getPhaseTimeNanos().containsKey("'JavaScript Parsing'"));
+        assertTrue(metrics.getRelinkCount() > relinks);
+        assertTrue(metrics.getMegamorphicTransitionCount() > megamorphic);
+        assertTrue(metrics.getGlobalCount() > 0);
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(EngineMetricsMXBean.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        assertTrue((Long) server.getAttribute(name, "CompilationCount") > compilations);
+    }
+
+    @Test
+    public void samplingProfilerTest() throws Exception {
+        final ScriptEngineManager manager = new ScriptEngineManager();
+        final ScriptEngine e = manager.getEngineByName("sai");
+        e.eval("function inner(n) { var s = 0; for (var i = 0; i < n; i++) { s += Math.sqrt(i); } return s; }\n"
+                + "function outer() { return inner(100000); }");
+
+        final SamplingProfiler profiler = new SamplingProfiler(1);
+        profiler.start();
+        try {
+            for (int i = 0; i < 10000 && !profiler.getFunctionHotSpots().containsKey("inner (<eval>)"); i++) {
+                e.eval("outer()");
+            }
+        } finally {
+            profiler.stop();
+        }
+
+        // only threads that ran script code are sampled
+        final Thread idle = new Thread();
+        idle.start();
+        idle.join();
+        final Set<Long> scriptThreads = new HashSet<>();
+        for (final long id : ScriptThreads.getThreadIds()) {
+            scriptThreads.add(id);
+        }
+        assertTrue(scriptThreads.contains(Thread.currentThread().threadId()));
+        assertFalse(scriptThreads.contains(idle.threadId()));
+
+        assertTrue(profiler.getSampleCount() > 0);
+        assertTrue(profiler.getFunctionHotSpots().containsKey("inner (<eval>)"));
+        assertTrue(profiler.getLineHotSpots().containsKey("inner (<eval>:1)"));
+        final StringWriter sw = new StringWriter();
+        profiler.writeCollapsedStacks(sw);
+        assertTrue(sw.toString().contains("outer (<eval>:2);inner (<eval>:1) "));
+
+        profiler.reset();
+        assertEquals(profiler.getSampleCount(), 0L);
+    }
+
     private static void checkProperty(final ScriptEngine e, final String name) throws ScriptException {
         final String value = System.getProperty(name);
         e.put("name", name);
@@ -30,7 +30,9 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.lang.invoke.MethodHandle;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +47,7 @@ import javax.script.ScriptException;
 import org.codelibs.sai.api.scripting.AbstractJSObject;
 import org.codelibs.sai.api.scripting.JSObject;
 import org.codelibs.sai.api.scripting.ScriptObjectMirror;
+import org.codelibs.sai.api.scripting.ScriptUtils;
 import org.testng.annotations.Test;
 
 /**
@@ -429,4 +432,115 @@ public class ScriptObjectMirrorTest {
 
         assertTrue((boolean) e.eval("typeof sfunc() == 'undefined'"));
     }
+
+    @Test
+    public void callHandleTest() throws Throwable {
+        final ScriptEngineManager m = new ScriptEngineManager();
+        final ScriptEngine e = m.getEngineByName("sai");
+
+        e.eval("function add(x, y) { return x + y; }; function self() { return this; }; var obj = { v: 42 }; "
+                + "function getV(o) { return o.v; }; function fail() { throw new TypeError('bad'); }");
+        final ScriptObjectMirror add = (ScriptObjectMirror) e.get("add");
+        final ScriptObjectMirror obj = (ScriptObjectMirror) e.get("obj");
+
+        final MethodHandle intAdd = add.getCallHandle(int.class, int.class, int.class);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals((int) intAdd.invokeExact((Object) null, i, 1), i + 1);
+        }
+        final MethodHandle objAdd = add.getCallHandle(Object.class, Object.class, Object.class);
+        assertEquals(objAdd.invoke(null, "a", "b"), "ab");
+
+        // mirrors are unwrapped and results wrapped
+        final MethodHandle getV = ((ScriptObjectMirror) e.get("getV")).getCallHandle(Object.class, Object.class);
+        assertEquals(((Number) getV.invoke(null, obj)).intValue(), 42);
+        final MethodHandle self = ((ScriptObjectMirror) e.get("self")).getCallHandle(Object.class);
+        assertTrue(ScriptObjectMirror.identical(self.invoke(obj), obj));
+
+        try {
+            ((ScriptObjectMirror) e.get("fail")).getCallHandle(void.class).invoke(null);
+            fail("should have thrown");
+        } catch (final Exception ex) {
+            assertTrue(ex.getMessage().contains("bad"), ex.getMessage());
+        }
+
+        try {
+            obj.getCallHandle(Object.class);
+            fail("should have thrown");
+        } catch (final RuntimeException ex) {
+            assertTrue(ex.getMessage().startsWith("not a function"));
+        }
+    }
+
+    @Test
+    public void callHandleInGlobalTest() throws Throwable {
+        final ScriptEngineManager m = new ScriptEngineManager();
+        final ScriptEngine e = m.getEngineByName("sai");
+
+        // Called back from script code, the home global is current already.
+        e.eval("function twice(x) { return 2 * x; }");
+        final MethodHandle twice = ((ScriptObjectMirror) e.get("twice")).getCallHandle(double.class, double.class);
+        e.put("callTwice", new Function<Object, Object>() {
+            @Override
+            public Object apply(final Object x) {
+                try {
+                    return (double) twice.invokeExact((Object) null, ((Number) x).doubleValue());
+                } catch (final Throwable t) {
+                    throw new RuntimeException(t);
+                }
+            }
+        });
+        assertEquals(((Number) e.eval("callTwice(21) + callTwice(0.5)")).doubleValue(), 43.0);
+        assertEquals((double) twice.invokeExact((Object) null, 4.0), 8.0);
+    }
+
+    @Test
+    public void javaArrayTransferTest() throws ScriptException {
+        final ScriptEngineManager m = new ScriptEngineManager();
+        final ScriptEngine e = m.getEngineByName("sai");
+        final ScriptObjectMirror global = (ScriptObjectMirror) e.getBindings(ScriptContext.ENGINE_SCOPE);
+
+        final ScriptObjectMirror ints = ScriptUtils.toScriptArray(global, new long[] { 1, 2, 3 });
+        assertTrue(ints.isArray());
+        e.put("ints", ints);
+        assertEquals(((Number) e.eval("ints.reduce(function(a, b) { return a + b; })")).intValue(), 6);
+
+        final ScriptObjectMirror doubles = ScriptUtils.toScriptArray(global, Arrays.asList(1, 2.5, 4));
+        e.put("doubles", doubles);
+        assertEquals(e.eval("doubles.join()"), "1,2.5,4");
+        assertEquals(e.eval("Java.from(Java.to([1, 4294967296], 'long[]')).join()"), "1,4294967296");
+
+        // dense arrays of numbers, including large ones stored as sparse arrays, copy to Java arrays
+        e.eval("var big = []; for (var i = 0; i < 200000; i++) big.push(i);");
+        final double[] bigDoubles = ((ScriptObjectMirror) e.get("big")).to(double[].class);
+        assertEquals(bigDoubles.length, 200000);
+        assertEquals(bigDoubles[199999], 199999.0);
+        final long[] bigLongs = ((ScriptObjectMirror) e.get("big")).to(long[].class);
+        assertEquals(bigLongs[150000], 150000L);
+        assertEquals(ints.to(double[].class), new double[] { 1, 2, 3 });
+
+        @SuppressWarnings("unchecked")
+        final List<Object> list = (List<Object>) e.eval("Java.to([1, 'a', 2.5], java.util.List)");
+        assertEquals(list.toArray(), new Object[] { 1, "a", 2.5 });
+        assertEquals(list.toArray(new Object[4])[3], null);
+    }
+
+    @Test
+    public void wrapBufferTest() throws ScriptException {
+        final ScriptEngineManager m = new ScriptEngineManager();
+        final ScriptEngine e = m.getEngineByName("sai");
+        final ScriptObjectMirror global = (ScriptObjectMirror) e.getBindings(ScriptContext.ENGINE_SCOPE);
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        final ScriptObjectMirror arrayBuffer = ScriptUtils.wrapBuffer(global, buffer);
+        assertEquals(arrayBuffer.getClassName(), "ArrayBuffer");
+        e.put("arrayBuffer", arrayBuffer);
+        e.eval("new Uint8Array(arrayBuffer)[3] = 42");
+        assertEquals(buffer.get(3), 42);
+
+        e.put("buffer", buffer);
+        e.eval("new Uint8Array(Java.wrapBuffer(buffer))[5] = 7");
+        assertEquals(buffer.get(5), 7);
+        assertEquals(e.eval("Java.wrapBuffer(buffer).byteLength"), 16);
+        assertEquals(e.eval("try { Java.wrapBuffer([1, 2]) } catch (ex) { ex instanceof TypeError }"), true);
+    }
 }
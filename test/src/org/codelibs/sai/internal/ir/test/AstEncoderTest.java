@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.codelibs.sai.internal.ir.test;
+
+import static org.codelibs.sai.internal.runtime.Source.sourceFor;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.codelibs.sai.internal.ir.AstDecoder;
+import org.codelibs.sai.internal.ir.AstEncoder;
+import org.codelibs.sai.internal.ir.FunctionNode;
+import org.codelibs.sai.internal.ir.debug.PrintVisitor;
+import org.codelibs.sai.internal.parser.Parser;
+import org.codelibs.sai.internal.runtime.Context;
+import org.codelibs.sai.internal.runtime.ErrorManager;
+import org.codelibs.sai.internal.runtime.options.Options;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Round trip tests for the binary AST encoding.
+ *
+ * @test
+ * @run testng org.codelibs.sai.internal.ir.test.AstEncoderTest
+ */
+@SuppressWarnings("javadoc")
+public class AstEncoderTest {
+    private Context context;
+
+    @BeforeClass
+    public void setupTest() {
+        final Options options = new Options("sai");
+        options.set("parse.only", true);
+        options.set("scripting", true);
+
+        final ErrorManager errors = new ErrorManager();
+        this.context = new Context(options, errors, Thread.currentThread().getContextClassLoader());
+    }
+
+    @AfterClass
+    public void tearDownTest() {
+        this.context = null;
+    }
+
+    private FunctionNode parse(final String code) {
+        final ErrorManager errors = new ErrorManager();
+        final FunctionNode fn = new Parser(context.getEnv(), sourceFor("test", code), errors).parse();
+        assertEquals(errors.getNumberOfErrors(), 0);
+        return fn;
+    }
+
+    private void roundTrip(final String code) {
+        final FunctionNode fn = parse(code);
+        final byte[] encoded = AstEncoder.encode(fn);
+        final FunctionNode decoded = AstDecoder.decode(encoded);
+
+        assertNotSame(decoded, fn);
+        assertEquals(new PrintVisitor(decoded).toString(), new PrintVisitor(fn).toString());
+        assertEquals(decoded.getName(), fn.getName());
+        assertEquals(decoded.getFlags(), fn.getFlags());
+        assertEquals(decoded.getToken(), fn.getToken());
+        assertEquals(decoded.getFinish(), fn.getFinish());
+        // Encoding the decoded tree again must produce the very same bytes
+        assertEquals(AstEncoder.encode(decoded), encoded);
+    }
+
+    @Test
+    public void literalsTest() {
+        roundTrip("var a = 1, b = 2.5, c = 'str', d = true, e = null, f = undefined, g = 0x7fffffffff;"
+                + "var arr = [1, 2, 3], darr = [1.5, 2.5], mixed = [1, 'a', {}], holes = [, 1, , 2];"
+                + "var re = /a+b/gi;");
+    }
+
+    @Test
+    public void controlFlowTest() {
+        roundTrip("function f(x) {"
+                + "  outer: for (var i = 0; i < x; i++) {"
+                + "    for (var k in x) { if (k) continue outer; else break; }"
+                + "    while (i) { i--; } do { i++; } while (i < 2);"
+                + "    switch (i) { case 1: break; case 'a': return 1; default: throw new Error('x'); }"
+                + "  }"
+                + "  try { g(); } catch (e if e instanceof TypeError) { } catch (e) { } finally { x = 0; }"
+                + "  with (x) { y = x ? 1 : 2; }"
+                + "  return x && i || -x;"
+                + "}");
+    }
+
+    @Test
+    public void functionsAndObjectsTest() {
+        roundTrip("var o = { a: 1, get b() { return this.a; }, set b(v) { this.a = v; }, 'c': function() {} };"
+                + "function outer(a, b) { var inner = function(c) { return a + b + c; }; return inner(o['a'], arguments[0]); }"
+                + "new outer(1, 2); delete o.a; typeof o; void 0;");
+    }
+
+    @Test
+    public void sharedStringsTest() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("someLongVariableName = someLongVariableName + 'someLongString';");
+        }
+        final String encoded = new String(AstEncoder.encode(parse(sb.toString())), StandardCharsets.ISO_8859_1);
+        // Repeated names and strings are written once and referenced afterwards
+        assertEquals(encoded.indexOf("someLongVariableName"), encoded.lastIndexOf("someLongVariableName"));
+        assertEquals(encoded.indexOf("someLongString"), encoded.lastIndexOf("someLongString"));
+        assertTrue(encoded.length() < sb.length(), "encoded size " + encoded.length());
+        roundTrip(sb.toString());
+    }
+}
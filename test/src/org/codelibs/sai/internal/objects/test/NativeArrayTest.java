@@ -280,6 +280,34 @@ public class NativeArrayTest {
         assertEquals(result, 3);
     }
 
+    @Test
+    public void testSortNumeric() throws ScriptException {
+        // numeric comparison functions on int, number and large sparse arrays
+        Object result = engine.eval("var arr = [10, 9, 1, 100, -5]; arr.sort(function(a, b) { return a - b; }); arr.join();");
+        assertEquals(result, "-5,1,9,10,100");
+
+        result = engine.eval("var arr = [1.5, -2.25, 3, 0.5]; arr.sort(function(x, y) { return y - x; }); arr.join();");
+        assertEquals(result, "3,1.5,0.5,-2.25");
+
+        result = engine.eval("var arr = []; for (var i = 0; i < 200000; i++) arr.push((i * 7919) % 200003);"
+                + "arr.sort(function(a, b) { return a - b; });"
+                + "var ok = true; for (var i = 1; i < arr.length; i++) ok = ok && arr[i - 1] <= arr[i]; ok;");
+        assertEquals(result, true);
+
+        // NaN and negative zero keep the order given by the comparison function
+        result = engine.eval("var arr = [2, NaN, 1, -0, 0]; arr.sort(function(a, b) { return a - b; });"
+                + "arr.map(function(v) { return 1 / v === -Infinity ? '-0' : String(v); }).join();");
+        assertEquals(result, "2,NaN,-0,0,1");
+
+        // functions that only look similar are called
+        result = engine.eval("var arr = [3, 1, 2]; arr.sort(function(a, b) { return a - 1; }); arr.join();");
+        assertEquals(result, "3,1,2");
+
+        // default order compares strings, undefined and holes go last
+        result = engine.eval("var arr = [30, 4, undefined, , 21, 100000, 1]; arr.sort(); arr.join() + ' ' + arr.length + ' ' + (5 in arr) + ' ' + (6 in arr);");
+        assertEquals(result, "1,100000,21,30,4,, 7 true false");
+    }
+
     @Test
     public void testIndexOf() throws ScriptException {
         // Test indexOf found
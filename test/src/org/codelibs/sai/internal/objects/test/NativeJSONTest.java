@@ -26,12 +26,27 @@
 package org.codelibs.sai.internal.objects.test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
-
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
+import org.codelibs.sai.api.scripting.SaiException;
+import org.codelibs.sai.api.scripting.ScriptObjectMirror;
+import org.codelibs.sai.api.scripting.ScriptUtils;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -362,4 +377,89 @@ public class NativeJSONTest {
         result = engine.eval("JSON.stringify(0);");
         assertEquals(result, "0");
     }
+
+    @Test
+    public void testParseJSONReader() throws Exception {
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item \\\"").append(i).append("\\\"\",\"price\":").append(i)
+                    .append(".5,\"tags\":[true,false,null,-0,1e3]},\n");
+        }
+        sb.append("\"\\u00e9t\u00e9\"]");
+        final String text = sb.toString();
+        final ScriptObjectMirror global = (ScriptObjectMirror) engine.getBindings(ScriptContext.ENGINE_SCOPE);
+
+        // a reader returning a few characters at a time makes tokens span buffer refills
+        final Reader reader = new FilterReader(new StringReader(text)) {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 7));
+            }
+        };
+        final ScriptObjectMirror array = (ScriptObjectMirror) ScriptUtils.parseJSON(global, reader);
+        assertEquals(array.getMember("length"), 2001);
+        final ScriptObjectMirror item = (ScriptObjectMirror) array.getSlot(1999);
+        assertEquals(item.getMember("name"), "item \"1999\"");
+        assertEquals(item.getMember("price"), 1999.5);
+        assertEquals(array.getSlot(2000), "\u00e9t\u00e9");
+
+        // same result as JSON.parse of the whole text
+        engine.put("streamed", array);
+        engine.put("text", text);
+        assertEquals(engine.eval("JSON.stringify(streamed) === JSON.stringify(JSON.parse(text))"), true);
+
+        final ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        final ScriptObjectMirror decoded = (ScriptObjectMirror) ScriptUtils.parseJSON(global, bytes);
+        assertEquals(decoded.getSlot(2000), "\u00e9t\u00e9");
+        assertEquals(bytes.position(), 0);
+        assertEquals(ScriptUtils.parseJSON(global, new StringReader(" 42 ")), 42);
+
+        try {
+            ScriptUtils.parseJSON(global, new StringReader("{\"a\":\n[1, 2,]}"));
+            fail("SyntaxError expected");
+        } catch (final SaiException e) {
+            assertTrue(e.getMessage().contains("<json>:2:6"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testWriteJSON() throws Exception {
+        final Object values = engine.eval("({ s: 'q\"b\\\\s/\\n\\t\\u0001\\u00e9', arr: [1, 2.5, -0, [true, null], {}],"
+                + " obj: { a: { b: [] } }, u: undefined, f: function() {}, d: new Date(0), n: NaN, inf: -Infinity,"
+                + " holes: [undefined, function() {}, , 'x'] })");
+        final StringBuilder compact = new StringBuilder();
+        assertTrue(ScriptUtils.writeJSON(values, null, compact));
+        assertEquals(compact.toString(), "{\"s\":\"q\\\"b\\\\s/\\n\\t\\u0001\u00e9\",\"arr\":[1,2.5,0,[true,null],{}],"
+                + "\"obj\":{\"a\":{\"b\":[]}},\"d\":\"1970-01-01T00:00:00.000Z\",\"n\":null,\"inf\":null,"
+                + "\"holes\":[null,null,null,\"x\"]}");
+
+        final StringBuilder pretty = new StringBuilder();
+        assertTrue(ScriptUtils.writeJSON(engine.eval("({ a: [1, { b: 'c' }], e: [], o: {}, u: undefined })"), 2, pretty));
+        assertEquals(pretty.toString(), "{\n  \"a\": [\n    1,\n    {\n      \"b\": \"c\"\n    }\n  ],\n  \"e\": [],\n  \"o\": {}\n}");
+
+        // large arrays of ints, doubles and objects
+        final ScriptObjectMirror obj = (ScriptObjectMirror) engine.eval("var o = { ints: [], nums: [], list: [] };"
+                + "for (var i = 0; i < 5000; i++) { o.ints.push(i); o.nums.push(i / 4); o.list.push({ id: i, s: 'x\\n' + i, f: function() {} }); } o");
+        final StringBuilder ints = new StringBuilder();
+        final StringBuilder nums = new StringBuilder();
+        final StringBuilder list = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            final String sep = i == 0 ? "" : ",";
+            ints.append(sep).append(i);
+            nums.append(sep).append(i % 4 == 0 ? String.valueOf(i / 4) : String.valueOf(i / 4.0));
+            list.append(sep).append("{\"id\":").append(i).append(",\"s\":\"x\\n").append(i).append("\"}");
+        }
+        final StringWriter writer = new StringWriter();
+        assertTrue(ScriptUtils.writeJSON(obj, null, writer));
+        assertEquals(writer.toString(), "{\"ints\":[" + ints + "],\"nums\":[" + nums + "],\"list\":[" + list + "]}");
+
+        assertFalse(ScriptUtils.writeJSON(engine.eval("(function() {})"), null, pretty));
+
+        try {
+            ScriptUtils.writeJSON(engine.eval("var c = {}; c.self = c; c"), null, new StringBuilder());
+            fail("TypeError expected");
+        } catch (final SaiException e) {
+            assertTrue(e.getMessage().contains("TypeError"), e.getMessage());
+        }
+    }
 }
@@ -139,6 +139,29 @@ public class ArrayDataTest {
         assertEquals(result, "abcdex");
     }
 
+    @Test
+    public void testLargeSparseArray() throws ScriptException {
+        // elements beyond the dense limit of 128K live in the sparse element map
+        Object result = engine.eval(
+                "var arr = []; " +
+                        "for (var i = 0; i < 1000; i++) arr[200000 + i * 1000] = i % 2 ? i : i + 0.5; " +
+                        "arr[300000] = 'x'; arr[4000000000] = null; " +
+                        "delete arr[201000]; " +
+                        "var keys = Object.keys(arr); " +
+                        "[keys.length, keys[0], keys[1], keys[keys.length - 1], arr[203000], arr[204000], arr[201000], " +
+                        " arr[300000], arr[4000000000], arr.length].join()");
+        assertEquals(result, "1000,200000,202000,4000000000,3,4.5,,x,,4000000001");
+
+        // shifting moves elements between the dense part and the sparse map
+        result = engine.eval(
+                "var arr = []; " +
+                        "for (var i = 0; i < 140000; i++) arr[i] = i; " +
+                        "arr.unshift(-2, -1); arr.shift(); arr.shift(); arr.shift(); " +
+                        "arr.length = 139990; " +
+                        "[arr.length, arr[0], arr[131071], arr[139989], arr[139990], arr.pop(), arr.length].join()");
+        assertEquals(result, "139990,1,131072,139990,,139990,139989");
+    }
+
     // Frozen array tests
 
     @Test
@@ -25,7 +25,19 @@
 
 package org.codelibs.sai.internal.runtime.regexp.joni.test;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+
+import org.codelibs.sai.internal.runtime.regexp.JoniRegExp;
+import org.codelibs.sai.internal.runtime.regexp.RegExpMatcher;
+import org.codelibs.sai.internal.runtime.regexp.joni.Matcher;
+import org.codelibs.sai.internal.runtime.regexp.joni.Option;
 import org.codelibs.sai.internal.runtime.regexp.joni.Regex;
+import org.codelibs.sai.internal.runtime.regexp.joni.exception.MatchLimitException;
 import org.testng.annotations.Test;
 
 /**
@@ -52,4 +64,88 @@ public class JoniTest {
                 "(?:ZFVR.(\\d+\\.\\d+))|(?:(?:Sversbk|TenaCnenqvfb|Vprjrnfry).(\\d+\\.\\d+))|(?:Bcren.(\\d+\\.\\d+))|(?:NccyrJroXvg.(\\d+(?:\\.\\d+)?))")
                 .dumpByteCode();
     }
+
+    @Test
+    public void testSharedSubject() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("x").append(i).append(' ');
+        }
+        final String input = sb.toString();
+        final String other = input.replace("x99", "y99");
+        final JoniRegExp regexp = new JoniRegExp("x(\\d+) $", "g");
+
+        // successive matches against the same long subject, interleaved with another subject
+        for (int i = 0; i < 3; i++) {
+            final RegExpMatcher matcher = regexp.match(input);
+            assertTrue(matcher.search(0));
+            assertEquals(matcher.group(1), "99");
+            assertEquals(matcher.end(), input.length());
+            assertFalse(regexp.match(other).search(0));
+        }
+    }
+
+    @Test
+    public void testMatchLimits() {
+        final char[] input = "aaaaaaaaaaaaaaaaaaaaaaaa!".toCharArray();
+        final Regex catastrophic = new Regex("^(a+)+$");
+        final Matcher matcher = catastrophic.matcher(input);
+        matcher.setMatchLimits(10000, 0);
+        try {
+            matcher.search(0, input.length, Option.NONE);
+            fail("backtrack limit not enforced");
+        } catch (final MatchLimitException e) {
+            // expected
+        }
+
+        final char[] deep = new char[1000];
+        Arrays.fill(deep, 'a');
+        deep[deep.length - 1] = 'c';
+        final Matcher deepMatcher = new Regex("(ab|a)*c").matcher(deep);
+        deepMatcher.setMatchLimits(0, 100);
+        try {
+            deepMatcher.search(0, deep.length, Option.NONE);
+            fail("stack limit not enforced");
+        } catch (final MatchLimitException e) {
+            // expected
+        }
+
+        // stacks are returned to the pool after a failed search and work for the next one
+        final char[] text = "xxaababc".toCharArray();
+        final Matcher unlimited = new Regex("(ab|a)*c").matcher(text);
+        assertEquals(unlimited.search(0, text.length, Option.NONE), 2);
+        assertEquals(unlimited.getEnd(), 8);
+        assertEquals(unlimited.getRegion().beg[1], 5);
+    }
+
+    @Test
+    public void testCompiledProgram() {
+        final String[] patterns = { "abc", "a[b-d]+e", "[^a-c]x", "(a|bc)*d", "x(\\d+) $", "^\\s*(\\w+)\\s*=\\s*([^;]*);", "(?i)hello|world",
+                "a.c", "(?m)^b.*$", "(ab|a)*c", "(a)(b)?\\2\\1", "a{2,4}b", "\\bfoo\\b", "(?=ab)a", "(?!ab)a.", "abcdefghijklm|xyz", "[\\u0100-\\u0200]+" };
+        final String[] inputs = { "", "abc", "xxabcxx", "abbbde", "zx ax", "bcbcad", "x12 x345 ", "  key = value;", "Hello WORLD", "a\nc abc",
+                "a\nb\nbcd\n", "aababc", "abba aa", "aaaaab", "a foo b", "abab acd", "0abcdefghijklm xyz", "\u0150\u0160x" };
+
+        for (final String pattern : patterns) {
+            final char[] p = pattern.toCharArray();
+            final Regex interpreted = new Regex(p, 0, p.length, Option.NONE);
+            final Regex compiled = new Regex(p, 0, p.length, Option.NONE);
+            assertTrue(compiled.compileProgram(), pattern);
+
+            for (final String input : inputs) {
+                final char[] chars = input.toCharArray();
+                for (int start = 0; start <= chars.length; start++) {
+                    final Matcher expected = interpreted.matcher(chars);
+                    final Matcher actual = compiled.matcher(chars);
+                    final String message = pattern + " on " + input + " from " + start;
+                    assertEquals(actual.search(start, chars.length, Option.NONE), expected.search(start, chars.length, Option.NONE), message);
+                    assertEquals(actual.getEnd(), expected.getEnd(), message);
+                    if (expected.getRegion() != null) {
+                        assertEquals(actual.getRegion().beg, expected.getRegion().beg, message);
+                        assertEquals(actual.getRegion().end, expected.getRegion().end, message);
+                    }
+                    assertEquals(actual.match(start, chars.length, Option.NONE), expected.match(start, chars.length, Option.NONE), message);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.codelibs.sai.internal.runtime.regexp.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.codelibs.sai.internal.runtime.regexp.JoniRegExp;
+import org.codelibs.sai.internal.runtime.regexp.LiteralRegExp;
+import org.codelibs.sai.internal.runtime.regexp.RegExp;
+import org.codelibs.sai.internal.runtime.regexp.RegExpFactory;
+import org.codelibs.sai.internal.runtime.regexp.RegExpMatcher;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the literal pattern RegExp implementation.
+ *
+ * @test
+ * @run testng org.codelibs.sai.internal.runtime.regexp.test.LiteralRegExpTest
+ */
+public class LiteralRegExpTest {
+
+    /**
+     * Only literal strings and alternations of them are classified as literal
+     */
+    @Test
+    public void testClassification() {
+        assertNotNull(LiteralRegExp.compile("foo", "g"));
+        assertNotNull(LiteralRegExp.compile("a\\.b\\/c\\r\\n", ""));
+        assertNotNull(LiteralRegExp.compile("GET|POST|PUT", "m"));
+        assertTrue(RegExpFactory.create("literal|classified", "") instanceof LiteralRegExp);
+        assertNull(LiteralRegExp.compile("foo", "i"));
+        assertNull(LiteralRegExp.compile("a|", ""));
+        assertNull(LiteralRegExp.compile("|a", ""));
+        assertNull(LiteralRegExp.compile("a.b", ""));
+        assertNull(LiteralRegExp.compile("(a)", ""));
+        assertNull(LiteralRegExp.compile("a\\d", ""));
+        assertNull(LiteralRegExp.compile("a\\", ""));
+        assertNull(LiteralRegExp.compile("^a$", ""));
+    }
+
+    /**
+     * Alternations with too large an automaton are left to the regexp engine
+     */
+    @Test
+    public void testAutomatonLimit() {
+        final StringBuilder words = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            words.append(i == 0 ? "" : "|").append("word").append(i);
+        }
+        assertNotNull(LiteralRegExp.compile(words.toString(), ""));
+
+        final StringBuilder symbols = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            symbols.append(i == 0 ? "" : "|").append((char) ('\u0100' + i)).append("symbol").append(i);
+        }
+        assertNull(LiteralRegExp.compile(symbols.toString(), ""));
+        final RegExp regexp = RegExpFactory.create(symbols.toString(), "");
+        assertFalse(regexp instanceof LiteralRegExp);
+        final RegExpMatcher matcher = regexp.match("xx\u0105symbol5");
+        assertTrue(matcher.search(0));
+        assertEquals(matcher.start(), 2);
+    }
+
+    /**
+     * Matches are the same as the ones of the Joni and JDK engines
+     */
+    @Test
+    public void testMatches() {
+        final String[] patterns = { "foo", "a\\.b", "\\r\\n", "a|ab", "ab|a", "he|she|his|hers", "x|xyz|yz", "café|été", "aaa|aa", "b|abc|cd" };
+        final String[] inputs = { "", "foo", "xxfooxfoo", "a.b a-b", "l1\r\nl2\r\n", "abab", "ushers", "wxyz xyyz", "café été", "aaaaa", "abcd" };
+
+        for (final String pattern : patterns) {
+            final RegExp literal = LiteralRegExp.compile(pattern, "g");
+            assertNotNull(literal, pattern);
+            final RegExp[] engines = { new JoniRegExp(pattern, "g"), new RegExpFactory().compile(pattern, "g") };
+
+            for (final String input : inputs) {
+                for (int start = 0; start <= input.length(); start++) {
+                    final RegExpMatcher actual = literal.match(input);
+                    final boolean found = actual.search(start);
+                    for (final RegExp engine : engines) {
+                        final RegExpMatcher expected = engine.match(input);
+                        final String message = pattern + " on " + input + " from " + start;
+                        assertEquals(found, expected.search(start), message);
+                        if (found) {
+                            assertEquals(actual.start(), expected.start(), message);
+                            assertEquals(actual.end(), expected.end(), message);
+                            assertEquals(actual.group(), expected.group(), message);
+                            assertEquals(actual.groupCount(), expected.groupCount(), message);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
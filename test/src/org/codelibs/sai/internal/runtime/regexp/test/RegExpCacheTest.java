@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010, 2013, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.codelibs.sai.internal.runtime.regexp.test;
+
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.codelibs.sai.internal.runtime.regexp.RegExp;
+import org.codelibs.sai.internal.runtime.regexp.RegExpCache;
+import org.codelibs.sai.internal.runtime.regexp.RegExpFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the cache of compiled regular expressions.
+ *
+ * @test
+ * @run testng org.codelibs.sai.internal.runtime.regexp.test.RegExpCacheTest
+ */
+public class RegExpCacheTest {
+
+    /**
+     * Repeated creation of the same regexp is served from the cache
+     */
+    @Test
+    public void testHit() {
+        final RegExpCache cache = RegExpFactory.getCache();
+        final String pattern = new StringBuilder("cache").append("Hit+").toString();
+        final RegExp regexp = RegExpFactory.create(pattern, "g");
+        final long hits = cache.getHitCount();
+        assertSame(RegExpFactory.create(new String(pattern), "g"), regexp);
+        assertTrue(cache.getHitCount() > hits);
+        assertNotSame(RegExpFactory.create(pattern, "gi"), regexp);
+        assertNotSame(RegExpFactory.create(pattern, ""), regexp);
+        assertSame(RegExpFactory.create(pattern, "g"), regexp);
+        assertTrue(cache.getHitRate() > 0.0);
+    }
+
+    /**
+     * The cache stays within its bound and keeps entries that are in use
+     */
+    @Test
+    public void testEviction() {
+        final RegExpCache cache = RegExpFactory.getCache();
+        final RegExp hot = RegExpFactory.create("hot[0-9]+", "");
+        final long evictions = cache.getEvictionCount();
+        for (int i = 0; i < cache.getMaxSize() * 2; i++) {
+            RegExpFactory.create("cold" + i, i % 2 == 0 ? "" : "i");
+            assertSame(RegExpFactory.create("hot[0-9]+", ""), hot);
+        }
+        assertTrue(cache.size() <= cache.getMaxSize());
+        assertTrue(cache.getEvictionCount() > evictions);
+    }
+}
@@ -26,16 +26,40 @@ package org.codelibs.sai.internal.runtime.test;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
+import org.codelibs.sai.api.scripting.EngineMetricsMXBean;
 import org.codelibs.sai.api.scripting.SaiScriptEngineFactory;
+import org.codelibs.sai.api.scripting.ScriptUtils;
+import org.codelibs.sai.internal.objects.Global;
+import org.codelibs.sai.internal.runtime.CodeStore;
+import org.codelibs.sai.internal.runtime.Context;
+import org.codelibs.sai.internal.runtime.ErrorManager;
+import org.codelibs.sai.internal.runtime.MappedCodeStore;
+import org.codelibs.sai.internal.runtime.ScriptFunction;
+import org.codelibs.sai.internal.runtime.ScriptRuntime;
+import org.codelibs.sai.internal.runtime.Source;
+import org.codelibs.sai.internal.runtime.StoredScript;
+import org.codelibs.sai.internal.runtime.options.Options;
 import org.testng.annotations.Test;
 
 /**
@@ -152,6 +176,183 @@ public class CodeStoreAndPathTest {
         checkCompiledScripts(stream, 4);
     }
 
+    @Test
+    public void mappedCodeStoreTest() throws IOException {
+        final String mappedCodeCache = "build/sai_mapped_code_cache";
+        final Context context = new Context(new Options("sai"), new ErrorManager(), Thread.currentThread().getContextClassLoader());
+        final Source source1 = Source.sourceFor("code1", code1);
+        final Source source2 = Source.sourceFor("code2", code2);
+        final Source source3 = Source.sourceFor("code3", code3);
+
+        final Map<String, byte[]> classBytes = new LinkedHashMap<>();
+        classBytes.put("Script1", new byte[] { 1, 2, 3 });
+        classBytes.put("Script1$Inner", new byte[] { 4, 5 });
+        final StoredScript script1 = new StoredScript(1, "Script1", classBytes, Collections.emptyMap(), new Object[] { "constant", 1 });
+        final StoredScript script2 =
+                new StoredScript(2, "Script2", Collections.singletonMap("Script2", new byte[] { 6 }), Collections.emptyMap(), new Object[0]);
+
+        final MappedCodeStore store = new MappedCodeStore(context, mappedCodeCache, false, 1000);
+        store.initLogger(context);
+        assertEquals(store.store("key1", source1, script1), script1);
+        assertEquals(store.store("key2", source2, script2), script2);
+        // less than minimum size for storing
+        assertNull(store.store("key3", source3, script2));
+
+        assertEquals(store.load(source1, "key1"), script1);
+        assertEquals(store.load(source1, "key1").getCompilationId(), 1);
+        assertNull(store.load(source1, "key2"));
+
+        // a new store over the same segment sees the stored scripts
+        final MappedCodeStore reopened = new MappedCodeStore(context, mappedCodeCache, true, 1000);
+        reopened.initLogger(context);
+        assertEquals(reopened.load(source1, "key1"), script1);
+        assertEquals(reopened.load(source2, "key2"), script2);
+        assertNull(reopened.load(source3, "key3"));
+        assertNull(reopened.store("key3", source2, script2));
+
+        // records appended beyond the capacity of the first mapped regions
+        final StoredScript[] large = new StoredScript[12];
+        for (int i = 0; i < large.length; i++) {
+            final byte[] bytes = new byte[32 * 1024];
+            Arrays.fill(bytes, (byte) i);
+            large[i] = new StoredScript(i, "Large" + i, Collections.singletonMap("Large" + i, bytes), Collections.emptyMap(), new Object[0]);
+            assertEquals(store.store("large" + i, source1, large[i]), large[i]);
+        }
+        final MappedCodeStore reopenedLarge = new MappedCodeStore(context, mappedCodeCache, true, 1000);
+        reopenedLarge.initLogger(context);
+        for (int i = 0; i < large.length; i++) {
+            assertEquals(store.load(source1, "large" + i), large[i]);
+            assertEquals(reopenedLarge.load(source1, "large" + i), large[i]);
+        }
+        assertEquals(store.load(source1, "key1"), script1);
+        store.close();
+        reopened.close();
+        reopenedLarge.close();
+    }
+
+    @Test
+    public void mappedCodeStoreProviderTest() throws IOException {
+        final String mappedCodeCache = "build/sai_mapped_provider_cache";
+        deleteRecursively(new File(mappedCodeCache));
+        // make the mapped store the code store provider for contexts created by this thread only
+        final File servicesDir = new File("build/sai_mapped_provider/META-INF/services");
+        servicesDir.mkdirs();
+        Files.write(new File(servicesDir, CodeStore.class.getName()).toPath(),
+                Collections.singletonList(MappedCodeStore.class.getName()), StandardCharsets.UTF_8);
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader oldLoader = thread.getContextClassLoader();
+        final String oldCodeCache = System.getProperty("sai.persistent.code.cache");
+        final Global oldGlobal = Context.getGlobal();
+        final Source source = Source.sourceFor("code1", code1);
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { new File("build/sai_mapped_provider").toURI().toURL() }, oldLoader)) {
+            thread.setContextClassLoader(loader);
+            System.setProperty("sai.persistent.code.cache", mappedCodeCache);
+
+            // compile and store the script
+            final Context context = new Context(options("--persistent-code-cache"), new ErrorManager(), loader);
+            final Global global = context.createGlobal();
+            Context.setGlobal(global);
+            ScriptRuntime.apply(context.compileScript(source, global), global);
+            final File[] segments = findSegments(new File(mappedCodeCache));
+            assertEquals(segments.length, 1);
+            assertTrue(segments[0].length() > 0);
+
+            // a new context loads the script from the segment instead of compiling it
+            final Context reloading = new Context(options("--persistent-code-cache"), new ErrorManager(), loader);
+            final Global reloadingGlobal = reloading.createGlobal();
+            Context.setGlobal(reloadingGlobal);
+            final EngineMetricsMXBean metrics = ScriptUtils.getEngineMetrics();
+            final long hits = metrics.getCodeStoreHitCount();
+            final ScriptFunction script = reloading.compileScript(source, reloadingGlobal);
+            assertEquals(metrics.getCodeStoreHitCount(), hits + 1);
+            ScriptRuntime.apply(script, reloadingGlobal);
+            assertEquals(reloadingGlobal.get("x10"), "Hello Script");
+            ScriptRuntime.apply((ScriptFunction) reloadingGlobal.get("f"), reloadingGlobal);
+            assertEquals(reloadingGlobal.get("x"), "Bye Script");
+        } finally {
+            Context.setGlobal(oldGlobal);
+            thread.setContextClassLoader(oldLoader);
+            if (oldCodeCache != null) {
+                System.setProperty("sai.persistent.code.cache", oldCodeCache);
+            } else {
+                System.clearProperty("sai.persistent.code.cache");
+            }
+        }
+    }
+
+    @Test
+    public void codeSnapshotTest() throws IOException {
+        final File snapshotFile = new File("build/sai_code_snapshot.bin");
+        final Source source1 = Source.sourceFor("code1", code1);
+        final Source source2 = Source.sourceFor("code2", code2);
+
+        final Context compiler = new Context(new Options("sai"), new ErrorManager(), Thread.currentThread().getContextClassLoader());
+        assertTrue(compiler.compileSnapshot(snapshotFile, Collections.singletonList(source1)));
+        assertFalse(compiler.compileSnapshot(new File("build/sai_code_snapshot_error.bin"),
+                Collections.singletonList(Source.sourceFor("error", "var x = ;"))));
+
+        final Context context = new Context(options("--code-snapshot=" + snapshotFile.getPath()), new ErrorManager(),
+                Thread.currentThread().getContextClassLoader());
+        final Global oldGlobal = Context.getGlobal();
+        final Global global = context.createGlobal();
+        Context.setGlobal(global);
+        try {
+            final EngineMetricsMXBean metrics = ScriptUtils.getEngineMetrics();
+            final long hits = metrics.getCodeStoreHitCount();
+            final long misses = metrics.getCodeStoreMissCount();
+            assertNotNull(context.compileScript(source1, global));
+            assertEquals(metrics.getCodeStoreHitCount(), hits + 1);
+            assertNotNull(context.compileScript(source2, global));
+            assertEquals(metrics.getCodeStoreMissCount(), misses + 1);
+            // lazily compiled functions are looked up in the snapshot too
+            ScriptRuntime.apply(context.compileScript(source1, global), global);
+            ScriptRuntime.apply((ScriptFunction) global.get("f"), global);
+            assertEquals(metrics.getCodeStoreMissCount(), misses + 2);
+            assertEquals(global.get("x"), "Bye Script");
+        } finally {
+            Context.setGlobal(oldGlobal);
+        }
+
+        // records of a snapshot built with different optimistic types are not used
+        final Context optimistic = new Context(options("--optimistic-types=true"), new ErrorManager(),
+                Thread.currentThread().getContextClassLoader());
+        final MappedCodeStore snapshot = MappedCodeStore.openSnapshot(optimistic, snapshotFile, false);
+        assertNull(snapshot.load(source1, "script"));
+        snapshot.close();
+    }
+
+    private static Options options(final String... args) {
+        final Options options = new Options("sai");
+        options.process(args);
+        return options;
+    }
+
+    private static File[] findSegments(final File dir) {
+        final List<File> segments = new ArrayList<>();
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (file.isDirectory()) {
+                    segments.addAll(Arrays.asList(findSegments(file)));
+                } else if (file.getName().equals(MappedCodeStore.SEGMENT_FILE_NAME)) {
+                    segments.add(file);
+                }
+            }
+        }
+        return segments.toArray(new File[segments.size()]);
+    }
+
+    private static void deleteRecursively(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
     private static Path getCodeCachePath(final boolean optimistic) {
         final String codeCache = System.getProperty("sai.persistent.code.cache");
         final Path codeCachePath = FileSystems.getDefault().getPath(codeCache).toAbsolutePath();
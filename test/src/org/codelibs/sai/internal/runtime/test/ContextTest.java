@@ -29,11 +29,22 @@ import static org.codelibs.sai.internal.runtime.Source.sourceFor;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.codelibs.sai.api.scripting.EngineMetricsMXBean;
+import org.codelibs.sai.api.scripting.ScriptUtils;
+import org.codelibs.sai.internal.codegen.CompileUnit;
 import org.codelibs.sai.internal.objects.Global;
+import org.codelibs.sai.internal.runtime.ClassCache;
 import org.codelibs.sai.internal.runtime.Context;
 import org.codelibs.sai.internal.runtime.ErrorManager;
+import org.codelibs.sai.internal.runtime.MegamorphicCache;
 import org.codelibs.sai.internal.runtime.ScriptFunction;
 import org.codelibs.sai.internal.runtime.ScriptObject;
 import org.codelibs.sai.internal.runtime.ScriptRuntime;
@@ -136,6 +147,225 @@ public class ContextTest {
         }
     }
 
+    // concurrent compilation of distinct and identical sources through one Context
+    @Test
+    public void concurrentCompileTest() throws Exception {
+        final Options options = new Options("");
+        final ErrorManager errors = new ErrorManager();
+        final Context cx = new Context(options, errors, Thread.currentThread().getContextClassLoader());
+        final Global global = cx.createGlobal();
+        final Source shared = sourceFor("<sharedSource>", "function f(x) { return x * 2; } f(21)");
+
+        final int threadCount = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<Object[]>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount * 4; i++) {
+                final int n = i;
+                results.add(executor.submit(new Callable<Object[]>() {
+                    @Override
+                    public Object[] call() {
+                        final Global oldGlobal = Context.getGlobal();
+                        Context.setGlobal(global);
+                        try {
+                            final ScriptFunction own = cx.compileScript(sourceFor("<source" + n + ">", n + " + 1"), global);
+                            final ScriptFunction same = cx.compileScript(shared, global);
+                            return new Object[] { ScriptRuntime.apply(own, global), ScriptRuntime.apply(same, global) };
+                        } finally {
+                            Context.setGlobal(oldGlobal);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                final Object[] values = results.get(i).get();
+                assertEquals(((Number) values[0]).intValue(), i + 1);
+                assertEquals(((Number) values[1]).intValue(), 42);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // class cache hit/miss/eviction accounting
+    @Test
+    public void classCacheTest() {
+        final Options options = new Options("sai");
+        options.process(new String[] { "--class-cache-size=2" });
+        final ErrorManager errors = new ErrorManager();
+        final Context cx = new Context(options, errors, Thread.currentThread().getContextClassLoader());
+        final Global oldGlobal = Context.getGlobal();
+        Context.setGlobal(cx.createGlobal());
+        try {
+            final ClassCache cache = cx.getClassCache();
+            final Source a = sourceFor("<a>", "1");
+            final Source b = sourceFor("<b>", "2");
+            final Source c = sourceFor("<c>", "3");
+
+            cx.compileScript(a, Context.getGlobal());
+            cx.compileScript(a, Context.getGlobal());
+            assertEquals(cache.getMissCount(), 1);
+            assertEquals(cache.getHitCount(), 1);
+            assertTrue(cache.getWeight() > 0);
+
+            // 'a' has been hit and is protected, so 'b' is the one evicted for 'c'
+            cx.compileScript(b, Context.getGlobal());
+            cx.compileScript(c, Context.getGlobal());
+            assertEquals(cache.size(), 2);
+            assertEquals(cache.getEvictionCount(), 1);
+
+            cx.compileScript(a, Context.getGlobal());
+            assertEquals(cache.getHitCount(), 2);
+            cx.compileScript(b, Context.getGlobal());
+            assertEquals(cache.getMissCount(), 4);
+        } finally {
+            Context.setGlobal(oldGlobal);
+        }
+    }
+
+    @Test
+    public void sharedBuiltinsTest() {
+        final Options options = new Options("");
+        final ErrorManager errors = new ErrorManager();
+        final Context cx = new Context(options, errors, Thread.currentThread().getContextClassLoader());
+        final Global oldGlobal = Context.getGlobal();
+        try {
+            final Global first = cx.createGlobal();
+            Context.setGlobal(first);
+            eval(cx, "<sharedBuiltinsTest>", "Array.prototype.push.foo = 42; Math.max = null; new Date(0); /x/.test('x')");
+            final int shared = cx.getSharedBuiltins().getFunctionDataCount();
+            assertTrue(shared > 0);
+
+            final Global second = cx.createGlobal();
+            Context.setGlobal(second);
+            // builtins of the second global are its own objects, untouched by scripts of the first one
+            assertEquals(eval(cx, "<sharedBuiltinsTest>", "typeof Array.prototype.push.foo + ',' + Math.max(1, 2)").toString(), "undefined,2");
+            assertEquals(eval(cx, "<sharedBuiltinsTest>", "'' + ([1, 2].push(3) + new Date(0).getTime() + parseInt('7'))").toString(), "10");
+            assertEquals(eval(cx, "<sharedBuiltinsTest>", "Array.prototype.push.length + ',' + Object.keys.name").toString(), "1,keys");
+            assertTrue(first.get("Array") != second.get("Array"));
+            // ... but the function data behind them is reused
+            assertEquals(cx.getSharedBuiltins().getFunctionDataCount(), shared);
+        } finally {
+            Context.setGlobal(oldGlobal);
+        }
+    }
+
+    @Test
+    public void parallelCodegenTest() {
+        // Large enough to be split into several compile units
+        final StringBuilder sb = new StringBuilder("function f(i) { var s = 0;\n");
+        for (int i = 0; i < 4000; i++) {
+            sb.append("s = (s + i * ").append(i).append(") % 1000003;\n");
+        }
+        sb.append("return s; }\nvar a = [");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i).append(',');
+        }
+        sb.append("0];\nf(3) + a.length + a[19999];");
+        final String code = sb.toString();
+
+        final Object expected = evalWithOptions(code, "--lazy-compilation=false");
+        final int emittedUnits = CompileUnit.getEmittedUnitCount();
+        assertEquals(evalWithOptions(code, "--lazy-compilation=false", "--parallel-codegen"), expected);
+        assertTrue(CompileUnit.getEmittedUnitCount() - emittedUnits > 1);
+    }
+
+    @Test
+    public void tieredCompilationTest() throws InterruptedException {
+        // f gets hot through the call site in drive(), drive() itself is only invoked twice
+        final String hot = "function f(a, b) { var s = 0; for (var i = 0; i < a; i++) { s += i * b; } return s; }\n"
+                + "function drive(n, a, b) { var t = 0; for (var k = 0; k < n; k++) { t += f(a, b); } return t; }\n"
+                + "var t = drive(20000, 10, 3);\n";
+        // overflows int, which only optimistic code has to deoptimize for
+        final String overflow = "t + drive(1, 100000, 100000);";
+        final Object expected = evalWithOptions(hot + overflow, "--optimistic-types=true");
+
+        final Options options = new Options("sai");
+        options.process(new String[] { "--optimistic-types=true", "--tiered-compilation" });
+        final Context cx = new Context(options, new ErrorManager(), Thread.currentThread().getContextClassLoader());
+        final Global oldGlobal = Context.getGlobal();
+        Context.setGlobal(cx.createGlobal());
+        try {
+            final EngineMetricsMXBean metrics = ScriptUtils.getEngineMetrics();
+            final long tierUps = metrics.getTierUpCount();
+            eval(cx, "<tieredCompilationTest>", hot);
+            // the optimistic code is installed by a background thread
+            final long deadline = System.currentTimeMillis() + 30000;
+            while (metrics.getTierUpCount() == tierUps && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(metrics.getTierUpCount() > tierUps);
+
+            // The call site in drive() was linked to the baseline code of f. It only reaches the optimistic code, and
+            // deoptimizes it, if it relinked once the baseline assumptions were invalidated.
+            final long deoptimizations = metrics.getDeoptimizationCount();
+            assertEquals(eval(cx, "<tieredCompilationTest2>", overflow), expected);
+            assertTrue(metrics.getDeoptimizationCount() > deoptimizations);
+        } finally {
+            Context.setGlobal(oldGlobal);
+        }
+    }
+
+    @Test
+    public void megamorphicCacheTest() {
+        final Options options = new Options("");
+        final ErrorManager errors = new ErrorManager();
+        final Context cx = new Context(options, errors, Thread.currentThread().getContextClassLoader());
+        final Global oldGlobal = Context.getGlobal();
+        try {
+            Context.setGlobal(cx.createGlobal());
+            // One property access site seeing many different property maps
+            final String code = "function P() {} P.prototype.y = 1;\n"
+                    + "var objs = []; for (var i = 0; i < 32; i++) { var o = new P(); o['k' + i] = i; o.x = i; objs.push(o); }\n"
+                    + "function get(o) { return o.x + o.y; } function set(o, v) { o.x = v; }\n"
+                    + "var s = 0; for (var r = 0; r < 10; r++) { for (var i = 0; i < objs.length; i++) { set(objs[i], i + r); s += get(objs[i]); } }\n"
+                    + "P.prototype.y = 2; for (var i = 0; i < objs.length; i++) { s += get(objs[i]); }\n"
+                    + "delete P.prototype.y; P.prototype.x = 0; for (var i = 0; i < objs.length; i++) { s += isNaN(get(objs[i])) ? 1 : 0; }\n" + "s;";
+            final MegamorphicCache cache = cx.getMegamorphicCache();
+            final long hits = cache.getHitCount();
+            assertEquals(((Number) eval(cx, "<megamorphicCacheTest>", code)).intValue(), 6720 + 848 + 32);
+            assertTrue(cache.getHitCount() > hits);
+            assertTrue(cache.getMissCount() > 0);
+        } finally {
+            Context.setGlobal(oldGlobal);
+        }
+    }
+
+    @Test
+    public void megamorphicCacheCrossGlobalTest() {
+        final Options options = new Options("sai");
+        options.process(new String[0]);
+        final ErrorManager errors = new ErrorManager();
+        final Context cx = new Context(options, errors, Thread.currentThread().getContextClassLoader());
+        final Global oldGlobal = Context.getGlobal();
+        try {
+            // The same script in two globals is class cached and shares the object literal map, but not its prototype
+            final String code = "function get(o) { return o.foo; }\n"
+                    + "for (var i = 0; i < 32; i++) { var o = { a: 1 }; o['k' + i] = i; get(o); }\n" + "String(get({ a: 1 }));";
+            Context.setGlobal(cx.createGlobal());
+            eval(cx, "<megamorphicCacheCrossGlobalTest>", "Object.prototype.foo = 42;");
+            assertEquals(eval(cx, "<megamorphicCacheCrossGlobalTest>", code), "42");
+            Context.setGlobal(cx.createGlobal());
+            assertEquals(eval(cx, "<megamorphicCacheCrossGlobalTest>", code), "undefined");
+        } finally {
+            Context.setGlobal(oldGlobal);
+        }
+    }
+
+    private static Object evalWithOptions(final String code, final String... args) {
+        final Options options = new Options("sai");
+        options.process(args);
+        final ErrorManager errors = new ErrorManager();
+        final Context cx = new Context(options, errors, Thread.currentThread().getContextClassLoader());
+        final Global oldGlobal = Context.getGlobal();
+        Context.setGlobal(cx.createGlobal());
+        try {
+            return eval(cx, "<evalWithOptions>", code);
+        } finally {
+            Context.setGlobal(oldGlobal);
+        }
+    }
+
     private static Object eval(final Context cx, final String name, final String code) {
         final Source source = sourceFor(name, code);
         final ScriptObject global = Context.getGlobal();